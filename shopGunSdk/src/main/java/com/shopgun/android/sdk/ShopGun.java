@@ -33,7 +33,10 @@ import com.shopgun.android.sdk.corekit.realm.SgnAnonymousEventRealmModule;
 import com.shopgun.android.sdk.corekit.realm.SgnLegacyEventRealmModule;
 import com.shopgun.android.sdk.database.SgnDatabase;
 import com.shopgun.android.sdk.eventskit.AnonymousEvent;
+import com.shopgun.android.sdk.eventskit.EventStore;
 import com.shopgun.android.sdk.eventskit.EventUtils;
+import com.shopgun.android.sdk.eventskit.FileEventStore;
+import com.shopgun.android.sdk.eventskit.RealmEventStore;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.Shoppinglist;
 import com.shopgun.android.sdk.model.ShoppinglistItem;
@@ -41,10 +44,10 @@ import com.shopgun.android.sdk.network.Cache;
 import com.shopgun.android.sdk.network.Network;
 import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.network.RequestQueue;
-import com.shopgun.android.sdk.network.impl.DefaultRedirectProtocol;
-import com.shopgun.android.sdk.network.impl.HttpURLNetwork;
-import com.shopgun.android.sdk.network.impl.MemoryCache;
-import com.shopgun.android.sdk.network.impl.NetworkImpl;
+import com.shopgun.android.sdk.network.impl.DiskCache;
+import com.shopgun.android.sdk.network.impl.OkHttpNetwork;
+import com.shopgun.android.sdk.network.impl.StripedMemoryCache;
+import com.shopgun.android.sdk.network.impl.TieredCache;
 import com.shopgun.android.sdk.shoppinglists.ListManager;
 import com.shopgun.android.sdk.shoppinglists.SyncManager;
 import com.shopgun.android.sdk.utils.Constants;
@@ -150,6 +153,8 @@ public class ShopGun {
     private final RealmConfiguration mRealmConfiguration;
     /** Realm configuration to handle the shipping of legacy events */
     private final  RealmConfiguration mLegacyConfiguration;
+    /** Where tracked events are kept until they are shipped */
+    private final EventStore mEventStore;
     /**  **/
     private SgnLifecycleCallback mLifecycleCallback;
 
@@ -164,6 +169,7 @@ public class ShopGun {
         mClient = builder.okHttpClient;
         mRealmConfiguration = builder.realmConfiguration;
         mLegacyConfiguration = builder.legacyConfiguration;
+        mEventStore = builder.eventStore;
 
         mLifecycleManager = new LifecycleManager(builder.application);
         mLifecycleCallback = new SgnLifecycleCallback();
@@ -402,6 +408,14 @@ public class ShopGun {
         return realm;
     }
 
+    /**
+     * Get the {@link EventStore} keeping the tracked events, until they are shipped.
+     * @return An {@link EventStore}
+     */
+    public EventStore getEventStore() {
+        return mEventStore;
+    }
+
     public boolean legacyEventsDetected() {
         return !(mLegacyConfiguration == null);
     }
@@ -473,6 +487,7 @@ public class ShopGun {
         String eventEnvironment;
         RealmConfiguration realmConfiguration;
         RealmConfiguration legacyConfiguration;
+        EventStore eventStore;
         OkHttpClient okHttpClient;
         List<Interceptor> interceptors = new ArrayList<>();
         List<Interceptor> networkInterceptors = new ArrayList<>();
@@ -606,6 +621,24 @@ public class ShopGun {
             return this;
         }
 
+        /**
+         * Specify the {@link EventStore} keeping the tracked events until they are shipped. The
+         * default is a {@link RealmEventStore}. A {@link FileEventStore} doesn't depend on Realm,
+         * but events already stored in Realm won't be shipped after switching.
+         * @param eventStore An {@link EventStore}
+         * @return This object
+         */
+        public Builder setEventStore(EventStore eventStore) {
+            if (eventStore == null) {
+                throw new IllegalArgumentException("EventStore must not be null.");
+            }
+            if (this.eventStore != null) {
+                throw new IllegalStateException("EventStore already set.");
+            }
+            this.eventStore = eventStore;
+            return this;
+        }
+
         /**
          * Builds and set the ShopGun instance, and sets it to be the global singleton.
          * @return The ShopGun instance
@@ -622,11 +655,8 @@ public class ShopGun {
             }
 
             if (cache == null) {
-                cache = new MemoryCache();
-            }
-
-            if (network == null) {
-                network = new NetworkImpl(new HttpURLNetwork(new DefaultRedirectProtocol()));
+                File cacheDir = new File(application.getCacheDir(), DiskCache.DEFAULT_DIRECTORY);
+                cache = new TieredCache(new StripedMemoryCache(), new DiskCache(cacheDir));
             }
 
             if (develop == null) {
@@ -645,6 +675,10 @@ public class ShopGun {
                 eventEnvironment = "https://events.service.shopgun.com/sync";
             }
 
+            if (eventStore == null) {
+                eventStore = new RealmEventStore();
+            }
+
             // Setup the default OkHttpClient
             OkHttpClient.Builder okHttpClientBuilder = new OkHttpClient.Builder();
             for (Interceptor i : interceptors) {
@@ -657,6 +691,10 @@ public class ShopGun {
             okHttpClientBuilder.addInterceptor(new UserAgentInterceptor(SgnUserAgent.getUserAgent(application)));
             okHttpClient = okHttpClientBuilder.build();
 
+            if (network == null) {
+                network = new OkHttpNetwork(okHttpClient);
+            }
+
             // Set the default RealmConfiguration.
             Realm.init(application);
 
@@ -140,6 +140,14 @@ public class Endpoints {
         return String.format("/v2/users/%s/shoppinglists", userId);
     }
 
+    /**
+     * @param userId A {@link User#getUserId()}
+     * @return /v2/users/{user_id}/shoppinglists/changes
+     */
+    public static String listChanges(int userId) {
+        return String.format("/v2/users/%s/shoppinglists/changes", userId);
+    }
+
     /**
      * @param userId A {@link User#getUserId()}
      * @param listId A {@link Shoppinglist#getId()}
@@ -195,6 +203,14 @@ public class Endpoints {
         return String.format("/v2/users/%s/shoppinglists/%s/items", userId, listId);
     }
 
+    /**
+     * @param userId A {@link User#getUserId()}
+     * @return /v2/users/{user_id}/shoppinglists/items/batch
+     */
+    public static String listitemsBatch(int userId) {
+        return String.format("/v2/users/%s/shoppinglists/items/batch", userId);
+    }
+
     /**
      * @param userId A {@link User#getUserId()}
      * @param listId A {@link Shoppinglist#getId()}
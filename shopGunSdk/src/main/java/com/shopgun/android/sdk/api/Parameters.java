@@ -97,6 +97,11 @@ public class Parameters {
      */
     public static final String RUN_TILL = "run_till";
 
+    /**
+     * String identifying the modified from parameter, for only getting resources modified since a given time
+     */
+    public static final String MODIFIED_FROM = "modified_from";
+
     /**
      * String identifying the color parameter for all list calls to the API
      */
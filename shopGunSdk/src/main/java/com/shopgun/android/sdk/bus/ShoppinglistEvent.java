@@ -328,6 +328,16 @@ public class ShoppinglistEvent extends ShopGunEvent {
             items.put(s.getId(), new StateWrapper<ShoppinglistItem>(StateWrapper.Action.EDITED, s));
         }
 
+        /**
+         * Add all changes from another builder. Changes in the other builder replace the
+         * changes in this builder, for the same list or item.
+         * @param b A builder
+         */
+        public void addAll(Builder b) {
+            items.putAll(b.items);
+            lists.putAll(b.lists);
+        }
+
         public boolean hasChanges() {
             return !lists.isEmpty() || !items.isEmpty() || firstSync;
         }
@@ -1,10 +1,64 @@
 package com.shopgun.android.sdk.corekit;
 
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
 
 public class NetworkUtils {
 
+    /** The connection type couldn't be determined, e.g. missing the ACCESS_NETWORK_STATE permission */
+    public static final int CONNECTION_UNKNOWN = 0;
+    /** No network connection */
+    public static final int CONNECTION_NONE = 1;
+    /** A 2G mobile connection */
+    public static final int CONNECTION_SLOW = 2;
+    /** A 3G or better mobile connection */
+    public static final int CONNECTION_MOBILE = 3;
+    /** WiFi, ethernet or similar unmetered connection */
+    public static final int CONNECTION_FAST = 4;
+
+    /**
+     * Get the type of the currently active network connection.
+     * @param context A context
+     * @return One of the {@code CONNECTION_*} constants
+     */
+    @SuppressWarnings("deprecation")
+    public static int getConnectionType(Context context) {
+
+        if (context == null || context.checkCallingOrSelfPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+                != PackageManager.PERMISSION_GRANTED) {
+            return CONNECTION_UNKNOWN;
+        }
+
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = cm == null ? null : cm.getActiveNetworkInfo();
+        if (info == null || !info.isConnected()) {
+            return CONNECTION_NONE;
+        }
+
+        if (info.getType() != ConnectivityManager.TYPE_MOBILE) {
+            return CONNECTION_FAST;
+        }
+
+        switch (info.getSubtype()) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return CONNECTION_SLOW;
+            default:
+                return CONNECTION_MOBILE;
+        }
+
+    }
+
     public static void cancelCallWithTag(OkHttpClient client, Object tag) {
         // A call may transition from queue -> running. Remove queued Calls first.
         for(Call call : client.dispatcher().queuedCalls()) {
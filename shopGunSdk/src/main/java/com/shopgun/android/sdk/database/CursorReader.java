@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @deprecated No longer maintained
+ *
+ * Reads model objects straight from the rows of a {@link Cursor}.
+ *
+ * <p>Column indices are looked up once, when the reader is created, and every row is read directly
+ * into a model object, instead of first being copied into a {@link ContentValues} map.</p>
+ *
+ * @param <T> The type of model object
+ */
+@Deprecated
+public abstract class CursorReader<T> {
+
+    /** Alias of the SQLite rowid, select it to be able to page through a table, see {@link WindowedIterator} */
+    public static final String ROWID = "_rowid";
+    /** Projection of all columns, and the {@link #ROWID} */
+    public static final String[] ALL_COLUMNS_AND_ROWID = new String[]{"rowid AS " + ROWID, "*"};
+
+    protected final Cursor mCursor;
+    private final int mRowId;
+
+    protected CursorReader(Cursor c) {
+        mCursor = c;
+        mRowId = c.getColumnIndex(ROWID);
+    }
+
+    /**
+     * Read the row the cursor is at.
+     * @return A model object
+     */
+    public abstract T read();
+
+    /**
+     * Get the rowid of the row the cursor is at.
+     * @return The rowid, or {@code -1} if the {@link #ROWID} wasn't selected
+     */
+    public long getRowId() {
+        return mRowId == -1 ? -1 : mCursor.getLong(mRowId);
+    }
+
+    /**
+     * Read all rows of the cursor, and close the cursor.
+     * @return A list of model objects
+     */
+    public List<T> toList() {
+        try {
+            List<T> list = new ArrayList<T>(Math.max(mCursor.getCount(), 0));
+            while (mCursor.moveToNext()) {
+                list.add(read());
+            }
+            return list;
+        } finally {
+            DbUtils.closeCursor(mCursor);
+        }
+    }
+
+    protected String getString(int index) {
+        return mCursor.isNull(index) ? null : mCursor.getString(index);
+    }
+
+    protected Integer getInteger(int index) {
+        return mCursor.isNull(index) ? null : mCursor.getInt(index);
+    }
+
+}
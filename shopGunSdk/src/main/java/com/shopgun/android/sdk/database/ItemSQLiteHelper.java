@@ -30,7 +30,6 @@ import com.shopgun.android.sdk.utils.SgnUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -64,6 +63,22 @@ public class ItemSQLiteHelper extends SgnOpenHelper {
                     ");";
     public static final String INSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE + " VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
+    /** Covers the per list selects, updates and deletes, which always filter on user too */
+    public static final String CREATE_INDEX_LIST =
+            "create index if not exists " + TABLE + "_list_idx on " + TABLE + "(" +
+                    USER + ", " + SHOPPINGLIST_ID + ", " + STATE + ");";
+
+    /** Covers the lookup of the next item, when walking the order of a list */
+    public static final String CREATE_INDEX_PREVIOUS =
+            "create index if not exists " + TABLE + "_previous_idx on " + TABLE + "(" +
+                    SHOPPINGLIST_ID + ", " + PREVIOUS_ID + ");";
+
+    public static final String UPDATE_STATE_STATEMENT = "UPDATE OR REPLACE " + TABLE + " SET " +
+            MODIFIED + "=?, " + STATE + "=? WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?";
+
+    public static final String DELETE_STATEMENT = "DELETE FROM " + TABLE + " WHERE " + ID + "=? AND " + USER + "=?";
+    public static final String DELETE_LIST_STATEMENT = "DELETE FROM " + TABLE + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?";
+
     public ItemSQLiteHelper(Context context) {
         super(context);
     }
@@ -93,6 +108,14 @@ public class ItemSQLiteHelper extends SgnOpenHelper {
         db.acquireReference();
         db.execSQL(CREATE_TABLE);
         db.releaseReference();
+        createIndexes(db);
+    }
+
+    public static void createIndexes(SQLiteDatabase db) {
+        db.acquireReference();
+        db.execSQL(CREATE_INDEX_LIST);
+        db.execSQL(CREATE_INDEX_PREVIOUS);
+        db.releaseReference();
     }
 
     public static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
@@ -102,14 +125,69 @@ public class ItemSQLiteHelper extends SgnOpenHelper {
     }
 
     public static List<ShoppinglistItem> cursorToList(Cursor c) {
-        ArrayList<ShoppinglistItem> list = new ArrayList<ShoppinglistItem>();
-        for (ContentValues cv : DbUtils.cursorToContentValues(c)) {
-            ShoppinglistItem sli = ItemSQLiteHelper.contentValuesToObject(cv);
-            if (sli != null) {
-                list.add(sli);
+        return new Reader(c).toList();
+    }
+
+    /**
+     * Reads {@link ShoppinglistItem ShoppinglistItems} straight from a cursor, see {@link CursorReader}.
+     */
+    public static class Reader extends CursorReader<ShoppinglistItem> {
+
+        private final int mId;
+        private final int mErn;
+        private final int mModified;
+        private final int mDescription;
+        private final int mCount;
+        private final int mTick;
+        private final int mOfferId;
+        private final int mCreator;
+        private final int mShoppinglistId;
+        private final int mState;
+        private final int mPreviousId;
+        private final int mMeta;
+        private final int mUser;
+
+        public Reader(Cursor c) {
+            super(c);
+            mId = c.getColumnIndexOrThrow(ID);
+            mErn = c.getColumnIndexOrThrow(ERN);
+            mModified = c.getColumnIndexOrThrow(MODIFIED);
+            mDescription = c.getColumnIndexOrThrow(DESCRIPTION);
+            mCount = c.getColumnIndexOrThrow(COUNT);
+            mTick = c.getColumnIndexOrThrow(TICK);
+            mOfferId = c.getColumnIndexOrThrow(OFFER_ID);
+            mCreator = c.getColumnIndexOrThrow(CREATOR);
+            mShoppinglistId = c.getColumnIndexOrThrow(SHOPPINGLIST_ID);
+            mState = c.getColumnIndexOrThrow(STATE);
+            mPreviousId = c.getColumnIndexOrThrow(PREVIOUS_ID);
+            mMeta = c.getColumnIndexOrThrow(META);
+            mUser = c.getColumnIndexOrThrow(USER);
+        }
+
+        @Override
+        public ShoppinglistItem read() {
+            ShoppinglistItem sli = new ShoppinglistItem();
+            sli.setId(getString(mId));
+            sli.setErn(getString(mErn));
+            sli.setModified(SgnUtils.stringToDate(getString(mModified)));
+            sli.setDescription(getString(mDescription));
+            sli.setCount(mCursor.getInt(mCount));
+            sli.setTick(DbUtils.intToBool(mCursor.getInt(mTick)));
+            sli.setOfferId(getString(mOfferId));
+            sli.setCreator(getString(mCreator));
+            sli.setShoppinglistId(getString(mShoppinglistId));
+            sli.setState(mCursor.getInt(mState));
+            sli.setPreviousId(getString(mPreviousId));
+            try {
+                String meta = getString(mMeta);
+                sli.setMeta(meta == null ? null : new JSONObject(meta));
+            } catch (JSONException e) {
+                SgnLog.e(TAG, null, e);
             }
+            sli.setUserId(mCursor.getInt(mUser));
+            return sli;
         }
-        return list;
+
     }
 
     public static ShoppinglistItem contentValuesToObject(ContentValues cv) {
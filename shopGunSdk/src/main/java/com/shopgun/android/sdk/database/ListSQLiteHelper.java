@@ -31,7 +31,6 @@ import com.shopgun.android.sdk.utils.SgnUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -60,6 +59,17 @@ public class ListSQLiteHelper extends SgnOpenHelper {
                     USER + " integer not null " +
                     ");";
     public static final String INSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE + " VALUES (?,?,?,?,?,?,?,?,?,?)";
+    public static final String DELETE_STATEMENT = "DELETE FROM " + TABLE + " WHERE " + ID + "=? AND " + USER + "=?";
+
+    /** Covers the selects of all lists of a user */
+    public static final String CREATE_INDEX_USER =
+            "create index if not exists " + TABLE + "_user_idx on " + TABLE + "(" +
+                    USER + ", " + STATE + ");";
+
+    /** Covers the lookup of the next list, when walking the order of lists */
+    public static final String CREATE_INDEX_PREVIOUS =
+            "create index if not exists " + TABLE + "_previous_idx on " + TABLE + "(" +
+                    USER + ", " + PREVIOUS_ID + ");";
 
     public ListSQLiteHelper(Context context) {
         super(context);
@@ -69,6 +79,14 @@ public class ListSQLiteHelper extends SgnOpenHelper {
         db.acquireReference();
         db.execSQL(CREATE_TABLE);
         db.releaseReference();
+        createIndexes(db);
+    }
+
+    public static void createIndexes(SQLiteDatabase db) {
+        db.acquireReference();
+        db.execSQL(CREATE_INDEX_USER);
+        db.execSQL(CREATE_INDEX_PREVIOUS);
+        db.releaseReference();
     }
 
     public static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
@@ -96,14 +114,61 @@ public class ListSQLiteHelper extends SgnOpenHelper {
     }
 
     public static List<Shoppinglist> cursorToList(Cursor c) {
-        ArrayList<Shoppinglist> list = new ArrayList<Shoppinglist>();
-        for (ContentValues cv : DbUtils.cursorToContentValues(c)) {
-            Shoppinglist sl = ListSQLiteHelper.contentValuesToObject(cv);
-            if (sl != null) {
-                list.add(sl);
+        return new Reader(c).toList();
+    }
+
+    /**
+     * Reads {@link Shoppinglist Shoppinglists} straight from a cursor, see {@link CursorReader}.
+     * Shares are stored in a table of their own, and aren't read.
+     */
+    public static class Reader extends CursorReader<Shoppinglist> {
+
+        private final int mId;
+        private final int mErn;
+        private final int mModified;
+        private final int mName;
+        private final int mAccess;
+        private final int mState;
+        private final int mPreviousId;
+        private final int mType;
+        private final int mMeta;
+        private final int mUser;
+
+        public Reader(Cursor c) {
+            super(c);
+            mId = c.getColumnIndexOrThrow(ID);
+            mErn = c.getColumnIndexOrThrow(ERN);
+            mModified = c.getColumnIndexOrThrow(MODIFIED);
+            mName = c.getColumnIndexOrThrow(NAME);
+            mAccess = c.getColumnIndexOrThrow(ACCESS);
+            mState = c.getColumnIndexOrThrow(STATE);
+            mPreviousId = c.getColumnIndexOrThrow(PREVIOUS_ID);
+            mType = c.getColumnIndexOrThrow(TYPE);
+            mMeta = c.getColumnIndexOrThrow(META);
+            mUser = c.getColumnIndexOrThrow(USER);
+        }
+
+        @Override
+        public Shoppinglist read() {
+            Shoppinglist sl = Shoppinglist.fromName(getString(mName));
+            sl.setId(getString(mId));
+            sl.setErn(getString(mErn));
+            sl.setModified(SgnUtils.stringToDate(getString(mModified)));
+            sl.setAccess(getString(mAccess));
+            Integer state = getInteger(mState);
+            sl.setState(state == null ? SyncState.TO_SYNC : state);
+            sl.setPreviousId(getString(mPreviousId));
+            sl.setType(getString(mType));
+            try {
+                String meta = getString(mMeta);
+                sl.setMeta(meta == null ? null : new JSONObject(meta));
+            } catch (JSONException e) {
+                SgnLog.e(TAG, null, e);
             }
+            sl.setUserId(mCursor.getInt(mUser));
+            return sl;
         }
-        return list;
+
     }
 
     public static Shoppinglist contentValuesToObject(ContentValues cv) {
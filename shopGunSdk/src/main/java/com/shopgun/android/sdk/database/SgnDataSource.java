@@ -34,7 +34,10 @@ import org.json.JSONArray;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -45,10 +48,127 @@ public class SgnDataSource extends SQLDataSource {
 
     public static final String TAG = Constants.getTag(SgnDataSource.class);
 
+    private static final String SELECT_ITEMS = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=? AND " + SgnOpenHelper.STATE + "!=?";
+    private static final String SELECT_ITEMS_INCLUDE_DELETED = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=?";
+    private static final String SELECT_ITEM_PREVIOUS = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.PREVIOUS_ID + "=? AND " + SgnOpenHelper.USER + "=?";
+    private static final String AFTER_ROWID = " AND rowid>CAST(? AS INTEGER)";
+    private static final String SELECT_SHARES = SELECT_ITEMS;
+    private static final String SELECT_SHARES_INCLUDE_DELETED = SELECT_ITEMS_INCLUDE_DELETED;
+
+    /**
+     * Statements compiled by the current thread. A statement holds its bindings, and a thread running it
+     * may have to wait for another thread's transaction, so statements are never shared between threads.
+     */
+    private final ThreadLocal<StatementCache> mStatements = new ThreadLocal<StatementCache>() {
+        @Override
+        protected StatementCache initialValue() {
+            return new StatementCache();
+        }
+    };
+
     public SgnDataSource(Context c) {
         super(new SgnOpenHelper(c));
     }
 
+    /**
+     * Get a compiled statement for the given SQL, compiling it only the first time the current thread
+     * uses it with the current database. The statement must only be used by the current thread.
+     * @param db The database, as returned by {@link #acquireDb()}
+     * @param sql The SQL to compile
+     * @return A statement
+     */
+    private SQLiteStatement getStatement(SQLiteDatabase db, String sql) {
+        StatementCache cache = mStatements.get();
+        if (db != cache.mDb) {
+            // SQLDataSource closes the database when it isn't referenced, so drop statements of an old instance
+            for (SQLiteStatement s : cache.mStatements.values()) {
+                try {
+                    s.close();
+                } catch (IllegalStateException e) {
+                    // The database is already gone
+                }
+            }
+            cache.mStatements.clear();
+            cache.mDb = db;
+        }
+        SQLiteStatement s = cache.mStatements.get(sql);
+        if (s == null) {
+            s = db.compileStatement(sql);
+            cache.mStatements.put(sql, s);
+        }
+        return s;
+    }
+
+    private static class StatementCache {
+        SQLiteDatabase mDb;
+        final Map<String, SQLiteStatement> mStatements = new HashMap<String, SQLiteStatement>();
+    }
+
+    /**
+     * Execute an UPDATE or DELETE statement, with the given string arguments.
+     * @param sql The statement
+     * @param args The arguments
+     * @return The number of affected rows
+     */
+    private int executeUpdateDelete(String sql, String... args) {
+        try {
+            return executeUpdateDeleteTransactionLess(acquireDb(), sql, args);
+        } catch (IllegalStateException e) {
+            log(TAG, e);
+            return 0;
+        } finally {
+            releaseDb();
+        }
+    }
+
+    private int executeUpdateDeleteTransactionLess(SQLiteDatabase db, String sql, String... args) {
+        SQLiteStatement s = getStatement(db, sql);
+        s.clearBindings();
+        for (int i = 0; i < args.length; i++) {
+            DbUtils.bindOrNull(s, i + 1, args[i]);
+        }
+        return s.executeUpdateDelete();
+    }
+
+    /**
+     * Apply a set of changes, e.g. the result of merging the server state with the local state,
+     * in a single transaction. Either all changes are applied, or none are.
+     *
+     * <p>Lists are inserted along with their shares, replacing any existing shares. Deleting a list
+     * also deletes the items in it.</p>
+     *
+     * @param lists Lists to insert or replace
+     * @param deletedLists Lists to delete
+     * @param items Items to insert or replace
+     * @param deletedItems Items to delete
+     * @param userId A {@link User#getId()}
+     * @return The number of affected rows, or {@code -1} if the transaction failed
+     */
+    public int merge(Collection<Shoppinglist> lists, Collection<Shoppinglist> deletedLists,
+                     Collection<ShoppinglistItem> items, Collection<ShoppinglistItem> deletedItems, String userId) {
+        SQLiteDatabase db = acquireDb();
+        db.beginTransactionNonExclusive();
+        try {
+            int count = insertListsTransactionLess(db, lists, userId);
+            for (Shoppinglist sl : deletedLists) {
+                count += executeUpdateDeleteTransactionLess(db, ItemSQLiteHelper.DELETE_LIST_STATEMENT, sl.getId(), userId);
+                count += executeUpdateDeleteTransactionLess(db, ListSQLiteHelper.DELETE_STATEMENT, sl.getId(), userId);
+            }
+            count += insertItemsTransactionLess(db, items, userId);
+            for (ShoppinglistItem sli : deletedItems) {
+                count += executeUpdateDeleteTransactionLess(db, ItemSQLiteHelper.DELETE_STATEMENT, sli.getId(), userId);
+            }
+            db.setTransactionSuccessful();
+            return count;
+        } catch (IllegalStateException e) {
+            log(TAG, e);
+            return -1;
+        } finally {
+            db.endTransaction();
+            releaseDb();
+        }
+    }
+
     /**
      * Clear all data in the database
      * @return number of changes
@@ -116,17 +236,8 @@ public class SgnDataSource extends SQLDataSource {
         }
         SQLiteDatabase db = acquireDb();
         try {
-            int count = 0;
-            db.beginTransaction();
-            SQLiteStatement s = ListSQLiteHelper.getInsertStatement(db);
-            for (Shoppinglist sl : list) {
-                ListSQLiteHelper.bind(s, sl, userId);
-                if (s.executeInsert() > -1) {
-                    deleteShares(sl.getId(), userId);
-                    insertSharesTransactionLess(db, sl.getShares().values(), userId);
-                    count++;
-                }
-            }
+            db.beginTransactionNonExclusive();
+            int count = insertListsTransactionLess(db, list, userId);
             db.setTransactionSuccessful();
             return count;
         } catch (IllegalStateException e) {
@@ -138,6 +249,20 @@ public class SgnDataSource extends SQLDataSource {
         }
     }
 
+    private int insertListsTransactionLess(SQLiteDatabase db, Collection<Shoppinglist> list, String userId) {
+        int count = 0;
+        SQLiteStatement s = getStatement(db, ListSQLiteHelper.INSERT_STATEMENT);
+        for (Shoppinglist sl : list) {
+            ListSQLiteHelper.bind(s, sl, userId);
+            if (s.executeInsert() > -1) {
+                executeUpdateDeleteTransactionLess(db, ShareSQLiteHelper.DELETE_LIST_STATEMENT, sl.getId(), userId);
+                insertSharesTransactionLess(db, sl.getShares().values(), userId);
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Get a Shoppinglist from database, matching the given criteria.
      *
@@ -169,23 +294,21 @@ public class SgnDataSource extends SQLDataSource {
 
     private List<Shoppinglist> getLists(String selection, String[] selectionArgs, String userId) {
         Cursor c = null;
-        SQLiteDatabase db = acquireDb();
         try {
-            db.beginTransaction();
-            c = db.query(false, ListSQLiteHelper.TABLE, null, selection, selectionArgs, null, null, SgnOpenHelper.NAME, null);
+            // No transaction, it would take the primary connection, and wait for the sync writer.
+            // Without one, reads go to one of the read connections write-ahead logging provides.
+            c = acquireDb().query(false, ListSQLiteHelper.TABLE, null, selection, selectionArgs, null, null, SgnOpenHelper.NAME, null);
             List<Shoppinglist> lists = ListSQLiteHelper.cursorToList(c);
             for (Shoppinglist sl : lists) {
                 List<Share> shares = getShares(sl.getId(), userId, false);
                 sl.setShares(shares);
             }
-            db.setTransactionSuccessful();
             return lists;
         } catch (IllegalStateException e) {
             log(TAG, e);
             return new ArrayList<Shoppinglist>();
         } finally {
             DbUtils.closeCursor(c);
-            db.endTransaction();
             releaseDb();
         }
     }
@@ -198,9 +321,7 @@ public class SgnDataSource extends SQLDataSource {
      * @return number of affected rows
      */
     public int deleteList(String shoppinglistId, String userId) {
-        String whereClause = SgnOpenHelper.ID + "=? AND " + SgnOpenHelper.USER + "=? ";
-        String[] whereArgs = new String[]{shoppinglistId, userId};
-        return delete(ListSQLiteHelper.TABLE, whereClause, whereArgs);
+        return executeUpdateDelete(ListSQLiteHelper.DELETE_STATEMENT, shoppinglistId, userId);
     }
 
     /**
@@ -232,17 +353,9 @@ public class SgnDataSource extends SQLDataSource {
      * @return the number of rows affected
      */
     public int editItemState(String shoppinglistId, String userId, Date modified, int syncState) {
-        try {
-            ContentValues cv = ItemSQLiteHelper.stateToContentValues(modified, syncState);
-            String whereClause = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=? ";
-            String[] whereArgs = new String[]{shoppinglistId, userId};
-            return acquireDb().updateWithOnConflict(ItemSQLiteHelper.TABLE, cv, whereClause, whereArgs, SQLiteDatabase.CONFLICT_REPLACE);
-        } catch (IllegalStateException e) {
-            log(TAG, e);
-            return 0;
-        } finally {
-            releaseDb();
-        }
+        ContentValues cv = ItemSQLiteHelper.stateToContentValues(modified, syncState);
+        return executeUpdateDelete(ItemSQLiteHelper.UPDATE_STATE_STATEMENT, cv.getAsString(SgnOpenHelper.MODIFIED),
+                cv.getAsString(SgnOpenHelper.STATE), shoppinglistId, userId);
     }
 
     /**
@@ -254,8 +367,9 @@ public class SgnDataSource extends SQLDataSource {
      */
     public long insertItem(ShoppinglistItem sli, String userId) {
         try {
-            ContentValues cv = ItemSQLiteHelper.objectToContentValues(sli, userId);
-            return acquireDb().insertWithOnConflict(ItemSQLiteHelper.TABLE, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+            SQLiteStatement s = getStatement(acquireDb(), ItemSQLiteHelper.INSERT_STATEMENT);
+            ItemSQLiteHelper.bind(s, sli, userId);
+            return s.executeInsert();
         } catch (IllegalStateException e) {
             log(TAG, e);
             return 0;
@@ -275,27 +389,32 @@ public class SgnDataSource extends SQLDataSource {
             return -1;
         }
         SQLiteDatabase db = acquireDb();
-        db.beginTransaction();
-        int count = 0;
+        db.beginTransactionNonExclusive();
         try {
-            SQLiteStatement s = ItemSQLiteHelper.getInsertStatement(db);
-            for (ShoppinglistItem sli : list) {
-                ItemSQLiteHelper.bind(s, sli, userId);
-                if (s.executeInsert() > -1) {
-                    count++;
-                }
-            }
+            int count = insertItemsTransactionLess(db, list, userId);
             db.setTransactionSuccessful();
             return count;
         } catch (IllegalStateException e) {
             log(TAG, e);
-            return count;
+            return 0;
         } finally {
             db.endTransaction();
             releaseDb();
         }
     }
 
+    private int insertItemsTransactionLess(SQLiteDatabase db, Collection<ShoppinglistItem> list, String userId) {
+        int count = 0;
+        SQLiteStatement s = getStatement(db, ItemSQLiteHelper.INSERT_STATEMENT);
+        for (ShoppinglistItem sli : list) {
+            ItemSQLiteHelper.bind(s, sli, userId);
+            if (s.executeInsert() > -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public ShoppinglistItem getItem(String itemId, String userId) {
         String selection = SgnOpenHelper.ID + "=? AND " + SgnOpenHelper.USER + "=? AND " + SgnOpenHelper.STATE + "!=?";
         String[] selectionArgs = new String[]{itemId, userId, String.valueOf(SyncState.DELETE)};
@@ -311,13 +430,56 @@ public class SgnDataSource extends SQLDataSource {
      * @return A list of {@link ShoppinglistItem}
      */
     public List<ShoppinglistItem> getItems(String shoppinglistId, String userId, boolean includeDeleted) {
-        String selection = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=? AND " + SgnOpenHelper.STATE + "!=?";
-        String[] selectionArgs = new String[]{shoppinglistId, userId, String.valueOf(SyncState.DELETE)};
         if (includeDeleted) {
-            selection = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=?";
-            selectionArgs = new String[]{shoppinglistId, userId};
+            return getItems(SELECT_ITEMS_INCLUDE_DELETED, new String[]{shoppinglistId, userId});
+        }
+        return getItems(SELECT_ITEMS, new String[]{shoppinglistId, userId, String.valueOf(SyncState.DELETE)});
+    }
+
+    /**
+     * Iterate the {@link ShoppinglistItem ShoppinglistItems} of a {@link Shoppinglist}, a window of rows at a
+     * time, see {@link WindowedIterator}. The items are in insertion order, not list order.
+     * @param shoppinglistId A {@link Shoppinglist#getId()}
+     * @param userId A {@link User#getId()}
+     * @param includeDeleted {@code true} to include the items that have locally been marked as deleted, else {@code false}
+     * @param windowSize The max number of rows to read at a time
+     * @return An iterator of {@link ShoppinglistItem}
+     */
+    public Iterator<ShoppinglistItem> iterateItems(final String shoppinglistId, final String userId,
+                                                   final boolean includeDeleted, int windowSize) {
+        return new WindowedIterator<ShoppinglistItem>(windowSize) {
+            @Override
+            protected long readWindow(long afterRowId, int limit, List<ShoppinglistItem> out) {
+                String after = String.valueOf(afterRowId);
+                if (includeDeleted) {
+                    return readItemWindow(SELECT_ITEMS_INCLUDE_DELETED + AFTER_ROWID,
+                            new String[]{shoppinglistId, userId, after}, afterRowId, limit, out);
+                }
+                return readItemWindow(SELECT_ITEMS + AFTER_ROWID,
+                        new String[]{shoppinglistId, userId, String.valueOf(SyncState.DELETE), after}, afterRowId, limit, out);
+            }
+        };
+    }
+
+    private long readItemWindow(String selection, String[] selectionArgs, long afterRowId, int limit, List<ShoppinglistItem> out) {
+        Cursor c = null;
+        try {
+            c = acquireDb().query(false, ItemSQLiteHelper.TABLE, CursorReader.ALL_COLUMNS_AND_ROWID, selection,
+                    selectionArgs, null, null, "rowid", String.valueOf(limit));
+            ItemSQLiteHelper.Reader reader = new ItemSQLiteHelper.Reader(c);
+            long last = afterRowId;
+            while (c.moveToNext()) {
+                out.add(reader.read());
+                last = reader.getRowId();
+            }
+            return last;
+        } catch (IllegalStateException e) {
+            log(TAG, e);
+            return afterRowId;
+        } finally {
+            DbUtils.closeCursor(c);
+            releaseDb();
         }
-        return getItems(selection, selectionArgs);
     }
 
     /**
@@ -328,9 +490,8 @@ public class SgnDataSource extends SQLDataSource {
      * @return A {@link ShoppinglistItem} if one exists with the {@code previousId}, else {@code null}
      */
     public ShoppinglistItem getItemPrevious(String shoppinglistId, String previousId, String userId) {
-        String selection = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.PREVIOUS_ID + "=? AND " + SgnOpenHelper.USER + "=?";
         String[] selectionArgs = new String[]{shoppinglistId, previousId, userId};
-        List<ShoppinglistItem> list = getItems(selection, selectionArgs);
+        List<ShoppinglistItem> list = getItems(SELECT_ITEM_PREVIOUS, selectionArgs);
         return list.isEmpty() ? null : list.get(0);
     }
 
@@ -349,9 +510,7 @@ public class SgnDataSource extends SQLDataSource {
     }
 
     public int deleteItem(String itemId, String userId) {
-        String whereClause = SgnOpenHelper.ID + "=? AND " + SgnOpenHelper.USER + "=? ";
-        String[] whereArgs = new String[]{itemId, userId};
-        return delete(ItemSQLiteHelper.TABLE, whereClause, whereArgs);
+        return executeUpdateDelete(ItemSQLiteHelper.DELETE_STATEMENT, itemId, userId);
     }
 
     /**
@@ -394,8 +553,9 @@ public class SgnDataSource extends SQLDataSource {
      */
     public long insertShare(Share s, String userId) {
         try {
-            ContentValues cv = ShareSQLiteHelper.objectToContentValues(s, userId);
-            return acquireDb().insertWithOnConflict(ShareSQLiteHelper.TABLE, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+            SQLiteStatement statement = getStatement(acquireDb(), ShareSQLiteHelper.INSERT_STATEMENT);
+            ShareSQLiteHelper.bind(statement, s, userId);
+            return statement.executeInsert();
         } catch (IllegalStateException e) {
             log(TAG, e);
             return -1;
@@ -413,7 +573,7 @@ public class SgnDataSource extends SQLDataSource {
      */
     public int insertShares(Shoppinglist sl, String userId) {
         SQLiteDatabase db = acquireDb();
-        db.beginTransaction();
+        db.beginTransactionNonExclusive();
         try {
             int count = insertSharesTransactionLess(db, sl.getShares().values(), userId);
             db.setTransactionSuccessful();
@@ -431,7 +591,7 @@ public class SgnDataSource extends SQLDataSource {
         db.acquireReference();
         try {
             int count = 0;
-            SQLiteStatement s = ShareSQLiteHelper.getInsertStatement(db);
+            SQLiteStatement s = getStatement(db, ShareSQLiteHelper.INSERT_STATEMENT);
             for (Share share : shares) {
                 ShareSQLiteHelper.bind(s, share, userId);
                 if (s.executeInsert() > -1) {
@@ -448,13 +608,10 @@ public class SgnDataSource extends SQLDataSource {
     }
 
     public List<Share> getShares(String shoppinglistId, String userId, boolean includeDeleted) {
-        String selection = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=? AND " + SgnOpenHelper.STATE + "!=?";
-        String[] selectionArgs = new String[]{shoppinglistId, userId, String.valueOf(SyncState.DELETE)};
         if (includeDeleted) {
-            selection = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=?";
-            selectionArgs = new String[]{shoppinglistId, userId};
+            return getShares(SELECT_SHARES_INCLUDE_DELETED, new String[]{shoppinglistId, userId}, shoppinglistId);
         }
-        return getShares(selection, selectionArgs, shoppinglistId);
+        return getShares(SELECT_SHARES, new String[]{shoppinglistId, userId, String.valueOf(SyncState.DELETE)}, shoppinglistId);
     }
 
     private List<Share> getShares(String selection, String[] selectionArgs, String shoppinglistId) {
@@ -482,9 +639,7 @@ public class SgnDataSource extends SQLDataSource {
     }
 
     public int deleteShares(String shoppinglistId, String userId) {
-        String whereClause = SgnOpenHelper.SHOPPINGLIST_ID + "=? AND " + SgnOpenHelper.USER + "=? ";
-        String[] whereArgs = new String[]{shoppinglistId, userId};
-        return delete(ShareSQLiteHelper.TABLE, whereClause, whereArgs);
+        return executeUpdateDelete(ShareSQLiteHelper.DELETE_LIST_STATEMENT, shoppinglistId, userId);
     }
 
     public int clean() {
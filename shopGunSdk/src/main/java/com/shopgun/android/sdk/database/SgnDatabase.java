@@ -19,6 +19,8 @@ package com.shopgun.android.sdk.database;
 import android.content.Context;
 
 import com.shopgun.android.sdk.ShopGun;
+import com.shopgun.android.sdk.bus.ShoppinglistEvent;
+import com.shopgun.android.sdk.bus.ShoppinglistEvent.StateWrapper;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.Share;
 import com.shopgun.android.sdk.model.Shoppinglist;
@@ -27,6 +29,7 @@ import com.shopgun.android.sdk.model.User;
 import com.shopgun.android.sdk.utils.Constants;
 import com.shopgun.android.sdk.utils.ListUtils;
 import com.shopgun.android.sdk.utils.PermissionUtils;
+import com.shopgun.android.sdk.utils.SgnThreadFactory;
 import com.shopgun.android.utils.DateUtils;
 
 import org.json.JSONArray;
@@ -39,6 +42,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @deprecated no longer maintained
@@ -50,8 +57,12 @@ public class SgnDatabase {
 
     public static final String TAG = Constants.getTag(SgnDatabase.class);
 
+    private static final int ITEM_WINDOW_SIZE = 100;
+
     private static SgnDatabase mWrapper;
     private SgnDataSource mDataSource;
+    /** Runs database work off the calling thread, one task at a time */
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new SgnThreadFactory("sgn-database-"));
 
     private SgnDatabase(Context c) {
         mDataSource = new SgnDataSource(c);
@@ -76,6 +87,52 @@ public class SgnDatabase {
         mDataSource.close();
     }
 
+    /**
+     * Open the database on the database thread, see {@link #submit(Callable)}.
+     */
+    public void openAsync() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        });
+    }
+
+    /**
+     * Close the database on the database thread, once the tasks submitted before it have finished.
+     */
+    public void closeAsync() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Run a task on the database thread. Tasks run one at a time, in the order they were submitted,
+     * so a read submitted after a write will see the result of the write. With write-ahead logging,
+     * these tasks don't block the {@link com.shopgun.android.sdk.shoppinglists.SyncManager SyncManager},
+     * which writes on its own thread, or the other way around.
+     * @param task A task
+     * @param <T> The type of the result
+     * @return A {@link Future} of the result
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return mExecutor.submit(task);
+    }
+
+    /**
+     * Run a task on the database thread, see {@link #submit(Callable)}.
+     * @param task A task
+     * @return A {@link Future} that completes with {@code null}, when the task has finished
+     */
+    public Future<?> submit(Runnable task) {
+        return mExecutor.submit(task);
+    }
+
     private boolean successId(long id) {
         return id > -1;
     }
@@ -292,6 +349,18 @@ public class SgnDatabase {
         return mDataSource.getItems(shoppinglistId, String.valueOf(user.getUserId()), includeDeleted);
     }
 
+    /**
+     * Iterate the {@link ShoppinglistItem ShoppinglistItems} of a {@link Shoppinglist}, without reading
+     * all of them into memory at once. The items are not in list order.
+     * @param shoppinglistId a {@link Shoppinglist#getId()}
+     * @param user A {@link User}
+     * @param includeDeleted {@code true} to include the items that have locally been marked as deleted, else {@code false}
+     * @return An iterator of {@link ShoppinglistItem}
+     */
+    public Iterator<ShoppinglistItem> iterateItems(String shoppinglistId, User user, boolean includeDeleted) {
+        return mDataSource.iterateItems(shoppinglistId, String.valueOf(user.getUserId()), includeDeleted, ITEM_WINDOW_SIZE);
+    }
+
     /**
      * Get the {@link ShoppinglistItem} that is marked as the first ({@link ListUtils#FIRST_ITEM})
      * in the given {@link Shoppinglist}.
@@ -384,6 +453,41 @@ public class SgnDatabase {
         return successCount(count, list);
     }
 
+    /**
+     * Apply all changes collected in a {@link ShoppinglistEvent.Builder}, in a single transaction.
+     * Added and edited lists and items are inserted, replacing existing rows, and deleted lists and
+     * items are removed. Deleting a list also removes the items in it.
+     *
+     * <p>This is meant for applying a whole sync result at once, rather than paying for a
+     * transaction per row. The builder is left untouched, so it can be posted as a single
+     * {@link ShoppinglistEvent} afterwards.</p>
+     *
+     * @param changes The changes to apply
+     * @param user A {@link User}
+     * @return {@code true} if the changes were applied, else {@code false}
+     */
+    public boolean applyChanges(ShoppinglistEvent.Builder changes, User user) {
+        List<Shoppinglist> lists = new ArrayList<Shoppinglist>();
+        List<Shoppinglist> deletedLists = new ArrayList<Shoppinglist>();
+        synchronized (changes.lists) {
+            for (StateWrapper<Shoppinglist> w : changes.lists.values()) {
+                (w.getAction() == StateWrapper.Action.DELETED ? deletedLists : lists).add(w.getItem());
+            }
+        }
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+        List<ShoppinglistItem> deletedItems = new ArrayList<ShoppinglistItem>();
+        synchronized (changes.items) {
+            for (StateWrapper<ShoppinglistItem> w : changes.items.values()) {
+                (w.getAction() == StateWrapper.Action.DELETED ? deletedItems : items).add(w.getItem());
+            }
+        }
+        if (lists.isEmpty() && deletedLists.isEmpty() && items.isEmpty() && deletedItems.isEmpty()) {
+            return true;
+        }
+        int count = mDataSource.merge(lists, deletedLists, items, deletedItems, String.valueOf(user.getUserId()));
+        return count > -1;
+    }
+
     /**
      * Method for updating a state for all ShoppinglistItem with a given User and Shoppinglist.id
      *
@@ -58,10 +58,19 @@ public class SgnOpenHelper extends SQLiteOpenHelper {
     public static final String ACCEPT_URL = "accept_url";
 
     private static final String DB_NAME = "shoppinglist.db";
-    private static final int DB_VERSION = 5;
+    /**
+     * Version history:
+     * <ul>
+     *     <li>5: Tables for lists, items and shares</li>
+     *     <li>6: Indexes on the columns used by the per user, and per list queries</li>
+     * </ul>
+     */
+    private static final int DB_VERSION = 6;
 
     protected SgnOpenHelper(Context c) {
         super(c, DB_NAME, null, DB_VERSION);
+        // Readers get their own connection, and aren't blocked by the sync writer, nor block it
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -77,9 +86,21 @@ public class SgnOpenHelper extends SQLiteOpenHelper {
         // call all classes that extends this class, to let them know there has been an update
         String format = "Upgrading database from version %s to %s. Calling static methods in subclasses";
         SgnLog.i(TAG, String.format(format, oldVersion, newVersion));
-        ListSQLiteHelper.upgrade(db, oldVersion, newVersion);
-        ItemSQLiteHelper.upgrade(db, oldVersion, newVersion);
-        ShareSQLiteHelper.upgrade(db, oldVersion, newVersion);
+
+        if (oldVersion < 5) {
+            // Tables older than version 5 aren't migrated, they are dropped and recreated
+            ListSQLiteHelper.upgrade(db, oldVersion, newVersion);
+            ItemSQLiteHelper.upgrade(db, oldVersion, newVersion);
+            ShareSQLiteHelper.upgrade(db, oldVersion, newVersion);
+            onCreate(db);
+            return;
+        }
+
+        if (oldVersion < 6) {
+            ListSQLiteHelper.createIndexes(db);
+            ItemSQLiteHelper.createIndexes(db);
+            ShareSQLiteHelper.createIndexes(db);
+        }
     }
 
 }
@@ -25,7 +25,6 @@ import android.database.sqlite.SQLiteStatement;
 import com.shopgun.android.sdk.model.Share;
 import com.shopgun.android.sdk.utils.Constants;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -54,6 +53,13 @@ public class ShareSQLiteHelper extends SgnOpenHelper {
                     ");";
     public static final String INSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE + " VALUES (?,?,?,?,?,?,?,?,?)";
 
+    /** Covers the per list selects and deletes, which always filter on user too */
+    public static final String CREATE_INDEX_LIST =
+            "create index if not exists " + TABLE + "_list_idx on " + TABLE + "(" +
+                    USER + ", " + SHOPPINGLIST_ID + ", " + STATE + ");";
+
+    public static final String DELETE_LIST_STATEMENT = "DELETE FROM " + TABLE + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?";
+
     public ShareSQLiteHelper(Context context) {
         super(context);
     }
@@ -62,6 +68,13 @@ public class ShareSQLiteHelper extends SgnOpenHelper {
         db.acquireReference();
         db.execSQL(CREATE_TABLE);
         db.releaseReference();
+        createIndexes(db);
+    }
+
+    public static void createIndexes(SQLiteDatabase db) {
+        db.acquireReference();
+        db.execSQL(CREATE_INDEX_LIST);
+        db.releaseReference();
     }
 
     public static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
@@ -86,14 +99,43 @@ public class ShareSQLiteHelper extends SgnOpenHelper {
     }
 
     public static List<Share> cursorToList(Cursor c, String shoppinglistId) {
-        ArrayList<Share> list = new ArrayList<Share>();
-        for (ContentValues cv : DbUtils.cursorToContentValues(c)) {
-            Share s = ShareSQLiteHelper.contentValuesToObject(cv, shoppinglistId);
-            if (s != null) {
-                list.add(s);
-            }
+        return new Reader(c, shoppinglistId).toList();
+    }
+
+    /**
+     * Reads the {@link Share Shares} of a list straight from a cursor, see {@link CursorReader}.
+     */
+    public static class Reader extends CursorReader<Share> {
+
+        private final String mShoppinglistId;
+        private final int mEmail;
+        private final int mName;
+        private final int mAccepted;
+        private final int mAccess;
+        private final int mAcceptUrl;
+        private final int mState;
+
+        public Reader(Cursor c, String shoppinglistId) {
+            super(c);
+            mShoppinglistId = shoppinglistId;
+            mEmail = c.getColumnIndexOrThrow(EMAIL);
+            mName = c.getColumnIndexOrThrow(NAME);
+            mAccepted = c.getColumnIndexOrThrow(ACCEPTED);
+            mAccess = c.getColumnIndexOrThrow(ACCESS);
+            mAcceptUrl = c.getColumnIndexOrThrow(ACCEPT_URL);
+            mState = c.getColumnIndexOrThrow(STATE);
         }
-        return list;
+
+        @Override
+        public Share read() {
+            Share s = new Share(getString(mEmail), getString(mAccess), getString(mAcceptUrl));
+            s.setShoppinglistId(mShoppinglistId);
+            s.setName(getString(mName));
+            s.setAccepted(0 < mCursor.getInt(mAccepted));
+            s.setState(mCursor.getInt(mState));
+            return s;
+        }
+
     }
 
     public static Share contentValuesToObject(ContentValues cv, String shoppinglistId) {
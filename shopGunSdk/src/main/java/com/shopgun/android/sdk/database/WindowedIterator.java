@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.database;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * @deprecated No longer maintained
+ *
+ * Iterates the rows of a query, a window of rows at a time.
+ *
+ * <p>Every window is a separate query for the rows after the last {@link CursorReader#ROWID} of the
+ * previous window, so no cursor, or database reference, is held between windows, and at most one
+ * window of model objects is in memory at a time. Rows inserted or deleted while iterating may, or
+ * may not, be seen.</p>
+ *
+ * @param <T> The type of model object
+ */
+@Deprecated
+public abstract class WindowedIterator<T> implements Iterator<T> {
+
+    private final int mWindowSize;
+    private final List<T> mWindow;
+    private int mPosition = 0;
+    private long mLastRowId = 0;
+    private boolean mDone = false;
+
+    protected WindowedIterator(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        mWindowSize = windowSize;
+        mWindow = new ArrayList<T>(windowSize);
+    }
+
+    /**
+     * Read the next window of rows.
+     * @param afterRowId Only rows with a {@link CursorReader#ROWID} larger than this must be read
+     * @param limit The max number of rows to read
+     * @param out The list to add the rows to, in {@link CursorReader#ROWID} order
+     * @return The {@link CursorReader#ROWID} of the last row read
+     */
+    protected abstract long readWindow(long afterRowId, int limit, List<T> out);
+
+    @Override
+    public boolean hasNext() {
+        if (mPosition < mWindow.size()) {
+            return true;
+        }
+        if (mDone) {
+            return false;
+        }
+        mWindow.clear();
+        mPosition = 0;
+        mLastRowId = readWindow(mLastRowId, mWindowSize, mWindow);
+        mDone = mWindow.size() < mWindowSize;
+        return !mWindow.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return mWindow.get(mPosition++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -1,7 +1,7 @@
 package com.shopgun.android.sdk.eventskit;
 
 import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.JsonElement;
 import com.shopgun.android.sdk.utils.SgnUtils;
 import com.shopgun.android.utils.TextUtils;
 
@@ -9,6 +9,10 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * New anonymous format for events
+ *
+ * <p>Events are created on the UI thread, so the fields are kept in a pair of small arrays rather
+ * than a json tree, and serialized exactly once, in {@link #toString()}, into a buffer that is
+ * reused by the thread.</p>
  */
 public class AnonymousEvent {
 
@@ -31,9 +35,30 @@ public class AnonymousEvent {
     public static final int VIEWED_SEARCH_RESULT = 9;
     public static final int INCITO_PUBLICATION_OPENED = 11;
 
+    /* Initial number of fields, enough for all predefined events */
+    private static final int INITIAL_FIELDS = 8;
+
+    /* Buffers larger than this aren't kept around after use */
+    private static final int MAX_BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(512);
+        }
+    };
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     private boolean mDoNotTrack;
 
-    private JsonObject json_event;
+    /* Field names and values, in the order they were added. Values are String, Number, Boolean or JsonElement */
+    private String[] mKeys = new String[INITIAL_FIELDS];
+    private Object[] mValues = new Object[INITIAL_FIELDS];
+    private int mSize;
+
+    /* The serialized event, until a field is changed */
+    private String mJson;
 
     private int type;
     private String id;
@@ -60,12 +85,6 @@ public class AnonymousEvent {
         id = SgnUtils.createUUID();
         timestamp = timestamp();
         this.type = type;
-
-        json_event = new JsonObject();
-        json_event.addProperty("_v", VERSION);
-        json_event.addProperty("_i", id);
-        json_event.addProperty("_e", type);
-        json_event.addProperty("_t", timestamp);
     }
 
     private long timestamp() {
@@ -82,29 +101,51 @@ public class AnonymousEvent {
      */
     public AnonymousEvent add(String property, String value) {
         if (property != null && value != null) {
-            json_event.addProperty(property, value);
+            put(property, value);
         }
         return this;
     }
 
     public AnonymousEvent add(String property, JsonArray value) {
         if (property != null && value != null) {
-            json_event.add(property, value);
+            put(property, value);
         }
         return this;
     }
 
     public AnonymousEvent add(String property, Number value) {
         if (property != null && value != null) {
-            json_event.addProperty(property, value);
+            put(property, value);
         }
         return this;
     }
 
+    /* Set a field, replacing any previous value, like JsonObject does */
+    private void put(String property, Object value) {
+        mJson = null;
+        for (int i = 0; i < mSize; i++) {
+            if (mKeys[i].equals(property)) {
+                mValues[i] = value;
+                return;
+            }
+        }
+        if (mSize == mKeys.length) {
+            String[] keys = new String[mSize * 2];
+            Object[] values = new Object[mSize * 2];
+            System.arraycopy(mKeys, 0, keys, 0, mSize);
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            mKeys = keys;
+            mValues = values;
+        }
+        mKeys[mSize] = property;
+        mValues[mSize] = value;
+        mSize++;
+    }
+
     /* Set by the EventTracker that will read it from the manifest metadata */
     protected AnonymousEvent setApplicationTrackId(String applicationTrackId) {
         if (!TextUtils.isEmpty(applicationTrackId)) {
-            json_event.addProperty("_a", applicationTrackId);
+            put("_a", applicationTrackId);
         }
         return this;
     }
@@ -120,8 +161,8 @@ public class AnonymousEvent {
      */
     public AnonymousEvent addUserLocation(String geohash, long timestamp) {
         if (!TextUtils.isEmpty(geohash) && timestamp > 0) {
-            json_event.addProperty("l.h", geohash);
-            json_event.addProperty("l.ht", timestamp);
+            put("l.h", geohash);
+            put("l.ht", timestamp);
         }
         return this;
     }
@@ -133,7 +174,7 @@ public class AnonymousEvent {
      */
     public AnonymousEvent addUserCountry(String countryCode) {
         if (!TextUtils.isEmpty(countryCode)) {
-            json_event.addProperty("l.c", countryCode);
+            put("l.c", countryCode);
         }
         return this;
     }
@@ -145,7 +186,7 @@ public class AnonymousEvent {
      */
     public AnonymousEvent addViewToken(String viewToken) {
         if (!TextUtils.isEmpty(viewToken)) {
-            json_event.addProperty("vt", viewToken);
+            put("vt", viewToken);
         }
         return this;
     }
@@ -160,7 +201,7 @@ public class AnonymousEvent {
      */
     public AnonymousEvent addPublicationOpened(String publicationId) {
         if (!TextUtils.isEmpty(publicationId)) {
-            json_event.addProperty("pp.id", publicationId);
+            put("pp.id", publicationId);
         }
         return this;
     }
@@ -174,7 +215,7 @@ public class AnonymousEvent {
     public AnonymousEvent addPageOpened(String publicationId, int page) {
         if (!TextUtils.isEmpty(publicationId) && page > 0) {
             this.addPublicationOpened(publicationId);
-            json_event.addProperty("ppp.n", page);
+            put("ppp.n", page);
         }
         return this;
     }
@@ -186,7 +227,7 @@ public class AnonymousEvent {
      */
     public AnonymousEvent addOfferOpened(String offerId) {
         if (!TextUtils.isEmpty(offerId)) {
-            json_event.addProperty("of.id", offerId);
+            put("of.id", offerId);
         }
         return this;
     }
@@ -199,19 +240,19 @@ public class AnonymousEvent {
      */
     public AnonymousEvent addSearch(String query, String language) {
         if (!TextUtils.isEmpty(query)) {
-            json_event.addProperty("sea.q", query);
+            put("sea.q", query);
         }
         // language is optional in case is not possible to detect it
         if (!TextUtils.isEmpty(language)) {
-            json_event.addProperty("sea.l", language);
+            put("sea.l", language);
         }
         return this;
     }
 
     public AnonymousEvent addIncitoOpened(String publicationId, boolean pagedPublicationIsAvailable) {
         if (!TextUtils.isEmpty(publicationId)) {
-            json_event.addProperty("ip.id", publicationId);
-            json_event.addProperty("ip.paged", pagedPublicationIsAvailable);
+            put("ip.id", publicationId);
+            put("ip.paged", pagedPublicationIsAvailable);
         }
         return this;
     }
@@ -247,7 +288,79 @@ public class AnonymousEvent {
 
     @Override
     public String toString() {
-        return json_event.toString();
+        if (mJson == null) {
+            StringBuilder sb = BUFFER.get();
+            sb.setLength(0);
+            sb.append("{\"_v\":").append(VERSION)
+                    .append(",\"_i\":");
+            appendString(sb, id);
+            sb.append(",\"_e\":").append(type)
+                    .append(",\"_t\":").append(timestamp);
+            for (int i = 0; i < mSize; i++) {
+                sb.append(',');
+                appendString(sb, mKeys[i]);
+                sb.append(':');
+                appendValue(sb, mValues[i]);
+            }
+            sb.append('}');
+            mJson = sb.toString();
+            if (sb.capacity() > MAX_BUFFER_SIZE) {
+                BUFFER.remove();
+            }
+        }
+        return mJson;
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String) {
+            appendString(sb, (String) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                // not valid json, and JsonObject would refuse it as well
+                sb.append("null");
+            } else {
+                sb.append(value.toString());
+            }
+        } else if (value instanceof JsonElement) {
+            sb.append(value.toString());
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        sb.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf])
+                                .append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
     }
 
     /**
@@ -1,31 +1,28 @@
 package com.shopgun.android.sdk.eventskit;
 
 import android.os.Process;
+import android.os.SystemClock;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.shopgun.android.sdk.ShopGun;
-import com.shopgun.android.sdk.corekit.gson.JsonNullExclusionStrategy;
-import com.shopgun.android.sdk.corekit.gson.RealmObjectExclusionStrategy;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.utils.Constants;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
-import io.realm.Realm;
-import io.realm.RealmQuery;
-import io.realm.RealmResults;
-import io.realm.exceptions.RealmPrimaryKeyConstraintException;
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
-import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -41,9 +38,34 @@ public class EventDispatcher extends Thread {
 
     private static final int FLUSH_EVENT_TYPE = 11111; // custom internal event
 
-    /** Max event stored in cache */
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /** Events to collect, before they are shipped */
     private static final int DEFAULT_EVENT_BATCH_SIZE = 100;
 
+    /** Max size of the events posted in a single request, before compression */
+    private static final long DEFAULT_BATCH_BYTES = 128 * 1024;
+
+    /** Max events posted in a single request, regardless of their size */
+    private static final int MAX_BATCH_EVENTS = 1000;
+
+    /** Max requests in flight at a time, when catching up on a backlog */
+    private static final int MAX_BATCHES_IN_FLIGHT = 3;
+
+    /** Failed rounds that can be retried in a row, and the time it takes to earn another retry */
+    private static final int RETRY_BUDGET = 3;
+    private static final long RETRY_REFILL_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    /** The delay before retrying a failed round, it doubles with every failed round in a row */
+    private static final long MIN_RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+    /** Max events taken from the queue, and written to the database in a single transaction */
+    private static final int MAX_INSERT_BATCH_SIZE = 50;
+
     /** Events older than one week will be deleted if a nack is received */
     private static final int EVENT_MAX_AGE = 7;
 
@@ -62,45 +84,50 @@ public class EventDispatcher extends Thread {
     private final AnonymousEvent mFlushEvent;
 
     private final HttpUrl mUrl;
-    private final MediaType mMediatype;
     private final Headers mHeaders;
-    private Realm mRealm;
-    private final Gson mGson;
+    private final EventStore mStore;
+
+    /** Whether to gzip the events, it's turned off if the server doesn't support it */
+    private boolean mGzip = true;
+
+    /** Max events in a batch, it's lowered if the server finds a batch too large */
+    private int mBatchEvents = MAX_BATCH_EVENTS;
+
+    private final RetryBudget mRetryBudget = new RetryBudget(RETRY_BUDGET, RETRY_REFILL_INTERVAL);
+    private long mRetryDelay = MIN_RETRY_DELAY;
+    /** No rounds are shipped before this time, as given by {@link SystemClock#elapsedRealtime()} */
+    private long mHoldOffUntil;
+    /** Whether a failed round is to be shipped again, once the hold off has passed, and whether that is a flush */
+    private boolean mRetryPending;
+    private boolean mRetryForce;
+
+    /** The number of events in the database, kept up to date by this thread, so it doesn't have to be queried */
+    private long mCount;
+    /** The events taken from the queue in one go */
+    private final List<AnonymousEvent> mBatch = new ArrayList<>(MAX_INSERT_BATCH_SIZE);
+    private final List<AnonymousEventWrapper> mWrappers = new ArrayList<>(MAX_INSERT_BATCH_SIZE);
 
     public EventDispatcher(BlockingQueue<AnonymousEvent> queue, OkHttpClient client, String url) {
-        this(queue, client, url, DEFAULT_EVENT_BATCH_SIZE);
+        this(queue, client, url, new RealmEventStore());
+    }
+
+    public EventDispatcher(BlockingQueue<AnonymousEvent> queue, OkHttpClient client, String url, EventStore store) {
+        this(queue, client, url, store, DEFAULT_EVENT_BATCH_SIZE);
     }
 
-    public EventDispatcher(BlockingQueue<AnonymousEvent> queue, OkHttpClient client, String url, int eventBatchSize) {
+    public EventDispatcher(BlockingQueue<AnonymousEvent> queue, OkHttpClient client, String url, EventStore store, int eventBatchSize) {
         mQueue = queue;
+        mStore = store;
         mClient = client;
         mEventBatchSize = eventBatchSize;
         mFlushEvent = new AnonymousEvent(FLUSH_EVENT_TYPE)
                 .add("custom event", "flush event") // add some info for logging
                 .doNotTrack(true);
         mUrl = HttpUrl.parse(url);
-        mMediatype = MediaType.parse("application/json");
         mHeaders = new Headers.Builder()
                 .add("Content-Type", "application/json")
                 .add("Accept", "application/json")
                 .build();
-        mGson = getGson();
-    }
-
-    private Gson getGson() {
-
-        try {
-            Class clazz = Class.forName("io.realm.com_shopgun_android_sdk_eventskit_AnonymousEventWrapperRealmProxy");
-            return new GsonBuilder()
-                    .setExclusionStrategies(
-                            new RealmObjectExclusionStrategy(),
-                            new JsonNullExclusionStrategy())
-                    .registerTypeAdapter(clazz, new AnonymousEventSerializer())
-                    .create();
-        } catch (ClassNotFoundException e) {
-            throw new IllegalStateException("Gson not instantiated due to missing RealmProxy class", e);
-        }
-
     }
 
     public void quit() {
@@ -124,154 +151,389 @@ public class EventDispatcher extends Thread {
     }
 
     /**
-     * Take an event from the queue and processes it.
-     * If it's an event to be tracked, it'll be serialized and inserted into a database, waiting to be dispatched.
+     * Take the events from the queue and processes them.
+     * Events to be tracked are serialized and added to the {@link EventStore}, waiting to be dispatched. During a burst,
+     * all events waiting in the queue, up to {@link #MAX_INSERT_BATCH_SIZE}, are added in one go.
+     * While a failed round is held off, the queue is only waited on until the hold off has passed, and then the
+     * round is shipped again, whether or not new events have arrived.
      */
     @Override
     public void run() {
         // low priority on posting mEvents to atta
         Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-        mRealm = ShopGun.getInstance().getRealmInstance();
-        if (mRealm == null) {
+        if (!mStore.open()) {
             return;
         }
-        AnonymousEvent event;
+        mCount = mStore.count();
         while (!mQuit || !mQueue.isEmpty()) {
+            AnonymousEvent event;
             try {
-                // Take an event from the queue.
-                event = mQueue.take();
+                // Take an event from the queue, or time out when a failed round is due to be shipped again
+                event = mRetryPending
+                        ? mQueue.poll(mHoldOffUntil - SystemClock.elapsedRealtime(), TimeUnit.MILLISECONDS)
+                        : mQueue.take();
             } catch (InterruptedException e) {
                 // We were interrupted, likely because we want to quit
                 continue;
             }
+            if (event == null) {
+                dispatchEventQueue(false);
+                continue;
+            }
+            // Take anything else that is waiting
+            mBatch.add(event);
+            mQueue.drainTo(mBatch, MAX_INSERT_BATCH_SIZE - 1);
+            boolean flush;
+            try {
+                flush = insert(mBatch);
+            } finally {
+                mBatch.clear();
+            }
+            dispatchEventQueue(flush);
+        }
+        mStore.close();
+        interrupt();
+    }
+
+    /**
+     * Add the events to be tracked to the {@link EventStore} in a single call. If the store fails the call,
+     * e.g. on a duplicate id, the events are added one at a time, so a single bad event only costs itself.
+     * @param events The events taken from the queue
+     * @return {@code true} if one of the events asks for a flush, else {@code false}
+     */
+    boolean insert(List<AnonymousEvent> events) {
+        boolean flush = false;
+        for (AnonymousEvent event : events) {
             if (event.doNotTrack()) {
                 // log events not meant to be tracked (like the flush event)
                 SgnLog.v(TAG, event.toString());
             } else {
                 // wrap the event for database operation
-                AnonymousEventWrapper wrappedEvent =
-                        new AnonymousEventWrapper(event.getId(),event.getVersion(), event.getTimestamp(), event.toString());
-
-                mRealm.executeTransaction(new InsertTransaction(wrappedEvent));
+                mWrappers.add(new AnonymousEventWrapper(event.getId(), event.getVersion(), event.getTimestamp(), event.toString()));
             }
-            boolean flush = event.getType() == FLUSH_EVENT_TYPE;
-            dispatchEventQueue(flush);
+            flush |= event.getType() == FLUSH_EVENT_TYPE;
         }
-        mRealm.close();
-        interrupt();
+        if (mWrappers.isEmpty()) {
+            return flush;
+        }
+        try {
+            mStore.add(mWrappers);
+            mCount += mWrappers.size();
+        } catch (RuntimeException e) {
+            SgnLog.w(TAG, "Failed to add " + mWrappers.size() + " events, adding them one at a time", e);
+            for (AnonymousEventWrapper wrapper : mWrappers) {
+                try {
+                    mStore.add(Collections.singletonList(wrapper));
+                } catch (RuntimeException ex) {
+                    SgnLog.e(TAG, "Dropping event " + wrapper.getId(), ex);
+                }
+            }
+            // Only the store knows how many of them made it
+            mCount = mStore.count();
+        } finally {
+            mWrappers.clear();
+        }
+        return flush;
+    }
+
+    /**
+     * Get the number of events in the store, as tracked by this thread.
+     * @return The event count
+     */
+    long getCount() {
+        return mCount;
     }
 
     private void dispatchEventQueue(boolean force) {
 
+        if (SystemClock.elapsedRealtime() < mHoldOffUntil) {
+            // The last round failed, give the server a break. The events are safe in the store, and are
+            // shipped when the hold off has passed, along with a flush that was asked for in the meantime
+            mRetryForce |= force;
+            return;
+        }
+
+        force |= mRetryForce;
+        mRetryPending = false;
+        mRetryForce = false;
+
         if (!force && !ShopGun.getInstance().getLifecycleManager().isActive()) {
             // Ship network is we aren't active
             return;
         }
 
-        int count = (int) mRealm.where(AnonymousEventWrapper.class).count();
-
-        if (!force && count < mEventBatchSize) {
+        if (!force && mCount < mEventBatchSize) {
             // Wait until we have a decent amount of mEvents
             return;
         }
 
-        Response response = null;
+        // Batches are limited by size, so it may take a few rounds to catch up on a backlog
+        while (shipRound() && (force ? mCount > 0 : mCount >= mEventBatchSize)) {
+            // continue
+        }
+        // A failed round is shipped again the same way
+        mRetryForce = mRetryPending && force;
+
+    }
+
+    /**
+     * Post the oldest events in the store, in up to {@link #MAX_BATCHES_IN_FLIGHT} concurrent batches,
+     * and remove the ones the server is done with. Failed batches stay in the store, and are sent again in a round
+     * after a backoff. Batches that are too large are sent again right away, split in half. Malformed events, and
+     * batches the server rejects as invalid, are dropped, so they can't block the rest of the store.
+     * @return {@code true} if it makes sense to ship another round right away, else {@code false}
+     */
+    boolean shipRound() {
+
+        List<AnonymousEventWrapper> events = mStore.peek(mBatchEvents * MAX_BATCHES_IN_FLIGHT,
+                DEFAULT_BATCH_BYTES * MAX_BATCHES_IN_FLIGHT);
+        if (events.isEmpty()) {
+            return false;
+        }
+
+        Set<String> malformed = new HashSet<>();
+        List<List<AnonymousEventWrapper>> batches = split(events, mBatchEvents, malformed);
+        int dropped = 0;
+        if (!malformed.isEmpty()) {
+            // They would make the whole batch invalid json, and can never be shipped
+            SgnLog.w(TAG, "Dropping " + malformed.size() + " malformed events");
+            dropped = mStore.remove(malformed);
+            mCount -= dropped;
+        }
+        if (batches.isEmpty()) {
+            return dropped > 0;
+        }
+
+        List<BatchCallback> callbacks = new ArrayList<>(batches.size());
+        CountDownLatch latch = new CountDownLatch(batches.size());
+        for (List<AnonymousEventWrapper> batch : batches) {
+            BatchCallback callback = new BatchCallback(batch, latch);
+            callbacks.add(callback);
+            callback.mCall = buildCallFromEvents(batch);
+            callback.mCall.enqueue(callback);
+        }
 
         try {
+            latch.await();
+        } catch (InterruptedException e) {
+            for (BatchCallback callback : callbacks) {
+                callback.mCall.cancel();
+            }
+            return false;
+        }
 
-            // get a limited amount of event from the db
-            List<AnonymousEventWrapper> events = getEvents(mEventBatchSize);
-            if (events.isEmpty()) {
-                return;
+        int removed = 0;
+        boolean retry = false;
+        long retryAfter = 0;
+        boolean gzipRejected = false;
+        boolean tooLarge = false;
+        for (BatchCallback callback : callbacks) {
+            if (callback.mError != null) {
+                SgnLog.e(TAG, "Network failed", callback.mError);
+                retry = true;
+            } else if (callback.mCode >= 200 && callback.mCode < 300) {
+                removed += onBatchShipped(callback.mEvents, callback.mBody);
+            } else if (callback.mCode == HTTP_UNSUPPORTED_MEDIA_TYPE && mGzip) {
+                gzipRejected = true;
+            } else if (callback.mCode == HTTP_PAYLOAD_TOO_LARGE && callback.mEvents.size() > 1) {
+                tooLarge = true;
+                mBatchEvents = Math.min(mBatchEvents, callback.mEvents.size() / 2);
+            } else if (isRejected(callback.mCode)) {
+                // The server won't take this batch, no matter how often it's sent, so it must not block the events behind it
+                SgnLog.w(TAG, "Event batch rejected, dropping " + callback.mEvents.size() + " events: " + callback.mCode + ", " + callback.mBody);
+                removed += mStore.remove(getIds(callback.mEvents));
+            } else {
+                SgnLog.d(TAG, "Event batch failed: " + callback.mCode + ", " + callback.mBody);
+                retry |= callback.mCode >= 400;
+                retryAfter = Math.max(retryAfter, callback.mRetryAfter);
             }
+        }
+        mCount -= removed;
 
-            Call call = buildCallFromEvents(events);
-            response = call.execute();
+        if (gzipRejected) {
+            SgnLog.d(TAG, "Compressed events not supported, sending them uncompressed");
+            mGzip = false;
+        }
+        if (tooLarge) {
+            SgnLog.d(TAG, "Event batch too large, sending at most " + mBatchEvents + " events per batch");
+        }
+        if (gzipRejected || tooLarge) {
+            return true;
+        }
+        if (retry) {
+            // Everything that failed is still the oldest in the store, so the next round sends it again
+            holdOff(retryAfter);
+            return false;
+        }
+        mRetryDelay = MIN_RETRY_DELAY;
+        return removed > 0;
 
-            if (response.isSuccessful()) {
+    }
 
-                String responseBody = response.body().string();
+    /**
+     * Hold off the next round, for the current backoff, or as long as the server asked for. The round is shipped
+     * again when the hold off has passed. Once the {@link RetryBudget} is spent, rounds are held off for at least
+     * as long as it takes to earn another retry.
+     * @param retryAfter The delay in milliseconds the server asked for, or 0
+     */
+    private void holdOff(long retryAfter) {
+        long delay = Math.min(Math.max(mRetryDelay, retryAfter), MAX_RETRY_DELAY);
+        mRetryDelay = Math.min(mRetryDelay * 2, MAX_RETRY_DELAY);
+        if (!mRetryBudget.tryAcquire()) {
+            delay = Math.max(delay, RETRY_REFILL_INTERVAL);
+        }
+        SgnLog.d(TAG, "Holding off events for " + delay + "ms");
+        mHoldOffUntil = SystemClock.elapsedRealtime() + delay;
+        mRetryPending = true;
+    }
 
-                Gson gson = new GsonBuilder().create();
-                EventResponse resp = gson.fromJson(responseBody, EventResponse.class);
+    /**
+     * Parse the Retry-After header of a response. Only the delay-seconds form is supported,
+     * as it's the one used for rate limiting.
+     * @param value A header value, or {@code null}
+     * @return The delay in milliseconds, or 0 if there isn't a valid one
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-                mRealm.beginTransaction();
+    /**
+     * Whether the server rejected the payload of a batch, as invalid, or as too large while holding a single event.
+     * Sending it again won't change the outcome. Other client errors may pass, and are retried.
+     */
+    private static boolean isRejected(int code) {
+        return code == HTTP_BAD_REQUEST || code == HTTP_UNPROCESSABLE_ENTITY || code == HTTP_PAYLOAD_TOO_LARGE;
+    }
 
-                Set<String> removeIds = resp.getRemovableItems();
-                getEvents(removeIds).deleteAllFromRealm();
+    private static Set<String> getIds(List<AnonymousEventWrapper> events) {
+        Set<String> ids = new HashSet<>(events.size());
+        for (AnonymousEventWrapper e : events) {
+            ids.add(e.getId());
+        }
+        return ids;
+    }
 
-                Set<String> nackIds = resp.getNackItems();
+    /**
+     * Split the events into batches of at most {@code maxEvents}, and {@link #DEFAULT_BATCH_BYTES}.
+     * The events are copied, as the batches are written on the threads of the http client,
+     * and the events from the store may only be valid on this thread.
+     * @param maxEvents The max number of events in a batch
+     * @param malformed Collects the ids of events that aren't valid json, which are left out of the batches
+     */
+    private static List<List<AnonymousEventWrapper>> split(List<AnonymousEventWrapper> events, int maxEvents, Set<String> malformed) {
+        List<List<AnonymousEventWrapper>> batches = new ArrayList<>(MAX_BATCHES_IN_FLIGHT);
+        List<AnonymousEventWrapper> batch = new ArrayList<>();
+        long bytes = 0;
+        for (AnonymousEventWrapper e : events) {
+            String event = e.getEvent();
+            if (!EventRequestBody.isValidEvent(event)) {
+                malformed.add(e.getId());
+                continue;
+            }
+            long size = event == null ? 0 : event.length();
+            if (!batch.isEmpty() && (batch.size() >= maxEvents || bytes + size > DEFAULT_BATCH_BYTES)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+            batch.add(new AnonymousEventWrapper(e.getId(), e.getVersion(), e.getTimestamp(), event));
+            bytes += size;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
 
-                getOldEvents(nackIds).deleteAllFromRealm();
+    /**
+     * Remove the events the server is done with: acknowledged events, events with an unrecoverable error,
+     * and rejected events older than {@link #EVENT_MAX_AGE}.
+     * @return The number of events removed from the store
+     */
+    private int onBatchShipped(List<AnonymousEventWrapper> events, String responseBody) {
 
-                mRealm.commitTransaction();
+        Gson gson = new GsonBuilder().create();
+        EventResponse resp = gson.fromJson(responseBody, EventResponse.class);
+        if (resp == null) {
+            return 0;
+        }
 
-                List<EventResponse.Item> errors = resp.getErrors();
-                SgnLog.d(TAG, events.size() + " events successfully shipped. " + resp.getAckItems().size() + " ack, " + nackIds.size() + " nack, " + errors.size() + " error.");
+        Set<String> removeIds = resp.getRemovableItems();
+        Set<String> nackIds = resp.getNackItems();
+        removeIds.addAll(getOldEvents(events, nackIds));
 
-                if (!errors.isEmpty()) {
-                    for (EventResponse.Item i : resp.getErrors()) {
-                        SgnLog.d(TAG, " - " + i.getErrors().toString());
-                    }
-                }
+        int removed = mStore.remove(removeIds);
 
-            } else {
-                SgnLog.d(TAG, response.toString() + ", " + response.body().string());
-            }
+        List<EventResponse.Item> errors = resp.getErrors();
+        SgnLog.d(TAG, events.size() + " events successfully shipped. " + resp.getAckItems().size() + " ack, " + nackIds.size() + " nack, " + errors.size() + " error.");
 
-        } catch (Exception e) {
-            SgnLog.e(TAG, "Network failed", e);
-        } finally {
-            if (mRealm.isInTransaction()) {
-                mRealm.cancelTransaction();
-            }
-            if (response != null) {
-                response.close();
+        if (!errors.isEmpty()) {
+            for (EventResponse.Item i : resp.getErrors()) {
+                SgnLog.d(TAG, " - " + i.getErrors().toString());
             }
         }
+        return removed;
 
     }
 
+    /**
+     * Collects the outcome of a batch on the http client thread, for the dispatcher thread to act on.
+     */
+    private static class BatchCallback implements Callback {
+
+        final List<AnonymousEventWrapper> mEvents;
+        final CountDownLatch mLatch;
+        Call mCall;
+        int mCode;
+        String mBody;
+        long mRetryAfter;
+        Exception mError;
+
+        BatchCallback(List<AnonymousEventWrapper> events, CountDownLatch latch) {
+            mEvents = events;
+            mLatch = latch;
+        }
 
-    private RealmResults<AnonymousEventWrapper> getOldEvents(Set<String> ids) {
-        // get the time limit
-        long timeLimit = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.DAYS.toSeconds(EVENT_MAX_AGE);
+        @Override
+        public void onFailure(Call call, IOException e) {
+            mError = e;
+            mLatch.countDown();
+        }
 
-        RealmQuery<AnonymousEventWrapper> query = mRealm.where(AnonymousEventWrapper.class);
-        query.beginGroup();
-        boolean first = true;
-        for (String id : ids) {
-            if (!first) {
-                query.or();
+        @Override
+        public void onResponse(Call call, Response response) {
+            try {
+                mCode = response.code();
+                mRetryAfter = parseRetryAfter(response.header("Retry-After"));
+                mBody = response.body().string();
+            } catch (Exception e) {
+                mError = e;
+            } finally {
+                response.close();
+                mLatch.countDown();
             }
-            first = false;
-            query = query.equalTo("id", id);
         }
-        query.endGroup();
-        query.and().lessThan("timestamp", timeLimit);
-        return query.findAll();
-    }
 
-    private List<AnonymousEventWrapper> getEvents(int limit) {
-        RealmResults<AnonymousEventWrapper> events = mRealm.where(AnonymousEventWrapper.class).findAll();
-        List<AnonymousEventWrapper> dispatchEvents = new ArrayList<>(DEFAULT_EVENT_BATCH_SIZE);
-        for (int i = 0; i < Math.min(limit, events.size()); i++) {
-            dispatchEvents.add(events.get(i));
-        }
-        return dispatchEvents;
     }
 
-    private RealmResults<AnonymousEventWrapper> getEvents(Set<String> ids) {
-        RealmQuery<AnonymousEventWrapper> query = mRealm.where(AnonymousEventWrapper.class);
-        boolean first = true;
-        for (String id : ids) {
-            if (!first) {
-                query.or();
+    private Set<String> getOldEvents(List<AnonymousEventWrapper> events, Set<String> ids) {
+        // get the time limit
+        long timeLimit = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.DAYS.toSeconds(EVENT_MAX_AGE);
+
+        Set<String> old = new HashSet<>();
+        for (AnonymousEventWrapper e : events) {
+            if (e.getTimestamp() < timeLimit && ids.contains(e.getId())) {
+                old.add(e.getId());
             }
-            first = false;
-            query = query.equalTo("id", id);
         }
-        return query.findAll();
+        return old;
     }
 
     /**
@@ -284,35 +546,17 @@ public class EventDispatcher extends Thread {
         }
     }
 
-    private static class InsertTransaction implements Realm.Transaction {
-
-        AnonymousEventWrapper mEvent;
-
-        InsertTransaction(AnonymousEventWrapper event) {
-            mEvent = event;
-        }
-
-        @Override
-        public void execute(Realm realm) {
-            try {
-                realm.insert(mEvent);
-            } catch (RealmPrimaryKeyConstraintException e) {
-                throw new IllegalStateException("Realm duplicate key on event: " + mEvent.toString(), e);
-            }
-        }
-    }
-
     private Call buildCallFromEvents(List<AnonymousEventWrapper> events) {
-        JsonElement eventArray = mGson.toJsonTree(events);
-        JsonObject eventWrapper = new JsonObject();
-        eventWrapper.add("events", eventArray);
-        RequestBody body = RequestBody.create(mMediatype, eventWrapper.toString());
-        Request request = new Request.Builder()
+        // The events are streamed from the store when the request is written
+        RequestBody body = new EventRequestBody(events, mGzip);
+        Request.Builder builder = new Request.Builder()
                 .url(mUrl)
                 .post(body)
-                .headers(mHeaders)
-                .build();
-        return mClient.newCall(request);
+                .headers(mHeaders);
+        if (mGzip) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        return mClient.newCall(builder.build());
     }
 
 }
@@ -0,0 +1,103 @@
+package com.shopgun.android.sdk.eventskit;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * A {@link RequestBody} posting a batch of events as {@code {"events":[...]}}.
+ *
+ * <p>The stored events are already json, so they are written to the network one at a time, instead
+ * of being parsed and serialized into a single string first. The body is optionally gzipped on the
+ * fly, in which case the request must have a {@code Content-Encoding: gzip} header.</p>
+ */
+public class EventRequestBody extends RequestBody {
+
+    public static final String TAG = Constants.getTag(EventRequestBody.class);
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private static final String PREFIX = "{\"events\":[";
+    private static final String SUFFIX = "]}";
+    private static final String EMPTY_EVENT = "{}";
+
+    private final List<AnonymousEventWrapper> mEvents;
+    private final boolean mGzip;
+
+    /**
+     * Create a new body.
+     * @param events The events to post, they must stay valid until the request has finished, and each
+     *               event must be a json object, see {@link #isValidEvent(String)}
+     * @param gzip {@code true} to gzip the body, else {@code false}
+     */
+    public EventRequestBody(List<AnonymousEventWrapper> events, boolean gzip) {
+        mEvents = events;
+        mGzip = gzip;
+    }
+
+    /**
+     * Check that a stored event can be written into a batch, without breaking the json of the batch.
+     * Null and empty events are valid, and are written as an empty object.
+     * @param event A stored event
+     * @return {@code true} if the event is a single json object, else {@code false}
+     */
+    public static boolean isValidEvent(String event) {
+        if (event == null || event.isEmpty()) {
+            return true;
+        }
+        try {
+            JsonReader reader = new JsonReader(new StringReader(event));
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public boolean isGzip() {
+        return mGzip;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        // Unknown until it's written, so it's sent chunked
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        BufferedSink out = mGzip ? Okio.buffer(new GzipSink(sink)) : sink;
+        out.writeUtf8(PREFIX);
+        for (int i = 0; i < mEvents.size(); i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            String event = mEvents.get(i).getEvent();
+            out.writeUtf8(event == null || event.isEmpty() ? EMPTY_EVENT : event);
+        }
+        out.writeUtf8(SUFFIX);
+        if (mGzip) {
+            // Writes the gzip trailer
+            out.close();
+        }
+    }
+
+}
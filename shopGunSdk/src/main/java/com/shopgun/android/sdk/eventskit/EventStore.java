@@ -0,0 +1,57 @@
+package com.shopgun.android.sdk.eventskit;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persists tracked events until the {@link EventDispatcher} has shipped them to the server.
+ *
+ * <p>An instance is owned by the dispatcher, and all methods are called from the dispatcher thread.
+ * The store is opened when the thread starts, and closed when it quits, and may be opened again by
+ * a later dispatcher thread.</p>
+ *
+ * @see RealmEventStore
+ * @see FileEventStore
+ */
+public interface EventStore {
+
+    /**
+     * Open the store.
+     * @return {@code true} if the store is ready for use, else {@code false}
+     */
+    boolean open();
+
+    /**
+     * Get the number of events in the store.
+     * @return The event count
+     */
+    long count();
+
+    /**
+     * Add events to the store.
+     * @param events The events to add
+     */
+    void add(List<AnonymousEventWrapper> events);
+
+    /**
+     * Get the oldest events in the store, without removing them.
+     * @param limit The max number of events to return
+     * @param maxBytes The max total size of the returned events, though the first event is always returned
+     * @return A list of events, in the order they were added
+     */
+    List<AnonymousEventWrapper> peek(int limit, long maxBytes);
+
+    /**
+     * Remove events from the store, e.g. once the server has acknowledged them.
+     * Events returned by {@link #peek(int, long)} may no longer be valid after this call.
+     * @param ids The ids of the events to remove
+     * @return The number of events removed
+     */
+    int remove(Set<String> ids);
+
+    /**
+     * Close the store, and release its resources.
+     */
+    void close();
+
+}
@@ -11,6 +11,7 @@ import com.shopgun.android.utils.LocationUtils;
 
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -22,6 +23,24 @@ public class EventUtils {
     public static final String TAG = EventUtils.class.getSimpleName();
     public static final int GEO_HASH_PRECISION = 4;
 
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+        }
+    };
+
+    /* The last location fix, and its geohash. Every event is tagged with the same fix until a new one arrives */
+    private static final Object LOCATION_LOCK = new Object();
+    private static long sLocationTime = -1;
+    private static double sLatitude;
+    private static double sLongitude;
+    private static String sGeoHash;
+
     private EventUtils() {
 
     }
@@ -37,14 +56,11 @@ public class EventUtils {
             // get the bytes of the salt
             byte[] id = salt.getBytes("UTF-8");
 
-            // create the byte array with all of data -> salt + data
-            byte[] payload = new byte[data.length + id.length];
-            System.arraycopy(id, 0, payload, 0, id.length);
-            System.arraycopy(data, 0, payload, id.length, data.length);
-
-            // Create MD5 Hash
-            MessageDigest digest = java.security.MessageDigest.getInstance("MD5");
-            digest.update(payload);
+            // Create MD5 Hash of salt + data, the digest is reused by the thread
+            MessageDigest digest = MD5.get();
+            digest.reset();
+            digest.update(id);
+            digest.update(data);
             byte digest_result[] = digest.digest();
 
             // take the first 8 bytes
@@ -79,9 +95,25 @@ public class EventUtils {
         // set the data only if the accuracy < 2km
         if(location != null && location.getAccuracy() < 2000) {
 
-            GeoHash geoHash = GeoHash.fromLocation(location, GEO_HASH_PRECISION);
+            event.addUserLocation(getGeoHash(location), TimeUnit.MILLISECONDS.toSeconds(location.getTime()));
+        }
+    }
 
-            event.addUserLocation(geoHash.toString(), TimeUnit.MILLISECONDS.toSeconds(location.getTime()));
+    /**
+     * Get the geohash of a location, which is only computed when the location differs from the last one.
+     * @param location A location
+     * @return The geohash with {@link #GEO_HASH_PRECISION} chars
+     */
+    static String getGeoHash(Location location) {
+        synchronized (LOCATION_LOCK) {
+            if (sGeoHash == null || sLocationTime != location.getTime() ||
+                    sLatitude != location.getLatitude() || sLongitude != location.getLongitude()) {
+                sGeoHash = GeoHash.fromLocation(location, GEO_HASH_PRECISION).toString();
+                sLocationTime = location.getTime();
+                sLatitude = location.getLatitude();
+                sLongitude = location.getLongitude();
+            }
+            return sGeoHash;
         }
     }
 
@@ -0,0 +1,514 @@
+package com.shopgun.android.sdk.eventskit;
+
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link EventStore} keeping the events in an append-only journal on disk, without Realm.
+ *
+ * <p>The journal is split into segments. New events, and acknowledgements of shipped events, are
+ * appended as length-prefixed, checksummed records to the newest segment, and a new segment is
+ * started once it exceeds a size limit. An in-memory index holds the offset of every event not yet
+ * acknowledged. A segment is deleted once all events in it, and in the segments before it, have
+ * been acknowledged.</p>
+ *
+ * <p>On {@link #open()} the index is rebuilt by replaying the segments. Records are written
+ * straight to the file, so they survive the process dying. A record that is incomplete, or fails
+ * its checksum (e.g. a write cut short by a power loss), ends its segment, which is truncated to
+ * the last valid record.</p>
+ */
+public class FileEventStore implements EventStore {
+
+    public static final String TAG = Constants.getTag(FileEventStore.class);
+
+    /** Default name of the journal directory */
+    public static final String DEFAULT_DIRECTORY = "sgn-events";
+
+    /** Default size of a segment, before a new one is started */
+    private static final long DEFAULT_SEGMENT_BYTES = 256 * 1024;
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int MAGIC = 0x53474e45;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /** record length + checksum */
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    /** type + id length */
+    private static final int RECORD_FIXED_SIZE = 1 + 2;
+    /** version + timestamp */
+    private static final int EVENT_FIXED_SIZE = 4 + 8;
+
+    private static final byte TYPE_EVENT = 1;
+    private static final byte TYPE_ACK = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final long mSegmentBytes;
+
+    /** Index of the events not yet acknowledged, oldest first */
+    private final LinkedHashMap<String, Entry> mIndex = new LinkedHashMap<String, Entry>();
+    /** The segments on disk, oldest first. The last one is the one being appended to */
+    private final TreeMap<Long, Segment> mSegments = new TreeMap<Long, Segment>();
+
+    private Segment mActive;
+    private RandomAccessFile mJournal;
+    private boolean mOpen = false;
+
+    public FileEventStore(File directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Create a new FileEventStore.
+     * @param directory The directory to keep the journal in
+     * @param segmentBytes The size a segment may grow to, before a new segment is started
+     */
+    public FileEventStore(File directory, long segmentBytes) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory must not be null.");
+        }
+        mDirectory = directory;
+        mSegmentBytes = segmentBytes;
+    }
+
+    @Override
+    public synchronized boolean open() {
+
+        if (mOpen) {
+            return true;
+        }
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            SgnLog.w(TAG, "Unable to create " + mDirectory.getAbsolutePath());
+            return false;
+        }
+
+        try {
+            for (Segment s : listSegments()) {
+                if (load(s)) {
+                    mSegments.put(s.seq, s);
+                } else if (!s.file.delete()) {
+                    SgnLog.w(TAG, "Unable to delete " + s.file.getAbsolutePath());
+                }
+            }
+            if (mSegments.isEmpty()) {
+                startSegment(0);
+            } else {
+                mActive = mSegments.lastEntry().getValue();
+                mJournal = new RandomAccessFile(mActive.file, "rw");
+            }
+            deleteAcknowledgedSegments();
+            mOpen = true;
+        } catch (IOException e) {
+            SgnLog.e(TAG, "Unable to open the event journal", e);
+            close();
+        }
+        return mOpen;
+
+    }
+
+    @Override
+    public synchronized long count() {
+        return mIndex.size();
+    }
+
+    @Override
+    public synchronized void add(List<AnonymousEventWrapper> events) {
+
+        if (!mOpen || events.isEmpty()) {
+            return;
+        }
+
+        try {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            List<Entry> entries = new ArrayList<Entry>(events.size());
+            List<String> ids = new ArrayList<String>(events.size());
+            for (AnonymousEventWrapper e : events) {
+                byte[] id = e.getId().getBytes(UTF8);
+                if (id.length > 0xFFFF) {
+                    continue;
+                }
+                byte[] data = e.getEvent().getBytes(UTF8);
+                ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_FIXED_SIZE + id.length + EVENT_FIXED_SIZE + data.length);
+                DataOutputStream out = new DataOutputStream(record);
+                out.writeByte(TYPE_EVENT);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeInt(e.getVersion());
+                out.writeLong(e.getTimestamp());
+                out.write(data);
+                out.close();
+
+                long recordStart = mActive.length + bytes.size() + RECORD_HEADER_SIZE;
+                long dataOffset = recordStart + record.size() - data.length;
+                writeRecord(bytes, record.toByteArray());
+                entries.add(new Entry(mActive, dataOffset, data.length, e.getVersion(), e.getTimestamp()));
+                ids.add(e.getId());
+            }
+
+            append(bytes.toByteArray());
+            for (int i = 0; i < entries.size(); i++) {
+                addToIndex(ids.get(i), entries.get(i));
+            }
+            if (mActive.length >= mSegmentBytes) {
+                startSegment(mActive.seq + 1);
+            }
+
+        } catch (IOException e) {
+            SgnLog.e(TAG, "Failed to write " + events.size() + " events", e);
+        }
+
+    }
+
+    @Override
+    public synchronized List<AnonymousEventWrapper> peek(int limit, long maxBytes) {
+
+        List<AnonymousEventWrapper> list = new ArrayList<AnonymousEventWrapper>(Math.min(limit, mIndex.size()));
+        if (!mOpen) {
+            return list;
+        }
+
+        Map<Segment, RandomAccessFile> readers = new HashMap<Segment, RandomAccessFile>();
+        long bytes = 0;
+        try {
+            for (Map.Entry<String, Entry> e : mIndex.entrySet()) {
+                Entry entry = e.getValue();
+                bytes += entry.dataLength;
+                if (list.size() >= limit || (bytes > maxBytes && !list.isEmpty())) {
+                    break;
+                }
+                RandomAccessFile file = entry.segment == mActive ? mJournal : readers.get(entry.segment);
+                if (file == null) {
+                    file = new RandomAccessFile(entry.segment.file, "r");
+                    readers.put(entry.segment, file);
+                }
+                byte[] data = new byte[entry.dataLength];
+                file.seek(entry.dataOffset);
+                file.readFully(data);
+                list.add(new AnonymousEventWrapper(e.getKey(), entry.version, entry.timestamp, new String(data, UTF8)));
+            }
+        } catch (IOException e) {
+            SgnLog.e(TAG, "Failed to read events", e);
+        } finally {
+            for (RandomAccessFile file : readers.values()) {
+                closeQuietly(file);
+            }
+        }
+        return list;
+
+    }
+
+    @Override
+    public synchronized int remove(Set<String> ids) {
+
+        if (!mOpen || ids.isEmpty()) {
+            return 0;
+        }
+
+        try {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            List<String> removed = new ArrayList<String>(ids.size());
+            for (String id : ids) {
+                if (!mIndex.containsKey(id)) {
+                    continue;
+                }
+                byte[] idBytes = id.getBytes(UTF8);
+                ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_FIXED_SIZE + idBytes.length);
+                DataOutputStream out = new DataOutputStream(record);
+                out.writeByte(TYPE_ACK);
+                out.writeShort(idBytes.length);
+                out.write(idBytes);
+                out.close();
+                writeRecord(bytes, record.toByteArray());
+                removed.add(id);
+            }
+            if (removed.isEmpty()) {
+                return 0;
+            }
+
+            append(bytes.toByteArray());
+            for (String id : removed) {
+                removeFromIndex(id);
+            }
+            deleteAcknowledgedSegments();
+            return removed.size();
+
+        } catch (IOException e) {
+            SgnLog.e(TAG, "Failed to acknowledge " + ids.size() + " events", e);
+            return 0;
+        }
+
+    }
+
+    @Override
+    public synchronized void close() {
+        closeQuietly(mJournal);
+        mJournal = null;
+        mActive = null;
+        mIndex.clear();
+        mSegments.clear();
+        mOpen = false;
+    }
+
+    /**
+     * Get the number of segments on disk.
+     * @return The segment count
+     */
+    public synchronized int getSegmentCount() {
+        return mSegments.size();
+    }
+
+    private List<Segment> listSegments() {
+        // The names aren't zero padded, so sort by the sequence number
+        TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+        String[] names = mDirectory.list();
+        if (names == null) {
+            return new ArrayList<Segment>();
+        }
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    long seq = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(seq, new Segment(seq, new File(mDirectory, name)));
+                } catch (NumberFormatException e) {
+                    // Not ours
+                }
+            }
+        }
+        return new ArrayList<Segment>(segments.values());
+    }
+
+    /**
+     * Replay the records of a segment into the index.
+     * @param s A segment
+     * @return {@code true} if the segment is valid, else {@code false}
+     * @throws IOException If the segment couldn't be read
+     */
+    private boolean load(Segment s) throws IOException {
+
+        long fileLength = s.file.length();
+        if (fileLength < HEADER_SIZE) {
+            // Died while creating it
+            return false;
+        }
+
+        long position = HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(s.file)));
+        try {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                SgnLog.d(TAG, "Unknown segment format, discarding " + s.file.getName());
+                return false;
+            }
+
+            while (position + RECORD_HEADER_SIZE <= fileLength) {
+
+                int recordLength = in.readInt();
+                int checksum = in.readInt();
+                long recordStart = position + RECORD_HEADER_SIZE;
+                long next = recordStart + recordLength;
+                if (recordLength < RECORD_FIXED_SIZE || next > fileLength) {
+                    // Truncated or garbled record, everything from here on is lost
+                    break;
+                }
+
+                byte[] record = new byte[recordLength];
+                in.readFully(record);
+                if (checksum(record) != checksum || !replay(s, recordStart, record)) {
+                    break;
+                }
+                position = next;
+
+            }
+
+        } catch (EOFException e) {
+            // Truncated record, handled below
+        } finally {
+            in.close();
+        }
+
+        if (position < fileLength) {
+            SgnLog.d(TAG, "Truncating " + s.file.getName() + " from " + fileLength + " to " + position + " bytes");
+            RandomAccessFile file = new RandomAccessFile(s.file, "rw");
+            try {
+                file.setLength(position);
+            } finally {
+                file.close();
+            }
+        }
+        s.length = position;
+        return true;
+
+    }
+
+    private boolean replay(Segment s, long recordStart, byte[] record) throws IOException {
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        byte[] id = new byte[in.readUnsignedShort()];
+        if (RECORD_FIXED_SIZE + id.length > record.length) {
+            return false;
+        }
+        in.readFully(id);
+
+        if (type == TYPE_ACK) {
+            removeFromIndex(new String(id, UTF8));
+            return true;
+        }
+
+        int dataLength = record.length - RECORD_FIXED_SIZE - id.length - EVENT_FIXED_SIZE;
+        if (type != TYPE_EVENT || dataLength < 0) {
+            return false;
+        }
+        int version = in.readInt();
+        long timestamp = in.readLong();
+        long dataOffset = recordStart + record.length - dataLength;
+        addToIndex(new String(id, UTF8), new Entry(s, dataOffset, dataLength, version, timestamp));
+        return true;
+
+    }
+
+    private void startSegment(long seq) throws IOException {
+        closeQuietly(mJournal);
+        mJournal = null;
+        Segment s = new Segment(seq, new File(mDirectory, SEGMENT_PREFIX + seq + SEGMENT_SUFFIX));
+        RandomAccessFile file = new RandomAccessFile(s.file, "rw");
+        file.setLength(0);
+        file.writeInt(MAGIC);
+        file.writeInt(VERSION);
+        s.length = HEADER_SIZE;
+        mJournal = file;
+        mActive = s;
+        mSegments.put(seq, s);
+    }
+
+    private void writeRecord(ByteArrayOutputStream bytes, byte[] record) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(record.length);
+        out.writeInt(checksum(record));
+        out.write(record);
+        out.flush();
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        mJournal.seek(mActive.length);
+        mJournal.write(bytes);
+        mActive.length += bytes.length;
+    }
+
+    private void addToIndex(String id, Entry entry) {
+        removeFromIndex(id);
+        mIndex.put(id, entry);
+        entry.segment.live++;
+    }
+
+    private void removeFromIndex(String id) {
+        Entry previous = mIndex.remove(id);
+        if (previous != null) {
+            previous.segment.live--;
+        }
+    }
+
+    /**
+     * Delete segments from the head of the journal, as long as all their events have been acknowledged.
+     * The acknowledgements are always in the same, or a later segment than the events, so the
+     * segments must be deleted in order, for the acknowledged events not to come back on replay.
+     */
+    private void deleteAcknowledgedSegments() throws IOException {
+
+        while (mSegments.size() > 1) {
+            Segment head = mSegments.firstEntry().getValue();
+            if (head.live > 0) {
+                return;
+            }
+            mSegments.remove(head.seq);
+            if (!head.file.delete()) {
+                SgnLog.w(TAG, "Unable to delete " + head.file.getAbsolutePath());
+            }
+        }
+
+        if (mIndex.isEmpty() && mActive.length > HEADER_SIZE) {
+            // Everything has been acknowledged, so the active segment can start over
+            mJournal.setLength(HEADER_SIZE);
+            mActive.length = HEADER_SIZE;
+        }
+
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return (int) crc.getValue();
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static class Segment {
+
+        final long seq;
+        final File file;
+        /** The length of the valid part of the file */
+        long length;
+        /** The number of events in this segment, that haven't been acknowledged */
+        int live;
+
+        Segment(long seq, File file) {
+            this.seq = seq;
+            this.file = file;
+        }
+
+    }
+
+    private static class Entry {
+
+        final Segment segment;
+        final long dataOffset;
+        final int dataLength;
+        final int version;
+        final long timestamp;
+
+        Entry(Segment segment, long dataOffset, int dataLength, int version, long timestamp) {
+            this.segment = segment;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+    }
+
+}
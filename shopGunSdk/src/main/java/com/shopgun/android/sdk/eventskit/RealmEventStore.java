@@ -0,0 +1,122 @@
+package com.shopgun.android.sdk.eventskit;
+
+import com.shopgun.android.sdk.ShopGun;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import io.realm.Realm;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+import io.realm.exceptions.RealmPrimaryKeyConstraintException;
+
+/**
+ * An {@link EventStore} keeping the events in the Realm of the SDK, see {@link ShopGun#getRealmInstance()}.
+ *
+ * <p>The events returned by {@link #peek(int)} are managed by Realm, and are only valid on the
+ * dispatcher thread, until they are removed.</p>
+ */
+public class RealmEventStore implements EventStore {
+
+    public static final String TAG = Constants.getTag(RealmEventStore.class);
+
+    private Realm mRealm;
+
+    @Override
+    public boolean open() {
+        if (mRealm == null) {
+            mRealm = ShopGun.getInstance().getRealmInstance();
+        }
+        return mRealm != null;
+    }
+
+    @Override
+    public long count() {
+        return mRealm.where(AnonymousEventWrapper.class).count();
+    }
+
+    @Override
+    public void add(List<AnonymousEventWrapper> events) {
+        mRealm.executeTransaction(new InsertTransaction(events));
+    }
+
+    @Override
+    public List<AnonymousEventWrapper> peek(int limit, long maxBytes) {
+        RealmResults<AnonymousEventWrapper> events = mRealm.where(AnonymousEventWrapper.class).findAll();
+        int size = Math.min(limit, events.size());
+        List<AnonymousEventWrapper> list = new ArrayList<>(size);
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            AnonymousEventWrapper e = events.get(i);
+            // The char count is close enough, as events are mostly ASCII
+            bytes += e.getEvent() == null ? 0 : e.getEvent().length();
+            if (bytes > maxBytes && !list.isEmpty()) {
+                break;
+            }
+            list.add(e);
+        }
+        return list;
+    }
+
+    @Override
+    public int remove(Set<String> ids) {
+        if (ids.isEmpty()) {
+            // An empty query would match every event
+            return 0;
+        }
+        mRealm.beginTransaction();
+        try {
+            RealmResults<AnonymousEventWrapper> events = getEvents(ids);
+            int count = events.size();
+            events.deleteAllFromRealm();
+            mRealm.commitTransaction();
+            return count;
+        } finally {
+            if (mRealm.isInTransaction()) {
+                mRealm.cancelTransaction();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mRealm != null) {
+            mRealm.close();
+            mRealm = null;
+        }
+    }
+
+    private RealmResults<AnonymousEventWrapper> getEvents(Set<String> ids) {
+        RealmQuery<AnonymousEventWrapper> query = mRealm.where(AnonymousEventWrapper.class);
+        boolean first = true;
+        for (String id : ids) {
+            if (!first) {
+                query.or();
+            }
+            first = false;
+            query = query.equalTo("id", id);
+        }
+        return query.findAll();
+    }
+
+    private static class InsertTransaction implements Realm.Transaction {
+
+        List<AnonymousEventWrapper> mEvents;
+
+        InsertTransaction(List<AnonymousEventWrapper> events) {
+            mEvents = events;
+        }
+
+        @Override
+        public void execute(Realm realm) {
+            try {
+                realm.insert(mEvents);
+            } catch (RealmPrimaryKeyConstraintException e) {
+                throw new IllegalStateException("Realm duplicate key on events: " + mEvents.toString(), e);
+            }
+        }
+    }
+
+}
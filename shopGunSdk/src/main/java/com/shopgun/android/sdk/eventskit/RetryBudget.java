@@ -0,0 +1,78 @@
+package com.shopgun.android.sdk.eventskit;
+
+import android.os.SystemClock;
+
+import com.shopgun.android.sdk.utils.Constants;
+
+/**
+ * A token bucket limiting how often failed requests are retried.
+ *
+ * <p>Every retry takes a token, and tokens are added back at a fixed rate, up to the capacity of
+ * the bucket. A short outage can be retried through right away, but a lasting one can't turn
+ * into a stream of requests that are bound to fail.</p>
+ */
+public class RetryBudget {
+
+    public static final String TAG = Constants.getTag(RetryBudget.class);
+
+    private final long mCapacity;
+    private final long mRefillInterval;
+
+    /** The tokens in the bucket, in milliseconds of refill time, so refills don't lose precision */
+    private long mCredit;
+    private long mLastRefill = -1;
+
+    /**
+     * Create a new, full, RetryBudget.
+     * @param capacity The max number of retries that can be made in a row
+     * @param refillInterval The time in milliseconds it takes to earn one retry
+     */
+    public RetryBudget(int capacity, long refillInterval) {
+        if (capacity < 1 || refillInterval < 1) {
+            throw new IllegalArgumentException("Capacity and refill interval must be positive.");
+        }
+        mCapacity = capacity;
+        mRefillInterval = refillInterval;
+        mCredit = capacity * refillInterval;
+    }
+
+    /**
+     * Take a token for a retry, if there is one.
+     * @return {@code true} if the retry may be made, else {@code false}
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Take a token for a retry, if there is one.
+     * @param now The current time in milliseconds
+     * @return {@code true} if the retry may be made, else {@code false}
+     */
+    public synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (mCredit < mRefillInterval) {
+            return false;
+        }
+        mCredit -= mRefillInterval;
+        return true;
+    }
+
+    /**
+     * Get the number of whole tokens in the bucket.
+     * @param now The current time in milliseconds
+     * @return The number of retries that can be made right away
+     */
+    public synchronized int getTokens(long now) {
+        refill(now);
+        return (int) (mCredit / mRefillInterval);
+    }
+
+    private void refill(long now) {
+        if (mLastRefill != -1 && now > mLastRefill) {
+            mCredit = Math.min(mCapacity * mRefillInterval, mCredit + now - mLastRefill);
+        }
+        mLastRefill = now;
+    }
+
+}
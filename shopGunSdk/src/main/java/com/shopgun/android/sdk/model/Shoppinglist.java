@@ -694,7 +694,7 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
         dest.writeLong(mModified != null ? mModified.getTime() : -1);
         dest.writeString(this.mPrevId);
         dest.writeString(this.mType);
-        dest.writeString(this.mMeta.toString());
+        dest.writeString(getMeta().toString());
         dest.writeTypedList(new ArrayList<Share>(mShares.values()));
         dest.writeInt(this.mUserId);
         dest.writeInt(this.mSyncState);
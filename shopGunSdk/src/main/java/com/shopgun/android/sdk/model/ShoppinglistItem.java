@@ -701,7 +701,7 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
         dest.writeParcelable(this.mOffer, flags);
         dest.writeString(this.mShoppinglistId);
         dest.writeString(this.mPrevId);
-        dest.writeString(this.mMeta.toString());
+        dest.writeString(getMeta().toString());
         dest.writeInt(this.mUserId);
         dest.writeInt(this.mSyncState);
     }
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Map;
+
+/**
+ * A pool of {@code byte[]} for reading response bodies into, so large responses don't create
+ * garbage in proportion to their size.
+ *
+ * <p>Buffers come in power-of-two size classes from {@link #MIN_BUFFER_SIZE} to {@link #MAX_BUFFER_SIZE}.
+ * A buffer is always at least as large as requested, so the actual length of the data must be
+ * tracked separately, see {@link NetworkResponse#length}. Bodies larger than {@link #MAX_BUFFER_SIZE}
+ * get a buffer of their own, that isn't pooled.</p>
+ */
+public class ByteArrayPool {
+
+    public static final String TAG = Constants.getTag(ByteArrayPool.class);
+
+    public static final int MIN_BUFFER_SIZE = 4 * 1024;
+    public static final int MAX_BUFFER_SIZE = 512 * 1024;
+
+    /** Default max number of bytes kept in the pool */
+    public static final int DEFAULT_POOL_SIZE = 2 * 1024 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /** One bucket per size class, 4kb, 8kb, ... 512kb */
+    private final ArrayDeque<byte[]>[] mBuckets;
+    private final int mMaxPooledBytes;
+    private int mPooledBytes = 0;
+
+    public ByteArrayPool() {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Create a new pool.
+     * @param maxPooledBytes The max number of bytes to keep in idle buffers
+     */
+    @SuppressWarnings("unchecked")
+    public ByteArrayPool(int maxPooledBytes) {
+        mMaxPooledBytes = maxPooledBytes;
+        int classes = sizeClass(MAX_BUFFER_SIZE) + 1;
+        mBuckets = new ArrayDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            mBuckets[i] = new ArrayDeque<byte[]>();
+        }
+    }
+
+    /**
+     * Get a buffer of at least the given size.
+     * @param minSize The minimum size of the buffer
+     * @return A buffer, which should be handed back with {@link #release(byte[])}
+     */
+    public synchronized byte[] acquire(int minSize) {
+        if (minSize > MAX_BUFFER_SIZE) {
+            return new byte[minSize];
+        }
+        int sizeClass = sizeClass(minSize);
+        byte[] buffer = mBuckets[sizeClass].pollFirst();
+        if (buffer == null) {
+            return new byte[MIN_BUFFER_SIZE << sizeClass];
+        }
+        mPooledBytes -= buffer.length;
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers that don't belong to a size class, or that doesn't fit
+     * in the pool are left to the garbage collector.
+     * @param buffer A buffer, that mustn't be used after it's released
+     */
+    public synchronized void release(byte[] buffer) {
+        if (buffer == null || buffer.length < MIN_BUFFER_SIZE || buffer.length > MAX_BUFFER_SIZE ||
+                Integer.bitCount(buffer.length) != 1 || mPooledBytes + buffer.length > mMaxPooledBytes) {
+            return;
+        }
+        mBuckets[sizeClass(buffer.length)].addFirst(buffer);
+        mPooledBytes += buffer.length;
+    }
+
+    /**
+     * Get the number of bytes currently held by idle buffers in the pool.
+     * @return The number of pooled bytes
+     */
+    public synchronized int getPooledBytes() {
+        return mPooledBytes;
+    }
+
+    /**
+     * Read a response body into a pooled buffer. The returned {@link NetworkResponse} must be
+     * {@link NetworkResponse#recycle() recycled} once it has been parsed.
+     * @param statusCode The HTTP status code
+     * @param in The body, or {@code null} if there is no body
+     * @param contentLength The length of the body, or {@code -1} if unknown
+     * @param headers The response headers
+     * @return A {@link NetworkResponse} backed by a pooled buffer
+     * @throws IOException If the body couldn't be read
+     */
+    public NetworkResponse read(int statusCode, InputStream in, long contentLength, Map<String, String> headers) throws IOException {
+
+        if (in == null || contentLength == 0) {
+            return new NetworkResponse(statusCode, EMPTY, headers);
+        }
+
+        // With a known length, a single buffer is enough, and the body is never copied
+        byte[] buffer = acquire(contentLength > 0 && contentLength <= Integer.MAX_VALUE ? (int) contentLength : MIN_BUFFER_SIZE);
+        int count = 0;
+        try {
+            while (true) {
+                if (count == buffer.length) {
+                    // Don't grow the buffer if we're at the end of the stream
+                    int b = in.read();
+                    if (b == -1) {
+                        break;
+                    }
+                    byte[] larger = acquire(buffer.length * 2);
+                    System.arraycopy(buffer, 0, larger, 0, count);
+                    release(buffer);
+                    buffer = larger;
+                    buffer[count++] = (byte) b;
+                }
+                int read = in.read(buffer, count, buffer.length - count);
+                if (read == -1) {
+                    break;
+                }
+                count += read;
+            }
+        } catch (IOException e) {
+            release(buffer);
+            throw e;
+        }
+        return new NetworkResponse(statusCode, buffer, count, headers, this);
+
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        // The number of doublings from MIN_BUFFER_SIZE needed to fit size
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - 12;
+    }
+
+}
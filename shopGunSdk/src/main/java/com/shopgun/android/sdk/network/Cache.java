@@ -17,6 +17,7 @@
 package com.shopgun.android.sdk.network;
 
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 public interface Cache {
 
@@ -45,14 +46,33 @@ public interface Cache {
 
         private static final long serialVersionUID = 1L;
 
+        /** How long an expired item may be kept around for revalidation, see {@link StaleCache} */
+        public static final long MAX_STALE = TimeUnit.DAYS.toMillis(1);
+
         // Time of insertion
         public final long expires;
         public final Object object;
+        /** The approximate size of the object in bytes, or {@code 0} if unknown */
         public long size;
+        /** The ETag of the response the object was part of, or {@code null} */
+        public String etag;
+        /** The Last-Modified date of the response the object was part of, or {@code null} */
+        public String lastModified;
 
         public Item(Object o, long timeToLive) {
+            this(o, timeToLive, 0);
+        }
+
+        /**
+         * Create a new Item with a known size.
+         * @param o The object to cache
+         * @param timeToLive The time-to-live in milliseconds
+         * @param size The size of the object in bytes, as it was received from the network
+         */
+        public Item(Object o, long timeToLive, long size) {
             this.expires = System.currentTimeMillis() + timeToLive;
             this.object = o;
+            this.size = size;
         }
 
         /**
@@ -64,6 +84,36 @@ public interface Cache {
             return expires < System.currentTimeMillis();
         }
 
+        /**
+         * Returns true if the Item has been expired for longer than {@link #MAX_STALE},
+         * and is no longer useful, not even for revalidation.
+         * @return {@code true} if the item should be discarded, else {@code false}
+         */
+        public boolean isDiscardable() {
+            return expires + MAX_STALE < System.currentTimeMillis();
+        }
+
+        /**
+         * Returns true if the Item carries validators, that can be used for a conditional request.
+         * @return {@code true} if the item has an ETag or Last-Modified date
+         */
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Create a copy of this item, with a new time-to-live. Used when the server has
+         * confirmed that the object is still valid.
+         * @param timeToLive The time-to-live in milliseconds
+         * @return A new Item
+         */
+        public Item refresh(long timeToLive) {
+            Item item = new Item(object, timeToLive, size);
+            item.etag = etag;
+            item.lastModified = lastModified;
+            return item;
+        }
+
     }
 
 }
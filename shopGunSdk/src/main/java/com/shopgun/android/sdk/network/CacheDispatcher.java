@@ -19,7 +19,10 @@ package com.shopgun.android.sdk.network;
 import android.os.Process;
 
 import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnUtils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 public class CacheDispatcher extends Thread {
@@ -38,14 +41,18 @@ public class CacheDispatcher extends Thread {
     /** For posting responses and errors. */
     private final Delivery mDelivery;
 
+    /** For parking requests identical to a request already in flight */
+    private final RequestCoalescer mCoalescer;
+
     /** Used for telling us to die. */
     private volatile boolean mQuit = false;
 
-    public CacheDispatcher(BlockingQueue<Request<?>> cacheQueue, BlockingQueue<Request<?>> networkQueue, Cache cache, Delivery delivery) {
+    public CacheDispatcher(BlockingQueue<Request<?>> cacheQueue, BlockingQueue<Request<?>> networkQueue, Cache cache, Delivery delivery, RequestCoalescer coalescer) {
         mQueue = cacheQueue;
         mNetworkQueue = networkQueue;
         mCache = cache;
         mDelivery = delivery;
+        mCoalescer = coalescer;
     }
 
     /**
@@ -74,27 +81,118 @@ public class CacheDispatcher extends Thread {
             // If the request was cancelled already, do not perform the network request.
             if (request.isCanceled()) {
                 request.finish("cache-dispatcher-cancelled-on-received");
+                // A retried primary may have requests waiting for it
+                Request<?> promoted = mCoalescer.promote(request);
+                if (promoted != null) {
+                    mQueue.add(promoted);
+                }
                 continue;
             } else {
                 request.addEvent("received-by-cache-dispatcher");
+                request.getTrace().mark(RequestTrace.Stage.CACHE);
             }
 
             if (!request.ignoreCache()) {
-                Response<?> response = request.parseCache(mCache);
+                StaleRecorder recorder = mCache instanceof StaleCache ? new StaleRecorder((StaleCache) mCache) : null;
+                Response<?> response = request.parseCache(recorder == null ? mCache : recorder);
+                if (response != null && recorder != null && recorder.mExpired) {
+                    // Expired, but may still be used while we ask the API if it has changed
+                    prepareRevalidation(request, response, recorder.mItems);
+                    response = null;
+                }
                 // if the cache is valid, then return it
                 if (response != null) {
                     request.addEvent("post-cache-item");
                     // Parse the response here on the worker thread.
                     request.setCacheHit(true);
+                    request.getTrace().mark(RequestTrace.Stage.DELIVERY);
                     mDelivery.postResponse(request, response);
+                    // A retried primary may have requests waiting for it, they'll most likely hit the cache too
+                    for (Request<?> r : mCoalescer.release(request)) {
+                        mQueue.add(r);
+                    }
                     continue;
                 }
             }
 
+            if (mCoalescer.park(request)) {
+                // An identical request is in flight, the response will be handed to this request too
+                continue;
+            }
+
             request.addEvent("add-to-network-queue");
             mNetworkQueue.add(request);
 
         }
     }
 
+    /**
+     * Keep the stale response on the request, make the request conditional if the cached items
+     * have validators, and deliver the stale response if the request wants it.
+     */
+    private void prepareRevalidation(Request<?> request, Response<?> response, Map<String, Cache.Item> items) {
+
+        boolean delivered = request.getStaleResponse() != null;
+        request.setStale(response, items);
+        request.addEvent("cache-item-expired");
+
+        // Validators are only kept on the item representing the whole response
+        Cache.Item item = items.get(SgnUtils.requestToUrlAndQueryString(request));
+        if (item == null && items.size() == 1) {
+            item = items.values().iterator().next();
+        }
+        if (item != null && item.hasValidators()) {
+            Map<String, String> headers = new LinkedHashMap<String, String>(2);
+            if (item.etag != null) {
+                headers.put(NetworkUtils.HEADER_IF_NONE_MATCH, item.etag);
+            }
+            if (item.lastModified != null) {
+                headers.put(NetworkUtils.HEADER_IF_MODIFIED_SINCE, item.lastModified);
+            }
+            // Kept apart from the request's own headers, so they're only sent while revalidating
+            request.setConditionalHeaders(headers);
+            request.addEvent("conditional-request");
+        } else {
+            request.setConditionalHeaders(null);
+        }
+
+        // Don't deliver twice, if the request is retried
+        if (request.isStaleWhileRevalidate() && !delivered) {
+            mDelivery.postIntermediateResponse(request, response);
+        }
+
+    }
+
+    /**
+     * A view of a {@link StaleCache}, that also returns expired items, and records the items read.
+     */
+    private static class StaleRecorder implements Cache {
+
+        private final StaleCache mCache;
+        private final Map<String, Cache.Item> mItems = new LinkedHashMap<String, Cache.Item>();
+        private boolean mExpired = false;
+
+        StaleRecorder(StaleCache cache) {
+            mCache = cache;
+        }
+
+        public void put(Request<?> request, Response<?> response) {
+            mCache.put(request, response);
+        }
+
+        public Cache.Item get(String key) {
+            Cache.Item item = mCache.getStale(key);
+            if (item != null) {
+                mItems.put(key, item);
+                mExpired |= item.isExpired();
+            }
+            return item;
+        }
+
+        public void clear() {
+            mCache.clear();
+        }
+
+    }
+
 }
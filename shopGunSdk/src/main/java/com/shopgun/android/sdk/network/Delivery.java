@@ -27,6 +27,17 @@ public interface Delivery {
      */
     public void postResponse(Request<?> request, Response<?> response);
 
+    /**
+     * Post a stale {@link Response} on to another thread, without finishing the {@link Request}.
+     * See {@link Request#setStaleWhileRevalidate(boolean)}.
+     * <p>The default implementation does nothing, the request will then only see the final response.</p>
+     * @param request A {@link Request}
+     * @param response A stale {@link Response} from cache
+     */
+    public default void postIntermediateResponse(Request<?> request, Response<?> response) {
+        // Deliveries that can't post intermediate responses just skip them
+    }
+
     public class DeliveryRunnable implements Runnable {
 
         private final Request mRequest;
@@ -53,4 +64,27 @@ public interface Delivery {
 
     }
 
+    public class IntermediateDeliveryRunnable implements Runnable {
+
+        private final Request mRequest;
+        private final Response mResponse;
+
+        public IntermediateDeliveryRunnable(Request request, Response response) {
+            mRequest = request;
+            mResponse = response;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void run() {
+
+            // The final response may have beaten us to it
+            if (!mRequest.isCanceled() && !mRequest.isFinished()) {
+                mRequest.addEvent("intermediate-delivery");
+                mRequest.deliverIntermediateResponse(mResponse.result);
+            }
+
+        }
+
+    }
+
 }
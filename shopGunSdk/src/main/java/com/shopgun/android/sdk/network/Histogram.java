@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations, with power-of-two buckets.
+ *
+ * <p>Values are recorded in microseconds. Bucket {@code i} holds values in {@code [2^(i-1), 2^i)},
+ * so percentiles are accurate within a factor of two, which is plenty for spotting tail latency.</p>
+ */
+public class Histogram {
+
+    public static final String TAG = Constants.getTag(Histogram.class);
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Record a duration.
+     * @param nanos A duration in nanoseconds, negative values are ignored
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mBuckets.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mSum.addAndGet(micros);
+        long max;
+        while (micros > (max = mMax.get()) && !mMax.compareAndSet(max, micros)) {
+            // retry
+        }
+    }
+
+    /**
+     * Get the number of recorded values.
+     * @return The count
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     * @return The mean in microseconds, or {@code 0} if nothing has been recorded
+     */
+    public long getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSum.get() / count;
+    }
+
+    /**
+     * Get the largest recorded value.
+     * @return The max in microseconds
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Get an estimate of a percentile, as the upper bound of the bucket it falls in.
+     * @param percentile A percentile in the range {@code [0, 100]}
+     * @return The estimate in microseconds, or {@code 0} if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = 0;
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = mBuckets.get(i);
+            count += buckets[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.max(0, Math.min(100, percentile)) / 100d);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "count=%s, mean=%sus, p50=%sus, p90=%sus, p99=%sus, max=%sus",
+                getCount(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+
+}
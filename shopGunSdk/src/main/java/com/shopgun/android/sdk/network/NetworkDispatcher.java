@@ -17,6 +17,7 @@
 package com.shopgun.android.sdk.network;
 
 import android.os.Process;
+import android.os.SystemClock;
 
 import com.shopgun.android.sdk.SessionManager;
 import com.shopgun.android.sdk.ShopGun;
@@ -55,6 +56,9 @@ public class NetworkDispatcher extends Thread {
     /** For posting responses and errors. */
     private final Delivery mDelivery;
 
+    /** The pool this dispatcher belongs to, or {@code null} if it's running on its own */
+    private final NetworkDispatcherPool mPool;
+
     /** Used for telling us to die. */
     private volatile boolean mQuit = false;
 
@@ -65,6 +69,21 @@ public class NetworkDispatcher extends Thread {
         mDelivery = delivery;
         mRequestQueue = requestQueue;
         mShopGun = shopGun;
+        mPool = null;
+    }
+
+    /**
+     * Create a dispatcher that takes requests from a {@link NetworkDispatcherPool}, and honors its
+     * per-host limits. The dispatcher stops, when the pool retires it.
+     */
+    NetworkDispatcher(ShopGun shopGun, RequestQueue requestQueue, NetworkDispatcherPool pool, Network network, Cache cache, Delivery delivery) {
+        mQueue = pool.getQueue();
+        mNetwork = network;
+        mCache = cache;
+        mDelivery = delivery;
+        mRequestQueue = requestQueue;
+        mShopGun = shopGun;
+        mPool = pool;
     }
 
     /**
@@ -81,7 +100,12 @@ public class NetworkDispatcher extends Thread {
         while (true) {
             try {
                 // Take a request from the queue.
-                request = mQueue.take();
+                if (mPool == null) {
+                    request = mQueue.take();
+                } else if ((request = mPool.take(this)) == null) {
+                    // Retired by the pool
+                    return;
+                }
             } catch (InterruptedException e) {
                 // We may have been interrupted because it was time to quit.
                 if (mQuit) {
@@ -90,31 +114,62 @@ public class NetworkDispatcher extends Thread {
                 continue;
             }
 
+            NetworkResponse networkResponse = null;
+            boolean hostAcquired = false;
+            long start = -1;
+            long latency = -1;
             try {
 
                 // If the request was cancelled already, do not perform the network request.
                 if (request.isCanceled()) {
                     request.finish("network-dispatcher-cancelled-on-recieved");
+                    // Requests waiting for this one, will have to go to the network themselves
+                    Request<?> promoted = mRequestQueue.getRequestCoalescer().promote(request);
+                    if (promoted != null) {
+                        mQueue.add(promoted);
+                    }
                     continue;
                 } else {
                     request.addEvent("recieved-by-network-dispatcher");
                 }
 
+                if (mPool != null) {
+                    if (!mPool.acquireHost(request)) {
+                        // The pool will re-queue the request, once the host has capacity
+                        continue;
+                    }
+                    hostAcquired = true;
+                }
+
                 prepare(request);
 
                 // Perform the network request.
-                NetworkResponse networkResponse = mNetwork.performRequest(request);
+                start = SystemClock.elapsedRealtime();
+                request.getTrace().mark(RequestTrace.Stage.NETWORK);
+                networkResponse = mNetwork.performRequest(request);
+                latency = SystemClock.elapsedRealtime() - start;
+                request.getTrace().mark(RequestTrace.Stage.PARSE);
+
+                if (request.isDebugging()) {
+                    appendLogging(request, networkResponse);
+                }
 
-                appendLogging(request, networkResponse);
+                if (networkResponse.statusCode == NetworkUtils.SC_NOT_MODIFIED && request.getStaleResponse() != null) {
+                    deliverNotModified(request, networkResponse);
+                    continue;
+                }
 
                 request.addEvent("parsing-network-response");
                 Response<?> response = request.parseNetworkResponse(networkResponse);
+                request.getTrace().mark(RequestTrace.Stage.DELIVERY);
 
                 if (response.isSuccess()) {
 
                     updateSessionInfo(networkResponse.headers);
+                    NetworkUtils.attachValidators(request, response, networkResponse);
                     mCache.put(request, response);
                     mDelivery.postResponse(request, response);
+                    deliverToWaiting(request, networkResponse, null);
 
                 } else {
 
@@ -125,14 +180,17 @@ public class NetworkDispatcher extends Thread {
                         if (isSessionEndpoint(request)) {
 
                             mDelivery.postResponse(request, response);
+                            deliverToWaiting(request, networkResponse, null);
 
                         } else {
 
                             // Query the session manager to perform an update
                             if (mShopGun.getSessionManager().recover(response.error)) {
+                                // Waiting requests will keep waiting for the retry
                                 mRequestQueue.add(request);
                             } else {
                                 mDelivery.postResponse(request, response);
+                                deliverToWaiting(request, networkResponse, null);
                             }
 
                         }
@@ -141,6 +199,7 @@ public class NetworkDispatcher extends Thread {
 
                         request.addEvent("non-recoverable-error");
                         mDelivery.postResponse(request, response);
+                        deliverToWaiting(request, networkResponse, null);
 
                     }
 
@@ -150,10 +209,106 @@ public class NetworkDispatcher extends Thread {
             } catch (ShopGunError e) {
 
                 request.addEvent("network-error");
+                request.getTrace().mark(RequestTrace.Stage.DELIVERY);
                 mDelivery.postResponse(request, Response.fromError(e));
+                deliverToWaiting(request, null, e);
+
+            } finally {
+
+                // The request, and any requests waiting for it, have parsed the body by now
+                if (networkResponse != null) {
+                    networkResponse.recycle();
+                }
+
+                if (hostAcquired) {
+                    if (latency == -1 && start != -1) {
+                        // Failed requests, e.g. timeouts, count towards the latency too
+                        latency = SystemClock.elapsedRealtime() - start;
+                    }
+                    mPool.releaseHost(request, latency);
+                }
+
+            }
+        }
+    }
 
+    /**
+     * The API has confirmed that the stale response is still valid. Refresh the cached items,
+     * deliver the stale response as the result, and let waiting requests read the fresh cache.
+     * @param request A conditional request
+     * @param networkResponse The 304 response
+     */
+    private void deliverNotModified(Request<?> request, NetworkResponse networkResponse) {
+
+        request.addEvent("not-modified");
+        updateSessionInfo(networkResponse.headers);
+
+        Map<String, Cache.Item> refreshed = new HashMap<String, Cache.Item>();
+        for (Map.Entry<String, Cache.Item> e : request.getStaleItems().entrySet()) {
+            refreshed.put(e.getKey(), e.getValue().refresh(request.getCacheTTL()));
+        }
+        Response<?> response = Response.fromSuccess(request.getStaleResponse().result, refreshed);
+        request.setStale(null, null);
+        mCache.put(request, response);
+        request.getTrace().mark(RequestTrace.Stage.DELIVERY);
+        mDelivery.postResponse(request, response);
+
+        for (Request<?> r : mRequestQueue.getRequestCoalescer().release(request)) {
+            if (r.isCanceled()) {
+                r.finish("cancelled-while-waiting");
+            } else {
+                mRequestQueue.add(r);
             }
         }
+
+    }
+
+    /**
+     * Hand the result of a request to all identical requests that have been waiting for it.
+     * Each waiting request parses the {@link NetworkResponse} on its own, as they may be of different types.
+     * A streamed body can only be read once, so in that case the waiting requests are queued again, to read the cache.
+     * @param primary The request that went to the network
+     * @param networkResponse The response, or {@code null} if the network failed
+     * @param error The network error, if any
+     */
+    private void deliverToWaiting(Request<?> primary, NetworkResponse networkResponse, ShopGunError error) {
+
+        for (Request<?> r : mRequestQueue.getRequestCoalescer().release(primary)) {
+
+            if (r.isCanceled()) {
+                r.finish("cancelled-while-waiting");
+                continue;
+            }
+
+            if (networkResponse != null && networkResponse.isStreamed()) {
+                // The primary has consumed the body, and cached the result, so the waiting request can read the cache
+                r.addEvent("requeued-after-streamed-response");
+                mRequestQueue.add(r);
+                continue;
+            }
+
+            r.addEvent("received-coalesced-response");
+            r.getTrace().mark(RequestTrace.Stage.PARSE);
+            Response<?> response;
+            if (networkResponse == null) {
+                response = Response.fromError(error);
+            } else {
+                NetworkResponse body = networkResponse;
+                if (body.isPooled() && !r.isResponsePoolable()) {
+                    // The waiting request expects a body of its own
+                    body = new NetworkResponse(body.statusCode, body.toByteArray(), body.headers);
+                }
+                response = r.parseNetworkResponse(body);
+                if (response.isSuccess()) {
+                    NetworkUtils.attachValidators(r, response, networkResponse);
+                    mCache.put(r, response);
+                }
+            }
+            r.getTrace().mark(RequestTrace.Stage.DELIVERY);
+            mDelivery.postResponse(r, response);
+
+        }
+
     }
 
     /**
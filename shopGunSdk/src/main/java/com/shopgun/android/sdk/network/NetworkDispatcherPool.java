@@ -0,0 +1,549 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import android.app.Activity;
+import android.os.SystemClock;
+
+import com.shopgun.android.sdk.ShopGun;
+import com.shopgun.android.sdk.corekit.LifecycleManager;
+import com.shopgun.android.sdk.corekit.NetworkUtils;
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A self-sizing pool of {@link NetworkDispatcher} threads.
+ *
+ * <p>Dispatchers are started on demand, when requests are queued faster than the idle dispatchers
+ * can take them, and retire again once they have been idle for a while. The number of dispatchers
+ * is capped by the type of the current connection, and halved when the observed latency indicates
+ * a congested link. Requests to a host that already has {@link #getMaxRequestsPerHost()} requests
+ * in flight are held back, until one of those requests completes.</p>
+ *
+ * <p>As the per-host limit is applied on top of the pool size, requests to a single host never run
+ * on more than {@link #getMaxRequestsPerHost()} dispatchers. A pool larger than that only pays off
+ * when requests go to several hosts.</p>
+ *
+ * <p>When the app goes to the background, see {@link LifecycleManager}, the pool is parked: idle
+ * dispatchers retire immediately and at most a single dispatcher will be running.</p>
+ */
+public class NetworkDispatcherPool {
+
+    public static final String TAG = Constants.getTag(NetworkDispatcherPool.class);
+
+    /** Default max number of dispatchers on a fast connection */
+    public static final int DEFAULT_MAX_POOL_SIZE = 4;
+
+    /**
+     * Default max number of simultaneous requests to a single host. Nearly all requests go to the API,
+     * so it matches {@link #DEFAULT_MAX_POOL_SIZE}, to let the whole pool work on them.
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = DEFAULT_MAX_POOL_SIZE;
+
+    /** Time an idle dispatcher waits for work before retiring */
+    private static final long KEEP_ALIVE = TimeUnit.SECONDS.toMillis(30);
+
+    /** Time an idle dispatcher waits for work before retiring, while parked */
+    private static final long PARKED_KEEP_ALIVE = TimeUnit.SECONDS.toMillis(2);
+
+    /** Max number of dispatchers while parked */
+    private static final int PARKED_POOL_SIZE = 1;
+
+    /** Max number of dispatchers on a 2G connection */
+    private static final int SLOW_POOL_SIZE = 2;
+
+    /** Average latency above which the connection is considered congested */
+    private static final long CONGESTED_LATENCY = TimeUnit.SECONDS.toMillis(3);
+
+    /** How often to query the system for the connection type */
+    private static final long CONNECTION_TYPE_TTL = TimeUnit.SECONDS.toMillis(10);
+
+    private final ShopGun mShopGun;
+    private final RequestQueue mRequestQueue;
+    private final Network mNetwork;
+    private final Cache mCache;
+    private final Delivery mDelivery;
+    private final int mMaxPoolSize;
+    private final int mMaxRequestsPerHost;
+
+    /** The queue of requests that are going out to the network */
+    private final DispatchQueue mQueue = new DispatchQueue();
+    private final Set<NetworkDispatcher> mDispatchers = new HashSet<NetworkDispatcher>();
+    private final Set<NetworkDispatcher> mIdleDispatchers = new HashSet<NetworkDispatcher>();
+
+    /** Number of requests in flight per host */
+    private final Map<String, Integer> mActivePerHost = new HashMap<String, Integer>();
+    /** Requests held back, because their host is at its limit */
+    private final Map<String, LinkedList<Request<?>>> mDeferred = new HashMap<String, LinkedList<Request<?>>>();
+
+    private final ParkingCallback mParkingCallback = new ParkingCallback();
+    private boolean mRunning = false;
+    private boolean mParked = false;
+    private int mConnectionType = NetworkUtils.CONNECTION_UNKNOWN;
+    private long mConnectionTypeTime = 0;
+
+    // Metrics
+    private long mAverageLatency = -1;
+    private long mCompletedCount = 0;
+    private long mHostLimitedCount = 0;
+    private int mDeferredCount = 0;
+    private int mPeakPoolSize = 0;
+    private int mStartedCount = 0;
+
+    public NetworkDispatcherPool(ShopGun shopGun, RequestQueue requestQueue, Network network, Cache cache, Delivery delivery) {
+        this(shopGun, requestQueue, network, cache, delivery, DEFAULT_MAX_POOL_SIZE, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * Create a new pool.
+     * @param shopGun The ShopGun SDK object to use for requests
+     * @param requestQueue The RequestQueue the dispatchers receive requests from
+     * @param network The network to perform requests with
+     * @param cache The cache to write responses to
+     * @param delivery For posting responses and errors
+     * @param maxPoolSize The max number of dispatchers
+     * @param maxRequestsPerHost The max number of simultaneous requests to a single host, this also caps
+     *                           the number of dispatchers working on a single host
+     */
+    public NetworkDispatcherPool(ShopGun shopGun, RequestQueue requestQueue, Network network, Cache cache,
+                                 Delivery delivery, int maxPoolSize, int maxRequestsPerHost) {
+        if (maxPoolSize < 1 || maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxPoolSize and maxRequestsPerHost must be positive");
+        }
+        mShopGun = shopGun;
+        mRequestQueue = requestQueue;
+        mNetwork = network;
+        mCache = cache;
+        mDelivery = delivery;
+        mMaxPoolSize = maxPoolSize;
+        mMaxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Get the queue feeding this pool. Adding a request to the queue will start a new dispatcher,
+     * if none are idle and the pool isn't at its current target size.
+     * @return A queue
+     */
+    public BlockingQueue<Request<?>> getQueue() {
+        return mQueue;
+    }
+
+    /**
+     * Start dispatching requests, and follow the lifecycle of the app.
+     */
+    public void start() {
+        LifecycleManager lm = mShopGun.getLifecycleManager();
+        synchronized (this) {
+            mRunning = true;
+            mParked = lm != null && !lm.isActive();
+        }
+        if (lm != null) {
+            lm.registerCallback(mParkingCallback);
+        }
+        ensureCapacity();
+    }
+
+    /**
+     * Stop all dispatchers. Dispatchers currently performing a request will stop once it completes.
+     */
+    public void stop() {
+        LifecycleManager lm = mShopGun.getLifecycleManager();
+        if (lm != null) {
+            lm.unregisterCallback(mParkingCallback);
+        }
+        synchronized (this) {
+            mRunning = false;
+            for (NetworkDispatcher d : mDispatchers) {
+                d.quit();
+            }
+            wakeIdleDispatchers();
+        }
+    }
+
+    /**
+     * Park, or unpark the pool. While parked, idle dispatchers retire right away, and at most
+     * a single dispatcher is running. This is handled automatically as the app moves between
+     * the foreground and background.
+     * @param parked {@code true} to park the pool
+     */
+    public synchronized void setParked(boolean parked) {
+        if (mParked == parked) {
+            return;
+        }
+        mParked = parked;
+        SgnLog.v(TAG, parked ? "Parking network dispatchers" : "Unparking network dispatchers");
+        if (parked) {
+            wakeIdleDispatchers();
+        } else {
+            ensureCapacity();
+        }
+    }
+
+    private void wakeIdleDispatchers() {
+        // Only idle dispatchers are interrupted, as an interrupt would abort a request in flight
+        for (NetworkDispatcher d : mIdleDispatchers) {
+            d.interrupt();
+        }
+    }
+
+    /**
+     * Start a new dispatcher, if requests are piling up and the pool is below its target size.
+     */
+    private synchronized void ensureCapacity() {
+        if (!mRunning) {
+            return;
+        }
+        int size = mDispatchers.size();
+        if (mQueue.size() > mIdleDispatchers.size() && size < getTargetPoolSize()) {
+            NetworkDispatcher d = new NetworkDispatcher(mShopGun, mRequestQueue, this, mNetwork, mCache, mDelivery);
+            d.setName("NetworkDispatcher-" + (++mStartedCount));
+            mDispatchers.add(d);
+            mPeakPoolSize = Math.max(mPeakPoolSize, mDispatchers.size());
+            d.start();
+        }
+    }
+
+    /**
+     * Wait for the next request.
+     * @param dispatcher The dispatcher asking for work
+     * @return A request, or {@code null} if the dispatcher should retire
+     */
+    Request<?> take(NetworkDispatcher dispatcher) {
+
+        while (true) {
+
+            long keepAlive;
+            synchronized (this) {
+                if (!mRunning || mDispatchers.size() > getTargetPoolSize()) {
+                    return retire(dispatcher);
+                }
+                mIdleDispatchers.add(dispatcher);
+                keepAlive = mParked ? PARKED_KEEP_ALIVE : KEEP_ALIVE;
+            }
+
+            Request<?> request = null;
+            try {
+                request = mQueue.poll(keepAlive, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // We've been parked or stopped, re-evaluate
+            } finally {
+                synchronized (this) {
+                    mIdleDispatchers.remove(dispatcher);
+                    // Clear an interrupt that raced with the request being taken
+                    Thread.interrupted();
+                }
+            }
+
+            if (request != null) {
+                return request;
+            }
+
+            synchronized (this) {
+                // Idle for a while, keep a single dispatcher warm while in the foreground.
+                // Never retire with work in the queue, it may have been added after we timed out.
+                if (mQueue.isEmpty() && (mParked || !mRunning || mDispatchers.size() > 1)) {
+                    return retire(dispatcher);
+                }
+            }
+
+        }
+
+    }
+
+    private Request<?> retire(NetworkDispatcher dispatcher) {
+        mDispatchers.remove(dispatcher);
+        return null;
+    }
+
+    /**
+     * Reserve a slot for the request's host. If the host is at its limit, the request is held back
+     * and re-queued once another request to the same host completes.
+     * @param request A request about to go to the network
+     * @return {@code true} if the request may proceed, {@code false} if it has been held back
+     */
+    synchronized boolean acquireHost(Request<?> request) {
+        String host = getHost(request.getUrl());
+        Integer active = mActivePerHost.get(host);
+        int count = active == null ? 0 : active;
+        if (count >= mMaxRequestsPerHost) {
+            LinkedList<Request<?>> waiting = mDeferred.get(host);
+            if (waiting == null) {
+                waiting = new LinkedList<Request<?>>();
+                mDeferred.put(host, waiting);
+            }
+            waiting.add(request);
+            mDeferredCount++;
+            mHostLimitedCount++;
+            request.addEvent("held-back-by-host-limit");
+            return false;
+        }
+        mActivePerHost.put(host, count + 1);
+        return true;
+    }
+
+    /**
+     * Release the slot reserved by {@link #acquireHost(Request)}, and let the next held back request
+     * to the host continue.
+     * @param request A request that has completed
+     * @param latency The time spent performing the request in milliseconds, or {@code -1} if it
+     *                never went to the network
+     */
+    void releaseHost(Request<?> request, long latency) {
+
+        Request<?> next = null;
+        synchronized (this) {
+            String host = getHost(request.getUrl());
+            Integer active = mActivePerHost.get(host);
+            if (active == null || active <= 1) {
+                mActivePerHost.remove(host);
+            } else {
+                mActivePerHost.put(host, active - 1);
+            }
+            LinkedList<Request<?>> waiting = mDeferred.get(host);
+            if (waiting != null) {
+                next = waiting.poll();
+                if (waiting.isEmpty()) {
+                    mDeferred.remove(host);
+                }
+                mDeferredCount--;
+            }
+            if (latency >= 0) {
+                mCompletedCount++;
+                // Exponentially weighted moving average, favouring the recent history
+                mAverageLatency = mAverageLatency < 0 ? latency : (mAverageLatency * 7 + latency) / 8;
+            }
+        }
+
+        if (next != null) {
+            next.addEvent("resumed-after-host-limit");
+            mQueue.add(next);
+        }
+
+    }
+
+    /**
+     * Get the number of dispatchers the pool currently aims for, given the connection type,
+     * the observed latency and whether the pool is parked.
+     * @return The target pool size
+     */
+    public synchronized int getTargetPoolSize() {
+
+        int size;
+        switch (getConnectionType()) {
+            case NetworkUtils.CONNECTION_NONE:
+                size = 1;
+                break;
+            case NetworkUtils.CONNECTION_SLOW:
+                size = SLOW_POOL_SIZE;
+                break;
+            case NetworkUtils.CONNECTION_MOBILE:
+                size = mMaxPoolSize / 2;
+                break;
+            default:
+                size = mMaxPoolSize;
+                break;
+        }
+
+        if (mAverageLatency > CONGESTED_LATENCY) {
+            // More parallel requests will only make a congested link worse
+            size /= 2;
+        }
+
+        if (mParked) {
+            size = Math.min(size, PARKED_POOL_SIZE);
+        }
+
+        return Math.max(1, Math.min(size, mMaxPoolSize));
+
+    }
+
+    /**
+     * Get the type of the current connection, as determined by {@link NetworkUtils#getConnectionType(android.content.Context)}.
+     * @return A connection type
+     */
+    public synchronized int getConnectionType() {
+        long now = SystemClock.elapsedRealtime();
+        if (mConnectionTypeTime == 0 || now - mConnectionTypeTime > CONNECTION_TYPE_TTL) {
+            mConnectionType = NetworkUtils.getConnectionType(mShopGun.getContext());
+            mConnectionTypeTime = now;
+        }
+        return mConnectionType;
+    }
+
+    /**
+     * Get the host part of a URL, including the port if any. Used for per-host limits.
+     */
+    static String getHost(String url) {
+        int start = url.indexOf("://");
+        start = start == -1 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        return url.substring(start, end).toLowerCase(Locale.US);
+    }
+
+    /**
+     * Get the max number of simultaneous requests to a single host.
+     * @return The max number of requests per host
+     */
+    public int getMaxRequestsPerHost() {
+        return mMaxRequestsPerHost;
+    }
+
+    /**
+     * Get the max number of dispatchers.
+     * @return The max pool size
+     */
+    public int getMaxPoolSize() {
+        return mMaxPoolSize;
+    }
+
+    /**
+     * Get the number of running dispatchers.
+     * @return The pool size
+     */
+    public synchronized int getPoolSize() {
+        return mDispatchers.size();
+    }
+
+    /**
+     * Get the number of dispatchers waiting for a request.
+     * @return The number of idle dispatchers
+     */
+    public synchronized int getIdleCount() {
+        return mIdleDispatchers.size();
+    }
+
+    /**
+     * Get the largest number of dispatchers that have been running at the same time.
+     * @return The peak pool size
+     */
+    public synchronized int getPeakPoolSize() {
+        return mPeakPoolSize;
+    }
+
+    /**
+     * Get the number of dispatchers started since the pool was created.
+     * @return The number of dispatchers started
+     */
+    public synchronized int getStartedCount() {
+        return mStartedCount;
+    }
+
+    /**
+     * Get the number of requests waiting in the queue for a dispatcher.
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    /**
+     * Get the number of requests currently held back by the per-host limit.
+     * @return The number of held back requests
+     */
+    public synchronized int getDeferredCount() {
+        return mDeferredCount;
+    }
+
+    /**
+     * Get the number of times a request has been held back by the per-host limit.
+     * @return The number of host limited requests
+     */
+    public synchronized long getHostLimitedCount() {
+        return mHostLimitedCount;
+    }
+
+    /**
+     * Get the number of requests that have been performed.
+     * @return The number of completed requests
+     */
+    public synchronized long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    /**
+     * Get the moving average of the time spent performing requests.
+     * @return The average latency in milliseconds, or {@code -1} if no requests have completed
+     */
+    public synchronized long getAverageLatency() {
+        return mAverageLatency;
+    }
+
+    /**
+     * Check whether the pool is parked, see {@link #setParked(boolean)}.
+     * @return {@code true} if parked
+     */
+    public synchronized boolean isParked() {
+        return mParked;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s[size=%s, idle=%s, target=%s, peak=%s, started=%s, queued=%s, " +
+                        "deferred=%s, hostLimited=%s, completed=%s, avgLatency=%s, connection=%s, parked=%s]",
+                getClass().getSimpleName(), mDispatchers.size(), mIdleDispatchers.size(), getTargetPoolSize(),
+                mPeakPoolSize, mStartedCount, mQueue.size(), mDeferredCount, mHostLimitedCount,
+                mCompletedCount, mAverageLatency, mConnectionType, mParked);
+    }
+
+    /**
+     * Starts dispatchers as requests are added, {@link PriorityBlockingQueue#add(Object)} and
+     * {@link PriorityBlockingQueue#put(Object)} both go through {@link #offer(Request)}.
+     */
+    private class DispatchQueue extends PriorityBlockingQueue<Request<?>> {
+
+        @Override
+        public boolean offer(Request<?> request) {
+            boolean added = super.offer(request);
+            ensureCapacity();
+            return added;
+        }
+
+    }
+
+    private class ParkingCallback extends LifecycleManager.SimpleCallback {
+
+        @Override
+        public void onStart(Activity activity) {
+            setParked(false);
+        }
+
+        @Override
+        public void onDestroy(Activity activity) {
+            // Called once the last activity is gone, i.e. the app is in the background
+            setParked(true);
+        }
+
+    }
+
+}
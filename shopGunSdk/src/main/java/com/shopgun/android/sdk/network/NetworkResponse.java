@@ -16,19 +16,42 @@
 
 package com.shopgun.android.sdk.network;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
 
 public class NetworkResponse {
 
+    private static final byte[] EMPTY = new byte[0];
+
     /** The HTTP status code. */
     public final int statusCode;
 
-    /** Raw data from this response. */
+    /**
+     * Raw data from this response. If the response is backed by a pooled buffer, only the first
+     * {@link #length} bytes are valid, see {@link Request#isResponsePoolable()}.
+     */
     public final byte[] data;
 
+    /** The number of bytes in {@link #data} that belong to the body. */
+    public final int length;
+
     /** Response headers. */
     public final Map<String, String> headers;
 
+    /** The pool to hand data back to, or {@code null} if data isn't pooled */
+    private ByteArrayPool mPool;
+
+    /** The body read straight from the network, or {@code null} if the body is in data */
+    private InputStream mStream;
+    /** Closed once the response is recycled, e.g. the connection the stream is read from */
+    private Closeable mSource;
+
     /**
      * Creates a new network response. From data received from a data source
      * @param statusCode the HTTP status code
@@ -36,9 +59,126 @@ public class NetworkResponse {
      * @param headers Headers returned with this response, or null for none
      */
     public NetworkResponse(int statusCode, byte[] data, Map<String, String> headers) {
+        this(statusCode, data, data.length, headers, null);
+    }
+
+    /**
+     * Creates a new network response, backed by a buffer from a {@link ByteArrayPool}.
+     * @param statusCode the HTTP status code
+     * @param data A buffer containing the response body
+     * @param length The length of the body
+     * @param headers Headers returned with this response, or null for none
+     * @param pool The pool data belongs to, or {@code null}
+     */
+    public NetworkResponse(int statusCode, byte[] data, int length, Map<String, String> headers, ByteArrayPool pool) {
         this.statusCode = statusCode;
         this.data = data;
+        this.length = length;
         this.headers = headers;
+        this.mPool = pool;
+    }
+
+    /**
+     * Creates a new network response, with a body that is read straight from the network, see
+     * {@link Request#isResponseStreamable()}. {@link #data} is empty, and the body can only be read
+     * once, with {@link #getBodyStream()}.
+     * @param statusCode the HTTP status code
+     * @param stream The body
+     * @param source Closed when the response is recycled, or {@code null}
+     * @param headers Headers returned with this response, or null for none
+     */
+    public NetworkResponse(int statusCode, InputStream stream, Closeable source, Map<String, String> headers) {
+        this(statusCode, EMPTY, 0, headers, null);
+        mStream = stream;
+        mSource = source;
+    }
+
+    /**
+     * Get a read-only view of the body. The view is only valid until the response is recycled.
+     * @return A {@link ByteBuffer} with the body
+     */
+    public ByteBuffer getBody() {
+        checkNotStreamed();
+        return ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a stream reading the body, without copying it. The stream is only valid until the response is recycled.
+     * If the response is streamed, see {@link #isStreamed()}, the same stream is returned every time.
+     * @return An {@link InputStream} with the body
+     */
+    public synchronized InputStream getBodyStream() {
+        if (mStream != null) {
+            return mStream;
+        }
+        return new ByteArrayInputStream(data, 0, length);
+    }
+
+    /**
+     * Decode the body into a {@link String}.
+     * @param encoding The character encoding of the body, the platform default is used if it isn't supported
+     * @return The body
+     */
+    public String getBodyAsString(String encoding) {
+        checkNotStreamed();
+        try {
+            return new String(data, 0, length, encoding);
+        } catch (UnsupportedEncodingException e) {
+            return new String(data, 0, length);
+        }
+    }
+
+    /**
+     * Get the body as a {@code byte[]} of its own, that is safe to keep after the response is recycled.
+     * @return The body
+     */
+    public synchronized byte[] toByteArray() {
+        checkNotStreamed();
+        if (mPool == null && length == data.length) {
+            return data;
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    /**
+     * Check if the body is backed by a pooled buffer.
+     * @return {@code true} if the response must be recycled, else {@code false}
+     */
+    public synchronized boolean isPooled() {
+        return mPool != null;
+    }
+
+    /**
+     * Check if the body is read straight from the network, and only available through {@link #getBodyStream()}.
+     * @return {@code true} if the body is streamed, else {@code false}
+     */
+    public synchronized boolean isStreamed() {
+        return mStream != null;
+    }
+
+    private void checkNotStreamed() {
+        if (isStreamed()) {
+            throw new IllegalStateException("A streamed body can only be read with getBodyStream()");
+        }
+    }
+
+    /**
+     * Hand the buffer back to its pool, if any, and close the source of a streamed body.
+     * The body must not be read after this.
+     */
+    public synchronized void recycle() {
+        if (mPool != null) {
+            mPool.release(data);
+            mPool = null;
+        }
+        if (mSource != null) {
+            try {
+                mSource.close();
+            } catch (IOException e) {
+                // Nothing left to read anyway
+            }
+            mSource = null;
+        }
     }
 
 }
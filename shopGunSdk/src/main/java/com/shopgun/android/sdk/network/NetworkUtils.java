@@ -18,15 +18,84 @@ package com.shopgun.android.sdk.network;
 
 import com.shopgun.android.sdk.SgnLocation;
 import com.shopgun.android.sdk.api.Parameters;
+import com.shopgun.android.sdk.utils.SgnUtils;
 
 import java.util.Map;
 
 public class NetworkUtils {
 
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /** Status code of a conditional request, where the cached data is still valid */
+    public static final int SC_NOT_MODIFIED = 304;
+
     private NetworkUtils() {
         // private
     }
 
+    /**
+     * Determine if a {@link Response} to a given {@link Request} may be added to a {@link Cache}.
+     * Only successful, non-cached responses to a cacheable {@link Request.Method#GET} qualify.
+     * @param request The request performed
+     * @param response The response to the request
+     * @return {@code true} if the response may be cached, else {@code false}
+     */
+    public static boolean isCacheable(Request<?> request, Response<?> response) {
+        return request.getMethod() == Request.Method.GET && request.isCacheable() &&
+                !request.isCacheHit() && response.cache != null;
+    }
+
+    /**
+     * Get a header value, ignoring the case of the header name.
+     * @param headers The headers to search, may be {@code null}
+     * @param name The name of the header
+     * @return The value, or {@code null} if the header isn't present
+     */
+    public static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value == null) {
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                if (name.equalsIgnoreCase(e.getKey())) {
+                    return e.getValue();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Attach the ETag and Last-Modified headers of a {@link NetworkResponse} to the {@link Cache.Item}
+     * representing the whole response, so it can be revalidated once it expires. That's the item keyed
+     * by the request url, or the only item, if the response created just one.
+     * @param request The request performed
+     * @param response The parsed response
+     * @param networkResponse The response from the network
+     */
+    public static void attachValidators(Request<?> request, Response<?> response, NetworkResponse networkResponse) {
+
+        String etag = getHeader(networkResponse.headers, HEADER_ETAG);
+        String lastModified = getHeader(networkResponse.headers, HEADER_LAST_MODIFIED);
+        if ((etag == null && lastModified == null) || response.cache == null || response.cache.isEmpty()) {
+            return;
+        }
+
+        Cache.Item item = response.cache.get(SgnUtils.requestToUrlAndQueryString(request));
+        if (item == null && response.cache.size() == 1) {
+            item = response.cache.values().iterator().next();
+        }
+        if (item != null) {
+            item.etag = etag;
+            item.lastModified = lastModified;
+        }
+
+    }
+
     public static void appendLocationParams(Map<String, String> map, SgnLocation l, boolean excludeRadius) {
 
         if (!l.isSet()) {
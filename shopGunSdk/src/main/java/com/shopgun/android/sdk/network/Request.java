@@ -16,6 +16,8 @@
 
 package com.shopgun.android.sdk.network;
 
+import android.os.SystemClock;
+
 import com.shopgun.android.sdk.log.EventLog;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.network.Response.Listener;
@@ -48,15 +50,23 @@ public abstract class Request<T> implements Comparable<Request<T>> {
 
     /** Request method of this request.  Currently supports GET, POST, PUT, and DELETE. */
     private final Method mMethod;
-    /** Log of this request */
+    /** Log of this request, only kept when a {@link RequestDebugger} is attached */
     private final EventLog mEventLog;
     private final JSONObject mNetworkLog;
+    /** Timestamps of the stages this request has been through */
+    private final RequestTrace mTrace = new RequestTrace();
     /** URL of this request. */
     private String mUrl;
     /** Headers to be used in this request */
     private Map<String, String> mHeaders = new HashMap<String, String>();
     /** Sequence number used for prioritizing the queue */
     private int mSequence = 0;
+    /** Time the request was first added to the RequestQueue, see {@link SystemClock#elapsedRealtime()} */
+    private long mQueueTime = 0;
+    /** Time by which the request should have been dispatched, or {@code 0} for none */
+    private long mDeadline = 0;
+    /** Rank assigned by the {@link RequestScheduler}, lower ranks are dispatched first */
+    private long mRank = 0;
     /** Item for containing cache items */
     private Map<String, Cache.Item> mCache = new HashMap<String, Cache.Item>();
     /** Parameters to add to request */
@@ -74,6 +84,12 @@ public abstract class Request<T> implements Comparable<Request<T>> {
     private boolean mFinished = false;
     private int mTimeout = CONNECTION_TIME_OUT;
     private boolean mCacheHit = false;
+    private boolean mStaleWhileRevalidate = false;
+    /** An expired response found in the cache, and the items it was built from, pending revalidation */
+    private Response<?> mStaleResponse;
+    private Map<String, Cache.Item> mStaleItems;
+    /** Validators from the stale items, sent along with the headers while revalidating */
+    private Map<String, String> mConditionalHeaders;
 
     private RequestDebugger mDebugger;
 
@@ -106,28 +122,46 @@ public abstract class Request<T> implements Comparable<Request<T>> {
     }
 
     protected void resetstate() {
-        mEventLog.add("request-state-reset");
+        addEvent("request-state-reset");
         mFinished = false;
         mCanceled = false;
         mCacheHit = false;
+        mStaleResponse = null;
+        mStaleItems = null;
+        mConditionalHeaders = null;
+        mQueueTime = 0;
+        mTrace.reset();
     }
 
     /**
-     * Adds event to a request, for later debugging purposes
+     * Adds event to a request, for later debugging purposes.
+     * Events are only recorded when a {@link RequestDebugger} has been set.
      * @param event An event
      */
     public void addEvent(String event) {
-        mEventLog.add(event);
+        if (mDebugger != null) {
+            mEventLog.add(event);
+        }
     }
 
     /**
-     * Get the log for this request, log contains actions, and timings that have been performed on this request
+     * Get the log for this request, log contains actions, and timings that have been performed on this request.
+     * The log is only kept when a {@link RequestDebugger} has been set, see {@link #getTrace()} for timings
+     * that are always available.
      * @return the EventLog for this request
      */
     public EventLog getLog() {
         return mEventLog;
     }
 
+    /**
+     * Get the timestamps of the stages this request has been through in the {@link RequestQueue}.
+     * @return A {@link RequestTrace}
+     */
+    public RequestTrace getTrace() {
+        return mTrace;
+    }
+
     /** Mark this request as canceled.  No callback will be delivered. */
     public synchronized void cancel() {
         mCanceled = true;
@@ -162,11 +196,14 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         }
 
         addEvent(reason);
+        mTrace.mark(RequestTrace.Stage.FINISHED);
 
-        try {
-            mNetworkLog.put("duration", mEventLog.getTotalDuration());
-        } catch (JSONException e) {
-            SgnLog.e(TAG, "", e);
+        if (mDebugger != null) {
+            try {
+                mNetworkLog.put("duration", mEventLog.getTotalDuration());
+            } catch (JSONException e) {
+                SgnLog.e(TAG, "", e);
+            }
         }
 
         if (mSaveNetworkLog) {
@@ -215,6 +252,36 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return this;
     }
 
+    /**
+     * Get the time by which this request should have been dispatched to the network.
+     * @return A time in the {@link SystemClock#elapsedRealtime()} time base, or {@code 0} if there is no deadline
+     */
+    public long getDeadline() {
+        return mDeadline;
+    }
+
+    /**
+     * Set a deadline for dispatching this request. Requests are dispatched earliest deadline first,
+     * and a request without a deadline is ranked as if it had one, depending on its {@link Priority}.
+     * See {@link RequestScheduler}.
+     * @param delay The max time the request should wait in the queues
+     * @param unit The unit of delay
+     * @return this object
+     */
+    public Request setDeadline(long delay, TimeUnit unit) {
+        return setDeadlineAt(SystemClock.elapsedRealtime() + unit.toMillis(delay));
+    }
+
+    /**
+     * Set a deadline for dispatching this request, as an absolute time.
+     * @param deadline A time in the {@link SystemClock#elapsedRealtime()} time base, or {@code 0} to remove the deadline
+     * @return this object
+     */
+    public Request setDeadlineAt(long deadline) {
+        mDeadline = deadline;
+        return this;
+    }
+
     /**
      * Returns a list of headers for this request.
      * @return A map of headers
@@ -223,6 +290,19 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return mHeaders;
     }
 
+    /**
+     * Returns the headers to send over the network. This is a copy of {@link #getHeaders()}, with
+     * the conditional headers added while a stale cache response is being revalidated.
+     * @return A new map of headers
+     */
+    public synchronized Map<String, String> getNetworkHeaders() {
+        Map<String, String> headers = new HashMap<String, String>(mHeaders);
+        if (mConditionalHeaders != null) {
+            headers.putAll(mConditionalHeaders);
+        }
+        return headers;
+    }
+
     /**
      * Set any headers wanted in the request
      * @param headers to include
@@ -306,6 +386,44 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return this;
     }
 
+    /**
+     * Find out if an expired response from cache will be delivered, while the request is revalidated.
+     * @return true if stale responses are delivered, else false
+     */
+    public boolean isStaleWhileRevalidate() {
+        return mStaleWhileRevalidate;
+    }
+
+    /**
+     * Set whether an expired response from cache should be delivered while the request goes to the
+     * network. The expired response is delivered to {@link Response.IntermediateListener#onIntermediate(Object)},
+     * and the listener will still receive {@link Listener#onComplete(Object, ShopGunError)} once the
+     * request finishes. Requires a {@link StaleCache}.
+     * @param staleWhileRevalidate true to deliver stale responses, else false
+     * @return this object
+     */
+    public Request setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+        mStaleWhileRevalidate = staleWhileRevalidate;
+        return this;
+    }
+
+    synchronized void setStale(Response<?> response, Map<String, Cache.Item> items) {
+        mStaleResponse = response;
+        mStaleItems = items;
+    }
+
+    synchronized void setConditionalHeaders(Map<String, String> headers) {
+        mConditionalHeaders = headers;
+    }
+
+    synchronized Response<?> getStaleResponse() {
+        return mStaleResponse;
+    }
+
+    synchronized Map<String, Cache.Item> getStaleItems() {
+        return mStaleItems;
+    }
+
     /**
      * The time-to-live for a given Cache.Item this request may create
      * @return request time-to-live in milliseconds
@@ -477,6 +595,30 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         mSequence = seq;
     }
 
+    /**
+     * Get the time the request was first added to a {@link RequestQueue}, used for aging.
+     * @return A time in the {@link SystemClock#elapsedRealtime()} time base, or {@code 0} if not queued yet
+     */
+    long getQueueTime() {
+        return mQueueTime;
+    }
+
+    void setQueueTime(long queueTime) {
+        mQueueTime = queueTime;
+    }
+
+    /**
+     * Get the rank the {@link RequestScheduler} has given this request.
+     * @return A rank, requests with a lower rank are dispatched first
+     */
+    long getRank() {
+        return mRank;
+    }
+
+    void setRank(long rank) {
+        mRank = rank;
+    }
+
     /**
      * Get parameter encoding of the request. Useful for decoding data.
      * @return the encoding
@@ -501,6 +643,32 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return null;
     }
 
+    /**
+     * Determine if the {@link NetworkResponse} to this request may be backed by a pooled buffer.
+     * Requests that return {@code true} must only read the first {@link NetworkResponse#length}
+     * bytes of the body, and mustn't keep a reference to {@link NetworkResponse#data} after
+     * {@link #parseNetworkResponse(NetworkResponse)} has returned. A pooled buffer is usually larger
+     * than the body, and holds bytes from earlier responses past the body, so only requests that
+     * read the body with {@link NetworkResponse#getBodyStream()}, or the other body accessors,
+     * should return {@code true}. Subclasses of the basic requests, e.g. a {@code StringRequest},
+     * don't inherit pooling.
+     * @return true if the response may be pooled, else false
+     */
+    public boolean isResponsePoolable() {
+        return false;
+    }
+
+    /**
+     * Determine if the body of a successful {@link NetworkResponse} to this request may be read straight
+     * from the network, rather than buffered first. Requests that return {@code true} must read the body
+     * once, with {@link NetworkResponse#getBodyStream()}. Not all {@link Network} implementations can
+     * stream a body, so it may still be buffered.
+     * @return true if the response may be streamed, else false
+     */
+    public boolean isResponseStreamable() {
+        return false;
+    }
+
     /**
      * Method to be implemented, should handle parsing of network data, and simultaneously create
      * a Cache.Item (or several Cache.Item) if such a item(s) can and shall be created.
@@ -531,7 +699,22 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         }
     }
 
+    /**
+     * Deliver a stale response to the user, if the callback-listener is a
+     * {@link Response.IntermediateListener}. The request isn't finished by this.
+     * @param response to deliver
+     */
+    @SuppressWarnings("unchecked")
+    public void deliverIntermediateResponse(T response) {
+        if (mListener instanceof Response.IntermediateListener) {
+            ((Response.IntermediateListener<T>) mListener).onIntermediate(response);
+        }
+    }
+
     public int compareTo(Request<T> other) {
+        if (mRank != other.mRank) {
+            return mRank < other.mRank ? -1 : 1;
+        }
         Priority left = this.getPriority();
         Priority right = other.getPriority();
         return left == right ? this.mSequence - other.mSequence : right.ordinal() - left.ordinal();
@@ -545,6 +728,15 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return mDebugger;
     }
 
+    /**
+     * Check if the {@link #getLog() event log} and {@link #getNetworkLog() network log} are kept for this request.
+     * They are only needed by a {@link RequestDebugger}, and are too expensive to build for every request.
+     * @return {@code true} if a {@link RequestDebugger} has been set
+     */
+    public boolean isDebugging() {
+        return mDebugger != null;
+    }
+
     /**
      * Set a debugger to perform debugging when {@link Request} finishes.
      *
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.api.Endpoints;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of {@link Request.Method#GET} requests that are on their way to the network, so
+ * identical requests can wait for the one in flight, rather than performing the same call again.
+ *
+ * <p>Requests are identical when their method, url and query parameters are the same, see
+ * {@link SgnUtils#requestToUrlAndQueryString(Request)}. The first request to reach the network
+ * is the primary, and every identical request arriving while it's in flight is parked. Once the
+ * primary gets a {@link NetworkResponse}, it's handed to all the parked requests.</p>
+ */
+public class RequestCoalescer {
+
+    public static final String TAG = Constants.getTag(RequestCoalescer.class);
+
+    /** Identical requests waiting for a primary, by key */
+    private final Map<String, LinkedList<Request<?>>> mWaiting = new HashMap<String, LinkedList<Request<?>>>();
+
+    /** The primary requests in flight, and the key they were registered with */
+    private final Map<Request<?>, String> mPrimaries = new IdentityHashMap<Request<?>, String>();
+
+    private final AtomicInteger mParkedCount = new AtomicInteger();
+    private final AtomicInteger mSavedCount = new AtomicInteger();
+
+    private volatile boolean mEnabled = true;
+
+    /**
+     * Enable or disable coalescing. Requests already parked will still be released.
+     * @param enabled {@code true} to enable coalescing, else {@code false}
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Park the request if an identical request is already in flight, otherwise the request is
+     * registered as the primary for its key.
+     * @param request A request about to be sent to the network
+     * @return {@code true} if the request was parked, and must not be sent to the network
+     */
+    public boolean park(Request<?> request) {
+
+        if (!mEnabled || !isCoalescable(request)) {
+            return false;
+        }
+
+        String key = getKey(request);
+        synchronized (this) {
+
+            if (mPrimaries.containsKey(request)) {
+                // The primary is being retried, e.g. after a session recovery
+                return false;
+            }
+
+            LinkedList<Request<?>> waiting = mWaiting.get(key);
+            if (waiting == null) {
+                mWaiting.put(key, new LinkedList<Request<?>>());
+                mPrimaries.put(request, key);
+                return false;
+            }
+
+            waiting.add(request);
+
+        }
+
+        request.addEvent("waiting-for-similar-request");
+        mParkedCount.incrementAndGet();
+        return true;
+
+    }
+
+    /**
+     * Release all requests waiting for the given primary. Once released, new identical requests
+     * will go to the network.
+     * @param primary A request that has received its {@link NetworkResponse}
+     * @return The requests that were waiting, possibly an empty list
+     */
+    public List<Request<?>> release(Request<?> primary) {
+
+        LinkedList<Request<?>> waiting;
+        synchronized (this) {
+            String key = mPrimaries.remove(primary);
+            if (key == null) {
+                return Collections.emptyList();
+            }
+            waiting = mWaiting.remove(key);
+        }
+
+        if (waiting == null) {
+            return Collections.emptyList();
+        }
+        mSavedCount.addAndGet(waiting.size());
+        return waiting;
+
+    }
+
+    /**
+     * Hand the key of a cancelled primary to the first waiting request that isn't cancelled.
+     * Waiting requests that have been cancelled are finished.
+     * @param primary A cancelled primary request
+     * @return The new primary, that must be sent to the network, or {@code null} if none is waiting
+     */
+    public Request<?> promote(Request<?> primary) {
+
+        List<Request<?>> cancelled = new ArrayList<Request<?>>();
+        Request<?> promoted = null;
+        synchronized (this) {
+
+            String key = mPrimaries.remove(primary);
+            LinkedList<Request<?>> waiting = key == null ? null : mWaiting.get(key);
+            if (waiting != null) {
+                while (promoted == null && !waiting.isEmpty()) {
+                    Request<?> r = waiting.removeFirst();
+                    if (r.isCanceled()) {
+                        cancelled.add(r);
+                    } else {
+                        promoted = r;
+                    }
+                }
+                if (promoted == null) {
+                    mWaiting.remove(key);
+                } else {
+                    mPrimaries.put(promoted, key);
+                }
+            }
+
+        }
+
+        for (Request<?> r : cancelled) {
+            r.finish("cancelled-while-waiting");
+        }
+        if (promoted != null) {
+            promoted.addEvent("promoted-to-primary");
+        }
+        return promoted;
+
+    }
+
+    /**
+     * Get the number of network calls saved, by handing a response to waiting requests.
+     * @return The number of requests that didn't have to go to the network
+     */
+    public int getSavedCount() {
+        return mSavedCount.get();
+    }
+
+    /**
+     * Get the number of requests that have been parked, including requests still waiting.
+     * @return The number of parked requests
+     */
+    public int getParkedCount() {
+        return mParkedCount.get();
+    }
+
+    /**
+     * Get the number of coalescable requests currently in flight.
+     * @return The number of primary requests
+     */
+    public synchronized int getInFlightCount() {
+        return mPrimaries.size();
+    }
+
+    private static boolean isCoalescable(Request<?> request) {
+        return request.getMethod() == Request.Method.GET &&
+                request.getUrl() != null &&
+                !request.getUrl().contains(Endpoints.SESSIONS);
+    }
+
+    private static String getKey(Request<?> request) {
+        return request.getMethod().toString() + " " + SgnUtils.requestToUrlAndQueryString(request);
+    }
+
+}
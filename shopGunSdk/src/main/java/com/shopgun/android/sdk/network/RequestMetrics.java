@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.network.RequestTrace.Stage;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated metrics for the requests passing through a {@link RequestQueue}.
+ *
+ * <p>For each finished request, the time spent in every {@link Stage} and in total is recorded in
+ * a {@link Histogram}, and the request is counted as a cache hit, a network request or a coalesced
+ * request. Only requests that got a response are counted. Finished requests can be exported by
+ * registering a {@link Listener}; with no listeners registered, exporting costs a single volatile read.</p>
+ */
+public class RequestMetrics {
+
+    public static final String TAG = Constants.getTag(RequestMetrics.class);
+
+    /**
+     * Callback for exporting the trace of every finished request.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread that finished the request, so implementations should be quick.
+         * @param request The finished request
+         * @param trace The stages of the request
+         */
+        void onRequestFinished(Request<?> request, RequestTrace trace);
+    }
+
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+
+    private final Histogram[] mStages = new Histogram[RequestTrace.STAGES.length];
+    private final Histogram mTotal = new Histogram();
+    private final AtomicLong mCacheHits = new AtomicLong();
+    private final AtomicLong mNetworkRequests = new AtomicLong();
+    private final AtomicLong mCoalesced = new AtomicLong();
+
+    /** Copy-on-write, so the hot path reads it without locking */
+    private volatile Listener[] mListeners = NO_LISTENERS;
+
+    public RequestMetrics() {
+        for (int i = 0; i < mStages.length; i++) {
+            mStages[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Record a finished request.
+     * @param request A request
+     */
+    void onFinished(Request<?> request) {
+
+        RequestTrace trace = request.getTrace();
+        if (!trace.hasReached(Stage.DELIVERY)) {
+            // Cancelled, or a LoaderRequest that only spawns other requests
+            return;
+        }
+
+        // The last stage has no duration
+        for (int i = 0; i < mStages.length - 1; i++) {
+            mStages[i].record(trace.getDuration(RequestTrace.STAGES[i]));
+        }
+        mTotal.record(trace.getDuration(Stage.QUEUED, Stage.FINISHED));
+
+        if (request.isCacheHit()) {
+            mCacheHits.incrementAndGet();
+        } else if (trace.hasReached(Stage.NETWORK)) {
+            mNetworkRequests.incrementAndGet();
+        } else {
+            mCoalesced.incrementAndGet();
+        }
+
+        Listener[] listeners = mListeners;
+        if (listeners.length == 0) {
+            return;
+        }
+        for (Listener l : listeners) {
+            try {
+                l.onRequestFinished(request, trace);
+            } catch (Exception e) {
+                SgnLog.e(TAG, "RequestMetrics.Listener failed", e);
+            }
+        }
+
+    }
+
+    /**
+     * Register a listener to be notified of every finished request.
+     * @param listener A listener
+     */
+    public synchronized void addListener(Listener listener) {
+        if (listener == null || Arrays.asList(mListeners).contains(listener)) {
+            return;
+        }
+        Listener[] listeners = Arrays.copyOf(mListeners, mListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        mListeners = listeners;
+    }
+
+    /**
+     * Unregister a listener.
+     * @param listener A listener
+     */
+    public synchronized void removeListener(Listener listener) {
+        int index = Arrays.asList(mListeners).indexOf(listener);
+        if (index == -1) {
+            return;
+        }
+        Listener[] listeners = new Listener[mListeners.length - 1];
+        System.arraycopy(mListeners, 0, listeners, 0, index);
+        System.arraycopy(mListeners, index + 1, listeners, index, listeners.length - index);
+        mListeners = listeners;
+    }
+
+    /**
+     * Get the histogram of the time requests spend in a stage.
+     * @param stage A stage, other than {@link Stage#FINISHED}
+     * @return A histogram
+     */
+    public Histogram getHistogram(Stage stage) {
+        return mStages[stage.ordinal()];
+    }
+
+    /**
+     * Get the histogram of the time from a request is queued, until it's finished.
+     * @return A histogram
+     */
+    public Histogram getTotalHistogram() {
+        return mTotal;
+    }
+
+    /**
+     * Get the number of requests answered from the cache.
+     * @return The number of cache hits
+     */
+    public long getCacheHitCount() {
+        return mCacheHits.get();
+    }
+
+    /**
+     * Get the number of requests that went to the network.
+     * @return The number of network requests
+     */
+    public long getNetworkCount() {
+        return mNetworkRequests.get();
+    }
+
+    /**
+     * Get the number of requests answered by an identical request in flight, see {@link RequestCoalescer}.
+     * @return The number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return mCoalesced.get();
+    }
+
+    /**
+     * Get the share of requests that didn't need a network request of their own.
+     * @return The ratio in the range {@code [0, 1]}, or {@code 0} if no requests have been counted
+     */
+    public double getCacheHitRatio() {
+        long hits = mCacheHits.get() + mCoalesced.get();
+        long total = hits + mNetworkRequests.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Forget all recorded metrics. Listeners are kept.
+     */
+    public void reset() {
+        for (Histogram h : mStages) {
+            h.reset();
+        }
+        mTotal.reset();
+        mCacheHits.set(0);
+        mNetworkRequests.set(0);
+        mCoalesced.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+        sb.append("[cacheHits=").append(getCacheHitCount())
+                .append(", network=").append(getNetworkCount())
+                .append(", coalesced=").append(getCoalescedCount())
+                .append(", hitRatio=").append(getCacheHitRatio()).append("]");
+        for (int i = 0; i < mStages.length - 1; i++) {
+            sb.append("\n").append(RequestTrace.STAGES[i]).append(": ").append(mStages[i]);
+        }
+        sb.append("\nTOTAL: ").append(mTotal);
+        return sb.toString();
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package com.shopgun.android.sdk.network;
 
+import android.os.SystemClock;
+
 import com.shopgun.android.sdk.ShopGun;
 import com.shopgun.android.sdk.api.Endpoints;
 import com.shopgun.android.sdk.api.Parameters;
@@ -33,6 +35,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -40,9 +43,6 @@ public class RequestQueue {
 
     public static final String TAG = Constants.getTag(RequestQueue.class);
 
-    /** Number of network request dispatcher threads to start. */
-    private static final int DEFAULT_NETWORK_THREAD_POOL_SIZE = 4;
-
     /** ShopGun object controlling the whole lot */
     private final ShopGun mShopGun;
 
@@ -52,14 +52,20 @@ public class RequestQueue {
     /** Queue for preparation, and cache checks */
     private final PriorityBlockingQueue<Request<?>> mCacheQueue = new PriorityBlockingQueue<Request<?>>();
 
-    /** The queue of requests that are actually going out to the network. */
-    private final PriorityBlockingQueue<Request<?>> mNetworkQueue = new PriorityBlockingQueue<Request<?>>();
+    /** The queue of requests that are actually going out to the network, owned by mDispatcherPool. */
+    private final BlockingQueue<Request<?>> mNetworkQueue;
 
     /** Queue of items waiting for session request */
     private final LinkedList<Request<?>> mSessionParking = new LinkedList<Request<?>>();
 
-    /** Queue of items waiting for similar request to finish */
-//    private final Map<String, LinkedList<Request>> mRequestParking = new HashMap<String, LinkedList<Request>>();
+    /** Stage timings, cache hit ratio e.t.c. of the requests in this queue */
+    private final RequestMetrics mMetrics = new RequestMetrics();
+
+    /** Decides the order requests are dispatched in */
+    private final RequestScheduler mScheduler = new RequestScheduler();
+
+    /** Requests waiting for an identical request to finish */
+    private final RequestCoalescer mRequestCoalescer = new RequestCoalescer();
     /** Network interface for performing requests. */
     private final Network mNetwork;
     /** Cache interface for retrieving and storing responses. */
@@ -73,7 +79,7 @@ public class RequestQueue {
     /* tmp var for testing */
     public int dataOut = 0;
     /** Network dispatchers, the threads that will actually perform the work */
-    private NetworkDispatcher[] mNetworkDispatchers;
+    private final NetworkDispatcherPool mDispatcherPool;
     /** Queue of requests, that need validation, and cache check */
     private CacheDispatcher mCacheDispatcher;
 
@@ -84,15 +90,17 @@ public class RequestQueue {
      * @param shopGun, the ShopGun SDK object to use for requests
      * @param cache to use for this RequestQueue
      * @param network the implementation you want to use for this RequestQueue
-     * @param poolSize, number of threads to do requests
+     * @param poolSize, max number of threads to do requests
      * @param delivery object for returning objects to UI thread
      */
     public RequestQueue(ShopGun shopGun, Cache cache, Network network, int poolSize, Delivery delivery) {
         mShopGun = shopGun;
         mCache = cache;
         mNetwork = network;
-        mNetworkDispatchers = new NetworkDispatcher[poolSize];
         mDelivery = delivery;
+        mDispatcherPool = new NetworkDispatcherPool(shopGun, this, network, cache, delivery,
+                poolSize, NetworkDispatcherPool.DEFAULT_MAX_REQUESTS_PER_HOST);
+        mNetworkQueue = mDispatcherPool.getQueue();
     }
 
     /**
@@ -102,7 +110,7 @@ public class RequestQueue {
      * @param network - the implementation you want to use for this RequestQueue
      */
     public RequestQueue(ShopGun shopGun, Cache cache, Network network) {
-        this(shopGun, cache, network, DEFAULT_NETWORK_THREAD_POOL_SIZE, new HandlerDelivery());
+        this(shopGun, cache, network, NetworkDispatcherPool.DEFAULT_MAX_POOL_SIZE, new HandlerDelivery());
     }
 
     /**
@@ -111,15 +119,11 @@ public class RequestQueue {
     public void start() {
 
         // Creates new CacheDispatcher
-        mCacheDispatcher = new CacheDispatcher(mCacheQueue, mNetworkQueue, mCache, mDelivery);
+        mCacheDispatcher = new CacheDispatcher(mCacheQueue, mNetworkQueue, mCache, mDelivery, mRequestCoalescer);
         mCacheDispatcher.start();
 
-        // Create network dispatchers (and corresponding threads) up to the pool size.
-        for (int i = 0; i < mNetworkDispatchers.length; i++) {
-            NetworkDispatcher networkDispatcher = new NetworkDispatcher(mShopGun, this, mNetworkQueue, mNetwork, mCache, mDelivery);
-            mNetworkDispatchers[i] = networkDispatcher;
-            networkDispatcher.start();
-        }
+        // Network dispatchers (and corresponding threads) are started on demand by the pool.
+        mDispatcherPool.start();
 
     }
 
@@ -131,10 +135,7 @@ public class RequestQueue {
         if (mCacheDispatcher != null)
             mCacheDispatcher.quit();
 
-        for (NetworkDispatcher n : mNetworkDispatchers) {
-            if (n != null)
-                n.quit();
-        }
+        mDispatcherPool.stop();
 
     }
 
@@ -164,32 +165,17 @@ public class RequestQueue {
 
     /**
      * This method is mostly for statistics and allows RequestQueue to tie up any loose
-     * ends that might be in a request. In the future, this can be used for better SDK cache control
-     * as multiple requests to the same endpoint, can be queued, and only one may be dispatched.
-     * On complete the others can be triggered, and instantly hitting local cache.
+     * ends that might be in a request.
      * @param request - request, that finished
      */
-    public synchronized void finish(Request<?> request) {
+    public void finish(Request<?> request) {
 
         synchronized (mCurrentRequests) {
             mCurrentRequests.remove(request);
         }
 
-//    	if (!request.ignoreCache() && request.getMethod() == Method.GET) {
-//    		
-//    		synchronized (mRequestParking) {
-//				
-//    			String url = request.getUrl();
-//        		LinkedList<Request> waiting = mRequestParking.remove(url);
-//        		if (waiting != null) {
-//        			String msg = "Posting %d requests, waiting for %s";
-//        			SgnLog.d(TAG, String.format(msg, waiting.size(), url));
-//        			mCacheQueue.addAll(waiting);
-//        		}
-//        		
-//			}
-//    		
-//    	}
+        // Not holding any lock, as metrics listeners may act on the request, e.g. add requests of their own
+        mMetrics.onFinished(request);
 
     }
 
@@ -201,6 +187,24 @@ public class RequestQueue {
         return mNetwork;
     }
 
+    /**
+     * Get the {@link RequestCoalescer} that keeps identical GET requests from going to the network
+     * simultaneously. Use it for statistics, or to disable coalescing.
+     * @return A {@link RequestCoalescer}
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return mRequestCoalescer;
+    }
+
+    /**
+     * Get the {@link NetworkDispatcherPool} performing the network requests of this {@link RequestQueue}.
+     * Use it for metrics, e.g. to tune the pool size for low-end devices.
+     * @return A {@link NetworkDispatcherPool}
+     */
+    public NetworkDispatcherPool getDispatcherPool() {
+        return mDispatcherPool;
+    }
+
     /**
      * Get the {@link Cache} associated with this {@link RequestQueue}
      * @return A {@link Cache}
@@ -225,13 +229,25 @@ public class RequestQueue {
             mCurrentRequests.add(request);
         }
 
+        if (!request.getTrace().hasReached(RequestTrace.Stage.QUEUED)) {
+            request.getTrace().mark(RequestTrace.Stage.QUEUED);
+        }
+
         prepareRequest(request);
 
         request.setRequestQueue(this);
 
         request.setSequence(mSequenceGenerator.incrementAndGet());
 
-        appendRequestNetworkLog(request);
+        if (request.getQueueTime() == 0) {
+            // Requests added again, e.g. after a session error, keep their age
+            request.setQueueTime(SystemClock.elapsedRealtime());
+        }
+        request.setRank(mScheduler.rank(request));
+
+        if (request.isDebugging()) {
+            appendRequestNetworkLog(request);
+        }
 
         if (mShopGun.getSessionManager().isRequestInFlight() && !isSessionEndpoint(request)) {
 
@@ -249,31 +265,8 @@ public class RequestQueue {
                 SgnLog.w(TAG, "Session changes should be handled by SessionManager. This request might cause problems");
             }
 
-//        	synchronized (mRequestParking) {
-//
-//        		String url = request.getUrl();
-//        		
-//        		// Either add to waiting queue, or add to cache queue
-//        		if (mRequestParking.containsKey(url)) {
-//        			
-//        			request.addEvent("waiting-for-similar-request");
-//        			LinkedList<Request> waiting = mRequestParking.get(url);
-//        			if (waiting == null) {
-//        				waiting = new LinkedList<Request>();
-//        			}
-//        			waiting.add(request);
-//        			mRequestParking.put(url, waiting);
-//        			
-//        		} else {
-//        			
-//        			/* add null, and only allocate memory if needed */
-//        			mRequestParking.put(url, null);
             mCacheQueue.add(request);
 
-//        		}
-//        		
-//        	}
-
         }
 
         return request;
@@ -325,6 +318,88 @@ public class RequestQueue {
         return count;
     }
 
+    /**
+     * Mark all {@link Request requests} with a given tag as foreground, e.g. because their data is
+     * on screen. Queued requests are moved ahead of other requests, and so will requests added
+     * with the tag later on.
+     *
+     * <p>Matching is done with {@code ==} and not the
+     * {@link Object#equals(Object) equals} method</p>
+     *
+     * @param tag A tag to match
+     * @return The number of queued requests that were reprioritised
+     */
+    public int setForeground(Object tag) {
+        mScheduler.setForeground(tag);
+        return reprioritise(tag);
+    }
+
+    /**
+     * Mark all {@link Request requests} with a given tag as background, e.g. because the UI that
+     * requested them has gone away. Queued requests will be dispatched after other requests, though
+     * they will not be starved.
+     *
+     * @param tag A tag to match
+     * @return The number of queued requests that were reprioritised
+     */
+    public int setBackground(Object tag) {
+        mScheduler.setBackground(tag);
+        return reprioritise(tag);
+    }
+
+    /**
+     * Remove any foreground or background mark from a tag, and let its requests go by their own priority.
+     *
+     * @param tag A tag to match
+     * @return The number of queued requests that were reprioritised
+     */
+    public int clearPriority(Object tag) {
+        mScheduler.clear(tag);
+        return reprioritise(tag);
+    }
+
+    /**
+     * Get the {@link RequestMetrics} of this {@link RequestQueue}, e.g. to register a
+     * {@link RequestMetrics.Listener} for exporting request traces.
+     * @return A {@link RequestMetrics}
+     */
+    public RequestMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Get the {@link RequestScheduler} that orders the requests in this {@link RequestQueue}.
+     * @return A {@link RequestScheduler}
+     */
+    public RequestScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    private int reprioritise(Object tag) {
+        if (tag == null) {
+            return 0;
+        }
+        return reprioritise(mCacheQueue, tag) + reprioritise(mNetworkQueue, tag);
+    }
+
+    /**
+     * Re-rank the requests with a given tag. A {@link PriorityBlockingQueue} doesn't re-sort its
+     * elements, so they are removed and added again. A request taken by a dispatcher meanwhile, is left alone.
+     */
+    private int reprioritise(BlockingQueue<Request<?>> queue, Object tag) {
+        int count = 0;
+        // The iterator works on a snapshot of the queue
+        for (Request<?> r : queue) {
+            if (r.getTag() == tag && queue.remove(r)) {
+                r.setRank(mScheduler.rank(r));
+                r.addEvent("reprioritised");
+                queue.add(r);
+                count++;
+            }
+        }
+        return count;
+    }
+
     private boolean isSessionEndpoint(Request<?> r) {
         return r.getUrl().contains(Endpoints.SESSIONS);
     }
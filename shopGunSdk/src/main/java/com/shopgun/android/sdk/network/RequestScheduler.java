@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the order in which queued {@link Request requests} are dispatched.
+ *
+ * <p>Every request is given a rank, which is the latest time it should be dispatched. Requests with
+ * a {@link Request#getDeadline() deadline} are ranked by their deadline, while other requests are
+ * ranked by the time they were queued plus a delay depending on their {@link Request.Priority}.
+ * As the rank is fixed once a request is queued, a low priority request will eventually be
+ * dispatched ahead of high priority requests queued after it, so it can't be starved.</p>
+ *
+ * <p>Requests can be moved forward or back by their {@link Request#getTag() tag}, e.g. when the
+ * UI showing their data comes into view or goes away. Tags are held weakly, and matched by identity,
+ * like {@link RequestQueue#cancelAll(Object)} does, so tags with a custom {@code equals()} don't share
+ * their mark.</p>
+ */
+public class RequestScheduler {
+
+    public static final String TAG = Constants.getTag(RequestScheduler.class);
+
+    /** The time it takes a request to age one priority level */
+    public static final long AGING_STEP = TimeUnit.SECONDS.toMillis(3);
+
+    /** Extra time requests with a background tag will wait */
+    public static final long BACKGROUND_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    /** Tags marked as foreground, or background. There are only ever a few, so they are just searched */
+    private final List<TagRef> mTags = new ArrayList<TagRef>();
+
+    /**
+     * Mark a tag as foreground. Requests with the tag will rank ahead of {@link Request.Priority#HIGH} requests.
+     * @param tag A tag
+     */
+    public synchronized void setForeground(Object tag) {
+        if (tag != null) {
+            mark(tag, true);
+        }
+    }
+
+    /**
+     * Mark a tag as background. Requests with the tag will wait an extra {@link #BACKGROUND_DELAY}.
+     * @param tag A tag
+     */
+    public synchronized void setBackground(Object tag) {
+        if (tag != null) {
+            mark(tag, false);
+        }
+    }
+
+    /**
+     * Clear any foreground or background mark of a tag.
+     * @param tag A tag
+     */
+    public synchronized void clear(Object tag) {
+        if (tag != null) {
+            mTags.remove(find(tag));
+        }
+    }
+
+    /**
+     * Check if a tag is marked as foreground.
+     * @param tag A tag
+     * @return {@code true} if foreground
+     */
+    public synchronized boolean isForeground(Object tag) {
+        TagRef ref = tag == null ? null : find(tag);
+        return ref != null && ref.mForeground;
+    }
+
+    /**
+     * Check if a tag is marked as background.
+     * @param tag A tag
+     * @return {@code true} if background
+     */
+    public synchronized boolean isBackground(Object tag) {
+        TagRef ref = tag == null ? null : find(tag);
+        return ref != null && !ref.mForeground;
+    }
+
+    private void mark(Object tag, boolean foreground) {
+        TagRef ref = find(tag);
+        if (ref == null) {
+            mTags.add(new TagRef(tag, foreground));
+        } else {
+            ref.mForeground = foreground;
+        }
+    }
+
+    /**
+     * Find the mark of a tag, dropping the marks of tags that have been collected along the way.
+     * @param tag A tag
+     * @return The mark, or {@code null} if the tag isn't marked
+     */
+    private TagRef find(Object tag) {
+        TagRef found = null;
+        for (Iterator<TagRef> it = mTags.iterator(); it.hasNext(); ) {
+            TagRef ref = it.next();
+            Object o = ref.get();
+            if (o == null) {
+                it.remove();
+            } else if (o == tag) {
+                found = ref;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Compute the rank of a request, given the time it was queued, its deadline, priority and tag.
+     * @param request A request
+     * @return The rank, a lower rank is dispatched first
+     */
+    public long rank(Request<?> request) {
+
+        long delay;
+        Object tag = request.getTag();
+        if (isForeground(tag)) {
+            delay = -AGING_STEP;
+        } else {
+            switch (request.getPriority()) {
+                case HIGH:
+                    delay = 0;
+                    break;
+                case LOW:
+                    delay = 2 * AGING_STEP;
+                    break;
+                default:
+                    delay = AGING_STEP;
+                    break;
+            }
+            if (isBackground(tag)) {
+                delay += BACKGROUND_DELAY;
+            }
+        }
+
+        long rank = request.getQueueTime() + delay;
+        long deadline = request.getDeadline();
+        return deadline > 0 ? Math.min(rank, deadline) : rank;
+
+    }
+
+    private static class TagRef extends WeakReference<Object> {
+
+        boolean mForeground;
+
+        TagRef(Object tag, boolean foreground) {
+            super(tag);
+            mForeground = foreground;
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.utils.Constants;
+
+/**
+ * Timestamps of the stages a {@link Request} passes through in the {@link RequestQueue}.
+ *
+ * <p>Timestamps are taken with {@link System#nanoTime()}, so they are only meaningful relative to
+ * each other. Recording a stage is a single array store, so it's always on, unlike the
+ * {@link com.shopgun.android.sdk.log.EventLog}, which is only kept for requests with a {@link RequestDebugger}.</p>
+ */
+public class RequestTrace {
+
+    public static final String TAG = Constants.getTag(RequestTrace.class);
+
+    /**
+     * The stages of a request, in order. A stage lasts until the next stage that the request reaches,
+     * e.g. a cache hit goes straight from {@link #CACHE} to {@link #DELIVERY}.
+     */
+    public enum Stage {
+        /** Added to the {@link RequestQueue} */
+        QUEUED,
+        /** Taken by the {@link CacheDispatcher} */
+        CACHE,
+        /** Sent to the {@link Network} by a {@link NetworkDispatcher} */
+        NETWORK,
+        /** The network response has been received, and is being parsed */
+        PARSE,
+        /** The response is ready, and has been posted to the {@link Delivery} */
+        DELIVERY,
+        /** The request has finished */
+        FINISHED
+    }
+
+    static final Stage[] STAGES = Stage.values();
+
+    private final long[] mTimes = new long[STAGES.length];
+
+    /**
+     * Record that the request has reached a stage, now.
+     * @param stage A stage
+     */
+    public void mark(Stage stage) {
+        mTimes[stage.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Check if the request has reached a stage.
+     * @param stage A stage
+     * @return {@code true} if the stage has been reached
+     */
+    public boolean hasReached(Stage stage) {
+        return mTimes[stage.ordinal()] != 0;
+    }
+
+    /**
+     * Get the time a stage was reached.
+     * @param stage A stage
+     * @return A {@link System#nanoTime()} timestamp, or {@code 0} if the stage hasn't been reached
+     */
+    public long getTime(Stage stage) {
+        return mTimes[stage.ordinal()];
+    }
+
+    /**
+     * Get the time spent in a stage, i.e. until the next stage that was reached.
+     * @param stage A stage
+     * @return The duration in nanoseconds, or {@code -1} if the stage or the stages after it haven't been reached
+     */
+    public long getDuration(Stage stage) {
+        long start = mTimes[stage.ordinal()];
+        if (start == 0) {
+            return -1;
+        }
+        for (int i = stage.ordinal() + 1; i < mTimes.length; i++) {
+            if (mTimes[i] != 0) {
+                return mTimes[i] - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the time between two stages.
+     * @param from The first stage
+     * @param to The last stage
+     * @return The duration in nanoseconds, or {@code -1} if either stage hasn't been reached
+     */
+    public long getDuration(Stage from, Stage to) {
+        long start = mTimes[from.ordinal()];
+        long end = mTimes[to.ordinal()];
+        return start == 0 || end == 0 ? -1 : end - start;
+    }
+
+    /**
+     * Forget all recorded stages.
+     */
+    public void reset() {
+        for (int i = 0; i < mTimes.length; i++) {
+            mTimes[i] = 0;
+        }
+    }
+
+}
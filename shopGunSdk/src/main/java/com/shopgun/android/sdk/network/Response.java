@@ -75,4 +75,14 @@ public class Response<T> {
         void onComplete(T response, ShopGunError error);
     }
 
+    /** Callback interface for also receiving stale responses, see {@link Request#setStaleWhileRevalidate(boolean)}. */
+    public interface IntermediateListener<T> extends Listener<T> {
+        /**
+         * Called with an expired response from cache, while the request is being revalidated.
+         * {@link #onComplete(Object, ShopGunError)} will be called once the request finishes.
+         * @param response A parsed, stale response
+         */
+        void onIntermediate(T response);
+    }
+
 }
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+/**
+ * A {@link Cache} that keeps expired items for up to {@link Cache.Item#MAX_STALE}, so they can be
+ * delivered while being revalidated, and refreshed by a conditional request.
+ */
+public interface StaleCache extends Cache {
+
+    /**
+     * Get a {@link Cache.Item} from this cache, whether it's expired or not.
+     * @param key A key
+     * @return A {@link Cache.Item} if an item is found, else {@code null}
+     */
+    public Cache.Item getStale(String key);
+
+}
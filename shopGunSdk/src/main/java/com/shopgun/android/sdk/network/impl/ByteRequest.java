@@ -68,9 +68,10 @@ public class ByteRequest extends Request<byte[]> {
     @Override
     protected Response<byte[]> parseNetworkResponse(NetworkResponse response) {
         String url = SgnUtils.requestToUrlAndQueryString(this);
-        Cache.Item c = new Cache.Item(response.data, getCacheTTL());
+        byte[] body = response.toByteArray();
+        Cache.Item c = new Cache.Item(body, getCacheTTL(), body.length);
         getCache().put(url, c);
-        return Response.fromSuccess(response.data, getCache());
+        return Response.fromSuccess(body, getCache());
     }
 
     @Override
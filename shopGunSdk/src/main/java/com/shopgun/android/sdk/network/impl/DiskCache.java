@@ -0,0 +1,586 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.StaleCache;
+import com.shopgun.android.sdk.utils.Constants;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * A {@link Cache} persisting items in an append-only journal on disk.
+ *
+ * <p>Every {@link #put(String, Cache.Item) put} appends a record to the journal, and an in-memory
+ * index keeps track of the newest record for each key. Removals append a tombstone. When the
+ * journal contains more garbage than live data, it's compacted into a new file. A journal with a
+ * truncated tail (e.g. the process died mid-write) is truncated to the last complete record on
+ * load.</p>
+ *
+ * <p>Only items containing a {@link JSONObject}, a list of ERNs, a {@link String} or a
+ * {@code byte[]} are persisted, which covers the items created by the requests in the SDK.
+ * Expired items are kept, along with their validators, until they are discardable, so they can be
+ * revalidated, see {@link StaleCache}.</p>
+ *
+ * <p>The journal is opened lazily on first access, so construction is cheap enough to do on the
+ * main thread. All other methods perform disk I/O and should be called from a background thread.</p>
+ */
+public class DiskCache implements StaleCache {
+
+    public static final String TAG = Constants.getTag(DiskCache.class);
+
+    /** Default name of the cache directory */
+    public static final String DEFAULT_DIRECTORY = "sgn-api-cache";
+
+    /** Default max size of live data on disk */
+    private static final long DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+
+    /** Don't bother compacting until there's at least this much garbage */
+    private static final long COMPACT_THRESHOLD = 512 * 1024;
+
+    private static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TMP = "journal.tmp";
+
+    private static final int MAGIC = 0x53474e43;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    /** key length + expires + size + type + etag length + last-modified length */
+    private static final int RECORD_FIXED_SIZE = 2 + 8 + 8 + 1 + 2 + 2;
+
+    private static final byte TYPE_REMOVED = 0;
+    private static final byte TYPE_JSON_OBJECT = 1;
+    private static final byte TYPE_ERN_LIST = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BYTES = 4;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    /** Index of live records, least recently used first */
+    private final LinkedHashMap<String, Entry> mIndex = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private RandomAccessFile mJournal;
+    private long mJournalLength;
+    private long mLiveBytes;
+    private boolean mInitialized = false;
+
+    public DiskCache(File directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Create a new DiskCache.
+     * @param directory The directory to keep the journal in
+     * @param maxBytes The max number of bytes of live data to keep on disk
+     */
+    public DiskCache(File directory, long maxBytes) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory must not be null.");
+        }
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    public void put(Request<?> request, Response<?> response) {
+        if (NetworkUtils.isCacheable(request, response)) {
+            for (Map.Entry<String, Item> e : response.cache.entrySet()) {
+                put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Persist a single item. Items of an unsupported type, and discardable items are ignored.
+     * @param key A key
+     * @param item The item to persist
+     */
+    public synchronized void put(String key, Cache.Item item) {
+
+        if (key == null || item == null || item.isDiscardable()) {
+            return;
+        }
+
+        byte type = typeOf(item.object);
+        if (type == TYPE_REMOVED || !initialize()) {
+            return;
+        }
+
+        try {
+            append(key, item.expires, item.size, type, item.etag, item.lastModified, encode(type, item.object));
+            trimToSize();
+            compactIfNeeded();
+        } catch (IOException e) {
+            SgnLog.e(TAG, "Failed to write " + key, e);
+            reset();
+        }
+
+    }
+
+    public synchronized Cache.Item get(String key) {
+        return read(key, false);
+    }
+
+    public synchronized Cache.Item getStale(String key) {
+        return read(key, true);
+    }
+
+    private Cache.Item read(String key, boolean allowStale) {
+
+        if (key == null || !initialize()) {
+            return null;
+        }
+
+        Entry e = mIndex.get(key);
+        if (e == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            if (e.expires + Cache.Item.MAX_STALE < now) {
+                remove(key);
+                return null;
+            }
+            if (e.expires < now && !allowStale) {
+                return null;
+            }
+            byte[] data = new byte[e.dataLength];
+            mJournal.seek(e.dataOffset);
+            mJournal.readFully(data);
+            Cache.Item item = new Cache.Item(decode(e.type, data), e.expires - now, e.size);
+            item.etag = e.etag;
+            item.lastModified = e.lastModified;
+            return item;
+        } catch (IOException ex) {
+            SgnLog.e(TAG, "Failed to read " + key, ex);
+            reset();
+        } catch (JSONException ex) {
+            SgnLog.e(TAG, "Corrupt item " + key, ex);
+            try {
+                remove(key);
+            } catch (IOException ignore) {
+                reset();
+            }
+        }
+        return null;
+
+    }
+
+    public synchronized void clear() {
+        closeJournal();
+        mIndex.clear();
+        mLiveBytes = 0;
+        mJournalLength = 0;
+        mInitialized = false;
+        new File(mDirectory, JOURNAL_FILE).delete();
+        new File(mDirectory, JOURNAL_FILE_TMP).delete();
+    }
+
+    /**
+     * Get the number of items currently in the cache, including expired items not yet removed.
+     * @return The item count
+     */
+    public synchronized int size() {
+        return initialize() ? mIndex.size() : 0;
+    }
+
+    /**
+     * Get the number of bytes of live data on disk.
+     * @return The size in bytes
+     */
+    public synchronized long sizeInBytes() {
+        return initialize() ? mLiveBytes : 0;
+    }
+
+    private boolean initialize() {
+
+        if (mInitialized) {
+            return mJournal != null;
+        }
+        mInitialized = true;
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            SgnLog.w(TAG, "Unable to create " + mDirectory.getAbsolutePath());
+            return false;
+        }
+
+        File file = new File(mDirectory, JOURNAL_FILE);
+        try {
+            mJournal = new RandomAccessFile(file, "rw");
+            if (mJournal.length() < HEADER_SIZE || !load(file)) {
+                writeHeader();
+            }
+        } catch (IOException e) {
+            SgnLog.e(TAG, "Unable to open " + file.getAbsolutePath(), e);
+            closeJournal();
+            file.delete();
+        }
+        return mJournal != null;
+
+    }
+
+    /**
+     * Rebuild the index from the journal.
+     * @param file The journal file
+     * @return {@code true} if the journal was valid, else {@code false}
+     * @throws IOException If the journal couldn't be read
+     */
+    private boolean load(File file) throws IOException {
+
+        long fileLength = mJournal.length();
+        long position = HEADER_SIZE;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                SgnLog.d(TAG, "Unknown journal format, discarding it");
+                return false;
+            }
+
+            while (position + 4 <= fileLength) {
+
+                int recordLength = in.readInt();
+                long next = position + 4 + recordLength;
+                if (recordLength < RECORD_FIXED_SIZE || next > fileLength) {
+                    // Truncated or garbled record, everything from here on is lost
+                    break;
+                }
+
+                byte[] keyBytes = new byte[in.readUnsignedShort()];
+                if (RECORD_FIXED_SIZE + keyBytes.length > recordLength) {
+                    break;
+                }
+                in.readFully(keyBytes);
+                long expires = in.readLong();
+                long size = in.readLong();
+                byte type = in.readByte();
+                byte[] etagBytes = new byte[in.readUnsignedShort()];
+                if (RECORD_FIXED_SIZE + keyBytes.length + etagBytes.length > recordLength) {
+                    break;
+                }
+                in.readFully(etagBytes);
+                byte[] lastModifiedBytes = new byte[in.readUnsignedShort()];
+                int dataLength = recordLength - RECORD_FIXED_SIZE - keyBytes.length - etagBytes.length - lastModifiedBytes.length;
+                if (dataLength < 0) {
+                    break;
+                }
+                in.readFully(lastModifiedBytes);
+                skipFully(in, dataLength);
+
+                String key = new String(keyBytes, UTF8);
+                if (type == TYPE_REMOVED) {
+                    removeFromIndex(key);
+                } else {
+                    addToIndex(key, new Entry(position, recordLength, next - dataLength, dataLength, expires, size, type,
+                            toValidator(etagBytes), toValidator(lastModifiedBytes)));
+                }
+                position = next;
+
+            }
+
+        } catch (EOFException e) {
+            // Truncated record, handled below
+        } finally {
+            in.close();
+        }
+
+        if (position < fileLength) {
+            SgnLog.d(TAG, "Truncating journal from " + fileLength + " to " + position + " bytes");
+            mJournal.setLength(position);
+        }
+        mJournalLength = position;
+        return true;
+
+    }
+
+    private void writeHeader() throws IOException {
+        mIndex.clear();
+        mLiveBytes = 0;
+        mJournal.setLength(0);
+        mJournal.seek(0);
+        mJournal.writeInt(MAGIC);
+        mJournal.writeInt(VERSION);
+        mJournalLength = HEADER_SIZE;
+    }
+
+    private void append(String key, long expires, long size, byte type, String etag, String lastModified,
+                        byte[] data) throws IOException {
+
+        byte[] keyBytes = key.getBytes(UTF8);
+        byte[] etagBytes = fromValidator(etag);
+        byte[] lastModifiedBytes = fromValidator(lastModified);
+        if (keyBytes.length > 0xFFFF) {
+            return;
+        }
+
+        int recordLength = RECORD_FIXED_SIZE + keyBytes.length + etagBytes.length + lastModifiedBytes.length + data.length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + recordLength);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(recordLength);
+        out.writeShort(keyBytes.length);
+        out.write(keyBytes);
+        out.writeLong(expires);
+        out.writeLong(size);
+        out.writeByte(type);
+        out.writeShort(etagBytes.length);
+        out.write(etagBytes);
+        out.writeShort(lastModifiedBytes.length);
+        out.write(lastModifiedBytes);
+        out.write(data);
+        out.close();
+
+        long position = mJournalLength;
+        mJournal.seek(position);
+        mJournal.write(bytes.toByteArray());
+        mJournalLength += 4 + recordLength;
+
+        if (type == TYPE_REMOVED) {
+            removeFromIndex(key);
+        } else {
+            long dataOffset = mJournalLength - data.length;
+            addToIndex(key, new Entry(position, recordLength, dataOffset, data.length, expires, size, type, etag, lastModified));
+        }
+
+    }
+
+    private void remove(String key) throws IOException {
+        if (mIndex.containsKey(key)) {
+            append(key, 0, 0, TYPE_REMOVED, null, null, new byte[0]);
+        }
+    }
+
+    private void addToIndex(String key, Entry entry) {
+        removeFromIndex(key);
+        mIndex.put(key, entry);
+        mLiveBytes += 4 + entry.recordLength;
+    }
+
+    private void removeFromIndex(String key) {
+        Entry previous = mIndex.remove(key);
+        if (previous != null) {
+            mLiveBytes -= 4 + previous.recordLength;
+        }
+    }
+
+    private void trimToSize() throws IOException {
+        while (mLiveBytes > mMaxBytes && !mIndex.isEmpty()) {
+            remove(mIndex.keySet().iterator().next());
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long garbage = mJournalLength - HEADER_SIZE - mLiveBytes;
+        if (garbage > COMPACT_THRESHOLD && garbage > mLiveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the journal, keeping only the live and non-discardable records.
+     */
+    private void compact() throws IOException {
+
+        File tmpFile = new File(mDirectory, JOURNAL_FILE_TMP);
+        LinkedHashMap<String, Entry> index = new LinkedHashMap<String, Entry>(mIndex.size(), 0.75f, true);
+        long discardBefore = System.currentTimeMillis() - Cache.Item.MAX_STALE;
+        long liveBytes = 0;
+        long position = HEADER_SIZE;
+
+        RandomAccessFile out = new RandomAccessFile(tmpFile, "rw");
+        try {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, Entry> e : mIndex.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.expires < discardBefore) {
+                    continue;
+                }
+                byte[] record = new byte[4 + entry.recordLength];
+                mJournal.seek(entry.recordOffset);
+                mJournal.readFully(record);
+                out.write(record);
+                long dataOffset = position + (entry.dataOffset - entry.recordOffset);
+                index.put(e.getKey(), new Entry(position, entry.recordLength, dataOffset,
+                        entry.dataLength, entry.expires, entry.size, entry.type, entry.etag, entry.lastModified));
+                position += record.length;
+                liveBytes += record.length;
+            }
+        } finally {
+            out.close();
+        }
+
+        File file = new File(mDirectory, JOURNAL_FILE);
+        closeJournal();
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Unable to replace journal");
+        }
+        mJournal = new RandomAccessFile(file, "rw");
+        mJournalLength = position;
+        mLiveBytes = liveBytes;
+        mIndex.clear();
+        mIndex.putAll(index);
+        SgnLog.v(TAG, "Compacted journal to " + position / 1024 + "kb (" + mIndex.size() + " items)");
+
+    }
+
+    /**
+     * Drop everything, in the case of an unrecoverable error. The journal will be recreated on next access.
+     */
+    private void reset() {
+        clear();
+    }
+
+    private void closeJournal() {
+        if (mJournal != null) {
+            try {
+                mJournal.close();
+            } catch (IOException ignore) {
+            }
+            mJournal = null;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            count -= skipped;
+        }
+    }
+
+    /** Validators are stored as (possibly empty) strings, and longer validators are dropped */
+    private static byte[] fromValidator(String validator) {
+        byte[] bytes = validator == null ? new byte[0] : validator.getBytes(UTF8);
+        return bytes.length > 0xFFFF ? new byte[0] : bytes;
+    }
+
+    private static String toValidator(byte[] bytes) {
+        return bytes.length == 0 ? null : new String(bytes, UTF8);
+    }
+
+    private static byte typeOf(Object o) {
+        if (o instanceof JSONObject) {
+            return TYPE_JSON_OBJECT;
+        } else if (o instanceof String) {
+            return TYPE_STRING;
+        } else if (o instanceof byte[]) {
+            return TYPE_BYTES;
+        } else if (o instanceof LinkedList<?>) {
+            for (Object s : (LinkedList<?>) o) {
+                if (!(s instanceof String)) {
+                    return TYPE_REMOVED;
+                }
+            }
+            return TYPE_ERN_LIST;
+        }
+        return TYPE_REMOVED;
+    }
+
+    private static byte[] encode(byte type, Object o) {
+        switch (type) {
+            case TYPE_BYTES:
+                return (byte[]) o;
+            case TYPE_ERN_LIST:
+                StringBuilder sb = new StringBuilder();
+                Iterator<?> it = ((LinkedList<?>) o).iterator();
+                while (it.hasNext()) {
+                    sb.append(it.next());
+                    if (it.hasNext()) {
+                        sb.append('\n');
+                    }
+                }
+                return sb.toString().getBytes(UTF8);
+            default:
+                return o.toString().getBytes(UTF8);
+        }
+    }
+
+    private static Object decode(byte type, byte[] data) throws JSONException {
+        switch (type) {
+            case TYPE_JSON_OBJECT:
+                return new JSONObject(new String(data, UTF8));
+            case TYPE_ERN_LIST:
+                LinkedList<String> erns = new LinkedList<String>();
+                for (String ern : new String(data, UTF8).split("\n")) {
+                    if (ern.length() > 0) {
+                        erns.add(ern);
+                    }
+                }
+                return erns;
+            case TYPE_BYTES:
+                return data;
+            default:
+                return new String(data, UTF8);
+        }
+    }
+
+    private static class Entry {
+
+        final long recordOffset;
+        final int recordLength;
+        final long dataOffset;
+        final int dataLength;
+        final long expires;
+        final long size;
+        final byte type;
+        final String etag;
+        final String lastModified;
+
+        Entry(long recordOffset, int recordLength, long dataOffset, int dataLength, long expires, long size, byte type,
+              String etag, String lastModified) {
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.expires = expires;
+            this.size = size;
+            this.type = type;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+}
@@ -67,4 +67,18 @@ public class HandlerDelivery implements Delivery {
 
     }
 
-}
\ No newline at end of file
+    public void postIntermediateResponse(Request<?> request, Response<?> response) {
+
+        if (request.isCanceled()) {
+            return;
+        } else if (request.getDelivery() != null && !HandlerDelivery.this.equals(request.getDelivery())) {
+            request.addEvent("post-intermediate-to-custom-delivery");
+            request.getDelivery().postIntermediateResponse(request, response);
+        } else {
+            request.addEvent("post-intermediate-response");
+            mHandler.post(new IntermediateDeliveryRunnable(request, response));
+        }
+
+    }
+
+}
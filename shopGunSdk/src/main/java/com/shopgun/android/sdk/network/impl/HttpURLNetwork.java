@@ -36,8 +36,8 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
@@ -105,8 +105,7 @@ public class HttpURLNetwork implements HttpStack {
     }
 
     private void setHeaders(Request<?> request, HttpURLConnection connection) {
-        HashMap<String, String> headers = new HashMap<String, String>(request.getHeaders().size());
-        headers.putAll(request.getHeaders());
+        Map<String, String> headers = request.getNetworkHeaders();
         for (String key : headers.keySet())
             connection.setRequestProperty(key, headers.get(key));
     }
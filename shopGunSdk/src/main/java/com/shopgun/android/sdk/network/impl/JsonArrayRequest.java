@@ -29,7 +29,6 @@ import com.shopgun.android.utils.TextUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.UnsupportedEncodingException;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -69,23 +68,26 @@ public class JsonArrayRequest extends JsonRequest<JSONArray> {
         setLimit(DEFAULT_LIMIT);
     }
 
+    /**
+     * Responses are only pooled for instances of this class, as a subclass may read {@link NetworkResponse#data}.
+     */
+    @Override
+    public boolean isResponsePoolable() {
+        return getClass() == JsonArrayRequest.class;
+    }
+
     @Override
     protected Response<JSONArray> parseNetworkResponse(NetworkResponse response) {
 
-        String jsonString = "";
         try {
-            try {
-                jsonString = new String(response.data, getParamsEncoding());
-            } catch (UnsupportedEncodingException e) {
-                jsonString = new String(response.data);
-            }
+            String jsonString = response.getBodyAsString(getParamsEncoding());
 
             Response<JSONArray> r = null;
             if (SgnUtils.isSuccess(response.statusCode)) {
                 // Parse into array if it's successful
                 JSONArray jArray = new JSONArray(jsonString);
                 r = Response.fromSuccess(jArray, getCache());
-                JsonCacheHelper.cacheJSONArray(this, r.result);
+                JsonCacheHelper.cacheJSONArray(this, r.result, response.length);
 
             } else {
                 // Parse into object if it failed.
@@ -153,16 +153,31 @@ public class JsonCacheHelper {
     }
 
     public static void cacheJSONArray(Request<?> r, JSONArray a) {
+        cacheJSONArray(r, a, 0);
+    }
 
+    /**
+     * Split a {@link JSONArray} into {@link Cache.Item} entries, one for each object with an ERN,
+     * and one for the list of ERNs keyed by the request url.
+     * @param r The request that received the array
+     * @param a The array to cache
+     * @param byteCount The size of the network payload the array was parsed from, or {@code 0} if unknown.
+     *                  The size is distributed evenly between the objects in the array.
+     */
+    public static void cacheJSONArray(Request<?> r, JSONArray a, long byteCount) {
+
+        long itemSize = a.length() == 0 ? 0 : byteCount / a.length();
         LinkedList<String> ernlist = new LinkedList<String>();
+        long ernListSize = 0;
         try {
 
             for (int i = 0; i < a.length(); i++) {
                 Object o = a.get(i);
                 if (o instanceof JSONObject) {
-                    String ern = cacheJSONObject(r, (JSONObject) o);
+                    String ern = cacheJSONObject(r, (JSONObject) o, itemSize);
                     if (ern != null) {
                         ernlist.add(ern);
+                        ernListSize += ern.length();
                     }
                 }
 
@@ -172,21 +187,41 @@ public class JsonCacheHelper {
             SgnLog.e(TAG, "", e);
         }
 
-        if (ernlist.isEmpty()) {
-            return;
-        }
+        cacheErnList(r, ernlist, ernListSize);
 
-        r.getCache().put(SgnUtils.requestToUrlAndQueryString(r), new Cache.Item(ernlist, r.getCacheTTL()));
+    }
 
+    /**
+     * Cache the list of ERNs in a response, keyed by the request url. Used along with
+     * {@link #cacheJSONObject(Request, JSONObject, long)}, when the objects are cached one by one.
+     * @param r The request that received the list
+     * @param erns The ERNs of the objects in the response, in order
+     * @param byteCount The size of the ERN list in bytes
+     */
+    public static void cacheErnList(Request<?> r, LinkedList<String> erns, long byteCount) {
+        if (!erns.isEmpty()) {
+            r.getCache().put(SgnUtils.requestToUrlAndQueryString(r), new Cache.Item(erns, r.getCacheTTL(), byteCount));
+        }
     }
 
     public static String cacheJSONObject(Request<?> r, JSONObject o) {
+        return cacheJSONObject(r, o, 0);
+    }
+
+    /**
+     * Cache a {@link JSONObject} by its ERN, if it has one.
+     * @param r The request that received the object
+     * @param o The object to cache
+     * @param byteCount The size of the network payload the object was parsed from, or {@code 0} if unknown
+     * @return The ERN of the object, or {@code null} if the object wasn't cached
+     */
+    public static String cacheJSONObject(Request<?> r, JSONObject o, long byteCount) {
 
         try {
 
             if (o.has(SgnJson.ERN)) {
                 String ern = o.getString(SgnJson.ERN);
-                Cache.Item i = new Item(o, r.getCacheTTL());
+                Cache.Item i = new Item(o, r.getCacheTTL(), byteCount);
                 r.getCache().put(ern, i);
                 return ern;
             }
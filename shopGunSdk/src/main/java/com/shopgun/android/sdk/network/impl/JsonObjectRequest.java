@@ -27,7 +27,6 @@ import com.shopgun.android.sdk.utils.SgnUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.UnsupportedEncodingException;
 import java.util.concurrent.TimeUnit;
 
 public class JsonObjectRequest extends JsonRequest<JSONObject> {
@@ -44,23 +43,24 @@ public class JsonObjectRequest extends JsonRequest<JSONObject> {
         super(method, url, requestBody == null ? null : requestBody.toString(), listener);
     }
 
+    /**
+     * Responses are only pooled for instances of this class, as a subclass may read {@link NetworkResponse#data}.
+     */
     @Override
-    protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
+    public boolean isResponsePoolable() {
+        return getClass() == JsonObjectRequest.class;
+    }
 
-        String jsonString = null;
+    @Override
+    protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
 
         try {
 
-            try {
-                jsonString = new String(response.data, getParamsEncoding());
-            } catch (UnsupportedEncodingException e) {
-                jsonString = new String(response.data);
-            }
-
+            String jsonString = response.getBodyAsString(getParamsEncoding());
             JSONObject item = new JSONObject(jsonString);
             Response<JSONObject> r = null;
             if (SgnUtils.isSuccess(response.statusCode)) {
-                JsonCacheHelper.cacheJSONObject(this, item);
+                JsonCacheHelper.cacheJSONObject(this, item, response.length);
                 r = Response.fromSuccess(item, getCache());
             } else {
 
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.shopgun.android.sdk.utils.Constants;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Reads a JSON array one element at a time with a {@link JsonReader}, rather than decoding the whole
+ * payload into a {@link String} and tokenizing it with {@link JSONArray#JSONArray(String)}.
+ *
+ * <p>Elements are still handed out as {@link JSONObject}, as that's what the {@link com.shopgun.android.sdk.network.Cache}
+ * and the model factories work on, but each element is passed on as soon as it's read. Callers that
+ * only need the elements, can use {@link #streamArray(InputStream, String, ElementListener)}, which
+ * doesn't keep the array around.</p>
+ */
+public class JsonStreamReader {
+
+    public static final String TAG = Constants.getTag(JsonStreamReader.class);
+
+    /** Callback for elements read from a stream */
+    public interface ElementListener {
+        /**
+         * Called for every object in the array, in order.
+         * @param element An element
+         * @throws JSONException If the element isn't valid
+         */
+        void onElement(JSONObject element) throws JSONException;
+    }
+
+    private JsonStreamReader() {
+        // private
+    }
+
+    /**
+     * Read a JSON array from a stream. Elements that aren't objects are added to the
+     * returned array, but not passed to the listener.
+     * @param in A stream positioned at the start of an array
+     * @param encoding The character encoding of the stream
+     * @param listener A listener to notify of each object, or {@code null}
+     * @return The array read
+     * @throws IOException If the stream isn't a valid JSON array
+     * @throws JSONException If a value can't be represented in a {@link JSONArray}
+     */
+    public static JSONArray readArray(InputStream in, String encoding, ElementListener listener) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        read(in, encoding, listener, array);
+        return array;
+    }
+
+    /**
+     * Read a JSON array from a stream, into a given array. Elements that aren't objects are added to the
+     * array, but not passed to the listener.
+     * @param in A stream positioned at the start of an array
+     * @param encoding The character encoding of the stream
+     * @param listener A listener to notify of each object, or {@code null}
+     * @param array The array to add the elements to
+     * @return The number of elements in the array read
+     * @throws IOException If the stream isn't a valid JSON array
+     * @throws JSONException If a value can't be represented in a {@link JSONArray}
+     */
+    public static int readArray(InputStream in, String encoding, ElementListener listener, JSONArray array) throws IOException, JSONException {
+        return read(in, encoding, listener, array);
+    }
+
+    /**
+     * Read a JSON array from a stream, without keeping the elements around. Only objects are passed
+     * to the listener, other elements are skipped.
+     * @param in A stream positioned at the start of an array
+     * @param encoding The character encoding of the stream
+     * @param listener A listener to notify of each object
+     * @return The number of elements in the array
+     * @throws IOException If the stream isn't a valid JSON array
+     * @throws JSONException If an object can't be represented as a {@link JSONObject}
+     */
+    public static int streamArray(InputStream in, String encoding, ElementListener listener) throws IOException, JSONException {
+        return read(in, encoding, listener, null);
+    }
+
+    private static int read(InputStream in, String encoding, ElementListener listener, JSONArray array) throws IOException, JSONException {
+
+        JsonReader reader = new JsonReader(newReader(in, encoding));
+        try {
+            int count = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                count++;
+                if (array == null && reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                Object value = readValue(reader);
+                if (array != null) {
+                    array.put(value);
+                }
+                if (listener != null && value instanceof JSONObject) {
+                    listener.onElement((JSONObject) value);
+                }
+            }
+            reader.endArray();
+            return count;
+        } catch (IllegalStateException e) {
+            // The reader throws this on unexpected tokens, e.g. an error object rather than an array
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            reader.close();
+        }
+
+    }
+
+    private static InputStreamReader newReader(InputStream in, String encoding) {
+        try {
+            return new InputStreamReader(in, encoding);
+        } catch (UnsupportedEncodingException e) {
+            return new InputStreamReader(in);
+        }
+    }
+
+    private static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Read the next value, represented the same way {@link org.json.JSONTokener} would.
+     */
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected token " + token);
+        }
+    }
+
+    private static Object toNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long l = Long.parseLong(number);
+                if (l <= Integer.MAX_VALUE && l >= Integer.MIN_VALUE) {
+                    return (int) l;
+                }
+                return l;
+            } catch (NumberFormatException e) {
+                // Too large for a long, fall through
+            }
+        }
+        return Double.valueOf(number);
+    }
+
+}
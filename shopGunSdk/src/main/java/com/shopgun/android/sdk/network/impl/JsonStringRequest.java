@@ -29,7 +29,6 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,15 +54,18 @@ public class JsonStringRequest extends JsonRequest<String> {
         super(method, url, requestBody, listener);
     }
 
+    /**
+     * Responses are only pooled for instances of this class, as a subclass may read {@link NetworkResponse#data}.
+     */
+    @Override
+    public boolean isResponsePoolable() {
+        return getClass() == JsonStringRequest.class;
+    }
+
     @Override
     protected Response<String> parseNetworkResponse(NetworkResponse response) {
 
-        String jsonString = null;
-        try {
-            jsonString = new String(response.data, getParamsEncoding()).trim();
-        } catch (UnsupportedEncodingException e) {
-            jsonString = new String(response.data).trim();
-        }
+        String jsonString = response.getBodyAsString(getParamsEncoding()).trim();
 
         if (SgnUtils.isSuccess(response.statusCode)) {
 
@@ -71,7 +73,7 @@ public class JsonStringRequest extends JsonRequest<String> {
 
                 try {
                     JSONObject jObject = new JSONObject(jsonString);
-                    JsonCacheHelper.cacheJSONObject(this, jObject);
+                    JsonCacheHelper.cacheJSONObject(this, jObject, response.length);
                 } catch (JSONException e) {
                     return Response.fromError(new ParseError(e, JSONObject.class));
                 }
@@ -80,7 +82,7 @@ public class JsonStringRequest extends JsonRequest<String> {
 
                 try {
                     JSONArray jArray = new JSONArray(jsonString);
-                    JsonCacheHelper.cacheJSONArray(this, jArray);
+                    JsonCacheHelper.cacheJSONArray(this, jArray, response.length);
                 } catch (JSONException e) {
                     return Response.fromError(new ParseError(e, JSONArray.class));
                 }
@@ -16,6 +16,7 @@
 
 package com.shopgun.android.sdk.network.impl;
 
+import com.shopgun.android.sdk.network.ByteArrayPool;
 import com.shopgun.android.sdk.network.HttpStack;
 import com.shopgun.android.sdk.network.Network;
 import com.shopgun.android.sdk.network.NetworkResponse;
@@ -39,9 +40,20 @@ public class NetworkImpl implements Network {
     private static final int BUFFER_SIZE = 0x1000; // 4K
 
     HttpStack mStack;
+    ByteArrayPool mPool;
 
     public NetworkImpl(HttpStack stack) {
+        this(stack, new ByteArrayPool());
+    }
+
+    /**
+     * Create a new NetworkImpl.
+     * @param stack The stack to perform requests with
+     * @param pool The pool to read response bodies into, for requests that allow it
+     */
+    public NetworkImpl(HttpStack stack, ByteArrayPool pool) {
         mStack = stack;
+        mPool = pool;
     }
 
     private static byte[] entityToBytes(HttpEntity entity) throws IllegalStateException, IOException {
@@ -66,30 +78,40 @@ public class NetworkImpl implements Network {
 
     public NetworkResponse performRequest(Request<?> request) throws ShopGunError {
 
-        byte[] content;
         Map<String, String> responseHeaders = new HashMap<String, String>();
         try {
 
             HttpResponse resp = mStack.performNetworking(request);
+            int statusCode = resp.getStatusLine().getStatusCode();
+
+            for (org.apache.http.Header h : resp.getAllHeaders()) {
+                responseHeaders.put(h.getName(), h.getValue());
+            }
 
-            if (resp.getEntity() == null) {
+            NetworkResponse response;
+            HttpEntity entity = resp.getEntity();
+            if (entity == null) {
                 // add 0-byte for to mock no-content
-                content = new byte[0];
+                response = new NetworkResponse(statusCode, new byte[0], responseHeaders);
+            } else if (request.isResponsePoolable()) {
+                request.addEvent("reading-input-into-pooled-buffer");
+                InputStream is = entity.getContent();
+                try {
+                    response = mPool.read(statusCode, is, entity.getContentLength(), responseHeaders);
+                } finally {
+                    if (is != null) {
+                        is.close();
+                    }
+                }
             } else {
                 request.addEvent("reading-input");
-                content = entityToBytes(resp.getEntity());
+                response = new NetworkResponse(statusCode, entityToBytes(entity), responseHeaders);
             }
 
-            int respLength = content.length;
             int bodyLength = (request.getBody() == null ? 0 : request.getBody().length);
+            request.stats(response.length, bodyLength);
 
-            request.stats(respLength, bodyLength);
-
-            for (org.apache.http.Header h : resp.getAllHeaders()) {
-                responseHeaders.put(h.getName(), h.getValue());
-            }
-
-            return new NetworkResponse(resp.getStatusLine().getStatusCode(), content, responseHeaders);
+            return response;
 
         } catch (Exception e) {
             throw new NetworkError(e);
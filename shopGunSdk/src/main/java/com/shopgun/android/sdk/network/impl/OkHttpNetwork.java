@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.network.ByteArrayPool;
+import com.shopgun.android.sdk.network.Network;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * A {@link Network} performing requests with an {@link OkHttpClient}.
+ *
+ * <p>Sharing the client with the rest of the SDK means API calls reuse pooled keep-alive
+ * connections, are multiplexed over HTTP/2 where the server supports it, and are transparently
+ * gzip'ed. Redirects are followed by the client.</p>
+ */
+public class OkHttpNetwork implements Network {
+
+    public static final String TAG = Constants.getTag(OkHttpNetwork.class);
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final OkHttpClient mClient;
+    private final ByteArrayPool mPool;
+
+    /** Clients derived from mClient with a different time out, they share the connection pool and dispatcher */
+    private final Map<Integer, OkHttpClient> mTimeOutClients = new HashMap<Integer, OkHttpClient>(2);
+
+    public OkHttpNetwork(OkHttpClient client) {
+        this(client, new ByteArrayPool());
+    }
+
+    /**
+     * Create a new OkHttpNetwork.
+     * @param client The client to perform requests with
+     * @param pool The pool to read response bodies into, for requests that allow it
+     */
+    public OkHttpNetwork(OkHttpClient client, ByteArrayPool pool) {
+        if (client == null || pool == null) {
+            throw new IllegalArgumentException("OkHttpClient and ByteArrayPool must not be null.");
+        }
+        mClient = client;
+        mPool = pool;
+    }
+
+    public NetworkResponse performRequest(Request<?> request) throws ShopGunError {
+
+        Response resp = null;
+        boolean streamed = false;
+        try {
+
+            Call call = clientFor(request).newCall(buildRequest(request));
+            resp = call.execute();
+
+            Headers headers = resp.headers();
+            Map<String, String> responseHeaders = new HashMap<String, String>(headers.size());
+            for (int i = 0; i < headers.size(); i++) {
+                responseHeaders.put(headers.name(i), headers.value(i));
+            }
+
+            NetworkResponse response;
+            ResponseBody body = resp.body();
+            boolean stream = body != null && request.isResponseStreamable() && resp.isSuccessful();
+            if (body == null) {
+                response = new NetworkResponse(resp.code(), EMPTY_BODY, responseHeaders);
+            } else if (stream) {
+                // The request parses the body off the connection, which is closed once the response is recycled
+                request.addEvent("streaming-input");
+                response = new NetworkResponse(resp.code(), body.byteStream(), resp, responseHeaders);
+            } else if (request.isResponsePoolable()) {
+                request.addEvent("reading-input-into-pooled-buffer");
+                response = mPool.read(resp.code(), body.byteStream(), body.contentLength(), responseHeaders);
+            } else {
+                request.addEvent("reading-input");
+                response = new NetworkResponse(resp.code(), body.bytes(), responseHeaders);
+            }
+
+            // The size of a streamed body is only known up front, if the server tells us
+            int received = stream ? (int) Math.max(0, body.contentLength()) : response.length;
+            int bodyLength = (request.getBody() == null ? 0 : request.getBody().length);
+            request.stats(received, bodyLength);
+
+            streamed = stream;
+            return response;
+
+        } catch (Exception e) {
+            throw new NetworkError(e);
+        } finally {
+            if (resp != null && !streamed) {
+                resp.close();
+            }
+        }
+
+    }
+
+    private okhttp3.Request buildRequest(Request<?> request) {
+
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder()
+                .url(SgnUtils.requestToUrlAndQueryString(request))
+                .tag(request);
+
+        for (Map.Entry<String, String> h : request.getNetworkHeaders().entrySet()) {
+            builder.header(h.getKey(), h.getValue());
+        }
+
+        switch (request.getMethod()) {
+            case POST:
+                builder.post(body(request));
+                break;
+            case PUT:
+                builder.put(body(request));
+                break;
+            case DELETE:
+                builder.delete();
+                break;
+            default:
+                builder.get();
+                break;
+        }
+
+        return builder.build();
+
+    }
+
+    private static RequestBody body(Request<?> request) {
+        byte[] body = request.getBody();
+        return RequestBody.create(MediaType.parse(request.getBodyContentType()), body == null ? EMPTY_BODY : body);
+    }
+
+    /**
+     * Get a client honoring {@link Request#getTimeOut()}. The default client is used whenever possible.
+     */
+    private OkHttpClient clientFor(Request<?> request) {
+
+        int timeout = request.getTimeOut();
+        if (timeout == mClient.connectTimeoutMillis() && timeout == mClient.readTimeoutMillis()) {
+            return mClient;
+        }
+
+        synchronized (mTimeOutClients) {
+            OkHttpClient client = mTimeOutClients.get(timeout);
+            if (client == null) {
+                client = mClient.newBuilder()
+                        .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                        .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                        .build();
+                mTimeOutClients.put(timeout, client);
+            }
+            return client;
+        }
+
+    }
+
+}
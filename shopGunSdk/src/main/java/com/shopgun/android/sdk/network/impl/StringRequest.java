@@ -76,17 +76,20 @@ public class StringRequest extends Request<String> {
         return this;
     }
 
+    /**
+     * Responses are only pooled for instances of this class, as a subclass may read {@link NetworkResponse#data}.
+     */
+    @Override
+    public boolean isResponsePoolable() {
+        return getClass() == StringRequest.class;
+    }
+
     @Override
     protected Response<String> parseNetworkResponse(NetworkResponse response) {
-        String string;
-        try {
-            string = new String(response.data, getParamsEncoding());
-        } catch (UnsupportedEncodingException e) {
-            string = new String(response.data);
-        }
+        String string = response.getBodyAsString(getParamsEncoding());
 
         String url = SgnUtils.requestToUrlAndQueryString(this);
-        Cache.Item c = new Cache.Item(string, getCacheTTL());
+        Cache.Item c = new Cache.Item(string, getCacheTTL(), response.length);
         getCache().put(url, c);
 
         Response<String> r = Response.fromSuccess(string, getCache());
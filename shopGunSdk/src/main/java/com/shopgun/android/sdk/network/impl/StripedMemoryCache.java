@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.StaleCache;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * A {@link Cache} that splits its entries into a number of independently locked segments.
+ *
+ * <p>Each segment is an access ordered {@link LinkedHashMap} with its own share of the total byte
+ * limit, so a lookup only ever blocks lookups that hash to the same segment. Eviction is
+ * least-recently-used per segment, and is weighted by {@link Cache.Item#size}.</p>
+ *
+ * <p>Expired items are kept until they're evicted or discardable, so they're available through
+ * {@link #getStale(String)}.</p>
+ */
+public class StripedMemoryCache implements StaleCache {
+
+    public static final String TAG = Constants.getTag(StripedMemoryCache.class);
+
+    /** Default number of segments, must be a power of two */
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    /** Size used for items that doesn't know their own size */
+    private static final int UNKNOWN_ITEM_SIZE = 4096;
+
+    /** Approximate overhead of a single entry (key, map entry and Item) */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Segment[] mSegments;
+
+    private final int mSegmentMask;
+
+    public StripedMemoryCache() {
+        this(Runtime.getRuntime().maxMemory() / 8, DEFAULT_SEGMENT_COUNT);
+    }
+
+    /**
+     * Create a new cache.
+     * @param maxBytes The limit in bytes this cache may use
+     * @param segmentCount The number of segments, will be rounded up to nearest power of two
+     */
+    public StripedMemoryCache(long maxBytes, int segmentCount) {
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("segmentCount must be positive");
+        }
+        int count = 1;
+        while (count < segmentCount) {
+            count <<= 1;
+        }
+        mSegments = new Segment[count];
+        mSegmentMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            mSegments[i] = new Segment();
+        }
+        setLimit(maxBytes);
+    }
+
+    /**
+     * Set the limit on memory this Cache may use. The limit is split evenly between segments.
+     * @param maxMemLimit The limit in bytes
+     */
+    public void setLimit(long maxMemLimit) {
+        if (maxMemLimit > Runtime.getRuntime().maxMemory()) {
+            throw new IllegalArgumentException("maxMemLimit cannot be more than max heap size");
+        }
+        long segmentLimit = Math.max(1, maxMemLimit / mSegments.length);
+        for (Segment s : mSegments) {
+            s.setLimit(segmentLimit);
+        }
+        SgnLog.v(TAG, "New memory limit: " + maxMemLimit / 1024 + "kb (" + mSegments.length + " segments)");
+    }
+
+    public void put(Request<?> request, Response<?> response) {
+
+        // If the request is cacheable
+        if (NetworkUtils.isCacheable(request, response)) {
+
+            request.addEvent("add-response-to-cache");
+            for (Entry<String, Item> e : response.cache.entrySet()) {
+                put(e.getKey(), e.getValue());
+            }
+
+        }
+
+    }
+
+    /**
+     * Add a single item to the cache, e.g. when promoting an item from a slower cache.
+     * @param key A key
+     * @param item The item to add
+     */
+    public void put(String key, Cache.Item item) {
+        if (key != null && item != null) {
+            segmentFor(key).put(key, item);
+        }
+    }
+
+    public Cache.Item get(String key) {
+        if (key == null) {
+            return null;
+        }
+        return segmentFor(key).get(key, false);
+    }
+
+    public Cache.Item getStale(String key) {
+        if (key == null) {
+            return null;
+        }
+        return segmentFor(key).get(key, true);
+    }
+
+    public void clear() {
+        for (Segment s : mSegments) {
+            s.clear();
+        }
+    }
+
+    /**
+     * Get the number of items currently in the cache.
+     * @return The item count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : mSegments) {
+            size += s.count();
+        }
+        return size;
+    }
+
+    /**
+     * Get the approximate number of bytes currently held by the cache.
+     * @return The size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Segment s : mSegments) {
+            bytes += s.bytes();
+        }
+        return bytes;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return mSegments[h & mSegmentMask];
+    }
+
+    private static long weigh(String key, Item item) {
+        long size = item.size > 0 ? item.size : UNKNOWN_ITEM_SIZE;
+        return size + key.length() + ENTRY_OVERHEAD;
+    }
+
+    private static class Segment {
+
+        private final LinkedHashMap<String, Item> mMap = new LinkedHashMap<String, Item>(16, 0.75f, true);
+        private long mBytes = 0;
+        private long mLimit;
+
+        synchronized void setLimit(long limit) {
+            mLimit = limit;
+            trim();
+        }
+
+        synchronized Item get(String key, boolean allowStale) {
+            Item item = mMap.get(key);
+            if (item == null) {
+                return null;
+            } else if (item.isDiscardable()) {
+                mMap.remove(key);
+                mBytes -= weigh(key, item);
+                return null;
+            } else if (item.isExpired() && !allowStale) {
+                return null;
+            }
+            return item;
+        }
+
+        synchronized void put(String key, Item item) {
+            Item previous = mMap.put(key, item);
+            if (previous != null) {
+                mBytes -= weigh(key, previous);
+            }
+            mBytes += weigh(key, item);
+            trim();
+        }
+
+        synchronized void clear() {
+            mMap.clear();
+            mBytes = 0;
+        }
+
+        synchronized int count() {
+            return mMap.size();
+        }
+
+        synchronized long bytes() {
+            return mBytes;
+        }
+
+        private void trim() {
+            // least recently accessed item will be the first one iterated
+            Iterator<Entry<String, Item>> it = mMap.entrySet().iterator();
+            while (mBytes > mLimit && it.hasNext()) {
+                Entry<String, Item> e = it.next();
+                mBytes -= weigh(e.getKey(), e.getValue());
+                it.remove();
+            }
+        }
+
+    }
+
+}
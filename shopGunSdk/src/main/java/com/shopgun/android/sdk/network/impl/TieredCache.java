@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.StaleCache;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnThreadFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A two-tier {@link Cache}, with a {@link StripedMemoryCache} in front of a {@link DiskCache}.
+ *
+ * <p>Writes go to the memory tier immediately, and are written to disk on a single background
+ * thread so they never delay the delivery of a response. Reads check the memory tier first, and
+ * items found on disk are promoted to memory. This allows e.g. list screens to be populated from
+ * disk on a cold start.</p>
+ */
+public class TieredCache implements StaleCache {
+
+    public static final String TAG = Constants.getTag(TieredCache.class);
+
+    private final StripedMemoryCache mMemory;
+    private final DiskCache mDisk;
+    private final ExecutorService mDiskExecutor;
+
+    public TieredCache(StripedMemoryCache memory, DiskCache disk) {
+        if (memory == null || disk == null) {
+            throw new IllegalArgumentException("Memory and disk cache must not be null.");
+        }
+        mMemory = memory;
+        mDisk = disk;
+        mDiskExecutor = Executors.newSingleThreadExecutor(new SgnThreadFactory("sgn-disk-cache-"));
+    }
+
+    public void put(Request<?> request, Response<?> response) {
+
+        if (!NetworkUtils.isCacheable(request, response)) {
+            return;
+        }
+
+        mMemory.put(request, response);
+
+        // Copy the items, the request may be reused before the write happens
+        final Map<String, Item> items = new HashMap<String, Item>(response.cache);
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, Item> e : items.entrySet()) {
+                    mDisk.put(e.getKey(), e.getValue());
+                }
+            }
+        });
+
+    }
+
+    public Cache.Item get(String key) {
+        Cache.Item item = mMemory.get(key);
+        if (item == null) {
+            item = mDisk.get(key);
+            if (item != null) {
+                mMemory.put(key, item);
+            }
+        }
+        return item;
+    }
+
+    public Cache.Item getStale(String key) {
+        Cache.Item item = mMemory.getStale(key);
+        if (item == null) {
+            item = mDisk.getStale(key);
+            if (item != null) {
+                mMemory.put(key, item);
+            }
+        }
+        return item;
+    }
+
+    public void clear() {
+        mMemory.clear();
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDisk.clear();
+            }
+        });
+    }
+
+    /**
+     * Get the memory tier of this cache.
+     * @return A {@link StripedMemoryCache}
+     */
+    public StripedMemoryCache getMemoryCache() {
+        return mMemory;
+    }
+
+    /**
+     * Get the disk tier of this cache.
+     * @return A {@link DiskCache}
+     */
+    public DiskCache getDiskCache() {
+        return mDisk;
+    }
+
+}
@@ -31,11 +31,20 @@ public class MockApiNetwork extends MockNetwork {
     public static final String TAG = Constants.getTag(MockApiNetwork.class);
 
     Context mContext;
+    private final MockApiShoppinglistResponse.Data mShoppinglists = new MockApiShoppinglistResponse.Data();
 
     public MockApiNetwork(Context ctx) {
         this.mContext = ctx;
     }
 
+    /**
+     * Get the lists and items served by this network.
+     * @return The shoppinglist data of this network
+     */
+    public MockApiShoppinglistResponse.Data getShoppinglists() {
+        return mShoppinglists;
+    }
+
     @Override
     public NetworkResponse performRequest(Request<?> request) throws ShopGunError {
         super.performRequest(request);
@@ -53,7 +62,7 @@ public class MockApiNetwork extends MockNetwork {
                 throw new ShopGunError(Integer.MAX_VALUE, "API version not supported", "Api version given: " + apiVersion);
             }
 
-            return MockApiNetworkResponse.create(mContext, request, pathHelper.getType()).getResponse();
+            return MockApiNetworkResponse.create(mContext, request, pathHelper.getType(), mShoppinglists).getResponse();
 
         } catch (MalformedURLException e) {
             return new MockUnsupportedNetworkResponse(request);
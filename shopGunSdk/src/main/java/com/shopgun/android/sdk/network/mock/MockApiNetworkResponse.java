@@ -67,6 +67,11 @@ public abstract class MockApiNetworkResponse {
     public abstract NetworkResponse getResponse();
 
     public static MockApiNetworkResponse create(Context ctx, Request request, String type) throws ShopGunError {
+        return create(ctx, request, type, new MockApiShoppinglistResponse.Data());
+    }
+
+    public static MockApiNetworkResponse create(Context ctx, Request request, String type,
+                                                MockApiShoppinglistResponse.Data shoppinglists) throws ShopGunError {
 
         if ("sessions".equals(type)) {
             return new MockApiSessionResponse(ctx, request);
@@ -82,6 +87,8 @@ public abstract class MockApiNetworkResponse {
             return new MockApiSimpleResponse(ctx, request, FILE_CURRENCY);
         } else if ("countries".equals(type)) {
             return new MockApiSimpleResponse(ctx, request, FILE_COUNTRIES);
+        } else if ("users".equals(type)) {
+            return new MockApiShoppinglistResponse(ctx, request, shoppinglists);
         }
 //        else if ("regions".equals(type)) {
 //
@@ -92,9 +99,6 @@ public abstract class MockApiNetworkResponse {
 //        else if ("favorites".equals(type)) {
 //
 //        }
-//        else if ("users".equals(type)) {
-//
-//        }
 //        else if ("shoppinglists".equals(type)) {
 //
 //        }
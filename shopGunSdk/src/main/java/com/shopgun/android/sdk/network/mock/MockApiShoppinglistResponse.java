@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.mock;
+
+import android.content.Context;
+
+import com.shopgun.android.sdk.api.Parameters;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.shoppinglists.ItemChangeJournal;
+import com.shopgun.android.sdk.utils.SgnJson;
+import com.shopgun.android.sdk.utils.SgnUtils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory version of the shoppinglist endpoints for a user. Lists and items are put into the
+ * {@link Data} of a {@link MockApiNetwork}, see {@link MockApiNetwork#getShoppinglists()}. GET requests
+ * for lists and items are supported, and so are item batches, see {@link ItemChangeJournal}.
+ *
+ * <p>The lists endpoint honours {@link Parameters#MODIFIED_FROM}, returning only lists modified at,
+ * or after the given time.</p>
+ */
+public class MockApiShoppinglistResponse extends MockApiNetworkResponse {
+
+    /**
+     * The lists and items on the mock server. Each {@link MockApiNetwork} has its own.
+     */
+    public static class Data {
+
+        private final Map<String, Shoppinglist> mLists = new LinkedHashMap<String, Shoppinglist>();
+        private final Map<String, ShoppinglistItem> mItems = new LinkedHashMap<String, ShoppinglistItem>();
+
+        public synchronized void putList(Shoppinglist sl) {
+            mLists.put(sl.getId(), sl);
+        }
+
+        public synchronized void putItem(ShoppinglistItem sli) {
+            mItems.put(sli.getId(), sli);
+        }
+
+        public synchronized void clear() {
+            mLists.clear();
+            mItems.clear();
+        }
+
+    }
+
+    private final Data mData;
+
+    protected MockApiShoppinglistResponse(Context mContext, Request<?> request, Data data) {
+        super(mContext, request);
+        mData = data;
+    }
+
+    @Override
+    public NetworkResponse getResponse() {
+
+        // users/{user_id}/shoppinglists[/{list_uuid}/items]
+        if (!"shoppinglists".equals(mPath.getItemAction())) {
+            return getUnsupportedResponse();
+        }
+        String[] path = mPath.mPath;
+        int index = mPath.itemAction + 1;
+        String listId = index < path.length ? path[index] : null;
+        String action = index + 1 < path.length ? path[index + 1] : null;
+
+        if (mRequest.getMethod() == Request.Method.POST && "items".equals(listId) && "batch".equals(action)) {
+            return postItemBatch();
+        } else if (mRequest.getMethod() != Request.Method.GET) {
+            return getUnsupportedResponse();
+        } else if (listId == null) {
+            return getLists();
+        } else if ("items".equals(action)) {
+            return getItems(listId);
+        }
+        return getUnsupportedResponse();
+
+    }
+
+    private NetworkResponse getLists() {
+        String from = mRequest.getParameters().get(Parameters.MODIFIED_FROM);
+        Date fromDate = from == null ? null : SgnUtils.stringToDate(from);
+        JSONArray array = new JSONArray();
+        synchronized (mData) {
+            for (Shoppinglist sl : mData.mLists.values()) {
+                if (fromDate == null || !sl.getModified().before(fromDate)) {
+                    array.put(sl.toJSON());
+                }
+            }
+        }
+        return new NetworkResponse(200, array.toString().getBytes(), null);
+    }
+
+    private NetworkResponse postItemBatch() {
+        JSONArray results = new JSONArray();
+        try {
+            JSONArray changes = new JSONArray(new String(mRequest.getBody(), "UTF-8"));
+            synchronized (mData) {
+                for (int i = 0; i < changes.length(); i++) {
+                    JSONObject change = changes.getJSONObject(i);
+                    String id = change.getString(SgnJson.ID);
+                    JSONObject result = new JSONObject().put(SgnJson.ID, id);
+                    if (ItemChangeJournal.OP_DELETE.equals(change.getString(ItemChangeJournal.OP))) {
+                        mData.mItems.remove(id);
+                    } else {
+                        ShoppinglistItem sli = ShoppinglistItem.fromJSON(change.getJSONObject(ItemChangeJournal.ITEM));
+                        mData.mItems.put(id, sli);
+                        result.put(ItemChangeJournal.ITEM, sli.toJSON());
+                    }
+                    results.put(result);
+                }
+            }
+        } catch (Exception e) {
+            return getUnsupportedResponse();
+        }
+        return new NetworkResponse(200, results.toString().getBytes(), null);
+    }
+
+    private NetworkResponse getItems(String listId) {
+        JSONArray array = new JSONArray();
+        synchronized (mData) {
+            for (ShoppinglistItem sli : mData.mItems.values()) {
+                if (listId.equals(sli.getShoppinglistId())) {
+                    array.put(sli.toJSON());
+                }
+            }
+        }
+        return new NetworkResponse(200, array.toString().getBytes(), null);
+    }
+
+}
@@ -21,6 +21,8 @@ import android.widget.TextView;
 import com.shopgun.android.materialcolorcreator.MaterialColor;
 import com.shopgun.android.materialcolorcreator.MaterialColorImpl;
 import com.shopgun.android.sdk.R;
+import com.shopgun.android.sdk.ShopGun;
+import com.shopgun.android.sdk.network.RequestQueue;
 import com.shopgun.android.sdk.utils.SgnUtils;
 import com.shopgun.android.verso.VersoFragment;
 import com.shopgun.android.verso.VersoPageView;
@@ -142,6 +144,7 @@ public class PagedPublicationFragment extends VersoFragment {
 
     public void setPublicationConfiguration(PagedPublicationConfiguration configuration) {
         if (configuration != null) {
+            prioritise(mConfig, configuration);
             mConfig = configuration;
             mLifecycle.setConfig(mConfig);
             setVersoSpreadConfiguration(mConfig);
@@ -168,9 +171,28 @@ public class PagedPublicationFragment extends VersoFragment {
     @Override
     public void onResume() {
         super.onResume();
+        prioritise(null, mConfig);
         loadPagedPublication();
     }
 
+    /**
+     * Let the requests of the visible configuration go ahead of other requests, and move the
+     * requests of a configuration we've switched away from, or paused, to the back of the queue.
+     * Configurations tag their requests with themselves.
+     */
+    private void prioritise(PagedPublicationConfiguration previous, PagedPublicationConfiguration current) {
+        if (!ShopGun.isInstantiated()) {
+            return;
+        }
+        RequestQueue queue = ShopGun.getInstance().getRequestQueue();
+        if (previous != null && previous != current) {
+            queue.setBackground(previous);
+        }
+        if (current != null) {
+            queue.setForeground(current);
+        }
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -178,6 +200,8 @@ public class PagedPublicationFragment extends VersoFragment {
         if (mConfig != null) {
             mConfig.cancel();
         }
+        // Nothing is shown anymore, so the requests of the configuration go to the back of the queue
+        prioritise(mConfig, null);
     }
 
     @Override
@@ -144,6 +144,11 @@ public class CatalogConfiguration extends IntroOutroConfiguration {
             mCatalogRequest = r;
         }
 //        mCatalogRequest.setDebugger(new NetworkDebugger());
+        // Tag with this configuration, so the fragment showing it can prioritise the requests,
+        // unless the request has a tag of its own
+        if (mCatalogRequest.getTag() == null) {
+            mCatalogRequest.setTag(this);
+        }
         ShopGun.getInstance().add(mCatalogRequest);
     }
 
@@ -49,6 +49,15 @@ public class LoaderDelivery<T> {
         deliverFinishRequestAndPostBack(request, response, data, errors, intermediate);
     }
 
+    /**
+     * Post data back to the listener as intermediate, without finishing the request.
+     * @param request The request the data belongs to
+     * @param data The data to deliver
+     */
+    public void deliverIntermediate(Request request, T data) {
+        mHandler.post(new LoaderRequestPostBackRunnable(request, data, new ArrayList<ShopGunError>(0), true));
+    }
+
     private void deliverFinishRequestAndPostBack(Request<?> request, Response response, T data, List<ShopGunError> errors, boolean intermediate) {
         new Delivery.DeliveryRunnable(request, response).run();
         mHandler.post(new LoaderRequestPostBackRunnable(request, data, errors, intermediate));
@@ -139,6 +139,7 @@ public abstract class LoaderRequest<T> extends Request<T> implements Delivery {
         r.setTag(getTag());
         r.setIgnoreCache(ignoreCache());
         r.setTimeOut(getTimeOut());
+        r.setDeadlineAt(getDeadline());
         r.setUseLocation(useLocation());
     }
 
@@ -186,6 +187,11 @@ public abstract class LoaderRequest<T> extends Request<T> implements Delivery {
         mDelivery.deliver(request, response, mData, mErrors, intermediate);
     }
 
+    @Override
+    public void postIntermediateResponse(Request<?> request, Response<?> response) {
+        // Sub-requests only contribute to the data once they complete
+    }
+
     /** Callback interface for delivering parsed responses. */
     public interface Listener<T> {
         /**
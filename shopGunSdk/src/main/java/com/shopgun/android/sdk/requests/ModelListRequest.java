@@ -64,6 +64,15 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
         return this;
     }
 
+    /**
+     * Model requests read the body with the SDK's own parsing, and subclasses only convert
+     * the result in {@link #parse(JSONArray)}, so the response may be pooled.
+     */
+    @Override
+    public boolean isResponsePoolable() {
+        return true;
+    }
+
     @Override
     public Response<JSONArray> parseCache(Cache c) {
         if (mLoaderRequest != null && mLoaderRequest.getData() != null) {
@@ -80,6 +89,16 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
 
     public abstract T parse(JSONArray response);
 
+    /**
+     * Convert the result of a {@link Response} into model data. Subclasses that convert the
+     * data while reading it from the network, may return that data instead.
+     * @param result The result of a response
+     * @return The model data
+     */
+    protected T parseResult(JSONArray result) {
+        return parse(result);
+    }
+
     @Override
     public synchronized void cancel() {
         super.cancel();
@@ -100,7 +119,7 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
         } else if (response.isSuccess()) {
 
             request.addEvent("parsing-response-to-model-objects");
-            T data = parse((JSONArray) response.result);
+            T data = parseResult((JSONArray) response.result);
             boolean intermediate = ModelRequestTools.runLoader(this, mLoaderRequest, data, getRequestQueue());
             mDelivery.deliver(this, response, data, new ArrayList<ShopGunError>(0), intermediate);
 
@@ -120,6 +139,15 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
 
     }
 
+    @Override
+    public synchronized void postIntermediateResponse(Request<?> request, Response<?> response) {
+        // Stale data is delivered as is, the loader will run once the request completes
+        if (!isCanceled() && response.isSuccess()) {
+            request.addEvent("parsing-stale-response-to-model-objects");
+            mDelivery.deliverIntermediate(this, parseResult((JSONArray) response.result));
+        }
+    }
+
     protected boolean loadDealer() {
         return mLoaderRequest.loadDealer();
     }
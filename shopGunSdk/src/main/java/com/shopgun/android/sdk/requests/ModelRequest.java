@@ -64,6 +64,15 @@ public abstract class ModelRequest<T> extends JsonObjectRequest implements Deliv
         return this;
     }
 
+    /**
+     * Model requests read the body with the SDK's own parsing, and subclasses only convert
+     * the result in {@link #parse(JSONObject)}, so the response may be pooled.
+     */
+    @Override
+    public boolean isResponsePoolable() {
+        return true;
+    }
+
     @Override
     public Response<JSONObject> parseCache(Cache c) {
         if (mLoaderRequest != null && mLoaderRequest.getData() != null) {
@@ -121,6 +130,15 @@ public abstract class ModelRequest<T> extends JsonObjectRequest implements Deliv
 
     }
 
+    @Override
+    public synchronized void postIntermediateResponse(Request<?> request, Response<?> response) {
+        // Stale data is delivered as is, the loader will run once the request completes
+        if (!isCanceled() && response.isSuccess()) {
+            request.addEvent("parsing-stale-response-to-model-objects");
+            mDelivery.deliverIntermediate(this, parse((JSONObject) response.result));
+        }
+    }
+
     protected boolean loadDealer() {
         return mLoaderRequest.loadDealer();
     }
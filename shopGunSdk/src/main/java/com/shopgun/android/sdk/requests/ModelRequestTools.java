@@ -36,6 +36,7 @@ public class ModelRequestTools {
         to.setTag(from.getTag());
         to.setIgnoreCache(from.ignoreCache());
         to.setTimeOut(from.getTimeOut());
+        to.setDeadlineAt(from.getDeadline());
         to.setUseLocation(from.useLocation());
     }
 
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.requests;
+
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.impl.JsonCacheHelper;
+import com.shopgun.android.sdk.network.impl.JsonStreamReader;
+import com.shopgun.android.sdk.network.impl.ParseError;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A {@link ModelListRequest} that reads the network response one element at a time.
+ *
+ * <p>Each element is converted into a model object, and added to the cache, as soon as it has been
+ * read. Where the {@link com.shopgun.android.sdk.network.Network} supports it, the elements are read
+ * straight off the connection, see {@link #isResponseStreamable()}. The model objects are delivered
+ * without a second pass over the response, as they are carried by the {@link JSONArray} result of the
+ * {@link Response} itself. Unless debugging, that array is empty, as the elements aren't kept around.</p>
+ *
+ * @param <E> The model type of the elements in the list
+ */
+public abstract class StreamingModelListRequest<E> extends ModelListRequest<List<E>> {
+
+    public static final String TAG = Constants.getTag(StreamingModelListRequest.class);
+
+    public StreamingModelListRequest(String url, LoaderRequest.Listener<List<E>> listener) {
+        super(url, listener);
+    }
+
+    public StreamingModelListRequest(String url, ModelListLoaderRequest<List<E>> request, LoaderRequest.Listener<List<E>> listener) {
+        super(url, request, listener);
+    }
+
+    /**
+     * Convert a single element of the response into a model object.
+     * @param element An element of the response
+     * @return A model object
+     */
+    public abstract E parseElement(JSONObject element);
+
+    @Override
+    public List<E> parse(JSONArray response) {
+        List<E> list = new ArrayList<E>(response.length());
+        for (int i = 0; i < response.length(); i++) {
+            JSONObject o = response.optJSONObject(i);
+            if (o != null) {
+                list.add(parseElement(o));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public boolean isResponseStreamable() {
+        return true;
+    }
+
+    @Override
+    protected Response<JSONArray> parseNetworkResponse(NetworkResponse response) {
+
+        if (!SgnUtils.isSuccess(response.statusCode)) {
+            return super.parseNetworkResponse(response);
+        }
+
+        try {
+
+            ElementCollector collector = new ElementCollector();
+            CountingInputStream in = new CountingInputStream(response.getBodyStream());
+            StreamedArray<E> array = new StreamedArray<E>(collector.mData);
+            int count;
+            if (isDebugging()) {
+                // Debuggers get to see the response as it was received
+                count = JsonStreamReader.readArray(in, getParamsEncoding(), collector, array);
+            } else {
+                count = JsonStreamReader.streamArray(in, getParamsEncoding(), collector);
+            }
+
+            // The payload size is distributed evenly, same as JsonCacheHelper.cacheJSONArray()
+            long itemSize = count == 0 ? 0 : in.mCount / count;
+            for (String ern : collector.mErns) {
+                Cache.Item item = getCache().get(ern);
+                if (item != null) {
+                    item.size = itemSize;
+                }
+            }
+            JsonCacheHelper.cacheErnList(this, collector.mErns, collector.mErnBytes);
+            return Response.fromSuccess((JSONArray) array, getCache());
+
+        } catch (Exception e) {
+            return Response.fromError(new ParseError(e, JSONArray.class));
+        }
+
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<E> parseResult(JSONArray result) {
+        if (result instanceof StreamedArray) {
+            // Only this request creates them, so the model objects are of the right type
+            return ((StreamedArray<E>) result).mData;
+        }
+        return super.parseResult(result);
+    }
+
+    /**
+     * The result of a streamed response, carrying the model objects read along with it. Unless
+     * debugging, the array itself is empty.
+     */
+    private static class StreamedArray<E> extends JSONArray {
+
+        final List<E> mData;
+
+        StreamedArray(List<E> data) {
+            mData = data;
+        }
+
+    }
+
+    /**
+     * Counts the bytes read, as the size of a streamed body isn't known up front.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        long mCount = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+    }
+
+    private class ElementCollector implements JsonStreamReader.ElementListener {
+
+        final List<E> mData = new ArrayList<E>();
+        final LinkedList<String> mErns = new LinkedList<String>();
+        long mErnBytes = 0;
+
+        @Override
+        public void onElement(JSONObject element) throws JSONException {
+            mData.add(parseElement(element));
+            String ern = JsonCacheHelper.cacheJSONObject(StreamingModelListRequest.this, element);
+            if (ern != null) {
+                mErns.add(ern);
+                mErnBytes += ern.length();
+            }
+        }
+
+    }
+
+}
@@ -20,14 +20,14 @@ import com.shopgun.android.sdk.api.Endpoints;
 import com.shopgun.android.sdk.model.Catalog;
 import com.shopgun.android.sdk.requests.LoaderRequest;
 import com.shopgun.android.sdk.requests.ModelListLoaderRequest;
-import com.shopgun.android.sdk.requests.ModelListRequest;
+import com.shopgun.android.sdk.requests.StreamingModelListRequest;
 import com.shopgun.android.sdk.utils.Constants;
 
-import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.util.List;
 
-public class CatalogListRequest extends ModelListRequest<List<Catalog>> {
+public class CatalogListRequest extends StreamingModelListRequest<Catalog> {
 
     public static final String TAG = Constants.getTag(CatalogListRequest.class);
 
@@ -48,8 +48,8 @@ public class CatalogListRequest extends ModelListRequest<List<Catalog>> {
     }
 
     @Override
-    public List<Catalog> parse(JSONArray response) {
-        return Catalog.fromJSON(response);
+    public Catalog parseElement(JSONObject element) {
+        return Catalog.fromJSON(element);
     }
 
     @Override
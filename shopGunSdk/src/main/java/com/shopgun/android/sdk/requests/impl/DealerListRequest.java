@@ -19,14 +19,14 @@ package com.shopgun.android.sdk.requests.impl;
 import com.shopgun.android.sdk.api.Endpoints;
 import com.shopgun.android.sdk.model.Dealer;
 import com.shopgun.android.sdk.requests.LoaderRequest;
-import com.shopgun.android.sdk.requests.ModelListRequest;
+import com.shopgun.android.sdk.requests.StreamingModelListRequest;
 import com.shopgun.android.sdk.utils.Constants;
 
-import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.util.List;
 
-public class DealerListRequest extends ModelListRequest<List<Dealer>> {
+public class DealerListRequest extends StreamingModelListRequest<Dealer> {
 
     public static final String TAG = Constants.getTag(DealerListRequest.class);
 
@@ -39,8 +39,8 @@ public class DealerListRequest extends ModelListRequest<List<Dealer>> {
     }
 
     @Override
-    public List<Dealer> parse(JSONArray response) {
-        return Dealer.fromJSON(response);
+    public Dealer parseElement(JSONObject element) {
+        return Dealer.fromJSON(element);
     }
 
 }
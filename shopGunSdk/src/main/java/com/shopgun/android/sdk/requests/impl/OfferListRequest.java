@@ -20,14 +20,14 @@ import com.shopgun.android.sdk.api.Endpoints;
 import com.shopgun.android.sdk.model.Offer;
 import com.shopgun.android.sdk.requests.LoaderRequest;
 import com.shopgun.android.sdk.requests.ModelListLoaderRequest;
-import com.shopgun.android.sdk.requests.ModelListRequest;
+import com.shopgun.android.sdk.requests.StreamingModelListRequest;
 import com.shopgun.android.sdk.utils.Constants;
 
-import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.util.List;
 
-public class OfferListRequest extends ModelListRequest<List<Offer>> {
+public class OfferListRequest extends StreamingModelListRequest<Offer> {
 
     public static final String TAG = Constants.getTag(OfferListRequest.class);
 
@@ -48,8 +48,8 @@ public class OfferListRequest extends ModelListRequest<List<Offer>> {
     }
 
     @Override
-    public List<Offer> parse(JSONArray response) {
-        return Offer.fromJSON(response);
+    public Offer parseElement(JSONObject element) {
+        return Offer.fromJSON(element);
     }
 
     @Override
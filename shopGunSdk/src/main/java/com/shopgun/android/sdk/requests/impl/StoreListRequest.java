@@ -20,14 +20,14 @@ import com.shopgun.android.sdk.api.Endpoints;
 import com.shopgun.android.sdk.model.Store;
 import com.shopgun.android.sdk.requests.LoaderRequest;
 import com.shopgun.android.sdk.requests.ModelListLoaderRequest;
-import com.shopgun.android.sdk.requests.ModelListRequest;
+import com.shopgun.android.sdk.requests.StreamingModelListRequest;
 import com.shopgun.android.sdk.utils.Constants;
 
-import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.util.List;
 
-public class StoreListRequest extends ModelListRequest<List<Store>> {
+public class StoreListRequest extends StreamingModelListRequest<Store> {
 
     public static final String TAG = Constants.getTag(StoreListRequest.class);
 
@@ -48,8 +48,8 @@ public class StoreListRequest extends ModelListRequest<List<Store>> {
     }
 
     @Override
-    public List<Store> parse(JSONArray response) {
-        return Store.fromJSON(response);
+    public Store parseElement(JSONObject element) {
+        return Store.fromJSON(element);
     }
 
     @Override
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.User;
+
+/**
+ * A transport for notifications about changes to a user's {@link Shoppinglist shoppinglists} on
+ * the server, e.g. long-polling or server-sent events.
+ *
+ * <p>While a channel is connected, the {@link SyncManager} stops polling the API for changes, and
+ * only synchronizes the lists the channel reports as changed. When the channel is down, the
+ * {@link SyncManager} falls back to polling.</p>
+ */
+public interface ChangeChannel {
+
+    /**
+     * Callbacks from a {@link ChangeChannel}. They may be called on any thread.
+     */
+    interface Listener {
+
+        /**
+         * The channel is connected, and changes will be reported.
+         */
+        void onConnected();
+
+        /**
+         * The channel is down, and changes will not be reported until {@link #onConnected()}.
+         * @param e The reason, or {@code null} if it's unknown
+         */
+        void onDisconnected(Exception e);
+
+        /**
+         * A list, and possibly its items, has changed.
+         * @param shoppinglistId A {@link Shoppinglist#getId()}
+         */
+        void onListChanged(String shoppinglistId);
+
+        /**
+         * Something changed, but the channel can't tell which lists, e.g. a list was added or
+         * removed, or changes were dropped.
+         */
+        void onListsChanged();
+
+    }
+
+    /**
+     * Start listening for changes to the lists of a user. Opening an open channel, will close it first.
+     * @param user A {@link User}
+     * @param listener A listener for changes
+     */
+    void open(User user, Listener listener);
+
+    /**
+     * Stop listening for changes.
+     */
+    void close();
+
+    /**
+     * Check if the channel is connected.
+     * @return {@code true} if changes are currently being reported, else {@code false}
+     */
+    boolean isConnected();
+
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.model.interfaces.SyncState;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnJson;
+import com.shopgun.android.sdk.utils.SgnUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outgoing {@link ShoppinglistItem} changes of the {@link SyncManager}, waiting to be sent to the API.
+ *
+ * <p>Changes are keyed by the item id, so an item edited several times is only sent once, with its
+ * newest state. A delete replaces any edit with the same, or an older modified. Changes are taken
+ * out in batches of up to {@link #MAX_BATCH_SIZE} items, and sent as a single request to
+ * {@link com.shopgun.android.sdk.api.Endpoints#listitemsBatch(int)}.</p>
+ *
+ * <p>The body of a batch request is an array of changes:</p>
+ * <pre>
+ * [ { "op": "put", "id": ..., "shopping_list_id": ..., "modified": ..., "item": { ... } },
+ *   { "op": "delete", "id": ..., "shopping_list_id": ..., "modified": ... } ]
+ * </pre>
+ * <p>and the response is an array with a result per change, holding either the resulting
+ * {@code item}, or an {@code error}:</p>
+ * <pre>
+ * [ { "id": ..., "item": { ... } },
+ *   { "id": ..., "error": { "code": ..., "message": ... } } ]
+ * </pre>
+ */
+public class ItemChangeJournal {
+
+    public static final String TAG = Constants.getTag(ItemChangeJournal.class);
+
+    /** Max number of changes in a single batch request */
+    public static final int MAX_BATCH_SIZE = 50;
+
+    public static final String OP = "op";
+    public static final String OP_PUT = "put";
+    public static final String OP_DELETE = "delete";
+    public static final String ITEM = "item";
+    public static final String ERROR = "error";
+
+    private final LinkedHashMap<String, ShoppinglistItem> mChanges = new LinkedHashMap<String, ShoppinglistItem>();
+
+    /**
+     * Add the change of an item to the journal, replacing any older change to the same item.
+     * @param item An item in the state {@link SyncState#TO_SYNC} or {@link SyncState#DELETE}
+     * @return {@code true} if the change was added, {@code false} if the item doesn't need to be sent
+     */
+    public synchronized boolean add(ShoppinglistItem item) {
+        int state = item.getState();
+        if (state != SyncState.TO_SYNC && state != SyncState.DELETE) {
+            return false;
+        }
+        ShoppinglistItem prev = mChanges.get(item.getId());
+        if (prev != null && supersedes(prev, item)) {
+            return false;
+        }
+        mChanges.put(item.getId(), item);
+        return true;
+    }
+
+    private static boolean supersedes(ShoppinglistItem prev, ShoppinglistItem item) {
+        int cmp = prev.getModified().compareTo(item.getModified());
+        if (cmp == 0) {
+            return prev.getState() == SyncState.DELETE && item.getState() != SyncState.DELETE;
+        }
+        return cmp > 0;
+    }
+
+    /**
+     * Take a batch of changes out of the journal, in the order they were first added.
+     * @param max The max number of changes to take
+     * @return A list of items, empty if the journal is empty
+     */
+    public synchronized List<ShoppinglistItem> drain(int max) {
+        List<ShoppinglistItem> batch = new ArrayList<ShoppinglistItem>(Math.min(max, mChanges.size()));
+        Iterator<ShoppinglistItem> it = mChanges.values().iterator();
+        while (batch.size() < max && it.hasNext()) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+
+    /**
+     * Get the number of changes in the journal.
+     * @return The number of changes
+     */
+    public synchronized int size() {
+        return mChanges.size();
+    }
+
+    /**
+     * Check if there are any changes in the journal.
+     * @return {@code true} if empty, else {@code false}
+     */
+    public synchronized boolean isEmpty() {
+        return mChanges.isEmpty();
+    }
+
+    /**
+     * Forget all changes, e.g. when the user changes.
+     */
+    public synchronized void clear() {
+        mChanges.clear();
+    }
+
+    /**
+     * Build the body of a batch request.
+     * @param batch A batch of changes, from {@link #drain(int)}
+     * @return A JSONArray of changes
+     */
+    public static JSONArray toJSON(List<ShoppinglistItem> batch) {
+        JSONArray array = new JSONArray();
+        for (ShoppinglistItem item : batch) {
+            try {
+                JSONObject o = new JSONObject();
+                o.put(SgnJson.ID, item.getId());
+                o.put(SgnJson.SHOPPINGLIST_ID, item.getShoppinglistId());
+                o.put(SgnJson.MODIFIED, SgnUtils.dateToString(item.getModified()));
+                if (item.getState() == SyncState.DELETE) {
+                    o.put(OP, OP_DELETE);
+                } else {
+                    o.put(OP, OP_PUT);
+                    o.put(ITEM, item.toJSON());
+                }
+                array.put(o);
+            } catch (JSONException e) {
+                // Only thrown on invalid doubles, which aren't used here
+                throw new IllegalStateException(e);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Index the results of a batch request by item id.
+     * @param response The response of a batch request
+     * @return A map of item id to result, results without an id are skipped
+     */
+    public static Map<String, JSONObject> getResults(JSONArray response) {
+        Map<String, JSONObject> results = new HashMap<String, JSONObject>(response.length());
+        for (int i = 0; i < response.length(); i++) {
+            JSONObject o = response.optJSONObject(i);
+            String id = o == null ? null : o.optString(SgnJson.ID, null);
+            if (id != null) {
+                results.put(id, o);
+            }
+        }
+        return results;
+    }
+
+}
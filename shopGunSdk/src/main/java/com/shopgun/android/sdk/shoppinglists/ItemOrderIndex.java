@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.ListUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A cache of the order of the {@link ShoppinglistItem items} in each shoppinglist, as defined by their
+ * {@link ShoppinglistItem#getPreviousId() previous_id}.
+ *
+ * <p>{@link ListUtils#sortItems(List)} rebuilds the order from scratch on every read. Once a list
+ * has been sorted, this index holds the position of every item, so the next read only has to put
+ * the items into place in O(n), with no sorting. The index is checked against the previous_id of the
+ * items on every read, so changes written behind its back, e.g. by the {@link SyncManager}, simply
+ * cause a full sort. Only lists where every previous_id points to the item before it are cached.</p>
+ *
+ * <p>{@link #move(String, List, String, String)} moves an item in a sorted list, updating the
+ * previous_id of the (at most) three affected items, and the index, without a full sort.</p>
+ */
+public class ItemOrderIndex {
+
+    public static final String TAG = Constants.getTag(ItemOrderIndex.class);
+
+    private final HashMap<String, Order> mOrders = new HashMap<String, Order>();
+
+    /**
+     * Sort the items of a shoppinglist, see {@link ListUtils#sortItems(List)}.
+     * @param shoppinglistId The {@link ShoppinglistItem#getShoppinglistId()} of the items
+     * @param items The items to sort
+     */
+    public synchronized void sort(String shoppinglistId, List<ShoppinglistItem> items) {
+        Order order = mOrders.get(shoppinglistId);
+        if (order != null && order.apply(items)) {
+            return;
+        }
+        ListUtils.sortItems(items);
+        update(shoppinglistId, items);
+    }
+
+    /**
+     * Move an item to just after another item. The previous_id of the moved item, the item that was
+     * after it, and the item that will be after it are updated.
+     * @param shoppinglistId The {@link ShoppinglistItem#getShoppinglistId()} of the items
+     * @param items The items of the list, as sorted by {@link #sort(String, List)}. The list is
+     *              updated to the new order
+     * @param moveId The id of the item to move
+     * @param prevId The id of the item to move after, or {@code null} to move the item first
+     * @return The items that had their previous_id changed, or an empty list if nothing changed
+     */
+    public synchronized List<ShoppinglistItem> move(String shoppinglistId, List<ShoppinglistItem> items,
+                                                    String moveId, String prevId) {
+
+        List<ShoppinglistItem> edited = new ArrayList<ShoppinglistItem>(3);
+        Order order = mOrders.get(shoppinglistId);
+        Integer movePos = order == null ? null : order.mPositions.get(moveId);
+        Integer prevPos = prevId == null ? Integer.valueOf(-1) : (order == null ? null : order.mPositions.get(prevId));
+        if (movePos == null || prevPos == null || order.mIds.length != items.size()) {
+            // Not in the index, do it the slow way
+            return moveUnindexed(shoppinglistId, items, moveId, prevId);
+        }
+        if (prevPos == movePos - 1 || prevPos.equals(movePos)) {
+            return edited;
+        }
+
+        ShoppinglistItem move = items.get(movePos);
+        ShoppinglistItem after = movePos + 1 < items.size() ? items.get(movePos + 1) : null;
+        ShoppinglistItem newAfter = prevPos + 1 < items.size() ? items.get(prevPos + 1) : null;
+        if (after != null) {
+            after.setPreviousId(move.getPreviousId());
+            edited.add(after);
+        }
+        if (newAfter != null) {
+            newAfter.setPreviousId(move.getId());
+            edited.add(newAfter);
+        }
+        move.setPreviousId(prevId == null ? ListUtils.FIRST_ITEM : prevId);
+        edited.add(move);
+
+        items.remove((int) movePos);
+        items.add(prevPos < movePos ? prevPos + 1 : prevPos, move);
+        update(shoppinglistId, items);
+        return edited;
+
+    }
+
+    private List<ShoppinglistItem> moveUnindexed(String shoppinglistId, List<ShoppinglistItem> items,
+                                                 String moveId, String prevId) {
+        int movePos = -1;
+        int prevPos = -1;
+        for (int i = 0; i < items.size(); i++) {
+            String id = items.get(i).getId();
+            if (id.equals(moveId)) {
+                movePos = i;
+            } else if (id.equals(prevId)) {
+                prevPos = i;
+            }
+        }
+        if (movePos == -1 || (prevId != null && prevPos == -1)) {
+            return new ArrayList<ShoppinglistItem>(0);
+        }
+        List<ShoppinglistItem> edited = ListUtils.setPrevious(items, prevPos, movePos);
+        ListUtils.sortItems(items);
+        update(shoppinglistId, items);
+        return edited;
+    }
+
+    private void update(String shoppinglistId, List<ShoppinglistItem> sorted) {
+        Order order = Order.of(sorted);
+        if (order == null) {
+            mOrders.remove(shoppinglistId);
+        } else {
+            mOrders.put(shoppinglistId, order);
+        }
+    }
+
+    /**
+     * Check if the order of a list is in the index.
+     * @param shoppinglistId A {@link ShoppinglistItem#getShoppinglistId()}
+     * @return {@code true} if the order is in the index, else {@code false}
+     */
+    public synchronized boolean contains(String shoppinglistId) {
+        return mOrders.containsKey(shoppinglistId);
+    }
+
+    /**
+     * Forget the order of a list.
+     * @param shoppinglistId A {@link ShoppinglistItem#getShoppinglistId()}
+     */
+    public synchronized void invalidate(String shoppinglistId) {
+        mOrders.remove(shoppinglistId);
+    }
+
+    /**
+     * Forget the order of all lists.
+     */
+    public synchronized void clear() {
+        mOrders.clear();
+    }
+
+    private static class Order {
+
+        final String[] mIds;
+        final HashMap<String, Integer> mPositions;
+
+        private Order(String[] ids, HashMap<String, Integer> positions) {
+            mIds = ids;
+            mPositions = positions;
+        }
+
+        /**
+         * Build the order of a sorted list.
+         * @return An order, or {@code null} if the previous_id chain of the items is broken
+         */
+        static Order of(List<ShoppinglistItem> sorted) {
+            int size = sorted.size();
+            String[] ids = new String[size];
+            HashMap<String, Integer> positions = new HashMap<String, Integer>(size * 2);
+            String prevId = ListUtils.FIRST_ITEM;
+            for (int i = 0; i < size; i++) {
+                ShoppinglistItem sli = sorted.get(i);
+                if (!prevId.equals(sli.getPreviousId())) {
+                    return null;
+                }
+                ids[i] = prevId = sli.getId();
+                positions.put(prevId, i);
+            }
+            return new Order(ids, positions);
+        }
+
+        /**
+         * Put the items into this order, if the items still match it.
+         * @return {@code true} if the items were sorted, {@code false} if the order is outdated
+         */
+        boolean apply(List<ShoppinglistItem> items) {
+            int size = items.size();
+            if (size != mIds.length) {
+                return false;
+            }
+            ShoppinglistItem[] sorted = new ShoppinglistItem[size];
+            for (ShoppinglistItem sli : items) {
+                Integer pos = mPositions.get(sli.getId());
+                if (pos == null || sorted[pos] != null) {
+                    return false;
+                }
+                String prevId = pos == 0 ? ListUtils.FIRST_ITEM : mIds[pos - 1];
+                if (!prevId.equals(sli.getPreviousId())) {
+                    return false;
+                }
+                sorted[pos] = sli;
+            }
+            for (int i = 0; i < size; i++) {
+                items.set(i, sorted[i]);
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -33,6 +33,7 @@ import com.shopgun.android.sdk.model.interfaces.SyncState;
 import com.shopgun.android.sdk.utils.Constants;
 import com.shopgun.android.sdk.utils.ListUtils;
 
+import org.greenrobot.eventbus.Subscribe;
 import org.json.JSONArray;
 
 import java.util.ArrayList;
@@ -42,6 +43,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * @deprecated No longer maintained
@@ -51,6 +54,13 @@ import java.util.Map;
  * and {@link Share Shares}, without having to worry about keeping a sane, and
  * synchronizing state with both the {@link SgnDatabase database} and, the
  * ShopGun API.
+ *
+ * <p>The plain methods read and write the database on the calling thread. From the main thread,
+ * use the {@code ...Async} methods, which run on the database thread, and deliver the result
+ * to a {@link Callback} on the main thread.</p>
+ *
+ * <p>Lists and items that are read are shared with the {@link ShoppinglistCache}, and must be treated
+ * as read-only. Only change a model to pass it to one of the edit methods, which drops it from the cache.</p>
  */
 @Deprecated
 public class ListManager {
@@ -65,6 +75,12 @@ public class ListManager {
      * list and item notifications, to avoid multiple updates for a single operation */
     private ShoppinglistEvent.Builder mBuilder = new ShoppinglistEvent.Builder(false);
 
+    /** The order of the items in each list, so they don't have to be sorted on every read */
+    private final ItemOrderIndex mOrder = new ItemOrderIndex();
+
+    /** Lists and items of the current user, so repeated reads don't go to the database */
+    private final ShoppinglistCache mCache = new ShoppinglistCache();
+
     /**
      * Default constructor for ListManager.
      * @param shopGun The {@link ShopGun} instance to use
@@ -80,12 +96,28 @@ public class ListManager {
 
         @Override
         public void onCreate(Activity activity) {
-            mDatabase.open();
+            mDatabase.openAsync();
+            mCache.clear();
+            SgnBus.getInstance().register(ListManager.this);
         }
 
         @Override
         public void onDestroy(Activity activity) {
-            mDatabase.close();
+            SgnBus.getInstance().unregister(ListManager.this);
+            mDatabase.closeAsync();
+            mCache.clear();
+        }
+    }
+
+    /**
+     * Drop cached lists and items that the {@link SyncManager} has changed. This subscriber has a
+     * higher priority than the default, so the cache is updated before other subscribers read from it.
+     * @param e The event we are listening for
+     */
+    @Subscribe(priority = 1)
+    public void onEvent(ShoppinglistEvent e) {
+        if (e.isServer()) {
+            mCache.invalidate(e);
         }
     }
 
@@ -95,7 +127,14 @@ public class ListManager {
      * @return A shopping list, or {@code null}
      */
     public Shoppinglist getList(String id) {
-        return mDatabase.getList(id, user());
+        User user = cacheUser();
+        Shoppinglist sl = mCache.getList(user.getUserId(), id);
+        if (sl == null) {
+            long generation = mCache.getGeneration();
+            sl = mDatabase.getList(id, user);
+            mCache.putList(generation, user.getUserId(), sl);
+        }
+        return sl;
     }
 
     /**
@@ -104,7 +143,7 @@ public class ListManager {
      * @return A {@link List} of {@link Shoppinglist}, for current {@link User}
      */
     public List<Shoppinglist> getLists() {
-        return mDatabase.getLists(user());
+        return getLists(user());
     }
 
     /**
@@ -113,7 +152,15 @@ public class ListManager {
      * @return A {@link List} of {@link Shoppinglist}, for the given {@link User}
      */
     public List<Shoppinglist> getLists(User user) {
-        return mDatabase.getLists(user);
+        // Only the current user is cached, other users are read from the database
+        cacheUser();
+        List<Shoppinglist> lists = mCache.getLists(user.getUserId());
+        if (lists == null) {
+            long generation = mCache.getGeneration();
+            lists = mDatabase.getLists(user);
+            mCache.putLists(generation, user.getUserId(), lists);
+        }
+        return lists;
     }
 
     /**
@@ -127,7 +174,7 @@ public class ListManager {
      * @param sl A shoppinglist to add to the database
      * @return {@code true} if the action was performed, else {@code false}
      */
-    public boolean addList(final Shoppinglist sl) {
+    public synchronized boolean addList(final Shoppinglist sl) {
 
         List<Shoppinglist> lists = new ArrayList<Shoppinglist>();
         lists.add(sl);
@@ -160,6 +207,7 @@ public class ListManager {
         if (success) {
             mBuilder.add(sl);
         }
+        mCache.invalidate(sl.getId());
         postShoppinglistEvent();
         return success;
     }
@@ -177,7 +225,7 @@ public class ListManager {
         return editList(sl, user());
     }
 
-    private boolean editList(Shoppinglist sl, User user) {
+    private synchronized boolean editList(Shoppinglist sl, User user) {
 
         Shoppinglist original = mDatabase.getList(sl.getId(), user);
         // Check for changes in previous item, and update surrounding
@@ -198,6 +246,7 @@ public class ListManager {
                 dbShare.setState(SyncState.DELETE);
                 mDatabase.editShare(dbShare, user);
                 mBuilder.del(sl);
+                mCache.invalidate(sl.getId());
                 postShoppinglistEvent();
                 return true;
             } else {
@@ -292,6 +341,7 @@ public class ListManager {
 
             return success;
         } finally {
+            mCache.invalidate(sl.getId());
             postShoppinglistEvent();
         }
     }
@@ -310,7 +360,7 @@ public class ListManager {
         deleteList(sl, u);
     }
 
-    private boolean deleteList(Shoppinglist sl, User user) {
+    private synchronized boolean deleteList(Shoppinglist sl, User user) {
 
         List<Shoppinglist> editedLists = new ArrayList<Shoppinglist>();
         Date now = new Date();
@@ -369,6 +419,7 @@ public class ListManager {
             }
         }
 
+        mCache.invalidate(sl.getId());
         postShoppinglistEvent();
         return success;
     }
@@ -379,7 +430,14 @@ public class ListManager {
      * @return A shopping list item, or {@code null}
      */
     public ShoppinglistItem getItem(String id) {
-        return mDatabase.getItem(id, user());
+        User user = cacheUser();
+        ShoppinglistItem sli = mCache.getItem(user.getUserId(), id);
+        if (sli == null) {
+            long generation = mCache.getGeneration();
+            sli = mDatabase.getItem(id, user);
+            mCache.putItem(generation, user.getUserId(), sli);
+        }
+        return sli;
     }
 
     /**
@@ -389,7 +447,7 @@ public class ListManager {
      * @return A list of {@link ShoppinglistItem ShoppinglistItems}
      */
     public List<ShoppinglistItem> getItems(Shoppinglist sl) {
-        return getItems(sl.getId(), user());
+        return getItems(sl.getId());
     }
 
     /**
@@ -399,16 +457,27 @@ public class ListManager {
      * @return A list of {@link ShoppinglistItem ShoppinglistItems}
      */
     public List<ShoppinglistItem> getItems(String shoppinglistId) {
-        return getItems(shoppinglistId, user());
+        User user = cacheUser();
+        List<ShoppinglistItem> items = mCache.getItems(user.getUserId(), shoppinglistId);
+        if (items == null) {
+            long generation = mCache.getGeneration();
+            items = getItems(shoppinglistId, user);
+            mCache.putItems(generation, user.getUserId(), shoppinglistId, items);
+        }
+        return items;
     }
 
     private List<ShoppinglistItem> getItems(Shoppinglist sl, User user) {
         return getItems(sl.getId(), user);
     }
 
+    /**
+     * Read the items of a list from the database, bypassing the cache. Used by all writes, so
+     * they never work on a stale copy.
+     */
     private List<ShoppinglistItem> getItems(String shoppinglistId, User user) {
         List<ShoppinglistItem> items = mDatabase.getItems(shoppinglistId, user, false);
-        ListUtils.sortItems(items);
+        mOrder.sort(shoppinglistId, items);
         return items;
     }
 
@@ -440,7 +509,7 @@ public class ListManager {
      * @return {@code true} if the action was performed, else {@code false}
      */
     @SuppressLint("DefaultLocale")
-    public boolean addItem(ShoppinglistItem sli, boolean incrementCount, User user) {
+    public synchronized boolean addItem(ShoppinglistItem sli, boolean incrementCount, User user) {
 
         mDatabase.allowEditOrThrow(sli.getShoppinglistId(), user);
 
@@ -510,6 +579,7 @@ public class ListManager {
             mBuilder.edit(sl);
             mBuilder.add(sli);
         }
+        mCache.invalidate(sli.getShoppinglistId());
         postShoppinglistEvent();
         return success;
     }
@@ -543,7 +613,7 @@ public class ListManager {
         }
     }
 
-    private boolean editItems(List<ShoppinglistItem> items, User user) {
+    private synchronized boolean editItems(List<ShoppinglistItem> items, User user) {
 
         // Validate and get response in one step
         List<Shoppinglist> lists = mDatabase.allowEditItemsOrThrow(items, user);
@@ -585,11 +655,14 @@ public class ListManager {
             }
         }
 
+        for (Shoppinglist sl : lists) {
+            mCache.invalidate(sl.getId());
+        }
         postShoppinglistEvent();
         return success;
     }
 
-    private boolean editItem(ShoppinglistItem sli, User user) {
+    private synchronized boolean editItem(ShoppinglistItem sli, User user) {
 
         mDatabase.allowEditOrThrow(sli.getShoppinglistId(), user);
 
@@ -619,11 +692,66 @@ public class ListManager {
             mBuilder.edit(sli);
         }
 
+        mCache.invalidate(sli.getShoppinglistId());
         postShoppinglistEvent();
         return success;
     }
 
 
+    /**
+     * Move a {@link ShoppinglistItem} to just after another item in the same {@link Shoppinglist}.
+     *
+     * <p>Only the moved item, and the items before and after it, have their
+     * {@link ShoppinglistItem#getPreviousId() previous_id} updated. Changes are
+     * synchronized to the server when, and if possible.</p>
+     * @param sli The {@link ShoppinglistItem} to move
+     * @param prev The {@link ShoppinglistItem} to move it after, or {@code null} to make it the first item
+     * @return {@code true} if the action was performed, else {@code false}
+     */
+    public synchronized boolean moveItem(ShoppinglistItem sli, ShoppinglistItem prev) {
+
+        User user = user();
+        String shoppinglistId = sli.getShoppinglistId();
+        mDatabase.allowEditOrThrow(shoppinglistId, user);
+
+        if (prev != null && !shoppinglistId.equals(prev.getShoppinglistId())) {
+            SgnLog.i(TAG, "Items can only be moved within a shoppinglist");
+            return false;
+        }
+
+        List<ShoppinglistItem> items = getItems(shoppinglistId, user);
+        List<ShoppinglistItem> edited = mOrder.move(shoppinglistId, items, sli.getId(), prev == null ? null : prev.getId());
+        if (edited.isEmpty()) {
+            return true;
+        }
+
+        Date now = new Date();
+        for (ShoppinglistItem e : edited) {
+            e.setModified(now);
+            e.setState(SyncState.TO_SYNC);
+        }
+
+        boolean success = mDatabase.editItems(edited, user);
+        if (success) {
+            /* API will auto-update modified on the List, so we'll do the same and save a sync */
+            Shoppinglist sl = mDatabase.getList(shoppinglistId, user);
+            if (sl != null) {
+                sl.setModified(now);
+                mDatabase.editList(sl, user);
+                mBuilder.edit(sl);
+            }
+            for (ShoppinglistItem e : edited) {
+                mBuilder.edit(e);
+            }
+        } else {
+            mOrder.invalidate(shoppinglistId);
+        }
+
+        mCache.invalidate(shoppinglistId);
+        postShoppinglistEvent();
+        return success;
+    }
+
     /**
      * Delete all {@link ShoppinglistItem ShoppinglistItems} from a
      * {@link Shoppinglist} where {@link ShoppinglistItem#isTicked() isTicked()}
@@ -676,7 +804,7 @@ public class ListManager {
      * @param stateToDelete A state that describes what to delete
      * @param user the user that owns the {@link ShoppinglistItem ShoppinglistItems}
      */
-    private boolean deleteItems(final Shoppinglist sl, Boolean stateToDelete, User user) {
+    private synchronized boolean deleteItems(final Shoppinglist sl, Boolean stateToDelete, User user) {
 
         mDatabase.allowEditOrThrow(sl.getId(), user);
 
@@ -730,6 +858,7 @@ public class ListManager {
             }
         }
 
+        mCache.invalidate(sl.getId());
         postShoppinglistEvent();
         return success;
     }
@@ -747,7 +876,7 @@ public class ListManager {
         return deleteItem(sli, u);
     }
 
-    private boolean deleteItem(ShoppinglistItem sli, User user) {
+    private synchronized boolean deleteItem(ShoppinglistItem sli, User user) {
 
         Date now = new Date();
 
@@ -781,16 +910,243 @@ public class ListManager {
 			 * state but won't have to sync changes to API.
 			 * API will change state based on the synced item.
 			 */
-            Shoppinglist sl = getList(sli.getShoppinglistId());
+            Shoppinglist sl = mDatabase.getList(sli.getShoppinglistId(), user);
             sl.setModified(now);
             mDatabase.editList(sl, user);
             mBuilder.edit(sl);
             mBuilder.del(sli);
         }
+        mCache.invalidate(sli.getShoppinglistId());
         postShoppinglistEvent();
         return success;
     }
 
+    /**
+     * Callback for the asynchronous methods of the {@link ListManager}.
+     * @param <T> The type of the result
+     */
+    public interface Callback<T> {
+        /**
+         * Called on the main thread, when the operation has finished.
+         * @param result The result, or {@code null} if the operation failed
+         * @param error The exception thrown by the operation, e.g. if the user isn't allowed to edit the list, or {@code null}
+         */
+        void onComplete(T result, Exception error);
+    }
+
+    /**
+     * Asynchronous version of {@link #getList(String)}.
+     * @param id A {@link Shoppinglist} id
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Shoppinglist> getListAsync(final String id, Callback<Shoppinglist> callback) {
+        return async(new Callable<Shoppinglist>() {
+            @Override
+            public Shoppinglist call() throws Exception {
+                return getList(id);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #getLists()}.
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<List<Shoppinglist>> getListsAsync(Callback<List<Shoppinglist>> callback) {
+        return async(new Callable<List<Shoppinglist>>() {
+            @Override
+            public List<Shoppinglist> call() throws Exception {
+                return getLists();
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #addList(Shoppinglist)}.
+     * @param sl A shoppinglist to add to the database
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> addListAsync(final Shoppinglist sl, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return addList(sl);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #editList(Shoppinglist)}.
+     * @param sl A {@link Shoppinglist} that has been edited
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> editListAsync(final Shoppinglist sl, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return editList(sl);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #deleteList(Shoppinglist)}.
+     * @param sl {@link Shoppinglist} to delete
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} that completes with {@code null}
+     */
+    public Future<Void> deleteListAsync(final Shoppinglist sl, Callback<Void> callback) {
+        return async(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                deleteList(sl);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #getItem(String)}.
+     * @param id A {@link ShoppinglistItem} id
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<ShoppinglistItem> getItemAsync(final String id, Callback<ShoppinglistItem> callback) {
+        return async(new Callable<ShoppinglistItem>() {
+            @Override
+            public ShoppinglistItem call() throws Exception {
+                return getItem(id);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #getItems(String)}.
+     * @param shoppinglistId A {@link Shoppinglist#getId()} to get {@link ShoppinglistItem ShoppinglistItems} from
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<List<ShoppinglistItem>> getItemsAsync(final String shoppinglistId, Callback<List<ShoppinglistItem>> callback) {
+        return async(new Callable<List<ShoppinglistItem>>() {
+            @Override
+            public List<ShoppinglistItem> call() throws Exception {
+                return getItems(shoppinglistId);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #addItem(ShoppinglistItem)}.
+     * @param sli A {@link ShoppinglistItem} to add
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> addItemAsync(final ShoppinglistItem sli, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return addItem(sli);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #editItem(ShoppinglistItem)}.
+     * @param sli A {@link ShoppinglistItem} that has been edited
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> editItemAsync(final ShoppinglistItem sli, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return editItem(sli);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #editItems(List)}.
+     * @param items A list of {@link ShoppinglistItem} that have been edited
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> editItemsAsync(final List<ShoppinglistItem> items, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return editItems(items);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #moveItem(ShoppinglistItem, ShoppinglistItem)}.
+     * @param sli The {@link ShoppinglistItem} to move
+     * @param prev The {@link ShoppinglistItem} it should be placed after, or {@code null} to make it the first item
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> moveItemAsync(final ShoppinglistItem sli, final ShoppinglistItem prev, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return moveItem(sli, prev);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #deleteItem(ShoppinglistItem)}.
+     * @param sli {@link ShoppinglistItem} to delete from the db
+     * @param callback A callback, or {@code null}
+     * @return A {@link Future} of the result
+     */
+    public Future<Boolean> deleteItemAsync(final ShoppinglistItem sli, Callback<Boolean> callback) {
+        return async(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return deleteItem(sli);
+            }
+        }, callback);
+    }
+
+    /**
+     * Run a task on the {@link SgnDatabase#submit(Callable) database thread}, and post the outcome to a callback.
+     */
+    private <T> Future<T> async(final Callable<T> task, final Callback<T> callback) {
+        return mDatabase.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    T result = task.call();
+                    deliver(callback, result, null);
+                    return result;
+                } catch (Exception e) {
+                    SgnLog.e(TAG, e.getMessage(), e);
+                    deliver(callback, null, e);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private <T> void deliver(final Callback<T> callback, final T result, final Exception error) {
+        if (callback == null) {
+            return;
+        }
+        mShopGun.getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onComplete(result, error);
+            }
+        });
+    }
+
     /**
      * Get the current user.
      * <p>wrapper method for: ShopGun.getInstance().getUser()</p>
@@ -800,11 +1156,31 @@ public class ListManager {
         return mShopGun.getSessionManager().getSession().getUser();
     }
 
+    /**
+     * Get the current user, and make sure the cache is for that user.
+     * @return A {@link User}
+     */
+    private User cacheUser() {
+        User user = user();
+        mCache.setUser(user.getUserId());
+        return user;
+    }
+
+    /**
+     * Get the cache of lists and items, for the {@link SyncManager} to drop what it writes.
+     * @return The cache
+     */
+    ShoppinglistCache getCache() {
+        return mCache;
+    }
+
     /**
      * Deletes all rows in the {@link SgnDatabase database}.
      */
-    public void clear() {
+    public synchronized void clear() {
         mDatabase.clear();
+        mOrder.clear();
+        mCache.clear();
     }
 
     /**
@@ -812,8 +1188,10 @@ public class ListManager {
      * given{@link User}.
      * @param userId A {@link User#getUserId()} to clear
      */
-    public void clear(int userId) {
+    public synchronized void clear(int userId) {
         mDatabase.clear(userId);
+        mOrder.clear();
+        mCache.clear();
     }
 
     private void postShoppinglistEvent() {
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.ShopGun;
+import com.shopgun.android.sdk.api.Endpoints;
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.model.User;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.utils.HashUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * A {@link ChangeChannel} long-polling {@link Endpoints#listChanges(int)}.
+ *
+ * <p>Each poll is held open by the server until there are changes, or the poll timeout passes.
+ * The server answers with {@code 204 No Content} on timeout, or with {@code 200} and a body like
+ * {@code {"cursor": "...", "shopping_list_ids": ["..."]}}. The cursor is sent back on the next
+ * poll, so no changes are lost between polls. An empty list of ids means that the lists themselves
+ * changed.</p>
+ *
+ * <p>On errors the channel reports that it's down, and retries with an exponential backoff.
+ * Requests are made with the given {@link OkHttpClient}, so the connection pool and interceptors
+ * are shared with the rest of the SDK. Like any other API request, polls are signed with the token
+ * of the current session, and tokens rotated by the server are handed to the
+ * {@link com.shopgun.android.sdk.SessionManager SessionManager}. Override {@link #newRequest(HttpUrl)}
+ * to add headers.</p>
+ */
+public class LongPollChangeChannel implements ChangeChannel {
+
+    public static final String TAG = Constants.getTag(LongPollChangeChannel.class);
+
+    private static final String CURSOR = "cursor";
+    private static final String TIMEOUT = "timeout";
+    private static final String SHOPPING_LIST_IDS = "shopping_list_ids";
+
+    private static final String HEADER_TOKEN = "X-Token";
+    private static final String HEADER_TOKEN_EXPIRES = "X-Token-Expires";
+    private static final String HEADER_SIGNATURE = "X-Signature";
+
+    private static final long DEFAULT_POLL_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+    private static final long DEFAULT_MIN_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+    private static final long DEFAULT_MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+
+    private final ShopGun mShopGun;
+    private final OkHttpClient mClient;
+    private final String mHost;
+    private final long mPollTimeout;
+    private final long mMinBackoff;
+    private final long mMaxBackoff;
+
+    private PollThread mThread;
+
+    /**
+     * Create a new channel.
+     * @param shopGun The {@link ShopGun} instance, for the session to sign the polls with
+     * @param client The shared client
+     * @param host The host to poll, e.g. {@code https://api.etilbudsavis.dk}
+     */
+    public LongPollChangeChannel(ShopGun shopGun, OkHttpClient client, String host) {
+        this(shopGun, client, host, DEFAULT_POLL_TIMEOUT, DEFAULT_MIN_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * Create a new channel.
+     * @param shopGun The {@link ShopGun} instance, for the session to sign the polls with
+     * @param client The shared client
+     * @param host The host to poll, e.g. {@code https://api.etilbudsavis.dk}
+     * @param pollTimeout The time in milliseconds, the server may hold a poll open
+     * @param minBackoff The delay in milliseconds, before the first retry after an error
+     * @param maxBackoff The max delay in milliseconds, between retries
+     */
+    public LongPollChangeChannel(ShopGun shopGun, OkHttpClient client, String host, long pollTimeout, long minBackoff, long maxBackoff) {
+        if (shopGun == null || client == null || host == null) {
+            throw new IllegalArgumentException("ShopGun, OkHttpClient and host must not be null.");
+        }
+        mShopGun = shopGun;
+        // Allow the server some slack, before giving up on a poll
+        mClient = client.newBuilder()
+                .readTimeout(pollTimeout + TimeUnit.SECONDS.toMillis(10), TimeUnit.MILLISECONDS)
+                .build();
+        mHost = host.endsWith("/") ? host.substring(0, host.length() - 1) : host;
+        mPollTimeout = pollTimeout;
+        mMinBackoff = minBackoff;
+        mMaxBackoff = Math.max(minBackoff, maxBackoff);
+    }
+
+    @Override
+    public synchronized void open(User user, Listener listener) {
+        close();
+        mThread = new PollThread(user.getUserId(), listener);
+        mThread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mThread != null) {
+            mThread.quit();
+            mThread = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return mThread != null && mThread.mConnected;
+    }
+
+    /**
+     * Create the request for a poll, signed with the token of the current session.
+     * @param url The url, including the cursor and timeout
+     * @return A request
+     */
+    protected Request newRequest(HttpUrl url) {
+        Request.Builder builder = new Request.Builder().url(url).get();
+        String token = mShopGun.getSessionManager().getSession().getToken();
+        if (token != null) {
+            builder.header(HEADER_TOKEN, token);
+            builder.header(HEADER_SIGNATURE, HashUtils.sha256(mShopGun.getApiSecret() + token));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Hand a token, that the server may have rotated, to the session, like any other API response.
+     * @param response A response
+     */
+    private void updateSessionInfo(Response response) {
+        String token = response.header(HEADER_TOKEN);
+        String expire = response.header(HEADER_TOKEN_EXPIRES);
+        if (!(token == null || expire == null)) {
+            mShopGun.getSessionManager().updateTokens(token, expire);
+        }
+    }
+
+    private class PollThread extends Thread {
+
+        private final int mUserId;
+        private final Listener mListener;
+        private volatile boolean mQuit = false;
+        private volatile boolean mConnected = false;
+        private volatile Call mCall;
+        private String mCursor;
+
+        PollThread(int userId, Listener listener) {
+            super(TAG);
+            setDaemon(true);
+            mUserId = userId;
+            mListener = listener;
+        }
+
+        void quit() {
+            mQuit = true;
+            Call call = mCall;
+            if (call != null) {
+                call.cancel();
+            }
+            interrupt();
+        }
+
+        @Override
+        public void run() {
+
+            long backoff = mMinBackoff;
+            while (!mQuit) {
+                try {
+                    poll();
+                    backoff = mMinBackoff;
+                } catch (IOException | JSONException e) {
+                    if (mQuit) {
+                        break;
+                    }
+                    SgnLog.d(TAG, "Poll failed, retrying in " + backoff + "ms: " + e.getMessage());
+                    setConnected(false, e);
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                    backoff = Math.min(backoff * 2, mMaxBackoff);
+                }
+            }
+            mConnected = false;
+
+        }
+
+        private void poll() throws IOException, JSONException {
+
+            HttpUrl.Builder url = HttpUrl.parse(mHost + Endpoints.listChanges(mUserId)).newBuilder()
+                    .addQueryParameter(TIMEOUT, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(mPollTimeout)));
+            if (mCursor != null) {
+                url.addQueryParameter(CURSOR, mCursor);
+            }
+
+            mCall = mClient.newCall(newRequest(url.build()));
+            Response response = mCall.execute();
+            try {
+                updateSessionInfo(response);
+                if (mQuit) {
+                    return;
+                }
+                if (response.code() == 204) {
+                    setConnected(true, null);
+                    return;
+                }
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected response " + response.code());
+                }
+                JSONObject body = new JSONObject(response.body().string());
+                boolean first = mCursor == null;
+                mCursor = body.optString(CURSOR, mCursor);
+                setConnected(true, null);
+                if (first) {
+                    // The first poll only gets the cursor, onConnected() covers anything before it
+                    return;
+                }
+                JSONArray ids = body.optJSONArray(SHOPPING_LIST_IDS);
+                if (ids == null || ids.length() == 0) {
+                    mListener.onListsChanged();
+                } else {
+                    for (int i = 0; i < ids.length(); i++) {
+                        mListener.onListChanged(ids.getString(i));
+                    }
+                }
+            } finally {
+                response.close();
+            }
+
+        }
+
+        private void setConnected(boolean connected, Exception e) {
+            if (mConnected == connected) {
+                return;
+            }
+            mConnected = connected;
+            if (connected) {
+                mListener.onConnected();
+            } else {
+                mListener.onDisconnected(e);
+            }
+        }
+
+    }
+
+}
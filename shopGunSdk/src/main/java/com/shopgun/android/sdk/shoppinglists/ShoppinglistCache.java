@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.bus.ShoppinglistEvent;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An identity map of the {@link Shoppinglist shoppinglists} and {@link ShoppinglistItem items} of the
+ * current user, used by {@link ListManager} to answer repeated reads without going to the database.
+ *
+ * <p>Within the cache, an item is the same instance, whether it's read by id, or as part of its list.
+ * The cache keeps the instances it's given, and hands out those same instances, only the lists holding
+ * them are copied. Cached models are snapshots of the database, and must be treated as read-only.
+ * A model is only changed to be written, and every write drops it from the cache, so the next read
+ * gets a new snapshot from the database.</p>
+ *
+ * <p>Entries are dropped whenever the {@link ListManager} or the {@link SyncManager} writes to the
+ * database, and when the {@link SyncManager} posts a {@link ShoppinglistEvent} with changes from the
+ * server, for the lists in the event. Reads for any other user than the one set with {@link #setUser(int)} are misses,
+ * and don't affect the cache.</p>
+ *
+ * <p>Every invalidation bumps the generation of the cache. Reads from the database must take the
+ * generation before reading, and pass it on when putting the result into the cache, so a result
+ * that was read before an invalidation is never cached.</p>
+ */
+public class ShoppinglistCache {
+
+    public static final String TAG = Constants.getTag(ShoppinglistCache.class);
+
+    private int mUserId = -1;
+    private long mGeneration = 0;
+    private List<Shoppinglist> mLists;
+    private final HashMap<String, Shoppinglist> mListById = new HashMap<String, Shoppinglist>();
+    private final HashMap<String, List<ShoppinglistItem>> mItems = new HashMap<String, List<ShoppinglistItem>>();
+    private final HashMap<String, ShoppinglistItem> mItemById = new HashMap<String, ShoppinglistItem>();
+
+    /**
+     * Get the generation of the cache, to pass on to the put methods.
+     * @return The current generation
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Set the user the cache is for, the cache is cleared if the user changes.
+     * @param userId The {@link com.shopgun.android.sdk.model.User#getUserId()} of the current user
+     */
+    public synchronized void setUser(int userId) {
+        if (mUserId != userId) {
+            clear();
+            mUserId = userId;
+        }
+    }
+
+    private boolean isCurrent(long generation, int userId) {
+        return mUserId == userId && mGeneration == generation;
+    }
+
+    /**
+     * Get all lists of a user.
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @return The lists, or {@code null} if they aren't cached
+     */
+    public synchronized List<Shoppinglist> getLists(int userId) {
+        if (mUserId != userId || mLists == null) {
+            return null;
+        }
+        return new ArrayList<Shoppinglist>(mLists);
+    }
+
+    /**
+     * Cache all lists of a user.
+     * @param generation The {@link #getGeneration() generation} from before the lists were read
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param lists The lists, the cache keeps the instances
+     */
+    public synchronized void putLists(long generation, int userId, List<Shoppinglist> lists) {
+        if (isCurrent(generation, userId)) {
+            mLists = new ArrayList<Shoppinglist>(lists);
+        }
+    }
+
+    /**
+     * Get a list by id.
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param id A {@link Shoppinglist#getId()}
+     * @return The list, or {@code null} if it isn't cached
+     */
+    public synchronized Shoppinglist getList(int userId, String id) {
+        return mUserId == userId ? mListById.get(id) : null;
+    }
+
+    /**
+     * Cache a list.
+     * @param generation The {@link #getGeneration() generation} from before the list was read
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param sl A list, {@code null} is ignored
+     */
+    public synchronized void putList(long generation, int userId, Shoppinglist sl) {
+        if (sl != null && isCurrent(generation, userId)) {
+            mListById.put(sl.getId(), sl);
+        }
+    }
+
+    /**
+     * Get the items of a list.
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param shoppinglistId A {@link Shoppinglist#getId()}
+     * @return The items, or {@code null} if they aren't cached
+     */
+    public synchronized List<ShoppinglistItem> getItems(int userId, String shoppinglistId) {
+        List<ShoppinglistItem> cached = mUserId == userId ? mItems.get(shoppinglistId) : null;
+        return cached == null ? null : new ArrayList<ShoppinglistItem>(cached);
+    }
+
+    /**
+     * Cache the items of a list. Items already cached by id are replaced by the instances in the list.
+     * @param generation The {@link #getGeneration() generation} from before the items were read
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param shoppinglistId A {@link Shoppinglist#getId()}
+     * @param items The items, the cache keeps the instances
+     */
+    public synchronized void putItems(long generation, int userId, String shoppinglistId, List<ShoppinglistItem> items) {
+        if (isCurrent(generation, userId)) {
+            for (ShoppinglistItem sli : items) {
+                mItemById.put(sli.getId(), sli);
+            }
+            mItems.put(shoppinglistId, new ArrayList<ShoppinglistItem>(items));
+        }
+    }
+
+    /**
+     * Get an item by id.
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param id A {@link ShoppinglistItem#getId()}
+     * @return The item, or {@code null} if it isn't cached
+     */
+    public synchronized ShoppinglistItem getItem(int userId, String id) {
+        return mUserId == userId ? mItemById.get(id) : null;
+    }
+
+    /**
+     * Cache an item.
+     * @param generation The {@link #getGeneration() generation} from before the item was read
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     * @param sli An item, {@code null} is ignored
+     */
+    public synchronized void putItem(long generation, int userId, ShoppinglistItem sli) {
+        if (sli != null && isCurrent(generation, userId)) {
+            mItemById.put(sli.getId(), sli);
+        }
+    }
+
+    /**
+     * Drop a list and its items. As lists are ordered, and written together, all lists are dropped.
+     * @param shoppinglistId A {@link Shoppinglist#getId()}
+     */
+    public synchronized void invalidate(String shoppinglistId) {
+        mGeneration++;
+        mLists = null;
+        mListById.clear();
+        mItems.remove(shoppinglistId);
+        for (Iterator<ShoppinglistItem> it = mItemById.values().iterator(); it.hasNext(); ) {
+            if (shoppinglistId.equals(it.next().getShoppinglistId())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop the lists and items in an event.
+     * @param e An event
+     */
+    public synchronized void invalidate(ShoppinglistEvent e) {
+        HashSet<String> ids = new HashSet<String>();
+        for (Shoppinglist sl : e.getLists()) {
+            ids.add(sl.getId());
+        }
+        for (ShoppinglistItem sli : e.getItems()) {
+            ids.add(sli.getShoppinglistId());
+        }
+        for (String id : ids) {
+            invalidate(id);
+        }
+    }
+
+    /**
+     * Drop everything.
+     */
+    public synchronized void clear() {
+        mGeneration++;
+        mLists = null;
+        mListById.clear();
+        mItems.clear();
+        mItemById.clear();
+    }
+
+}
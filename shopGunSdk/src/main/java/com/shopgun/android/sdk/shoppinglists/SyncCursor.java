@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.api.Parameters;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.SgnUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sync position of a user's {@link Shoppinglist shoppinglists}, used by the incremental sync
+ * in {@link SyncManager}.
+ *
+ * <p>The cursor holds the newest {@link Shoppinglist#getModified() modified} seen on any list,
+ * which is sent as {@link Parameters#MODIFIED_FROM} so the API only has to return lists that changed
+ * since. For every list, it also holds the modified of the list when its items were last synced, so
+ * items are only requested for lists that changed after that.</p>
+ *
+ * <p>The API modified has a resolution of seconds, so the lists cursor is inclusive, and lists seen
+ * before may be returned again. They are filtered out by their list cursor. A changed list is
+ * pending until its items have been synced, and the lists cursor doesn't move past pending lists,
+ * so a failed item sync is retried on the next delta.</p>
+ */
+public class SyncCursor {
+
+    public static final String TAG = Constants.getTag(SyncCursor.class);
+
+    private final Map<String, Long> mListCursors = new HashMap<String, Long>();
+    private final Map<String, Long> mPending = new HashMap<String, Long>();
+    private long mListsCursor = 0;
+    private int mUserId = -1;
+
+    /**
+     * Make sure the cursor belongs to the given user, resetting the cursor if it doesn't.
+     * @param userId A {@link com.shopgun.android.sdk.model.User#getUserId()}
+     */
+    public synchronized void setUser(int userId) {
+        if (mUserId != userId) {
+            reset();
+            mUserId = userId;
+        }
+    }
+
+    /**
+     * Forget the sync position, so the next sync is a full sync.
+     */
+    public synchronized void reset() {
+        mListCursors.clear();
+        mPending.clear();
+        mListsCursor = 0;
+    }
+
+    /**
+     * Add the lists cursor to a request for the user's lists. Nothing is added before the first
+     * full sync.
+     * @param request A request
+     * @return {@code true} if the request is a delta request, else {@code false}
+     */
+    public synchronized boolean apply(Request<?> request) {
+        long cursor = getListsCursor();
+        if (cursor == 0) {
+            return false;
+        }
+        request.getParameters().put(Parameters.MODIFIED_FROM, SgnUtils.dateToString(new Date(cursor)));
+        return true;
+    }
+
+    /**
+     * Update the cursor with lists from the API, and find the lists that need their items synced.
+     * @param serverLists The lists returned by the API
+     * @param full {@code true} if the lists are all of the user's lists, in which case lists that
+     *             are gone will be forgotten. {@code false} if the lists are a delta.
+     * @return The lists that changed after their items were last synced
+     */
+    public synchronized List<Shoppinglist> onListsSynced(List<Shoppinglist> serverLists, boolean full) {
+        List<Shoppinglist> changed = new ArrayList<Shoppinglist>();
+        Set<String> ids = new HashSet<String>(serverLists.size());
+        for (Shoppinglist sl : serverLists) {
+            ids.add(sl.getId());
+            long modified = getTime(sl);
+            mListsCursor = Math.max(mListsCursor, modified);
+            Long cursor = mListCursors.get(sl.getId());
+            if (cursor == null || cursor < modified) {
+                changed.add(sl);
+                mPending.put(sl.getId(), modified);
+            }
+        }
+        if (full) {
+            retain(mListCursors, ids);
+            retain(mPending, ids);
+        }
+        return changed;
+    }
+
+    /**
+     * Record that the items of a list have been synced.
+     * @param sl The list as returned by the API, so the modified is server time. A local copy of the
+     *           list must not be used, as a local modified is set by the clock of the device
+     */
+    public synchronized void onItemsSynced(Shoppinglist sl) {
+        long modified = getTime(sl);
+        Long cursor = mListCursors.get(sl.getId());
+        mListCursors.put(sl.getId(), cursor == null ? modified : Math.max(cursor, modified));
+        Long pending = mPending.get(sl.getId());
+        if (pending != null && pending <= modified) {
+            // A newer change may have been seen, while the items were being synced
+            mPending.remove(sl.getId());
+        }
+        mListsCursor = Math.max(mListsCursor, modified);
+    }
+
+    /**
+     * Get the time to request changed lists from, i.e. the newest modified of any list seen,
+     * or the oldest modified of a pending list.
+     * @return A timestamp in milliseconds, or {@code 0} if no lists have been synced
+     */
+    public synchronized long getListsCursor() {
+        long cursor = mListsCursor;
+        for (long modified : mPending.values()) {
+            cursor = Math.min(cursor, modified);
+        }
+        return cursor;
+    }
+
+    /**
+     * Get the modified of a list, when its items were last synced.
+     * @param shoppinglistId A {@link Shoppinglist#getId()}
+     * @return A timestamp in milliseconds, or {@code 0} if the items haven't been synced
+     */
+    public synchronized long getListCursor(String shoppinglistId) {
+        Long cursor = mListCursors.get(shoppinglistId);
+        return cursor == null ? 0 : cursor;
+    }
+
+    private static void retain(Map<String, Long> map, Set<String> ids) {
+        Iterator<String> it = map.keySet().iterator();
+        while (it.hasNext()) {
+            if (!ids.contains(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    private static long getTime(Shoppinglist sl) {
+        Date modified = sl.getModified();
+        return modified == null ? 0 : modified.getTime();
+    }
+
+    @Override
+    public synchronized String toString() {
+        String format = "%s[ user: %s, lists: %s, pending: %s, cursor: %s ]";
+        return String.format(format, getClass().getSimpleName(), mUserId, mListCursors.size(), mPending.size(), getListsCursor());
+    }
+
+}
@@ -21,6 +21,7 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Process;
+import android.os.SystemClock;
 
 import com.shopgun.android.sdk.ShopGun;
 import com.shopgun.android.sdk.api.Endpoints;
@@ -37,8 +38,12 @@ import com.shopgun.android.sdk.model.ShoppinglistItem;
 import com.shopgun.android.sdk.model.User;
 import com.shopgun.android.sdk.model.interfaces.SyncState;
 import com.shopgun.android.sdk.network.Delivery;
+import com.shopgun.android.sdk.network.NetworkResponse;
 import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestMetrics;
 import com.shopgun.android.sdk.network.RequestQueue;
+import com.shopgun.android.sdk.network.RequestTrace;
+import com.shopgun.android.sdk.network.Response;
 import com.shopgun.android.sdk.network.Response.Listener;
 import com.shopgun.android.sdk.network.ShopGunError;
 import com.shopgun.android.sdk.network.ShopGunError.Code;
@@ -57,12 +62,15 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -112,6 +120,30 @@ import java.util.Stack;
  * </ul>
  *
  * <p>
+ * With {@link #setIncrementalSync(boolean) incremental sync} enabled, the last two types are
+ * replaced by a single request for the lists that changed since the last sync, and the items are
+ * only synchronized for lists that changed since their items were last synchronized, see
+ * {@link SyncCursor}. Every 10th iteration is still a full sync of the lists, as the API doesn't
+ * report deleted lists in a delta.
+ *
+ * <p>
+ * Local {@link ShoppinglistItem item} changes are collected in an {@link ItemChangeJournal}, and can be
+ * sent in {@link #setBatchUpload(boolean) batches}, so ticking off many items offline doesn't cost a round
+ * trip per item when the connection comes back.
+ *
+ * <p>
+ * The time between iterations is decided by a {@link SyncScheduler}. It starts at the
+ * {@link #setSyncInterval(int) sync interval}, stretches while nothing changes, tightens after local
+ * edits and backs off on errors. An iteration may also run early, if other SDK requests have
+ * already woken up the radio.
+ *
+ * <p>
+ * With a {@link #setChangeChannel(ChangeChannel) change channel}, the API is only asked for changes
+ * when the channel reports them, and only the reported lists are synchronized. Local changes are
+ * still sent on every iteration. While the channel is down, the {@link SyncManager} polls the API,
+ * backing off while nothing changes.
+ *
+ * <p>
  * When {@link LifecycleManager} calls destroy, all local pending changes are pushed to
  * the API if possible to ensure a correct state on the server (and other devices).
  */
@@ -137,6 +169,30 @@ public class SyncManager {
     /** The notification object, used to combine and collect notifications */
     private ShoppinglistEvent.Builder mBuilder = new ShoppinglistEvent.Builder(true);
     private Delivery mDelivery;
+    /** Whether to only request changes since the last sync */
+    private boolean mIncrementalSync = false;
+    /** The sync position, used when mIncrementalSync is enabled */
+    private final SyncCursor mCursor = new SyncCursor();
+    /** Max number of iterations between polls, while the change channel is down */
+    private static final int MAX_POLL_BACKOFF = 16;
+    /** Notifications about server changes, null to poll the API */
+    private ChangeChannel mChangeChannel;
+    private final ChannelListener mChannelListener = new ChannelListener();
+    /** The user the channel is open for, -1 if it isn't open */
+    private int mChannelUserId = -1;
+    /** The channel have reported changes, that can't be synced with a targeted request */
+    private boolean mChannelSyncPending = false;
+    /** Number of iterations between polls, while the change channel is down */
+    private int mPollBackoff = 1;
+    private int mIterationsSincePoll = 0;
+    /** Decides when the next iteration runs */
+    private final SyncScheduler mScheduler = new SyncScheduler();
+    /** Outgoing item changes */
+    private final ItemChangeJournal mJournal = new ItemChangeJournal();
+    private volatile boolean mBatchUpload = false;
+    /** Whether any request of the current iteration has completed, and whether any of them failed. Sync thread only */
+    private boolean mIterationResults = false;
+    private boolean mIterationFailed = false;
 
     /**
      * Default constructor for the {@link SyncManager}
@@ -153,13 +209,53 @@ public class SyncManager {
         thread.start();
         mHandler = new Handler(thread.getLooper());
         mDelivery = new HandlerDelivery(mHandler);
+        mShopGun.getRequestQueue().getMetrics().addListener(new WakeupListener());
+    }
+
+    /**
+     * Runs the next iteration early, when other requests have just been to the network
+     * and the radio is awake anyway.
+     */
+    private class WakeupListener implements RequestMetrics.Listener {
+
+        @Override
+        public void onRequestFinished(Request<?> request, RequestTrace trace) {
+            if (request.getTag() == mRequestTag || !trace.hasReached(RequestTrace.Stage.NETWORK)) {
+                return;
+            }
+            if (mShopGun.getLifecycleManager().isActive() && mScheduler.isInFlexWindow(SystemClock.uptimeMillis())) {
+                SyncLog.sync(TAG, "Running loop cycle early, batched with " + request.getUrl());
+                mSyncLooper.forceSync();
+            }
+        }
+
+    }
+
+    /**
+     * Collects the outcome of the sync requests of an iteration, which is handed to the {@link SyncScheduler}
+     * once all requests of the iteration are done, see {@link #popRequestAndPostShoppinglistEvent()}.
+     * Deliveries run on the sync thread, before the listener of the request.
+     */
+    private class SchedulingDebugger extends SyncDebugger {
+
+        private SchedulingDebugger(String tag) {
+            super(tag);
+        }
+
+        @Override
+        public void onDelivery(Request<?> r, Object response, ShopGunError error) {
+            super.onDelivery(r, response, error);
+            mIterationResults = true;
+            mIterationFailed |= error != null;
+        }
+
     }
 
     private class LifecycleCallback extends LifecycleManager.SimpleCallback {
 
         @Override
         public void onCreate(Activity activity) {
-            mDatabase.open();
+            mDatabase.openAsync();
             SgnBus.getInstance().register(SyncManager.this);
             // Set a SyncInterval if user haven't set one yet, else just force a sync cycle
             int interval = mSyncInterval == Integer.MIN_VALUE ? SyncInterval.SLOW : mSyncInterval;
@@ -170,7 +266,13 @@ public class SyncManager {
         public void onDestroy(Activity activity) {
             mSyncLooper.forceSync();
             SgnBus.getInstance().unregister(SyncManager.this);
-            mDatabase.close();
+            mDatabase.closeAsync();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    closeChangeChannel();
+                }
+            });
         }
 
     }
@@ -186,6 +288,18 @@ public class SyncManager {
         }
     }
 
+    /**
+     * Listening for local changes, to send them to the API soon
+     * @param e The event we are listening for
+     */
+    @Subscribe()
+    public void onEvent(ShoppinglistEvent e) {
+        if (!e.isServer()) {
+            mScheduler.onLocalChange();
+            mSyncLooper.syncSoon(SyncScheduler.LOCAL_EDIT_DELAY);
+        }
+    }
+
     public boolean isPaused() {
         synchronized (RESUME_LOCK) {
             return getSyncInterval() == SyncInterval.PAUSED;
@@ -263,18 +377,219 @@ public class SyncManager {
         return mMigrateOfflineLists;
     }
 
+    /**
+     * Enable incremental synchronization, where only the {@link Shoppinglist shoppinglists} and
+     * {@link ShoppinglistItem items} that changed since the last sync are requested from the API.
+     * This keeps the cost of a sync proportional to the amount of changes, rather than the number
+     * of lists.
+     * @param incremental {@code true} to enable incremental sync, else {@code false}
+     */
+    public void setIncrementalSync(boolean incremental) {
+        mIncrementalSync = incremental;
+    }
+
+    /**
+     * Check if incremental synchronization is enabled
+     * @return {@code true} if incremental sync is enabled, else {@code false}
+     */
+    public boolean isIncrementalSync() {
+        return mIncrementalSync;
+    }
+
+    /**
+     * Get the current sync position, used by incremental synchronization.
+     * @return The sync cursor
+     */
+    public SyncCursor getSyncCursor() {
+        return mCursor;
+    }
+
+    /**
+     * Send local item changes to the API in batches, rather than a request per item. This is off by
+     * default, and should only be enabled against an API that supports the batch endpoint. If the API
+     * reports that it doesn't know the endpoint, batching is disabled and the changes are sent a request
+     * per item.
+     * @param batchUpload {@code true} to enable batch upload, else {@code false}
+     */
+    public void setBatchUpload(boolean batchUpload) {
+        mBatchUpload = batchUpload;
+    }
+
+    /**
+     * Check if local item changes are sent in batches
+     * @return {@code true} if batch upload is enabled, else {@code false}
+     */
+    public boolean isBatchUpload() {
+        return mBatchUpload;
+    }
+
+    /**
+     * Get the scheduler, deciding the time between sync iterations.
+     * @return The sync scheduler
+     */
+    public SyncScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * Set a channel for getting notified about changes on the server, instead of polling the API
+     * every {@link #getSyncInterval() sync interval}, e.g. a {@link LongPollChangeChannel}.
+     * @param channel A channel, or {@code null} to poll the API
+     */
+    public void setChangeChannel(final ChangeChannel channel) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeChangeChannel();
+                mChangeChannel = channel;
+                mSyncLooper.forceSync();
+            }
+        });
+    }
+
+    /**
+     * Get the channel used for getting notified about changes on the server
+     * @return A channel, or {@code null} if the API is polled
+     */
+    public ChangeChannel getChangeChannel() {
+        return mChangeChannel;
+    }
+
+    private void closeChangeChannel() {
+        if (mChangeChannel != null && mChannelUserId != -1) {
+            mChangeChannel.close();
+        }
+        mChannelUserId = -1;
+    }
+
+    /**
+     * Decide if the API should be asked for changes in this iteration, and open the change channel if needed.
+     * Must be called on the sync thread.
+     * @param user The current user
+     * @return {@code true} if the API should be polled, else {@code false}
+     */
+    private boolean shouldPoll(User user) {
+
+        if (mChangeChannel == null) {
+            return true;
+        }
+
+        if (mChannelUserId != user.getUserId()) {
+            closeChangeChannel();
+            mChangeChannel.open(user, mChannelListener);
+            mChannelUserId = user.getUserId();
+        }
+
+        if (mChannelSyncPending) {
+            mChannelSyncPending = false;
+            return true;
+        }
+
+        if (mChangeChannel.isConnected()) {
+            return false;
+        }
+
+        // The channel is down, poll with a backoff until something changes
+        if (++mIterationsSincePoll < mPollBackoff) {
+            return false;
+        }
+        mIterationsSincePoll = 0;
+        mPollBackoff = Math.min(mPollBackoff * 2, MAX_POLL_BACKOFF);
+        return true;
+
+    }
+
+    /**
+     * Reset the poll backoff, as changes have been found.
+     */
+    private void onServerChanges() {
+        mPollBackoff = 1;
+        mIterationsSincePoll = 0;
+        mScheduler.onServerChange();
+    }
+
+    private class ChannelListener implements ChangeChannel.Listener {
+
+        @Override
+        public void onConnected() {
+            SyncLog.sync(TAG, "ChangeChannel connected");
+            // Catch up on anything that happened while the channel was down
+            postChannelSync();
+        }
+
+        @Override
+        public void onDisconnected(Exception e) {
+            SyncLog.sync(TAG, "ChangeChannel disconnected");
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onServerChanges();
+                }
+            });
+        }
+
+        @Override
+        public void onListChanged(final String shoppinglistId) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    User user = mShopGun.getSessionManager().getSession().getUser();
+                    if (isPaused() || !user.isLoggedIn()) {
+                        return;
+                    }
+                    Shoppinglist sl = mDatabase.getList(shoppinglistId, user);
+                    if (sl == null || sl.getState() != SyncState.SYNCED) {
+                        // New list, or local changes must be sent first
+                        mChannelSyncPending = true;
+                        mSyncLooper.forceSync();
+                        return;
+                    }
+                    SyncLog.sync(TAG, "ChangeChannel, syncing " + sl.getName());
+                    addRequest(new ItemSyncRequest(mDatabase, sl, user));
+                }
+            });
+        }
+
+        @Override
+        public void onListsChanged() {
+            postChannelSync();
+        }
+
+        private void postChannelSync() {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mChannelSyncPending = true;
+                    mSyncLooper.forceSync();
+                }
+            });
+        }
+
+    }
+
     private void addRequest(Request<?> r) {
+        addRequest(r, 1);
+    }
+
+    /**
+     * Add a request, that counts as a number of requests in flight, e.g. a batch with a result per item.
+     * @param r A request
+     * @param count The number of times the request will call {@link #popRequest()}
+     */
+    private void addRequest(Request<?> r, int count) {
         // No request from here should return a result from cache
         r.setIgnoreCache(true);
         synchronized (mCurrentRequests) {
-            mCurrentRequests.add(r);
+            for (int i = 0; i < count; i++) {
+                mCurrentRequests.add(r);
+            }
         }
 
         // Make sure, that requests will return to this thread
         r.setDelivery(mDelivery);
 
         r.setTag(mRequestTag);
-        r.setDebugger(new SyncDebugger(SyncDebugger.TAG)
+        r.setDebugger(new SchedulingDebugger(SyncDebugger.TAG)
                 .setSkipMethods(Request.Method.GET));
         mShopGun.add(r);
 
@@ -284,6 +599,40 @@ public class SyncManager {
 
     }
 
+    /**
+     * Write a list, and drop it from the {@link ShoppinglistCache} of the {@link ListManager}. Writes that only
+     * change the sync state aren't part of a {@link ShoppinglistEvent}, so the cache wouldn't otherwise see them.
+     */
+    private boolean writeList(SgnDatabase database, Shoppinglist sl, User user) {
+        boolean success = database.editList(sl, user);
+        mShopGun.getListManager().getCache().invalidate(sl.getId());
+        return success;
+    }
+
+    private boolean writeItems(SgnDatabase database, ShoppinglistItem sli, User user) {
+        boolean success = database.editItems(sli, user);
+        mShopGun.getListManager().getCache().invalidate(sli.getShoppinglistId());
+        return success;
+    }
+
+    private boolean writeItems(SgnDatabase database, List<ShoppinglistItem> items, User user) {
+        boolean success = database.editItems(items, user);
+        HashSet<String> ids = new HashSet<String>();
+        for (ShoppinglistItem sli : items) {
+            ids.add(sli.getShoppinglistId());
+        }
+        for (String id : ids) {
+            mShopGun.getListManager().getCache().invalidate(id);
+        }
+        return success;
+    }
+
+    private boolean writeShare(SgnDatabase database, Share share, User user) {
+        boolean success = database.editShare(share, user);
+        mShopGun.getListManager().getCache().invalidate(share.getShoppinglistId());
+        return success;
+    }
+
     private void popRequest() {
         popRequestAndPostShoppinglistEvent();
     }
@@ -294,12 +643,21 @@ public class SyncManager {
      */
     private void popRequestAndPostShoppinglistEvent() {
 
+        boolean done;
         synchronized (mCurrentRequests) {
             try {
                 mCurrentRequests.pop();
             } catch (Exception e) {
                 SgnLog.e(TAG, e.getMessage(), e);
             }
+            done = mCurrentRequests.isEmpty();
+        }
+
+        if (done && mIterationResults) {
+            // One result per iteration, so a number of failed requests counts as a single error
+            mScheduler.onResult(!mIterationFailed);
+            mIterationResults = false;
+            mIterationFailed = false;
         }
 
         mBuilder.firstSync = mSyncLooper.mSyncCount == 1;
@@ -322,9 +680,15 @@ public class SyncManager {
 
         private void restart() {
             mSyncCount = 0;
+            mScheduler.reset();
             forceSync();
         }
 
+        private void syncSoon(long delay) {
+            mHandler.removeCallbacks(this);
+            mHandler.postDelayed(this, delay);
+        }
+
         private void forceSync() {
             mHandler.removeCallbacks(this);
             mHandler.post(this);
@@ -344,16 +708,20 @@ public class SyncManager {
             // If it's an offline user, then stop syncloop
             // we'll keep listening for session changes and restert if needed
             if (!user.isLoggedIn()) {
+                closeChangeChannel();
                 mSyncCount++;
                 SyncLog.syncLooper(TAG, mSyncCount, "quit-loop-cycle (NotLoggedIn)");
                 return;
             }
+            mCursor.setUser(user.getUserId());
 
             // Prepare for next iteration if app is still resumed.
             // By not doing a return statement we allow for a final sync,
             // and sending local changes to server
             if (mShopGun.getLifecycleManager().isActive()) {
-                mHandler.postDelayed(this, interval);
+                long delay = mScheduler.schedule(SystemClock.uptimeMillis(), interval);
+                SyncLog.syncLooper(TAG, mSyncCount, "next-loop-cycle " + mScheduler);
+                mHandler.postDelayed(this, delay);
             }
 
             // Only do an update, if there are no pending transactions, and we are online
@@ -378,13 +746,14 @@ public class SyncManager {
             // If there are changes to any items, then syncLocalItemChanges will handle it: return
             boolean hasLocalChanges = false;
             for (Shoppinglist sl : lists) {
-                boolean itemChanges = syncLocalItemChanges(database, sl, user);
+                boolean itemChanges = journalLocalItemChanges(database, sl, user);
                 boolean shareChanges = syncLocalShareChanges(database, sl, user);
 //                if (itemChanges || shareChanges) {
 //                    L.d(TAG, sl.getName() + "[ itemChanges: " + itemChanges + ", shareChanges: " + shareChanges + " ]");
 //                }
                 hasLocalChanges = itemChanges || shareChanges || hasLocalChanges;
             }
+            flushItemChanges(database, user);
 
             // Skip further sync if we just posted our own changes
             if (hasLocalChanges) {
@@ -393,12 +762,26 @@ public class SyncManager {
                 return;
             }
 
+            // Ask the API for changes, unless the change channel will tell us
+            if (!shouldPoll(user)) {
+                mSyncCount++;
+                SyncLog.syncLooper(TAG, mSyncCount, "skip-server-poll (ChangeChannel)");
+                return;
+            }
+
             // Finally ready to get server changes
-            if (mSyncCount % 3 == 0) {
+            if (mIncrementalSync) {
+
+                // Deleted lists are only detected by a full sync
+                boolean full = mSyncCount % 10 == 0 || mCursor.getListsCursor() == 0;
+                SyncLog.syncLooper(TAG, mSyncCount, full ? "syncAllLists" : "syncChangedLists");
+                addRequest(new ListSyncRequest(database, user, true, !full));
+
+            } else if (mSyncCount % 3 == 0) {
 
                 // Get a new set of lists
                 SyncLog.syncLooper(TAG, mSyncCount, "syncAllLists");
-                addRequest(new ListSyncRequest(database, user, Integer.MAX_VALUE));
+                addRequest(new ListSyncRequest(database, user, false, false));
 
             } else if (mSyncCount % 10 == 0) {
 
@@ -427,12 +810,15 @@ public class SyncManager {
 
     private class ListSyncRequest extends JsonArrayRequest {
 
-        private ListSyncRequest(SgnDatabase database, User user, int syncCount) {
-            super(Endpoints.lists(user.getUserId()), new ListSyncListener(database, user, syncCount));
+        private ListSyncRequest(SgnDatabase database, User user, boolean incremental, boolean delta) {
+            super(Endpoints.lists(user.getUserId()), new ListSyncListener(database, user, incremental, delta));
             // Offset and limit are set to default values, we want to ignore this.
             getParameters().remove(Parameters.OFFSET);
             getParameters().remove(Parameters.LIMIT);
             setSaveNetworkLog(SAVE_NETWORK_LOG);
+            if (delta) {
+                mCursor.apply(this);
+            }
         }
     }
 
@@ -454,6 +840,7 @@ public class SyncManager {
         }
         database.insertLists(lists, user);
         for (Shoppinglist sl : lists) {
+            mShopGun.getListManager().getCache().invalidate(sl.getId());
             addRequest(new ListModifiedRequest(database, user, sl));
         }
     }
@@ -472,17 +859,52 @@ public class SyncManager {
     }
 
     private boolean syncLocalItemChanges(SgnDatabase database, Shoppinglist sl, User user) {
-        List<ShoppinglistItem> items = database.getItems(sl, user, true);
-        int count = items.size();
-        for (ShoppinglistItem item : items) {
+        boolean changes = journalLocalItemChanges(database, sl, user);
+        flushItemChanges(database, user);
+        return changes;
+    }
+
+    /**
+     * Add the local item changes of a list to the journal, they are sent by {@link #flushItemChanges(SgnDatabase, User)}.
+     * Items in an error state are reverted right away.
+     */
+    private boolean journalLocalItemChanges(SgnDatabase database, Shoppinglist sl, User user) {
+        // Most items are synced, so page through them rather than reading the whole list into memory
+        Iterator<ShoppinglistItem> items = database.iterateItems(sl.getId(), user, true);
+        boolean changes = false;
+        while (items.hasNext()) {
+            ShoppinglistItem item = items.next();
             switch (item.getState()) {
-                case SyncState.TO_SYNC: addRequest(new ItemPutRequest(database, user, item)); break;
-                case SyncState.DELETE: addRequest(new ItemDelRequest(database, user, item)); break;
-                case SyncState.ERROR: addRequest(new ItemRevertRequest(database, user, item)); break;
-                default: count--; break;
+                case SyncState.TO_SYNC:
+                case SyncState.DELETE: mJournal.add(item); changes = true; break;
+                case SyncState.ERROR: addRequest(new ItemRevertRequest(database, user, item)); changes = true; break;
+                default: break;
             }
         }
-        return count != 0;
+        return changes;
+    }
+
+    private void flushItemChanges(SgnDatabase database, User user) {
+        while (!mJournal.isEmpty()) {
+            List<ShoppinglistItem> batch = mJournal.drain(ItemChangeJournal.MAX_BATCH_SIZE);
+            if (mBatchUpload && batch.size() > 1) {
+                SyncLog.sync(TAG, "Sending " + batch.size() + " item changes in a batch");
+                ItemBatchListener listener = new ItemBatchListener(database, user, batch);
+                addRequest(new ItemBatchRequest(database, user, batch, listener), batch.size());
+            } else {
+                for (ShoppinglistItem item : batch) {
+                    addItemRequest(database, user, item);
+                }
+            }
+        }
+    }
+
+    private void addItemRequest(SgnDatabase database, User user, ShoppinglistItem item) {
+        if (item.getState() == SyncState.DELETE) {
+            addRequest(new ItemDelRequest(database, user, item));
+        } else {
+            addRequest(new ItemPutRequest(database, user, item));
+        }
     }
 
     private boolean syncLocalShareChanges(SgnDatabase database, Shoppinglist sl, User user) {
@@ -499,7 +921,7 @@ public class SyncManager {
                 } else if (s.getState() != SyncState.SYNCED) {
                     s.setState(SyncState.SYNCED);
                     s.setShoppinglistId(sl.getId());
-                    database.editShare(s, user);
+                    writeShare(database, s, user);
                     SgnLog.v(TAG, "Owner cannot be edited. Resetting share.state and ignoring.");
                 }
                 count--;
@@ -518,8 +940,13 @@ public class SyncManager {
 
     private class ListSyncListener extends ListArrayListener {
 
-        private ListSyncListener(SgnDatabase database, User user, int syncCount) {
+        private boolean mIncremental;
+        private boolean mDelta;
+
+        private ListSyncListener(SgnDatabase database, User user, boolean incremental, boolean delta) {
             super(database, user, null);
+            mIncremental = incremental;
+            mDelta = delta;
         }
 
         @Override
@@ -540,7 +967,7 @@ public class SyncManager {
                 }
             }
 
-            mergeListsToDbAndFetchItems(mDatabase, serverLists, localLists, mUser);
+            mergeListsToDbAndFetchItems(mDatabase, serverLists, localLists, mUser, mIncremental, mDelta);
 
             popRequestAndPostShoppinglistEvent();
 //            mSyncController.decrementAndPost();
@@ -554,7 +981,8 @@ public class SyncManager {
 
     }
 
-    private void mergeListsToDbAndFetchItems(SgnDatabase database, List<Shoppinglist> serverList, List<Shoppinglist> localList, User user) {
+    private void mergeListsToDbAndFetchItems(SgnDatabase database, List<Shoppinglist> serverList, List<Shoppinglist> localList,
+                                             User user, boolean incremental, boolean delta) {
 
         if (serverList.isEmpty() && localList.isEmpty()) {
             return;
@@ -575,6 +1003,9 @@ public class SyncManager {
         union.addAll(serverMap.keySet());
         union.addAll(localMap.keySet());
 
+        // Collect the changes, and write them to the DB in one transaction
+        ShoppinglistEvent.Builder changes = new ShoppinglistEvent.Builder(true);
+
         for (String key : union) {
 
             if (localMap.containsKey(key)) {
@@ -587,32 +1018,50 @@ public class SyncManager {
 
                     if (localSl.getModified().before(serverSl.getModified())) {
                         serverSl.setState(SyncState.SYNCED);
-                        mBuilder.edit(serverSl);
-                        database.editList(serverSl, user);
-                        database.cleanShares(serverSl, user);
+                        changes.edit(serverSl);
                     }
                     // else: Don't do anything, next iteration will put local changes to API
 
-                } else {
-                    mBuilder.del(localSl);
+                } else if (!delta) {
+                    // A delta only contains the changed lists, so a missing list isn't deleted
+                    changes.del(localSl);
                     for (ShoppinglistItem sli : database.getItems(localSl, user)) {
-                        mBuilder.del(sli);
+                        changes.del(sli);
                     }
-                    database.deleteItems(localSl.getId(), null, user);
-                    database.deleteList(localSl, user);
                 }
 
             } else {
 
                 Shoppinglist add = serverMap.get(key);
                 add.setState(SyncState.TO_SYNC);
-                mBuilder.add(add);
-                database.insertList(add, user);
+                changes.add(add);
 
             }
 
         }
 
+        if (!database.applyChanges(changes, user)) {
+            // Nothing was written, and the cursor isn't moved, so the next iteration gets the same lists again
+            SgnLog.w(TAG, "Failed to apply the list changes from the server, retrying on the next iteration");
+            mIterationFailed = true;
+            return;
+        }
+        mBuilder.addAll(changes);
+        if (changes.hasChanges()) {
+            onServerChanges();
+        }
+
+        if (incremental) {
+            for (Shoppinglist sl : mCursor.onListsSynced(serverList, !delta)) {
+                // Don't overwrite a list that is newer locally
+                Shoppinglist localSl = localMap.get(sl.getId());
+                boolean useLocal = localSl != null && !localSl.getModified().before(sl.getModified());
+                // The cursor must get the modified of the server, not the one set by the local clock
+                addRequest(new ItemSyncRequest(database, useLocal ? localSl : sl, sl, user));
+            }
+            return;
+        }
+
         for (Shoppinglist sl : mBuilder.getAddedLists()) {
             addRequest(new ItemSyncRequest(database, sl, user));
         }
@@ -652,12 +1101,12 @@ public class SyncManager {
                     addRequest(new ItemSyncRequest(mDatabase, mShoppinglist, mUser));
                 } else {
                     // if no changes, just write new state to DB
-                    mDatabase.editList(mShoppinglist, mUser);
+                    writeList(mDatabase, mShoppinglist, mUser);
                 }
             } catch (JSONException e) {
                 SgnLog.e(TAG, e.getMessage(), e);
                 // error? just write new state to DB, next iteration will fix it
-                mDatabase.editList(mShoppinglist, mUser);
+                writeList(mDatabase, mShoppinglist, mUser);
             }
             popRequestAndPostShoppinglistEvent();
         }
@@ -682,14 +1131,22 @@ public class SyncManager {
     private class ItemSyncRequest extends JsonArrayRequest {
 
         private ItemSyncRequest(SgnDatabase database, Shoppinglist shoppinglist, User user) {
-            super(Endpoints.listitems(user.getUserId(), shoppinglist.getId()), new ItemSyncListener(database, shoppinglist, user));
+            this(database, shoppinglist, null, user);
+        }
+
+        /**
+         * @param serverList The list as returned by the API, to update the {@link SyncCursor} with,
+         *                   or {@code null} if the request isn't part of an incremental sync
+         */
+        private ItemSyncRequest(SgnDatabase database, Shoppinglist shoppinglist, Shoppinglist serverList, User user) {
+            super(Endpoints.listitems(user.getUserId(), shoppinglist.getId()), new ItemSyncListener(database, shoppinglist, serverList, user));
             // Offset and limit are set to default values, we want to ignore this.
             getParameters().remove(Parameters.OFFSET);
             getParameters().remove(Parameters.LIMIT);
             setSaveNetworkLog(SAVE_NETWORK_LOG);
             // update database state for the list
             shoppinglist.setState(SyncState.SYNCING);
-            database.editList(shoppinglist, user);
+            writeList(database, shoppinglist, user);
         }
 
     }
@@ -699,10 +1156,12 @@ public class SyncManager {
         private SgnDatabase mDatabase;
         private User mUser;
         private Shoppinglist mShoppinglist;
+        private Shoppinglist mServerList;
 
-        private ItemSyncListener(SgnDatabase database, Shoppinglist shoppinglist, User user) {
+        private ItemSyncListener(SgnDatabase database, Shoppinglist shoppinglist, Shoppinglist serverList, User user) {
             mDatabase = database;
             mShoppinglist = shoppinglist;
+            mServerList = serverList;
             mUser = user;
         }
 
@@ -714,9 +1173,6 @@ public class SyncManager {
                 return;
             }
 
-            mShoppinglist.setState(SyncState.SYNCED);
-            mDatabase.editList(mShoppinglist, mUser);
-
             // Get ALL items including deleted, to avoid adding them again
             List<ShoppinglistItem> localItems = mDatabase.getItems(mShoppinglist, mUser, true);
             List<ShoppinglistItem> serverItems = ShoppinglistItem.fromJSON(response);
@@ -728,7 +1184,21 @@ public class SyncManager {
                 sli.setState(SyncState.SYNCED);
             }
 
-            mergeItemsToDb(mDatabase, serverItems, localItems, mUser);
+            if (!mergeItemsToDb(mDatabase, serverItems, localItems, mUser)) {
+                // Nothing was written, leave the list to be synced, so its items are fetched again on the next iteration
+                SgnLog.w(TAG, "Failed to apply the item changes from the server, retrying on the next iteration");
+                mShoppinglist.setState(SyncState.TO_SYNC);
+                writeList(mDatabase, mShoppinglist, mUser);
+                mIterationFailed = true;
+                popRequestAndPostShoppinglistEvent();
+                return;
+            }
+
+            mShoppinglist.setState(SyncState.SYNCED);
+            writeList(mDatabase, mShoppinglist, mUser);
+            if (mServerList != null) {
+                mCursor.onItemsSynced(mServerList);
+            }
 
             // fetch updated items from DB, as the state might be a bit whack after the merging of items
             localItems = mDatabase.getItems(mShoppinglist, mUser);
@@ -737,6 +1207,7 @@ public class SyncManager {
             if (PermissionUtils.allowEdit(mShoppinglist, mUser)) {
 
                 // Update previous_id's, modified and state if needed
+                List<ShoppinglistItem> reordered = new ArrayList<ShoppinglistItem>();
                 String tmp = ListUtils.FIRST_ITEM;
                 for (ShoppinglistItem sli : localItems) {
 
@@ -753,10 +1224,13 @@ public class SyncManager {
                             mBuilder.edit(sli);
                         }
 
-                        mDatabase.editItems(sli, mUser);
+                        reordered.add(sli);
                     }
                     tmp = sli.getId();
                 }
+                if (!reordered.isEmpty()) {
+                    writeItems(mDatabase, reordered, mUser);
+                }
             }
 
             popRequestAndPostShoppinglistEvent();
@@ -764,10 +1238,13 @@ public class SyncManager {
         }
     }
 
-    private void mergeItemsToDb(SgnDatabase database, List<ShoppinglistItem> serverItems, List<ShoppinglistItem> localItems, User user) {
+    /**
+     * @return {@code true} if the changes were written to the database, else {@code false}
+     */
+    private boolean mergeItemsToDb(SgnDatabase database, List<ShoppinglistItem> serverItems, List<ShoppinglistItem> localItems, User user) {
 
         if (serverItems.isEmpty() && localItems.isEmpty()) {
-            return;
+            return true;
         }
 
         HashMap<String, ShoppinglistItem> localMap = new HashMap<>();
@@ -785,6 +1262,9 @@ public class SyncManager {
         union.addAll(serverMap.keySet());
         union.addAll(localMap.keySet());
 
+        // Collect the changes, and write them to the DB in one transaction
+        ShoppinglistEvent.Builder changes = new ShoppinglistEvent.Builder(true);
+
         for (String key : union) {
 
             if (localMap.containsKey(key)) {
@@ -796,13 +1276,11 @@ public class SyncManager {
                     ShoppinglistItem serverSli = serverMap.get(key);
 
                     if (localSli.getModified().before(serverSli.getModified())) {
-                        mBuilder.edit(serverSli);
-                        database.editItems(serverSli, user);
+                        changes.edit(serverSli);
 
                     } else if (!localSli.getMeta().toString().equals(serverSli.getMeta().toString())) {
                         // Migration code, to get comments into the DB
-                        mBuilder.edit(serverSli);
-                        database.editItems(serverSli, user);
+                        changes.edit(serverSli);
                     } else if (localSli.equals(serverSli)) {
                         SgnLog.d(TAG, "We have a mismatch");
                     }
@@ -812,18 +1290,25 @@ public class SyncManager {
                     if (delSli.getState() != SyncState.TO_SYNC) {
                         // If the item have been added while request was in flight it will
                         // have the state TO_SYNC, and will just ignore it for now
-                        mBuilder.del(delSli);
-                        database.deleteItem(delSli, user);
+                        changes.del(delSli);
                     }
                 }
 
             } else {
                 ShoppinglistItem serverSli = serverMap.get(key);
-                mBuilder.add(serverSli);
-                database.insertItem(serverSli, user);
+                changes.add(serverSli);
             }
         }
 
+        if (!database.applyChanges(changes, user)) {
+            return false;
+        }
+        mBuilder.addAll(changes);
+        if (changes.hasChanges()) {
+            onServerChanges();
+        }
+        return true;
+
     }
 
     private class ListPutListener extends ListObjectListener {
@@ -863,7 +1348,7 @@ public class SyncManager {
                 response.setState(SyncState.SYNCED);
                 // If server haven't delivered an prev_id, then use old id
                 response.setPreviousId(response.getPreviousId() == null ? mLocalCopy.getPreviousId() : response.getPreviousId());
-                mDatabase.editList(response, mUser);
+                writeList(mDatabase, response, mUser);
                 mBuilder.edit(response);
             }
             popRequest();
@@ -878,7 +1363,7 @@ public class SyncManager {
             super(Method.PUT, Endpoints.list(user.getUserId(), shoppinglist.getId()),
                     shoppinglist.toJSON(), new ListPutListener(database, user, shoppinglist));
             shoppinglist.setState(SyncState.SYNCING);
-            database.editList(shoppinglist, user);
+            writeList(database, shoppinglist, user);
         }
 
     }
@@ -946,7 +1431,7 @@ public class SyncManager {
                     new ListRevertListener(database, user, shoppinglist));
             if (shoppinglist.getState() != SyncState.ERROR) {
                 shoppinglist.setState(SyncState.ERROR);
-                database.editList(shoppinglist, user);
+                writeList(database, shoppinglist, user);
             }
         }
     }
@@ -967,7 +1452,7 @@ public class SyncManager {
             response.setState(SyncState.SYNCED);
             response.setPreviousId(response.getPreviousId() == null ?
                     mLocalCopy.getPreviousId() : response.getPreviousId());
-            mDatabase.editList(response, mUser);
+            writeList(mDatabase, response, mUser);
             mBuilder.add(response);
             syncLocalItemChanges(mDatabase, mLocalCopy, mUser);
         }
@@ -988,7 +1473,7 @@ public class SyncManager {
             super(Method.PUT, Endpoints.listitem(user.getUserId(), item.getShoppinglistId(), item.getId()),
                     item.toJSON(), new ItemPutListener(database, user, item));
             item.setState(SyncState.SYNCING);
-            database.editItems(item, user);
+            writeItems(database, item, user);
         }
     }
 
@@ -1011,7 +1496,7 @@ public class SyncManager {
                 if (response.getPreviousId() == null) {
                     response.setPreviousId(mLocalCopy.getPreviousId());
                 }
-                mDatabase.editItems(response, mUser);
+                writeItems(mDatabase, response, mUser);
                 mBuilder.edit(response);
 
             }
@@ -1033,6 +1518,109 @@ public class SyncManager {
 
     }
 
+    private class ItemBatchRequest extends JsonArrayRequest {
+
+        private final ItemBatchListener mBatchListener;
+
+        private ItemBatchRequest(SgnDatabase database, User user, List<ShoppinglistItem> batch, ItemBatchListener listener) {
+            super(Method.POST, Endpoints.listitemsBatch(user.getUserId()), ItemChangeJournal.toJSON(batch), listener);
+            mBatchListener = listener;
+            List<ShoppinglistItem> syncing = new ArrayList<ShoppinglistItem>(batch.size());
+            for (ShoppinglistItem item : batch) {
+                if (item.getState() == SyncState.TO_SYNC) {
+                    item.setState(SyncState.SYNCING);
+                    syncing.add(item);
+                }
+            }
+            if (!syncing.isEmpty()) {
+                writeItems(database, syncing, user);
+            }
+        }
+
+        @Override
+        protected Response<JSONArray> parseNetworkResponse(NetworkResponse response) {
+            mBatchListener.mStatusCode = response.statusCode;
+            return super.parseNetworkResponse(response);
+        }
+    }
+
+    /**
+     * Check if the API doesn't support batch upload, as opposed to a batch failing for other reasons.
+     * @param statusCode The HTTP status code of the failed batch
+     */
+    private static boolean isBatchUnsupported(int statusCode) {
+        return statusCode == HttpURLConnection.HTTP_NOT_FOUND
+                || statusCode == HttpURLConnection.HTTP_BAD_METHOD
+                || statusCode == HttpURLConnection.HTTP_NOT_IMPLEMENTED;
+    }
+
+    /**
+     * Hands the result of every item in a batch to the {@link ItemPutListener} or {@link ItemDelListener},
+     * that would have handled a request for the single item.
+     */
+    private class ItemBatchListener implements Listener<JSONArray> {
+
+        SgnDatabase mDatabase;
+        User mUser;
+        List<ShoppinglistItem> mBatch;
+        /** Set from the network thread, or -1 if the request never got a response */
+        volatile int mStatusCode = -1;
+
+        private ItemBatchListener(SgnDatabase database, User user, List<ShoppinglistItem> batch) {
+            mDatabase = database;
+            mUser = user;
+            mBatch = batch;
+        }
+
+        @Override
+        public void onComplete(JSONArray response, ShopGunError error) {
+
+            if (response == null && isBatchUnsupported(mStatusCode)) {
+                // The API doesn't know batches, send the changes a request per item.
+                // Other errors are handled per item below, just as if they were sent one by one
+                SgnLog.w(TAG, "Batch upload not supported by the API, sending single item requests", error);
+                mBatchUpload = false;
+                for (ShoppinglistItem item : mBatch) {
+                    addItemRequest(mDatabase, mUser, item);
+                    popRequest();
+                }
+                return;
+            }
+
+            Map<String, JSONObject> results = response == null ? null : ItemChangeJournal.getResults(response);
+            for (ShoppinglistItem item : mBatch) {
+
+                ItemListener listener = item.getState() == SyncState.DELETE ?
+                        new ItemDelListener(mDatabase, mUser, item) :
+                        new ItemPutListener(mDatabase, mUser, item);
+
+                if (results == null) {
+                    listener.onComplete(null, error);
+                    continue;
+                }
+
+                JSONObject result = results.get(item.getId());
+                if (result == null) {
+                    // No result for the item, send it again in the next iteration
+                    if (item.getState() == SyncState.SYNCING) {
+                        item.setState(SyncState.TO_SYNC);
+                        writeItems(mDatabase, item, mUser);
+                    }
+                    popRequest();
+                } else if (result.has(ItemChangeJournal.ERROR)) {
+                    JSONObject e = result.optJSONObject(ItemChangeJournal.ERROR);
+                    listener.onComplete(null, e == null ? new ShopGunError() : ShopGunError.fromJSON(e));
+                } else {
+                    JSONObject o = result.optJSONObject(ItemChangeJournal.ITEM);
+                    listener.onComplete(o == null ? item.toJSON() : o, null);
+                }
+
+            }
+
+        }
+
+    }
+
     private class ItemDelRequest extends JsonObjectRequest {
 
         private ItemDelRequest(SgnDatabase database, User user, ShoppinglistItem item) {
@@ -1084,7 +1672,7 @@ public class SyncManager {
                     new ItemRevertListener(database, user, item));
             if (item.getState() != SyncState.ERROR) {
                 item.setState(SyncState.ERROR);
-                database.editItems(item, user);
+                writeItems(database, item, user);
             }
         }
     }
@@ -1121,7 +1709,7 @@ public class SyncManager {
                     Collections.sort(items, ShoppinglistItem.MODIFIED_DESCENDING);
                     ShoppinglistItem newestItem = items.get(0);
                     sl.setModified(newestItem.getModified());
-                    mDatabase.editList(sl, mUser);
+                    writeList(mDatabase, sl, mUser);
                     mBuilder.edit(sl);
                 }
             }
@@ -1134,7 +1722,7 @@ public class SyncManager {
             super(Method.PUT, Endpoints.listShareEmail(user.getUserId(), share.getShoppinglistId(), share.getEmail()),
                     share.toJSON(), new SharePutListener(database, user, share));
             share.setState(SyncState.SYNCING);
-            database.editShare(share, user);
+            writeShare(database, share, user);
         }
     }
 
@@ -1148,7 +1736,7 @@ public class SyncManager {
         public void onSuccess(Share response) {
             response.setState(SyncState.SYNCED);
             response.setShoppinglistId(mLocalCopy.getShoppinglistId());
-            mDatabase.editShare(response, mUser);
+            writeShare(mDatabase, response, mUser);
             popRequest();
         }
 
@@ -1239,7 +1827,7 @@ public class SyncManager {
                     new ShareRevertListener(database, user, share));
             if (share.getState() != SyncState.ERROR) {
                 share.setState(SyncState.ERROR);
-                database.editShare(share, user);
+                writeShare(database, share, user);
             }
         }
 
@@ -1255,7 +1843,7 @@ public class SyncManager {
         public void onSuccess(Share response) {
             response.setState(SyncState.SYNCED);
             response.setShoppinglistId(mLocalCopy.getShoppinglistId());
-            mDatabase.editShare(response, mUser);
+            writeShare(mDatabase, response, mUser);
 
             // No need to edit the SL in DB, as shares are disconnected
             Shoppinglist sl = mDatabase.getList(response.getShoppinglistId(), mUser);
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import com.shopgun.android.sdk.utils.Constants;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the delay between the iterations of the {@link SyncManager}.
+ *
+ * <ul>
+ *     <li>While nothing changes, the {@link SyncInterval} is stretched by a factor two for every
+ *     {@link #IDLE_STEP} idle iterations, up to {@link #MAX_IDLE_FACTOR} times the interval.</li>
+ *     <li>After a local edit, the next {@link #TIGHT_ITERATIONS} iterations run at no more than
+ *     {@link SyncInterval#FAST}, so the edit and any follow-up changes are sent quickly.</li>
+ *     <li>On errors, the interval is doubled for every consecutive failed iteration, up to {@link #MAX_ERROR_DELAY}.</li>
+ * </ul>
+ *
+ * <p>To batch wakeups with other work, an iteration may run early, when the radio is already
+ * awake. {@link #isInFlexWindow(long)} tells if the second half of the current delay has been reached.</p>
+ */
+public class SyncScheduler {
+
+    public static final String TAG = Constants.getTag(SyncScheduler.class);
+
+    /** Number of idle iterations, before the interval is stretched another step */
+    public static final int IDLE_STEP = 3;
+    /** Max factor the interval is stretched by, while nothing changes */
+    public static final int MAX_IDLE_FACTOR = 8;
+    /** Number of iterations at a tightened interval, after a local edit */
+    public static final int TIGHT_ITERATIONS = 3;
+    /** Max delay, while backing off on errors */
+    public static final long MAX_ERROR_DELAY = TimeUnit.MINUTES.toMillis(5);
+    /** The delay before a local edit is synced, so a burst of edits is sent in one iteration */
+    public static final long LOCAL_EDIT_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private int mIdle = 0;
+    private int mErrors = 0;
+    private int mTight = 0;
+    private boolean mChanged = false;
+    private long mDelay = 0;
+    private long mNextTime = 0;
+    private String mReason = "none";
+
+    /**
+     * Record that the user has edited lists or items locally.
+     */
+    public synchronized void onLocalChange() {
+        mTight = TIGHT_ITERATIONS;
+        mChanged = true;
+    }
+
+    /**
+     * Record that changes from the server have been merged.
+     */
+    public synchronized void onServerChange() {
+        mChanged = true;
+    }
+
+    /**
+     * Record the outcome of a sync iteration. Called once per iteration, when all of its requests are done,
+     * so the backoff grows by one step per failed iteration, no matter how many requests failed.
+     * @param success {@code true} if all requests succeeded, {@code false} if any of them failed
+     */
+    public synchronized void onResult(boolean success) {
+        mErrors = success ? 0 : mErrors + 1;
+    }
+
+    /**
+     * Compute the delay until the next iteration. Called at the start of every iteration, with
+     * the changes recorded since the last iteration.
+     * @param now The current time in milliseconds, e.g. {@link android.os.SystemClock#uptimeMillis()}
+     * @param interval The {@link SyncInterval} in milliseconds
+     * @return The delay in milliseconds
+     */
+    public synchronized long schedule(long now, long interval) {
+
+        if (mChanged) {
+            mIdle = 0;
+            mChanged = false;
+        } else {
+            mIdle++;
+        }
+
+        if (mErrors > 0) {
+            mDelay = Math.min(interval << Math.min(mErrors, 16), MAX_ERROR_DELAY);
+            mReason = "backoff";
+        } else if (mTight > 0) {
+            mTight--;
+            mDelay = Math.min(interval, SyncInterval.FAST);
+            mReason = "tight";
+        } else {
+            int factor = Math.min(1 << Math.min(mIdle / IDLE_STEP, 30), MAX_IDLE_FACTOR);
+            mDelay = interval * factor;
+            mReason = factor > 1 ? "idle" : "normal";
+        }
+        mNextTime = now + mDelay;
+        return mDelay;
+
+    }
+
+    /**
+     * Check if the next iteration may as well run now, because at least half the delay has passed.
+     * @param now The current time in milliseconds, on the same clock as given to {@link #schedule(long, long)}
+     * @return {@code true} if running the next iteration early is fine, else {@code false}
+     */
+    public synchronized boolean isInFlexWindow(long now) {
+        return mDelay > 0 && now >= mNextTime - mDelay / 2 && now < mNextTime;
+    }
+
+    /**
+     * Get the time the next iteration is scheduled for.
+     * @return A time in milliseconds, or {@code 0} if nothing has been scheduled
+     */
+    public synchronized long getNextTime() {
+        return mNextTime;
+    }
+
+    /**
+     * Forget all recorded state, e.g. when the user changes.
+     */
+    public synchronized void reset() {
+        mIdle = 0;
+        mErrors = 0;
+        mTight = 0;
+        mChanged = false;
+        mDelay = 0;
+        mNextTime = 0;
+        mReason = "none";
+    }
+
+    @Override
+    public synchronized String toString() {
+        String format = "%s[ delay: %sms (%s), idle: %s, errors: %s, tight: %s ]";
+        return String.format(Locale.US, format, getClass().getSimpleName(), mDelay, mReason, mIdle, mErrors, mTight);
+    }
+
+}
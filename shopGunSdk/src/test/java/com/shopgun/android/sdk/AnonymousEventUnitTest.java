@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shopgun.android.sdk.eventskit.AnonymousEvent;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class AnonymousEventUnitTest {
+
+    @Test
+    public void testSerialize() {
+        JsonArray array = new JsonArray();
+        array.add("a");
+        AnonymousEvent event = new AnonymousEvent(AnonymousEvent.PAGED_PUBLICATION_PAGE_DISAPPEARED)
+                .addPageOpened("pub1", 3)
+                .addUserLocation("u5r3", 1000)
+                .addSearch("\"quoted\"\\\n\u0001", null)
+                .add("n", 1.5)
+                .add("array", array)
+                .addIncitoOpened("pub2", true);
+
+        JsonObject json = (JsonObject) new JsonParser().parse(event.toString());
+        Assert.assertEquals(2, json.get("_v").getAsInt());
+        Assert.assertEquals(event.getId(), json.get("_i").getAsString());
+        Assert.assertEquals(AnonymousEvent.PAGED_PUBLICATION_PAGE_DISAPPEARED, json.get("_e").getAsInt());
+        Assert.assertEquals(event.getTimestamp(), json.get("_t").getAsLong());
+        Assert.assertEquals("pub1", json.get("pp.id").getAsString());
+        Assert.assertEquals(3, json.get("ppp.n").getAsInt());
+        Assert.assertEquals("u5r3", json.get("l.h").getAsString());
+        Assert.assertEquals(1000, json.get("l.ht").getAsLong());
+        Assert.assertEquals("\"quoted\"\\\n\u0001", json.get("sea.q").getAsString());
+        Assert.assertFalse(json.has("sea.l"));
+        Assert.assertEquals(1.5, json.get("n").getAsDouble());
+        Assert.assertEquals(array, json.get("array"));
+        Assert.assertTrue(json.get("ip.paged").getAsBoolean());
+    }
+
+    @Test
+    public void testReplaceField() {
+        AnonymousEvent event = new AnonymousEvent(AnonymousEvent.DEFAULT_TYPE);
+        for (int i = 0; i < 20; i++) {
+            event.add("k" + i, i);
+        }
+        event.add("k5", "five");
+        JsonObject json = (JsonObject) new JsonParser().parse(event.toString());
+        Assert.assertEquals(24, json.size());
+        Assert.assertEquals("five", json.get("k5").getAsString());
+        Assert.assertEquals(19, json.get("k19").getAsInt());
+    }
+
+    @Test
+    public void testSerializeOnce() {
+        AnonymousEvent event = new AnonymousEvent(AnonymousEvent.OFFER_OPENED).addOfferOpened("offer1");
+        String json = event.toString();
+        Assert.assertSame(json, event.toString());
+        event.addUserCountry("DK");
+        Assert.assertNotSame(json, event.toString());
+        Assert.assertTrue(event.toString().contains("\"l.c\":\"DK\""));
+    }
+
+}
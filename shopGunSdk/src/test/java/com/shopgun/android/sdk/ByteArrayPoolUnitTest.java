@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.ByteArrayPool;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.impl.JsonArrayRequest;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.requests.impl.CatalogListRequest;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class ByteArrayPoolUnitTest {
+
+    public static final String TAG = Constants.getTag(ByteArrayPoolUnitTest.class);
+
+    @Test
+    public void testSizeClasses() throws Exception {
+
+        ByteArrayPool pool = new ByteArrayPool();
+        Assert.assertEquals(4096, pool.acquire(1).length);
+        Assert.assertEquals(4096, pool.acquire(4096).length);
+        Assert.assertEquals(8192, pool.acquire(4097).length);
+        Assert.assertEquals(ByteArrayPool.MAX_BUFFER_SIZE, pool.acquire(ByteArrayPool.MAX_BUFFER_SIZE).length);
+
+        // Too large to be pooled
+        byte[] large = pool.acquire(ByteArrayPool.MAX_BUFFER_SIZE + 1);
+        Assert.assertEquals(ByteArrayPool.MAX_BUFFER_SIZE + 1, large.length);
+        pool.release(large);
+        Assert.assertEquals(0, pool.getPooledBytes());
+
+        byte[] buffer = pool.acquire(5000);
+        pool.release(buffer);
+        Assert.assertEquals(8192, pool.getPooledBytes());
+        Assert.assertSame(buffer, pool.acquire(6000));
+        Assert.assertEquals(0, pool.getPooledBytes());
+
+    }
+
+    @Test
+    public void testPoolLimit() throws Exception {
+
+        ByteArrayPool pool = new ByteArrayPool(10000);
+        pool.release(new byte[8192]);
+        pool.release(new byte[8192]);
+        Assert.assertEquals(8192, pool.getPooledBytes());
+
+    }
+
+    @Test
+    public void testReadAndRecycle() throws Exception {
+
+        byte[] body = new byte[100000];
+        new Random(1).nextBytes(body);
+
+        ByteArrayPool pool = new ByteArrayPool();
+        NetworkResponse response = pool.read(200, new ByteArrayInputStream(body), -1, null);
+        Assert.assertTrue(response.isPooled());
+        Assert.assertEquals(body.length, response.length);
+        Assert.assertEquals(131072, response.data.length);
+        Assert.assertTrue(Arrays.equals(body, response.toByteArray()));
+        Assert.assertEquals(body.length, response.getBody().remaining());
+        Assert.assertTrue(response.getBody().isReadOnly());
+
+        byte[] data = response.data;
+        response.recycle();
+        response.recycle();
+        Assert.assertFalse(response.isPooled());
+
+        // With a known length, the recycled buffer is read straight into
+        response = pool.read(200, new ByteArrayInputStream(body), body.length, null);
+        Assert.assertSame(data, response.data);
+        Assert.assertTrue(Arrays.equals(body, response.toByteArray()));
+
+        Assert.assertEquals(0, pool.read(304, new ByteArrayInputStream(new byte[0]), -1, null).length);
+
+    }
+
+    @Test
+    public void testPoolingIsNotInherited() throws Exception {
+
+        String url = "https://api.etilbudsavis.dk/v2/catalogs";
+        Assert.assertTrue(new StringRequest(url, null).isResponsePoolable());
+        Assert.assertTrue(new JsonArrayRequest(url, null).isResponsePoolable());
+        Assert.assertTrue(new CatalogListRequest(url, null).isResponsePoolable());
+
+        // A subclass may read NetworkResponse.data, and would see what's left in the buffer past the body
+        Assert.assertFalse(new StringRequest(url, null) {}.isResponsePoolable());
+        Assert.assertFalse(new JsonArrayRequest(url, null) {}.isResponsePoolable());
+
+    }
+
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.impl.DiskCache;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.LinkedList;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class DiskCacheUnitTest {
+
+    public static final String TAG = Constants.getTag(DiskCacheUnitTest.class);
+
+    private static final long TTL = 60000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testItemsSurviveReopen() throws Exception {
+
+        File dir = mFolder.newFolder();
+
+        JSONObject offer = new JSONObject();
+        offer.put("ern", "ern:offer:abc");
+        offer.put("heading", "Milk");
+
+        LinkedList<String> erns = new LinkedList<String>();
+        erns.add("ern:offer:abc");
+        erns.add("ern:offer:def");
+
+        DiskCache cache = new DiskCache(dir);
+        cache.put("ern:offer:abc", new Cache.Item(offer, TTL, 40));
+        cache.put("https://api.etilbudsavis.dk/v2/offers?offset=0", new Cache.Item(erns, TTL, 26));
+        cache.put("string", new Cache.Item("value", TTL));
+        cache.put("bytes", new Cache.Item(new byte[]{1, 2, 3}, TTL));
+        cache.put("unsupported", new Cache.Item(new Object(), TTL));
+        Assert.assertEquals(4, cache.size());
+
+        // A new instance, like after a cold start
+        cache = new DiskCache(dir);
+        Assert.assertEquals(4, cache.size());
+
+        Cache.Item item = cache.get("ern:offer:abc");
+        Assert.assertNotNull(item);
+        Assert.assertEquals(40, item.size);
+        Assert.assertEquals("Milk", ((JSONObject) item.object).getString("heading"));
+
+        item = cache.get("https://api.etilbudsavis.dk/v2/offers?offset=0");
+        Assert.assertNotNull(item);
+        Assert.assertEquals(erns, item.object);
+
+        Assert.assertEquals("value", cache.get("string").object);
+        Assert.assertEquals(3, ((byte[]) cache.get("bytes").object).length);
+        Assert.assertNull(cache.get("unsupported"));
+
+    }
+
+    @Test
+    public void testExpiredAndReplacedItems() throws Exception {
+
+        File dir = mFolder.newFolder();
+        DiskCache cache = new DiskCache(dir);
+
+        cache.put("discardable", new Cache.Item("value", -Cache.Item.MAX_STALE - 1000));
+        Assert.assertEquals(0, cache.size());
+
+        // Expired items are kept for revalidation
+        cache.put("expired", new Cache.Item("value", -1));
+        Assert.assertNull(cache.get("expired"));
+        Assert.assertEquals("value", cache.getStale("expired").object);
+
+        cache.put("key", new Cache.Item("first", TTL));
+        cache.put("key", new Cache.Item("second", TTL));
+        Assert.assertEquals(2, cache.size());
+
+        cache = new DiskCache(dir);
+        Assert.assertEquals("second", cache.get("key").object);
+
+        cache.clear();
+        Assert.assertNull(cache.get("key"));
+        Assert.assertEquals(0, new DiskCache(dir).size());
+
+    }
+
+    @Test
+    public void testValidatorsSurviveReopen() throws Exception {
+
+        File dir = mFolder.newFolder();
+        DiskCache cache = new DiskCache(dir);
+
+        Cache.Item item = new Cache.Item("value", -1);
+        item.etag = "\"abc\"";
+        cache.put("etag", item);
+
+        item = new Cache.Item("value", TTL);
+        item.lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        cache.put("last-modified", item);
+
+        cache.put("none", new Cache.Item("value", TTL));
+
+        cache = new DiskCache(dir);
+        item = cache.getStale("etag");
+        Assert.assertEquals("\"abc\"", item.etag);
+        Assert.assertNull(item.lastModified);
+
+        item = cache.get("last-modified");
+        Assert.assertNull(item.etag);
+        Assert.assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", item.lastModified);
+
+        Assert.assertFalse(cache.get("none").hasValidators());
+
+    }
+
+    @Test
+    public void testTruncatedJournalIsRecovered() throws Exception {
+
+        File dir = mFolder.newFolder();
+        DiskCache cache = new DiskCache(dir);
+        cache.put("first", new Cache.Item("value", TTL));
+        cache.put("second", new Cache.Item("value", TTL));
+        cache.size();
+
+        // Chop the last record in half, as if the process died mid-write
+        RandomAccessFile journal = new RandomAccessFile(new File(dir, "journal"), "rw");
+        journal.setLength(journal.length() - 5);
+        journal.close();
+
+        cache = new DiskCache(dir);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals("value", cache.get("first").object);
+        Assert.assertNull(cache.get("second"));
+
+        // And the journal can still be appended to
+        cache.put("third", new Cache.Item("value", TTL));
+        cache = new DiskCache(dir);
+        Assert.assertEquals(2, cache.size());
+
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+
+        File dir = mFolder.newFolder();
+        DiskCache cache = new DiskCache(dir, 1000);
+        for (int i = 0; i < 50; i++) {
+            cache.put("key-" + i, new Cache.Item(new byte[100], TTL));
+        }
+
+        Assert.assertTrue(cache.sizeInBytes() <= 1000);
+        Assert.assertNotNull(cache.get("key-49"));
+        Assert.assertNull(cache.get("key-0"));
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.eventskit.AnonymousEventWrapper;
+import com.shopgun.android.sdk.eventskit.EventRequestBody;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class EventRequestBodyUnitTest {
+
+    public static final String TAG = Constants.getTag(EventRequestBodyUnitTest.class);
+
+    private static List<AnonymousEventWrapper> events() {
+        List<AnonymousEventWrapper> list = new ArrayList<AnonymousEventWrapper>();
+        for (int i = 0; i < 50; i++) {
+            list.add(new AnonymousEventWrapper("id-" + i, 2, 1000, "{\"_i\":\"id-" + i + "\",\"_e\":11,\"n\":" + i + "}"));
+        }
+        list.add(new AnonymousEventWrapper("empty", 2, 1000, ""));
+        return list;
+    }
+
+    @Test
+    public void testPlainBody() throws Exception {
+
+        Buffer buffer = new Buffer();
+        new EventRequestBody(events(), false).writeTo(buffer);
+
+        JSONArray events = new JSONObject(buffer.readUtf8()).getJSONArray("events");
+        Assert.assertEquals(51, events.length());
+        Assert.assertEquals("id-0", events.getJSONObject(0).getString("_i"));
+        Assert.assertEquals(0, events.getJSONObject(50).length());
+
+    }
+
+    @Test
+    public void testGzipBody() throws Exception {
+
+        Buffer plain = new Buffer();
+        new EventRequestBody(events(), false).writeTo(plain);
+        long plainSize = plain.size();
+
+        Buffer gzip = new Buffer();
+        EventRequestBody body = new EventRequestBody(events(), true);
+        body.writeTo(gzip);
+        Assert.assertTrue(body.isGzip());
+        Assert.assertEquals(-1, body.contentLength());
+        Assert.assertTrue(gzip.size() < plainSize / 2);
+
+        String json = Okio.buffer(new GzipSource(gzip)).readUtf8();
+        Assert.assertEquals(plain.readUtf8(), json);
+
+    }
+
+    @Test
+    public void testValidEvent() {
+
+        Assert.assertTrue(EventRequestBody.isValidEvent(null));
+        Assert.assertTrue(EventRequestBody.isValidEvent(""));
+        Assert.assertTrue(EventRequestBody.isValidEvent("{}"));
+        Assert.assertTrue(EventRequestBody.isValidEvent("{\"_i\":\"id\",\"a\":[1,{\"b\":null}]}"));
+        Assert.assertFalse(EventRequestBody.isValidEvent("{\"_i\":\"id\""));
+        Assert.assertFalse(EventRequestBody.isValidEvent("{\"_i\":\"id\"}]"));
+        Assert.assertFalse(EventRequestBody.isValidEvent("{} {}"));
+        Assert.assertFalse(EventRequestBody.isValidEvent("[]"));
+        Assert.assertFalse(EventRequestBody.isValidEvent("{_i:id}"));
+
+    }
+
+}
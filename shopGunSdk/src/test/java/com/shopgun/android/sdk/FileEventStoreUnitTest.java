@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.eventskit.AnonymousEventWrapper;
+import com.shopgun.android.sdk.eventskit.FileEventStore;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class FileEventStoreUnitTest {
+
+    public static final String TAG = Constants.getTag(FileEventStoreUnitTest.class);
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<AnonymousEventWrapper> events(int from, int to) {
+        List<AnonymousEventWrapper> list = new ArrayList<AnonymousEventWrapper>();
+        for (int i = from; i < to; i++) {
+            list.add(new AnonymousEventWrapper("id-" + i, 2, 1000 + i, "{\"_i\":\"id-" + i + "\",\"n\":" + i + "}"));
+        }
+        return list;
+    }
+
+    @Test
+    public void testEventsSurviveReopen() throws Exception {
+
+        File dir = mFolder.newFolder();
+        FileEventStore store = new FileEventStore(dir);
+        Assert.assertTrue(store.open());
+        store.add(events(0, 10));
+        Assert.assertEquals(10, store.count());
+        store.close();
+
+        // A new instance, like after a cold start
+        store = new FileEventStore(dir);
+        Assert.assertTrue(store.open());
+        Assert.assertEquals(10, store.count());
+
+        List<AnonymousEventWrapper> peeked = store.peek(3, Long.MAX_VALUE);
+        Assert.assertEquals(3, peeked.size());
+        AnonymousEventWrapper first = peeked.get(0);
+        Assert.assertEquals("id-0", first.getId());
+        Assert.assertEquals(2, first.getVersion());
+        Assert.assertEquals(1000, first.getTimestamp());
+        Assert.assertEquals("{\"_i\":\"id-0\",\"n\":0}", first.getEvent());
+        Assert.assertEquals("id-2", peeked.get(2).getId());
+
+    }
+
+    @Test
+    public void testAcknowledgedEventsAreGone() throws Exception {
+
+        File dir = mFolder.newFolder();
+        FileEventStore store = new FileEventStore(dir);
+        store.open();
+        store.add(events(0, 5));
+
+        Assert.assertEquals(2, store.remove(new HashSet<String>(Arrays.asList("id-0", "id-3", "unknown"))));
+        Assert.assertEquals(0, store.remove(Collections.<String>emptySet()));
+        Assert.assertEquals(3, store.count());
+        Assert.assertEquals("id-1", store.peek(1, Long.MAX_VALUE).get(0).getId());
+
+        store.close();
+        store = new FileEventStore(dir);
+        store.open();
+        Assert.assertEquals(3, store.count());
+        List<AnonymousEventWrapper> peeked = store.peek(10, Long.MAX_VALUE);
+        Assert.assertEquals("id-1", peeked.get(0).getId());
+        Assert.assertEquals("id-2", peeked.get(1).getId());
+        Assert.assertEquals("id-4", peeked.get(2).getId());
+
+    }
+
+    @Test
+    public void testSegmentsRotateAndAreDeleted() throws Exception {
+
+        File dir = mFolder.newFolder();
+        FileEventStore store = new FileEventStore(dir, 500);
+        store.open();
+        for (int i = 0; i < 10; i++) {
+            store.add(events(i * 5, i * 5 + 5));
+        }
+        Assert.assertEquals(50, store.count());
+        Assert.assertTrue(store.getSegmentCount() > 2);
+
+        // Acknowledging the oldest events frees the oldest segments
+        int segments = store.getSegmentCount();
+        HashSet<String> ids = new HashSet<String>();
+        for (AnonymousEventWrapper e : store.peek(25, Long.MAX_VALUE)) {
+            ids.add(e.getId());
+        }
+        Assert.assertEquals(25, store.remove(ids));
+        Assert.assertTrue(store.getSegmentCount() < segments);
+        Assert.assertEquals("id-25", store.peek(1, Long.MAX_VALUE).get(0).getId());
+
+        store.close();
+        store = new FileEventStore(dir, 500);
+        store.open();
+        Assert.assertEquals(25, store.count());
+        Assert.assertEquals("id-25", store.peek(1, Long.MAX_VALUE).get(0).getId());
+
+        // Acknowledging everything leaves a single, empty segment
+        ids.clear();
+        for (AnonymousEventWrapper e : store.peek(25, Long.MAX_VALUE)) {
+            ids.add(e.getId());
+        }
+        Assert.assertEquals(25, store.remove(ids));
+        Assert.assertEquals(1, store.getSegmentCount());
+        Assert.assertEquals(1, dir.list().length);
+
+    }
+
+    @Test
+    public void testPeekByBytes() throws Exception {
+
+        FileEventStore store = new FileEventStore(mFolder.newFolder());
+        store.open();
+        List<AnonymousEventWrapper> events = events(0, 10);
+        store.add(events);
+
+        long size = events.get(0).getEvent().length();
+        Assert.assertEquals(3, store.peek(10, 3 * size).size());
+        Assert.assertEquals(2, store.peek(2, 3 * size).size());
+        // The first event is returned, even if it's too big
+        Assert.assertEquals(1, store.peek(10, 1).size());
+
+    }
+
+    @Test
+    public void testTornWriteIsRecovered() throws Exception {
+
+        File dir = mFolder.newFolder();
+        FileEventStore store = new FileEventStore(dir);
+        store.open();
+        store.add(events(0, 2));
+        store.close();
+
+        // Chop the last record in half, as if the process died mid-write
+        File segment = new File(dir, dir.list()[0]);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(file.length() - 5);
+        file.close();
+
+        store = new FileEventStore(dir);
+        store.open();
+        Assert.assertEquals(1, store.count());
+        Assert.assertEquals("id-0", store.peek(10, Long.MAX_VALUE).get(0).getId());
+
+        // And the journal can still be appended to
+        store.add(events(2, 3));
+        store.close();
+        store = new FileEventStore(dir);
+        store.open();
+        Assert.assertEquals(2, store.count());
+
+        // A flipped byte fails the checksum
+        file = new RandomAccessFile(segment, "rw");
+        file.seek(file.length() - 1);
+        int last = file.read();
+        file.seek(file.length() - 1);
+        file.write(last ^ 0xFF);
+        file.close();
+
+        store.close();
+        store = new FileEventStore(dir);
+        store.open();
+        Assert.assertEquals(1, store.count());
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.api.Endpoints;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.model.interfaces.SyncState;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.impl.JsonArrayRequest;
+import com.shopgun.android.sdk.network.mock.MockApiNetwork;
+import com.shopgun.android.sdk.shoppinglists.ItemChangeJournal;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class ItemChangeJournalUnitTest {
+
+    public static final String TAG = Constants.getTag(ItemChangeJournalUnitTest.class);
+
+    private static final String HOST = "https://api.etilbudsavis.dk";
+    private static final int USER = 1;
+    private static final long NOW = 1500000000000L;
+
+    private static ShoppinglistItem copy(ShoppinglistItem sli, int state, long modified) {
+        ShoppinglistItem copy = ShoppinglistItem.fromJSON(sli.toJSON());
+        copy.setState(state);
+        copy.setModified(new Date(modified));
+        return copy;
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        ShoppinglistItem milk = copy(new ShoppinglistItem(sl, "milk"), SyncState.TO_SYNC, NOW);
+        ShoppinglistItem bread = copy(new ShoppinglistItem(sl, "bread"), SyncState.TO_SYNC, NOW);
+
+        ItemChangeJournal journal = new ItemChangeJournal();
+        Assert.assertTrue(journal.add(milk));
+        Assert.assertTrue(journal.add(bread));
+        Assert.assertFalse(journal.add(copy(bread, SyncState.SYNCED, NOW + 1000)));
+
+        // Newer edits replace older ones, and a delete wins a tie
+        Assert.assertTrue(journal.add(copy(milk, SyncState.TO_SYNC, NOW + 1000)));
+        Assert.assertFalse(journal.add(copy(milk, SyncState.TO_SYNC, NOW)));
+        Assert.assertTrue(journal.add(copy(milk, SyncState.DELETE, NOW + 1000)));
+        Assert.assertFalse(journal.add(copy(milk, SyncState.TO_SYNC, NOW + 1000)));
+        Assert.assertEquals(2, journal.size());
+
+        List<ShoppinglistItem> batch = journal.drain(1);
+        Assert.assertEquals(1, batch.size());
+        Assert.assertEquals(milk.getId(), batch.get(0).getId());
+        Assert.assertEquals(SyncState.DELETE, batch.get(0).getState());
+        Assert.assertEquals(bread.getId(), journal.drain(ItemChangeJournal.MAX_BATCH_SIZE).get(0).getId());
+        Assert.assertTrue(journal.isEmpty());
+
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+
+        MockApiNetwork network = new MockApiNetwork(RuntimeEnvironment.application);
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        List<ShoppinglistItem> batch = new ArrayList<ShoppinglistItem>();
+        for (int i = 0; i < 10; i++) {
+            ShoppinglistItem sli = new ShoppinglistItem(sl, "item " + i);
+            if (i % 2 == 0) {
+                network.getShoppinglists().putItem(sli);
+                sli = copy(sli, SyncState.DELETE, NOW);
+            }
+            batch.add(sli);
+        }
+
+        JSONArray body = ItemChangeJournal.toJSON(batch);
+        Assert.assertEquals(batch.size(), body.length());
+        Assert.assertEquals(ItemChangeJournal.OP_DELETE, body.getJSONObject(0).getString(ItemChangeJournal.OP));
+        Assert.assertEquals(ItemChangeJournal.OP_PUT, body.getJSONObject(1).getString(ItemChangeJournal.OP));
+
+        Request<?> r = new JsonArrayRequest(Request.Method.POST, HOST + Endpoints.listitemsBatch(USER), body, null);
+        NetworkResponse response = network.performRequest(r);
+        Map<String, JSONObject> results = ItemChangeJournal.getResults(new JSONArray(new String(response.data)));
+
+        // One result per change, with the resulting item for edits
+        Assert.assertEquals(batch.size(), results.size());
+        for (ShoppinglistItem sli : batch) {
+            JSONObject result = results.get(sli.getId());
+            Assert.assertNotNull(result);
+            Assert.assertFalse(result.has(ItemChangeJournal.ERROR));
+            Assert.assertEquals(sli.getState() != SyncState.DELETE, result.has(ItemChangeJournal.ITEM));
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.shoppinglists.ItemOrderIndex;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.sdk.utils.ListUtils;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class ItemOrderIndexUnitTest {
+
+    public static final String TAG = Constants.getTag(ItemOrderIndexUnitTest.class);
+
+    private static List<ShoppinglistItem> chain(Shoppinglist sl, int count) {
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>(count);
+        String prevId = ListUtils.FIRST_ITEM;
+        for (int i = 0; i < count; i++) {
+            ShoppinglistItem sli = new ShoppinglistItem(sl, "item " + i);
+            sli.setPreviousId(prevId);
+            prevId = sli.getId();
+            items.add(sli);
+        }
+        return items;
+    }
+
+    private static void assertSorted(List<ShoppinglistItem> items) {
+        List<ShoppinglistItem> expected = new ArrayList<ShoppinglistItem>(items);
+        ListUtils.sortItems(expected);
+        Assert.assertEquals(expected, items);
+    }
+
+    @Test
+    public void testSort() throws Exception {
+
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        List<ShoppinglistItem> chain = chain(sl, 20);
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>(chain);
+        Random random = new Random(1);
+
+        ItemOrderIndex index = new ItemOrderIndex();
+        Collections.shuffle(items, random);
+        index.sort(sl.getId(), items);
+        Assert.assertEquals(chain, items);
+        Assert.assertTrue(index.contains(sl.getId()));
+
+        // Sorted from the index
+        Collections.shuffle(items, random);
+        index.sort(sl.getId(), items);
+        Assert.assertEquals(chain, items);
+
+        // Changes behind the back of the index are detected
+        ShoppinglistItem last = items.remove(items.size() - 1);
+        last.setPreviousId(ListUtils.FIRST_ITEM);
+        items.get(0).setPreviousId(last.getId());
+        items.add(last);
+        Collections.shuffle(items, random);
+        index.sort(sl.getId(), items);
+        Assert.assertEquals(last, items.get(0));
+        assertSorted(items);
+
+        // A broken chain isn't cached
+        items.get(5).setPreviousId(null);
+        index.sort(sl.getId(), items);
+        Assert.assertFalse(index.contains(sl.getId()));
+        assertSorted(items);
+
+    }
+
+    @Test
+    public void testMove() throws Exception {
+
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        List<ShoppinglistItem> items = chain(sl, 20);
+        ItemOrderIndex index = new ItemOrderIndex();
+        index.sort(sl.getId(), items);
+
+        ShoppinglistItem move = items.get(15);
+        List<ShoppinglistItem> edited = index.move(sl.getId(), items, move.getId(), items.get(2).getId());
+        Assert.assertEquals(3, edited.size());
+        Assert.assertEquals(move, items.get(3));
+        Assert.assertTrue(index.contains(sl.getId()));
+        assertSorted(items);
+
+        // Move down, and to the top
+        edited = index.move(sl.getId(), items, move.getId(), items.get(19).getId());
+        Assert.assertEquals(2, edited.size());
+        Assert.assertEquals(move, items.get(19));
+        assertSorted(items);
+
+        edited = index.move(sl.getId(), items, move.getId(), null);
+        Assert.assertEquals(2, edited.size());
+        Assert.assertEquals(move, items.get(0));
+        Assert.assertEquals(ListUtils.FIRST_ITEM, move.getPreviousId());
+        assertSorted(items);
+
+        // Moving an item to where it already is, changes nothing
+        Assert.assertTrue(index.move(sl.getId(), items, move.getId(), null).isEmpty());
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.impl.JsonStreamReader;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class JsonStreamReaderUnitTest {
+
+    public static final String TAG = Constants.getTag(JsonStreamReaderUnitTest.class);
+
+    private static final String JSON = "[" +
+            "{\"ern\":\"ern:offer:a\",\"heading\":\"Mælk\",\"pricing\":{\"price\":9.95,\"pre_price\":null}," +
+            "\"quantity\":{\"pieces\":{\"from\":1,\"to\":1}},\"run_from\":\"2015-01-01T00:00:00+0000\"," +
+            "\"big\":12345678901,\"branding\":{\"logo\":\"https://x.y/z.png\",\"pageflip\":{\"color\":\"ff0000\"}}}," +
+            "{\"ern\":\"ern:offer:b\",\"images\":[\"a\",\"b\"],\"active\":true,\"count\":0}," +
+            "42" +
+            "]";
+
+    @Test
+    public void testSameAsJSONArray() throws Exception {
+
+        final List<JSONObject> elements = new ArrayList<JSONObject>();
+        JSONArray streamed = JsonStreamReader.readArray(stream(JSON), "utf-8", new JsonStreamReader.ElementListener() {
+            @Override
+            public void onElement(JSONObject element) {
+                elements.add(element);
+            }
+        });
+
+        JSONArray expected = new JSONArray(JSON);
+        Assert.assertEquals(expected.length(), streamed.length());
+        Assert.assertEquals(expected.toString(), streamed.toString());
+
+        // Only objects are handed to the listener
+        Assert.assertEquals(2, elements.size());
+        Assert.assertEquals("ern:offer:b", elements.get(1).getString("ern"));
+        Assert.assertTrue(elements.get(0).getJSONObject("pricing").isNull("pre_price"));
+        Assert.assertEquals(9.95, elements.get(0).getJSONObject("pricing").getDouble("price"));
+        Assert.assertEquals(12345678901L, elements.get(0).getLong("big"));
+
+    }
+
+    @Test
+    public void testStreamArray() throws Exception {
+
+        final List<JSONObject> elements = new ArrayList<JSONObject>();
+        int count = JsonStreamReader.streamArray(stream(JSON), "utf-8", new JsonStreamReader.ElementListener() {
+            @Override
+            public void onElement(JSONObject element) {
+                elements.add(element);
+            }
+        });
+
+        // Every element is counted, but only objects are read
+        Assert.assertEquals(3, count);
+        Assert.assertEquals(2, elements.size());
+        Assert.assertEquals("ern:offer:a", elements.get(0).getString("ern"));
+        Assert.assertEquals(2, elements.get(1).getJSONArray("images").length());
+
+        try {
+            JsonStreamReader.streamArray(stream("{\"code\":1}"), "utf-8", null);
+            Assert.fail("Expected an exception");
+        } catch (IOException e) {
+            // expected
+        }
+
+    }
+
+    @Test
+    public void testInvalidInput() throws Exception {
+
+        Assert.assertEquals(0, JsonStreamReader.readArray(stream("[]"), "utf-8", null).length());
+
+        try {
+            JsonStreamReader.readArray(stream("{\"code\":1}"), "utf-8", null);
+            Assert.fail("Expected an exception");
+        } catch (IOException e) {
+            // expected
+        }
+
+        try {
+            JsonStreamReader.readArray(stream("[{\"ern\":\"ern:offer:a\""), "utf-8", null);
+            Assert.fail("Expected an exception");
+        } catch (IOException e) {
+            // expected
+        }
+
+    }
+
+    private static ByteArrayInputStream stream(String s) throws Exception {
+        return new ByteArrayInputStream(s.getBytes("UTF-8"));
+    }
+
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.model.Session;
+import com.shopgun.android.sdk.model.User;
+import com.shopgun.android.sdk.shoppinglists.ChangeChannel;
+import com.shopgun.android.sdk.shoppinglists.LongPollChangeChannel;
+import com.shopgun.android.sdk.utils.Constants;
+import com.shopgun.android.utils.HashUtils;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class LongPollChangeChannelUnitTest {
+
+    public static final String TAG = Constants.getTag(LongPollChangeChannelUnitTest.class);
+
+    private MockWebServer mServer;
+    private SessionManager mSessionManager;
+    private LongPollChangeChannel mChannel;
+    private final BlockingQueue<String> mEvents = new LinkedBlockingQueue<String>();
+
+    private final ChangeChannel.Listener mListener = new ChangeChannel.Listener() {
+        @Override
+        public void onConnected() {
+            mEvents.add("connected");
+        }
+
+        @Override
+        public void onDisconnected(Exception e) {
+            mEvents.add("disconnected");
+        }
+
+        @Override
+        public void onListChanged(String shoppinglistId) {
+            mEvents.add("list:" + shoppinglistId);
+        }
+
+        @Override
+        public void onListsChanged() {
+            mEvents.add("lists");
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        Session session = new Session();
+        session.setToken("token");
+        mSessionManager = Mockito.mock(SessionManager.class);
+        Mockito.when(mSessionManager.getSession()).thenReturn(session);
+        ShopGun shopGun = Mockito.mock(ShopGun.class);
+        Mockito.when(shopGun.getSessionManager()).thenReturn(mSessionManager);
+        Mockito.when(shopGun.getApiSecret()).thenReturn("secret");
+        mChannel = new LongPollChangeChannel(shopGun, new OkHttpClient(), mServer.url("/").toString(), 1000, 10, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mChannel.close();
+        mServer.shutdown();
+    }
+
+    private String nextEvent() throws InterruptedException {
+        return mEvents.poll(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testChanges() throws Exception {
+
+        mServer.enqueue(new MockResponse().setBody("{\"cursor\":\"1\"}"));
+        mServer.enqueue(new MockResponse().setBody("{\"cursor\":\"2\",\"shopping_list_ids\":[\"a\",\"b\"]}"));
+        mServer.enqueue(new MockResponse().setResponseCode(204));
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mServer.enqueue(new MockResponse().setBody("{\"cursor\":\"3\"}"));
+
+        mChannel.open(new User().setUserId(7), mListener);
+
+        // The first poll only gets a cursor
+        Assert.assertEquals("connected", nextEvent());
+        Assert.assertTrue(mChannel.isConnected());
+        Assert.assertEquals("list:a", nextEvent());
+        Assert.assertEquals("list:b", nextEvent());
+
+        // A server error takes the channel down, and it reconnects with the same cursor
+        Assert.assertEquals("disconnected", nextEvent());
+        Assert.assertEquals("connected", nextEvent());
+        Assert.assertEquals("lists", nextEvent());
+
+        RecordedRequest first = mServer.takeRequest();
+        Assert.assertEquals("/v2/users/7/shoppinglists/changes?timeout=1", first.getPath());
+        Assert.assertEquals("/v2/users/7/shoppinglists/changes?timeout=1&cursor=1", mServer.takeRequest().getPath());
+        Assert.assertEquals("/v2/users/7/shoppinglists/changes?timeout=1&cursor=2", mServer.takeRequest().getPath());
+        Assert.assertEquals("/v2/users/7/shoppinglists/changes?timeout=1&cursor=2", mServer.takeRequest().getPath());
+        Assert.assertEquals("/v2/users/7/shoppinglists/changes?timeout=1&cursor=2", mServer.takeRequest().getPath());
+
+    }
+
+    @Test
+    public void testSession() throws Exception {
+
+        mServer.enqueue(new MockResponse().setBody("{\"cursor\":\"1\"}")
+                .setHeader("X-Token", "rotated")
+                .setHeader("X-Token-Expires", "2030-01-01T00:00:00+0000"));
+
+        mChannel.open(new User().setUserId(7), mListener);
+        Assert.assertEquals("connected", nextEvent());
+
+        // Polls are signed like any other API request
+        RecordedRequest request = mServer.takeRequest();
+        Assert.assertEquals("token", request.getHeader("X-Token"));
+        Assert.assertEquals(HashUtils.sha256("secret" + "token"), request.getHeader("X-Signature"));
+
+        // A rotated token is handed to the session
+        Mockito.verify(mSessionManager).updateTokens("rotated", "2030-01-01T00:00:00+0000");
+
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        mChannel.open(new User().setUserId(7), mListener);
+        // The poll is held open by the server, as nothing is enqueued
+        mServer.takeRequest();
+        mChannel.close();
+        Assert.assertFalse(mChannel.isConnected());
+        Assert.assertNull(mEvents.poll(200, TimeUnit.MILLISECONDS));
+
+    }
+
+}
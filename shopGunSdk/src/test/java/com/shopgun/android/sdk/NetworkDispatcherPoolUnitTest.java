@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.model.Session;
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.Delivery;
+import com.shopgun.android.sdk.network.Network;
+import com.shopgun.android.sdk.network.NetworkDispatcherPool;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestQueue;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class NetworkDispatcherPoolUnitTest {
+
+    public static final String TAG = Constants.getTag(NetworkDispatcherPoolUnitTest.class);
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private ShopGun mShopGun;
+    private BlockingNetwork mNetwork;
+    private CountingDelivery mDelivery;
+    private NetworkDispatcherPool mPool;
+
+    @Before
+    public void setUp() throws Exception {
+        // No context, so the connection type is unknown, and the pool may use its max size
+        mShopGun = Mockito.mock(ShopGun.class);
+        SessionManager sessionManager = Mockito.mock(SessionManager.class);
+        Mockito.when(sessionManager.getSession()).thenReturn(new Session());
+        Mockito.when(mShopGun.getSessionManager()).thenReturn(sessionManager);
+        mNetwork = new BlockingNetwork();
+        mDelivery = new CountingDelivery();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mNetwork.open();
+        if (mPool != null) {
+            mPool.stop();
+        }
+    }
+
+    private NetworkDispatcherPool start(int maxPoolSize, int maxRequestsPerHost) {
+        Cache cache = new NoCache();
+        RequestQueue queue = new RequestQueue(mShopGun, cache, mNetwork, 1, mDelivery);
+        mPool = new NetworkDispatcherPool(mShopGun, queue, mNetwork, cache, mDelivery, maxPoolSize, maxRequestsPerHost);
+        mPool.start();
+        return mPool;
+    }
+
+    private void add(String host, int count) {
+        for (int i = 0; i < count; i++) {
+            mPool.getQueue().add(new StringRequest("https://" + host + "/v2/catalogs?i=" + i, null));
+        }
+    }
+
+    @Test
+    public void testGrowsWithDemand() throws Exception {
+
+        NetworkDispatcherPool pool = start(4, 4);
+        Assert.assertEquals(0, pool.getPoolSize());
+
+        add("api.etilbudsavis.dk", 2);
+        mNetwork.awaitActive(2);
+        Assert.assertEquals(2, pool.getPoolSize());
+
+        // The pool never grows past its max size, the rest of the requests wait in the queue
+        add("api.etilbudsavis.dk", 4);
+        mNetwork.awaitActive(4);
+        Assert.assertEquals(4, pool.getPoolSize());
+        Assert.assertEquals(2, pool.getQueueDepth());
+        Assert.assertEquals(4, pool.getPeakPoolSize());
+
+        mNetwork.open();
+        mDelivery.await(6);
+        Assert.assertEquals(4, pool.getPeakPoolSize());
+        Assert.assertEquals(4, pool.getStartedCount());
+        Assert.assertEquals(4, mNetwork.getMaxActive());
+
+    }
+
+    @Test
+    public void testShrinksWhenParked() throws Exception {
+
+        NetworkDispatcherPool pool = start(4, 4);
+        add("api.etilbudsavis.dk", 4);
+        mNetwork.awaitActive(4);
+        mNetwork.open();
+        mDelivery.await(4);
+
+        // Idle dispatchers are kept alive, while in the foreground
+        Assert.assertEquals(4, pool.getPoolSize());
+
+        pool.setParked(true);
+        Assert.assertEquals(1, pool.getTargetPoolSize());
+        waitForPoolSize(pool, 0);
+
+        // A parked pool still serves requests, on a single dispatcher
+        add("api.etilbudsavis.dk", 3);
+        mDelivery.await(7);
+        Assert.assertTrue(pool.getPoolSize() <= 1);
+
+        pool.setParked(false);
+        Assert.assertEquals(4, pool.getTargetPoolSize());
+
+    }
+
+    @Test
+    public void testPerHostLimit() throws Exception {
+
+        NetworkDispatcherPool pool = start(4, 2);
+        add("api.etilbudsavis.dk", 4);
+        add("images.etilbudsavis.dk", 1);
+
+        // Two requests to the API, the image, and two API requests held back by the host limit
+        mNetwork.awaitActive(3);
+        waitForDeferred(pool, 2);
+        Assert.assertEquals(2, mNetwork.getActive("api.etilbudsavis.dk"));
+        Assert.assertEquals(1, mNetwork.getActive("images.etilbudsavis.dk"));
+        Assert.assertEquals(2, pool.getHostLimitedCount());
+
+        // Held back requests continue as the requests before them complete
+        mNetwork.open();
+        mDelivery.await(5);
+        Assert.assertEquals(0, pool.getDeferredCount());
+        Assert.assertEquals(2, mNetwork.getMaxActive("api.etilbudsavis.dk"));
+        Assert.assertEquals(5, pool.getCompletedCount());
+
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        // Requests to a single host could never keep a larger pool busy
+        Assert.assertTrue(NetworkDispatcherPool.DEFAULT_MAX_POOL_SIZE <= NetworkDispatcherPool.DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    private static void waitForPoolSize(NetworkDispatcherPool pool, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (pool.getPoolSize() != size) {
+            Assert.assertTrue("Pool size " + pool.getPoolSize() + ", expected " + size, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void waitForDeferred(NetworkDispatcherPool pool, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (pool.getDeferredCount() != count) {
+            Assert.assertTrue("Deferred " + pool.getDeferredCount() + ", expected " + count, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * A network where requests wait until it's opened, keeping track of the requests in flight.
+     */
+    private static class BlockingNetwork implements Network {
+
+        private final Semaphore mGate = new Semaphore(0);
+        private final Map<String, Integer> mActive = new HashMap<String, Integer>();
+        private final Map<String, Integer> mMaxActive = new HashMap<String, Integer>();
+        private int mTotal = 0;
+        private int mMaxTotal = 0;
+
+        @Override
+        public NetworkResponse performRequest(Request<?> request) throws ShopGunError {
+            String host = request.getUrl().split("/")[2];
+            synchronized (this) {
+                int active = getActive(host) + 1;
+                mActive.put(host, active);
+                mMaxActive.put(host, Math.max(active, getMaxActive(host)));
+                mMaxTotal = Math.max(++mTotal, mMaxTotal);
+                notifyAll();
+            }
+            mGate.acquireUninterruptibly();
+            synchronized (this) {
+                mActive.put(host, getActive(host) - 1);
+                mTotal--;
+            }
+            return new NetworkResponse(200, "ok".getBytes(), new HashMap<String, String>());
+        }
+
+        void open() {
+            mGate.release(Integer.MAX_VALUE / 2);
+        }
+
+        synchronized void awaitActive(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (mTotal < count) {
+                long wait = deadline - System.currentTimeMillis();
+                Assert.assertTrue("Active " + mTotal + ", expected " + count, wait > 0);
+                wait(wait);
+            }
+        }
+
+        synchronized int getActive(String host) {
+            Integer active = mActive.get(host);
+            return active == null ? 0 : active;
+        }
+
+        synchronized int getMaxActive(String host) {
+            Integer max = mMaxActive.get(host);
+            return max == null ? 0 : max;
+        }
+
+        synchronized int getMaxActive() {
+            return mMaxTotal;
+        }
+
+    }
+
+    private static class CountingDelivery implements Delivery {
+
+        private int mCount = 0;
+
+        @Override
+        public synchronized void postResponse(Request<?> request, Response<?> response) {
+            mCount++;
+            notifyAll();
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (mCount < count) {
+                long wait = deadline - System.currentTimeMillis();
+                Assert.assertTrue("Delivered " + mCount + ", expected " + count, wait > 0);
+                wait(wait);
+            }
+        }
+
+    }
+
+    private static class NoCache implements Cache {
+
+        @Override
+        public void put(Request<?> request, Response<?> response) {
+        }
+
+        @Override
+        public Item get(String key) {
+            return null;
+        }
+
+        @Override
+        public void clear() {
+        }
+
+    }
+
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.impl.OkHttpNetwork;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class OkHttpNetworkUnitTest {
+
+    public static final String TAG = Constants.getTag(OkHttpNetworkUnitTest.class);
+
+    private MockWebServer mServer;
+    private OkHttpNetwork mNetwork;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mNetwork = new OkHttpNetwork(new OkHttpClient());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testGet() throws Exception {
+
+        mServer.enqueue(new MockResponse().setBody("[]").setHeader("ETag", "\"abc\""));
+
+        Request<?> request = new StringRequest(mServer.url("/v2/catalogs").toString(), null);
+        request.getParameters().put("offset", "0");
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("X-Token", "token");
+        request.setHeaders(headers);
+
+        NetworkResponse response = mNetwork.performRequest(request);
+        Assert.assertEquals(200, response.statusCode);
+        Assert.assertEquals("[]", new String(response.data, "UTF-8"));
+        Assert.assertEquals("\"abc\"", response.headers.get("ETag"));
+
+        RecordedRequest recorded = mServer.takeRequest();
+        Assert.assertEquals("GET", recorded.getMethod());
+        Assert.assertEquals("/v2/catalogs?offset=0", recorded.getPath());
+        Assert.assertEquals("token", recorded.getHeader("X-Token"));
+
+    }
+
+    @Test
+    public void testPostAndErrors() throws Exception {
+
+        mServer.enqueue(new MockResponse().setResponseCode(400).setBody("{\"code\":1}"));
+
+        Request<?> request = new StringRequest(Request.Method.POST, mServer.url("/v2/sessions").toString(), "body", null);
+        NetworkResponse response = mNetwork.performRequest(request);
+        Assert.assertEquals(400, response.statusCode);
+        Assert.assertEquals("{\"code\":1}", new String(response.data, "UTF-8"));
+
+        RecordedRequest recorded = mServer.takeRequest();
+        Assert.assertEquals("POST", recorded.getMethod());
+        Assert.assertEquals("body", recorded.getBody().readUtf8());
+
+    }
+
+    @Test
+    public void testStreamedBody() throws Exception {
+
+        mServer.enqueue(new MockResponse().setBody("[{\"ern\":\"ern:offer:abc\"}]"));
+        mServer.enqueue(new MockResponse().setResponseCode(500).setBody("{\"code\":1}"));
+
+        NetworkResponse response = mNetwork.performRequest(new StreamingRequest(mServer.url("/v2/offers").toString()));
+        Assert.assertTrue(response.isStreamed());
+        Assert.assertEquals(0, response.data.length);
+        Assert.assertEquals("[{\"ern\":\"ern:offer:abc\"}]", new Buffer().readFrom(response.getBodyStream()).readUtf8());
+        try {
+            response.toByteArray();
+            Assert.fail("Expected an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        response.recycle();
+
+        // Errors are always buffered, so they can be parsed like any other error
+        response = mNetwork.performRequest(new StreamingRequest(mServer.url("/v2/offers").toString()));
+        Assert.assertFalse(response.isStreamed());
+        Assert.assertEquals("{\"code\":1}", response.getBodyAsString("UTF-8"));
+
+    }
+
+    @Test
+    public void testGzipIsTransparent() throws Exception {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write("{\"ern\":\"ern:offer:abc\"}".getBytes("UTF-8"));
+        gzip.close();
+        mServer.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(new Buffer().write(bytes.toByteArray())));
+
+        NetworkResponse response = mNetwork.performRequest(new StringRequest(mServer.url("/v2/offers/abc").toString(), null));
+        Assert.assertEquals("{\"ern\":\"ern:offer:abc\"}", new String(response.data, "UTF-8"));
+        Assert.assertEquals("gzip", mServer.takeRequest().getHeader("Accept-Encoding"));
+
+    }
+
+    private static class StreamingRequest extends StringRequest {
+
+        StreamingRequest(String url) {
+            super(url, null);
+        }
+
+        @Override
+        public boolean isResponseStreamable() {
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestCoalescer;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class RequestCoalescerUnitTest {
+
+    public static final String TAG = Constants.getTag(RequestCoalescerUnitTest.class);
+
+    private static final String URL = "https://api.etilbudsavis.dk/v2/catalogs";
+
+    @Test
+    public void testIdenticalRequestsAreParked() throws Exception {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Request<?> primary = new StringRequest(URL, null);
+        Request<?> second = new StringRequest(URL, null);
+        Request<?> third = new StringRequest(URL, null);
+        Request<?> other = new StringRequest(URL + "/other", null);
+
+        Assert.assertFalse(coalescer.park(primary));
+        Assert.assertTrue(coalescer.park(second));
+        Assert.assertTrue(coalescer.park(third));
+        Assert.assertFalse(coalescer.park(other));
+        Assert.assertEquals(2, coalescer.getInFlightCount());
+
+        // A retried primary must not park behind itself
+        Assert.assertFalse(coalescer.park(primary));
+
+        List<Request<?>> waiting = coalescer.release(primary);
+        Assert.assertEquals(2, waiting.size());
+        Assert.assertSame(second, waiting.get(0));
+        Assert.assertSame(third, waiting.get(1));
+        Assert.assertEquals(2, coalescer.getSavedCount());
+        Assert.assertEquals(2, coalescer.getParkedCount());
+
+        Assert.assertTrue(coalescer.release(other).isEmpty());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+
+        // Nothing in flight, so the next request becomes a primary
+        Assert.assertFalse(coalescer.park(second));
+
+    }
+
+    @Test
+    public void testNonGetRequestsAreNotParked() throws Exception {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Assert.assertFalse(coalescer.park(new StringRequest(Request.Method.POST, URL, "body", null)));
+        Assert.assertFalse(coalescer.park(new StringRequest(Request.Method.POST, URL, "body", null)));
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+
+        coalescer.setEnabled(false);
+        Assert.assertFalse(coalescer.park(new StringRequest(URL, null)));
+        Assert.assertFalse(coalescer.park(new StringRequest(URL, null)));
+
+    }
+
+    @Test
+    public void testCancelledPrimaryIsReplaced() throws Exception {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Request<?> primary = new StringRequest(URL, null);
+        Request<?> cancelled = new StringRequest(URL, null);
+        Request<?> waiting = new StringRequest(URL, null);
+
+        coalescer.park(primary);
+        coalescer.park(cancelled);
+        coalescer.park(waiting);
+
+        primary.cancel();
+        cancelled.cancel();
+
+        Assert.assertSame(waiting, coalescer.promote(primary));
+        Assert.assertTrue(cancelled.isFinished());
+        Assert.assertEquals(1, coalescer.getInFlightCount());
+        Assert.assertTrue(coalescer.release(waiting).isEmpty());
+
+        // No one left to promote
+        coalescer.park(primary);
+        Assert.assertNull(coalescer.promote(primary));
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+
+    }
+
+}
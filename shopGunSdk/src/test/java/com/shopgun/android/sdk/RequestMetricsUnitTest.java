@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.Histogram;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestMetrics;
+import com.shopgun.android.sdk.network.RequestTrace;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class RequestMetricsUnitTest {
+
+    public static final String TAG = Constants.getTag(RequestMetricsUnitTest.class);
+
+    @Test
+    public void testHistogram() throws Exception {
+
+        Histogram h = new Histogram();
+        Assert.assertEquals(0, h.getPercentile(50));
+
+        // 1ms ... 100ms
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000000L);
+        }
+        h.record(-1);
+
+        Assert.assertEquals(100, h.getCount());
+        Assert.assertEquals(50500, h.getMean());
+        Assert.assertEquals(100000, h.getMax());
+
+        // Percentiles are bucket upper bounds, so within a factor two of the real value
+        long p50 = h.getPercentile(50);
+        Assert.assertTrue(p50 >= 50000 && p50 < 100000);
+        Assert.assertEquals(100000, h.getPercentile(100));
+
+        h.reset();
+        Assert.assertEquals(0, h.getCount());
+        Assert.assertEquals(0, h.getMax());
+
+    }
+
+    @Test
+    public void testTrace() throws Exception {
+
+        Request<?> r = new StringRequest("https://api.etilbudsavis.dk/v2/catalogs", null);
+        RequestTrace trace = r.getTrace();
+        Assert.assertFalse(trace.hasReached(RequestTrace.Stage.QUEUED));
+
+        trace.mark(RequestTrace.Stage.QUEUED);
+        trace.mark(RequestTrace.Stage.CACHE);
+        Thread.sleep(2);
+        trace.mark(RequestTrace.Stage.DELIVERY);
+
+        // A cache hit skips the network stages
+        Assert.assertTrue(trace.getDuration(RequestTrace.Stage.CACHE) >= 2000000);
+        Assert.assertEquals(-1, trace.getDuration(RequestTrace.Stage.NETWORK));
+        Assert.assertEquals(-1, trace.getDuration(RequestTrace.Stage.DELIVERY));
+        Assert.assertEquals(trace.getDuration(RequestTrace.Stage.QUEUED, RequestTrace.Stage.DELIVERY),
+                trace.getDuration(RequestTrace.Stage.QUEUED) + trace.getDuration(RequestTrace.Stage.CACHE));
+
+        // No debugger, no event log
+        r.addEvent("event");
+        Assert.assertTrue(r.getLog().getEvents().isEmpty());
+
+        trace.reset();
+        Assert.assertFalse(trace.hasReached(RequestTrace.Stage.CACHE));
+
+    }
+
+    @Test
+    public void testEmptyMetrics() throws Exception {
+
+        RequestMetrics metrics = new RequestMetrics();
+        Assert.assertEquals(0d, metrics.getCacheHitRatio());
+        Assert.assertEquals(0, metrics.getTotalHistogram().getCount());
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestScheduler;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class RequestSchedulerUnitTest {
+
+    public static final String TAG = Constants.getTag(RequestSchedulerUnitTest.class);
+
+    private static final String URL = "https://api.etilbudsavis.dk/v2/catalogs";
+
+    @Test
+    public void testPriorityRanks() throws Exception {
+
+        RequestScheduler scheduler = new RequestScheduler();
+        long high = scheduler.rank(new StringRequest(URL, null).setPriority(Request.Priority.HIGH));
+        long medium = scheduler.rank(new StringRequest(URL, null));
+        long low = scheduler.rank(new StringRequest(URL, null).setPriority(Request.Priority.LOW));
+
+        Assert.assertTrue(high < medium);
+        Assert.assertTrue(medium < low);
+        // Low priority requests age into high priority, two steps behind
+        Assert.assertEquals(2 * RequestScheduler.AGING_STEP, low - high);
+
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+
+        RequestScheduler scheduler = new RequestScheduler();
+        Request<?> r = new StringRequest(URL, null).setPriority(Request.Priority.LOW);
+        long rank = scheduler.rank(r);
+
+        r.setDeadlineAt(1);
+        Assert.assertEquals(1, scheduler.rank(r));
+
+        // A deadline later than the priority based rank, doesn't delay the request
+        r.setDeadlineAt(rank + 1000);
+        Assert.assertEquals(rank, scheduler.rank(r));
+
+    }
+
+    @Test
+    public void testTags() throws Exception {
+
+        RequestScheduler scheduler = new RequestScheduler();
+        Object tag = new Object();
+        Request<?> tagged = new StringRequest(URL, null).setTag(tag);
+        Request<?> high = new StringRequest(URL, null).setPriority(Request.Priority.HIGH);
+        long medium = scheduler.rank(tagged);
+
+        scheduler.setForeground(tag);
+        Assert.assertTrue(scheduler.isForeground(tag));
+        Assert.assertTrue(scheduler.rank(tagged) < scheduler.rank(high));
+
+        scheduler.setBackground(tag);
+        Assert.assertTrue(scheduler.isBackground(tag));
+        Assert.assertEquals(medium + RequestScheduler.BACKGROUND_DELAY, scheduler.rank(tagged));
+
+        scheduler.clear(tag);
+        Assert.assertFalse(scheduler.isForeground(tag));
+        Assert.assertFalse(scheduler.isBackground(tag));
+        Assert.assertEquals(medium, scheduler.rank(tagged));
+
+    }
+
+    @Test
+    public void testTagIdentity() throws Exception {
+
+        // Tags are matched like RequestQueue.cancelAll() matches them, equal tags are different tags
+        RequestScheduler scheduler = new RequestScheduler();
+        String tag = new String("tag");
+        String equal = new String("tag");
+        scheduler.setForeground(tag);
+        Assert.assertTrue(scheduler.isForeground(tag));
+        Assert.assertFalse(scheduler.isForeground(equal));
+
+        scheduler.setBackground(equal);
+        Assert.assertTrue(scheduler.isForeground(tag));
+        Assert.assertTrue(scheduler.isBackground(equal));
+
+    }
+
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.eventskit.RetryBudget;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class RetryBudgetUnitTest {
+
+    public static final String TAG = Constants.getTag(RetryBudgetUnitTest.class);
+
+    @Test
+    public void testBudget() throws Exception {
+
+        RetryBudget budget = new RetryBudget(3, 1000);
+        long now = 10000;
+
+        // A full bucket allows a few retries in a row
+        Assert.assertTrue(budget.tryAcquire(now));
+        Assert.assertTrue(budget.tryAcquire(now));
+        Assert.assertTrue(budget.tryAcquire(now));
+        Assert.assertFalse(budget.tryAcquire(now));
+
+        // Then one per refill interval
+        Assert.assertFalse(budget.tryAcquire(now + 999));
+        Assert.assertTrue(budget.tryAcquire(now + 1000));
+        Assert.assertFalse(budget.tryAcquire(now + 1500));
+
+        // And never more than the capacity
+        Assert.assertEquals(3, budget.getTokens(now + 60000));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() throws Exception {
+        new RetryBudget(0, 1000);
+    }
+
+}
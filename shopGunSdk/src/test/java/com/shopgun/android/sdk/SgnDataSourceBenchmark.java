@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.database.SgnDataSource;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.utils.Constants;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times reading shopping lists with thousands of items, as the table grows. It doesn't assert anything,
+ * as timings depend on the machine, and isn't part of the unit tests. Run it by hand, and compare the
+ * numbers between changes. That the list index is used is verified in {@link SgnDataSourceUnitTest}.
+ */
+@Ignore("Benchmark, run by hand")
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class SgnDataSourceBenchmark {
+
+    public static final String TAG = Constants.getTag(SgnDataSourceBenchmark.class);
+
+    private static final String USER = "7";
+    private static final int LISTS = 10;
+    private static final int[] ITEMS_PER_LIST = new int[]{100, 1000, 5000};
+    private static final int READS = 5;
+
+    @Test
+    public void benchmarkGetItems() throws Exception {
+
+        SgnDataSource ds = new SgnDataSource(RuntimeEnvironment.application);
+        ds.open();
+
+        int perList = 0;
+        for (int size : ITEMS_PER_LIST) {
+
+            List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+            for (int l = 0; l < LISTS; l++) {
+                for (int i = perList; i < size; i++) {
+                    items.add(new ShoppinglistItem().setShoppinglistId("list-" + l).setDescription("item " + i));
+                }
+            }
+            long insert = System.nanoTime();
+            ds.insertItem(items, USER);
+            insert = System.nanoTime() - insert;
+            perList = size;
+
+            // The best of a few reads, to leave out warm up and gc
+            long read = Long.MAX_VALUE;
+            for (int r = 0; r < READS; r++) {
+                long start = System.nanoTime();
+                for (int l = 0; l < LISTS; l++) {
+                    ds.getItems("list-" + l, USER, false);
+                }
+                read = Math.min(read, (System.nanoTime() - start) / LISTS);
+            }
+
+            System.out.println(String.format(Locale.US, "%s: %d items per list, %d in table, insert %d: %dms, getItems: %.2fms",
+                    TAG, size, size * LISTS, items.size(), insert / 1000000, read / 1000000d));
+        }
+
+        ds.close();
+
+    }
+
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.shopgun.android.sdk.database.SgnDataSource;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.model.interfaces.SyncState;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class SgnDataSourceUnitTest {
+
+    public static final String TAG = Constants.getTag(SgnDataSourceUnitTest.class);
+
+    private static final String USER = "7";
+
+    @Test
+    public void testStatements() throws Exception {
+
+        SgnDataSource ds = new SgnDataSource(RuntimeEnvironment.application);
+        ds.open();
+
+        ShoppinglistItem sli = new ShoppinglistItem().setShoppinglistId("list").setDescription("milk");
+        Assert.assertTrue(ds.insertItem(sli, USER) > -1);
+        Assert.assertEquals(1, ds.getItems("list", USER, false).size());
+
+        Assert.assertEquals(1, ds.editItemState("list", USER, new Date(), SyncState.DELETE));
+        Assert.assertEquals(0, ds.getItems("list", USER, false).size());
+        Assert.assertEquals(1, ds.getItems("list", USER, true).size());
+
+        // The database is closed and reopened, so the cached statements must be recompiled
+        ds.close();
+        Assert.assertEquals(1, ds.deleteItem(sli.getId(), USER));
+        Assert.assertEquals(0, ds.getItems("list", USER, true).size());
+
+    }
+
+    @Test
+    public void testIndexUsed() throws Exception {
+
+        // Make sure the database has been created
+        SgnDataSource ds = new SgnDataSource(RuntimeEnvironment.application);
+        ds.getItems("list", USER, false);
+
+        String path = RuntimeEnvironment.application.getDatabasePath("shoppinglist.db").getPath();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM shoppinglistitems WHERE " +
+                "shopping_list_id=? AND user=? AND state!=?", new String[]{"list", USER, String.valueOf(SyncState.DELETE)});
+        StringBuilder plan = new StringBuilder();
+        while (c.moveToNext()) {
+            plan.append(c.getString(c.getColumnCount() - 1));
+        }
+        c.close();
+        db.close();
+        Assert.assertTrue(plan.toString(), plan.toString().contains("shoppinglistitems_list_idx"));
+
+    }
+
+    @Test
+    public void testWriteAheadLogging() throws Exception {
+
+        SgnDataSource ds = new SgnDataSource(RuntimeEnvironment.application);
+        ds.open();
+
+        String path = RuntimeEnvironment.application.getDatabasePath("shoppinglist.db").getPath();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+        Cursor c = db.rawQuery("PRAGMA journal_mode", null);
+        Assert.assertTrue(c.moveToFirst());
+        Assert.assertEquals("wal", c.getString(0).toLowerCase(Locale.US));
+        c.close();
+        db.close();
+
+        ds.close();
+
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+
+        SgnDataSource ds = new SgnDataSource(RuntimeEnvironment.application);
+
+        Shoppinglist keep = Shoppinglist.fromName("keep");
+        Shoppinglist gone = Shoppinglist.fromName("gone");
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+        for (int i = 0; i < 5; i++) {
+            items.add(new ShoppinglistItem(keep, "keep " + i));
+            items.add(new ShoppinglistItem(gone, "gone " + i));
+        }
+        List<ShoppinglistItem> none = Collections.emptyList();
+        ds.merge(Arrays.asList(keep, gone), Collections.<Shoppinglist>emptyList(), items, none, USER);
+        Assert.assertEquals(5, ds.getItems(gone.getId(), USER, true).size());
+
+        // Add, edit and delete items, and delete a list along with its items, in one go
+        ShoppinglistItem added = new ShoppinglistItem(keep, "added");
+        ShoppinglistItem edited = items.get(0).setDescription("edited");
+        ShoppinglistItem deleted = items.get(2);
+        int count = ds.merge(Collections.<Shoppinglist>emptyList(), Collections.singletonList(gone),
+                Arrays.asList(added, edited), Collections.singletonList(deleted), USER);
+
+        Assert.assertEquals(1 + 5 + 2 + 1, count);
+        Assert.assertNull(ds.getList(gone.getId(), USER));
+        Assert.assertEquals(0, ds.getItems(gone.getId(), USER, true).size());
+        List<ShoppinglistItem> kept = ds.getItems(keep.getId(), USER, true);
+        Assert.assertEquals(5, kept.size());
+        Assert.assertEquals("edited", ds.getItem(edited.getId(), USER).getDescription());
+        Assert.assertNull(ds.getItem(deleted.getId(), USER));
+
+    }
+
+    @Test
+    public void testIterateItems() throws Exception {
+
+        SgnDataSource ds = new SgnDataSource(RuntimeEnvironment.application);
+        ds.open();
+
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+        for (int i = 0; i < 25; i++) {
+            items.add(new ShoppinglistItem().setShoppinglistId("iterate").setDescription("item " + i)
+                    .setCount(i + 1).setTick(i % 2 == 0).setComment(i % 3 == 0 ? null : "comment"));
+        }
+        items.get(7).setState(SyncState.DELETE);
+        Assert.assertEquals(items.size(), ds.insertItem(items, USER));
+
+        // Rows are read straight from the cursor, so every column must survive the round trip
+        List<ShoppinglistItem> read = new ArrayList<ShoppinglistItem>();
+        Iterator<ShoppinglistItem> it = ds.iterateItems("iterate", USER, true, 10);
+        while (it.hasNext()) {
+            read.add(it.next());
+        }
+        Assert.assertEquals(ds.getItems("iterate", USER, true), read);
+        for (int i = 0; i < items.size(); i++) {
+            ShoppinglistItem expected = items.get(i);
+            ShoppinglistItem actual = read.get(i);
+            Assert.assertEquals(expected.getId(), actual.getId());
+            Assert.assertEquals(expected.getDescription(), actual.getDescription());
+            Assert.assertEquals(expected.getCount(), actual.getCount());
+            Assert.assertEquals(expected.isTicked(), actual.isTicked());
+            Assert.assertEquals(expected.getComment(), actual.getComment());
+            Assert.assertEquals(expected.getState(), actual.getState());
+        }
+
+        // A window boundary that falls on a deleted item
+        int count = 0;
+        it = ds.iterateItems("iterate", USER, false, 7);
+        while (it.hasNext()) {
+            Assert.assertFalse(it.next().getState() == SyncState.DELETE);
+            count++;
+        }
+        Assert.assertEquals(items.size() - 1, count);
+        Assert.assertFalse(ds.iterateItems("none", USER, true, 10).hasNext());
+
+        ds.close();
+
+    }
+
+}
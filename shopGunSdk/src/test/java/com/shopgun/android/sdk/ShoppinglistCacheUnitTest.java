@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.bus.ShoppinglistEvent;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.shoppinglists.ShoppinglistCache;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class ShoppinglistCacheUnitTest {
+
+    public static final String TAG = Constants.getTag(ShoppinglistCacheUnitTest.class);
+
+    private static final int USER = 1;
+
+    @Test
+    public void testIdentity() throws Exception {
+
+        ShoppinglistCache cache = new ShoppinglistCache();
+        cache.setUser(USER);
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        ShoppinglistItem milk = new ShoppinglistItem(sl, "milk");
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+        items.add(milk);
+
+        Assert.assertNull(cache.getItems(USER, sl.getId()));
+        ShoppinglistItem stale = ShoppinglistItem.fromJSON(milk.toJSON());
+        stale.setDescription("stale");
+        cache.putItem(cache.getGeneration(), USER, stale);
+        cache.putItems(cache.getGeneration(), USER, sl.getId(), items);
+
+        // Items read by id are the ones from their list
+        Assert.assertEquals("milk", cache.getItem(USER, milk.getId()).getDescription());
+        Assert.assertEquals(1, cache.getItems(USER, sl.getId()).size());
+
+        // Another user doesn't see the cache, and doesn't clear it
+        Assert.assertNull(cache.getItem(USER + 1, milk.getId()));
+        Assert.assertNull(cache.getItems(USER + 1, sl.getId()));
+        Assert.assertNotNull(cache.getItem(USER, milk.getId()));
+
+        // Changing the current user clears the cache
+        cache.setUser(USER + 1);
+        Assert.assertNull(cache.getItem(USER, milk.getId()));
+
+    }
+
+    @Test
+    public void testShared() throws Exception {
+
+        ShoppinglistCache cache = new ShoppinglistCache();
+        cache.setUser(USER);
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        ShoppinglistItem milk = new ShoppinglistItem(sl, "milk");
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+        items.add(milk);
+        List<Shoppinglist> lists = new ArrayList<Shoppinglist>();
+        lists.add(sl);
+
+        long generation = cache.getGeneration();
+        cache.putItems(generation, USER, sl.getId(), items);
+        cache.putLists(generation, USER, lists);
+
+        // Reads hand out the cached instances, without copying them
+        Assert.assertSame(milk, cache.getItem(USER, milk.getId()));
+        Assert.assertSame(milk, cache.getItems(USER, sl.getId()).get(0));
+        Assert.assertSame(sl, cache.getLists(USER).get(0));
+
+        // The lists holding them are copies though
+        items.clear();
+        cache.getItems(USER, sl.getId()).clear();
+        cache.getLists(USER).clear();
+        Assert.assertEquals(1, cache.getItems(USER, sl.getId()).size());
+        Assert.assertEquals(1, cache.getLists(USER).size());
+
+        // Writing a model drops it, so the next read gets a new snapshot
+        cache.invalidate(sl.getId());
+        Assert.assertNull(cache.getItem(USER, milk.getId()));
+        Assert.assertNull(cache.getLists(USER));
+
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        ShoppinglistCache cache = new ShoppinglistCache();
+        cache.setUser(USER);
+        Shoppinglist sl = Shoppinglist.fromName("list");
+        Shoppinglist other = Shoppinglist.fromName("other");
+        List<ShoppinglistItem> items = new ArrayList<ShoppinglistItem>();
+        items.add(new ShoppinglistItem(sl, "milk"));
+        List<ShoppinglistItem> otherItems = new ArrayList<ShoppinglistItem>();
+        otherItems.add(new ShoppinglistItem(other, "bread"));
+
+        long generation = cache.getGeneration();
+        cache.putList(generation, USER, sl);
+        cache.putItems(generation, USER, sl.getId(), items);
+        cache.putItems(generation, USER, other.getId(), otherItems);
+
+        // Only the changed list is dropped
+        ShoppinglistEvent.Builder b = new ShoppinglistEvent.Builder(true);
+        b.edit(items.get(0));
+        cache.invalidate(b.build());
+        Assert.assertNull(cache.getItems(USER, sl.getId()));
+        Assert.assertNull(cache.getItem(USER, items.get(0).getId()));
+        Assert.assertNull(cache.getList(USER, sl.getId()));
+        Assert.assertEquals(1, cache.getItems(USER, other.getId()).size());
+
+        // Results read before an invalidation aren't cached
+        cache.putItems(generation, USER, sl.getId(), items);
+        Assert.assertNull(cache.getItems(USER, sl.getId()));
+
+        cache.clear();
+        Assert.assertNull(cache.getItems(USER, other.getId()));
+
+    }
+
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.impl.StringRequest;
+import com.shopgun.android.sdk.network.impl.StripedMemoryCache;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class StripedMemoryCacheUnitTest {
+
+    public static final String TAG = Constants.getTag(StripedMemoryCacheUnitTest.class);
+
+    private static final long TTL = 60000;
+
+    @Test
+    public void testPutAndGet() throws Exception {
+
+        StripedMemoryCache cache = new StripedMemoryCache(1024 * 1024, 4);
+        cache.put(newRequest(), newResponse("key", "value", 100));
+
+        Cache.Item item = cache.get("key");
+        Assert.assertNotNull(item);
+        Assert.assertEquals("value", item.object);
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertNull(cache.get(null));
+
+        cache.clear();
+        Assert.assertNull(cache.get("key"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.sizeInBytes());
+
+    }
+
+    @Test
+    public void testExpiredItems() throws Exception {
+
+        StripedMemoryCache cache = new StripedMemoryCache(1024 * 1024, 1);
+        Map<String, Cache.Item> items = new HashMap<String, Cache.Item>();
+        items.put("expired", new Cache.Item("value", -1, 100));
+        items.put("discardable", new Cache.Item("value", -Cache.Item.MAX_STALE - 1000, 100));
+        cache.put(newRequest(), Response.fromSuccess("value", items));
+        Assert.assertEquals(2, cache.size());
+
+        // Expired items are kept for revalidation
+        Assert.assertNull(cache.get("expired"));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("value", cache.getStale("expired").object);
+
+        // But not forever
+        Assert.assertNull(cache.getStale("discardable"));
+        Assert.assertEquals(1, cache.size());
+
+    }
+
+    @Test
+    public void testEvictionIsWeightedBySize() throws Exception {
+
+        // A single segment, so the LRU order is global
+        StripedMemoryCache cache = new StripedMemoryCache(10000, 1);
+
+        cache.put(newRequest(), newResponse("a", "a", 4000));
+        cache.put(newRequest(), newResponse("b", "b", 4000));
+        Assert.assertEquals(2, cache.size());
+
+        // touch 'a' so 'b' is the least recently used
+        Assert.assertNotNull(cache.get("a"));
+
+        cache.put(newRequest(), newResponse("c", "c", 4000));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertTrue(cache.sizeInBytes() <= 10000);
+
+        // One large item pushes out everything else
+        cache.put(newRequest(), newResponse("d", "d", 9000));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get("d"));
+
+    }
+
+    @Test
+    public void testReplaceUpdatesSize() throws Exception {
+
+        StripedMemoryCache cache = new StripedMemoryCache(1024 * 1024, 1);
+        cache.put(newRequest(), newResponse("key", "value", 1000));
+        long first = cache.sizeInBytes();
+
+        cache.put(newRequest(), newResponse("key", "value", 2000));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(first + 1000, cache.sizeInBytes());
+
+    }
+
+    private static Request<?> newRequest() {
+        return new StringRequest("https://api.etilbudsavis.dk/v2/test", null);
+    }
+
+    private static Response<String> newResponse(String key, String value, long size) {
+        Map<String, Cache.Item> items = new HashMap<String, Cache.Item>();
+        items.put(key, new Cache.Item(value, TTL, size));
+        return Response.fromSuccess(value, items);
+    }
+
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.api.Endpoints;
+import com.shopgun.android.sdk.api.Parameters;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.impl.JsonArrayRequest;
+import com.shopgun.android.sdk.network.mock.MockApiNetwork;
+import com.shopgun.android.sdk.shoppinglists.SyncCursor;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class SyncCursorUnitTest {
+
+    public static final String TAG = Constants.getTag(SyncCursorUnitTest.class);
+
+    private static final String HOST = "https://api.etilbudsavis.dk";
+    private static final int USER = 1;
+    private static final long NOW = 1500000000000L;
+
+    private MockApiNetwork mNetwork;
+    private Shoppinglist mOld;
+    private Shoppinglist mOlder;
+    private Shoppinglist mNewest;
+
+    @Before
+    public void setUp() throws Exception {
+        mNetwork = new MockApiNetwork(RuntimeEnvironment.application);
+        mOlder = list("older", NOW - 120000);
+        mOld = list("old", NOW - 60000);
+        mNewest = list("newest", NOW);
+        for (Shoppinglist sl : new Shoppinglist[]{mOlder, mOld, mNewest}) {
+            mNetwork.getShoppinglists().putList(sl);
+            mNetwork.getShoppinglists().putItem(new ShoppinglistItem(sl, "milk"));
+        }
+    }
+
+    private static Shoppinglist list(String name, long modified) {
+        Shoppinglist sl = Shoppinglist.fromName(name);
+        sl.setModified(new Date(modified));
+        return sl;
+    }
+
+    private List<Shoppinglist> syncLists(SyncCursor cursor, boolean full) throws Exception {
+        Request<?> r = new JsonArrayRequest(HOST + Endpoints.lists(USER), null);
+        Assert.assertEquals(!full, cursor.apply(r));
+        NetworkResponse response = mNetwork.performRequest(r);
+        List<Shoppinglist> lists = Shoppinglist.fromJSON(new JSONArray(new String(response.data)));
+        return cursor.onListsSynced(lists, full);
+    }
+
+    private int syncItems(SyncCursor cursor, Shoppinglist sl) throws Exception {
+        Request<?> r = new JsonArrayRequest(HOST + Endpoints.listitems(USER, sl.getId()), null);
+        NetworkResponse response = mNetwork.performRequest(r);
+        cursor.onItemsSynced(sl);
+        return ShoppinglistItem.fromJSON(new JSONArray(new String(response.data))).size();
+    }
+
+    @Test
+    public void testDelta() throws Exception {
+
+        SyncCursor cursor = new SyncCursor();
+        cursor.setUser(USER);
+
+        // The first sync is a full sync, and all lists need their items synced
+        List<Shoppinglist> changed = syncLists(cursor, true);
+        Assert.assertEquals(3, changed.size());
+        for (Shoppinglist sl : changed) {
+            Assert.assertEquals(1, syncItems(cursor, sl));
+        }
+        Assert.assertEquals(NOW, cursor.getListsCursor());
+
+        // Nothing changed
+        Assert.assertTrue(syncLists(cursor, false).isEmpty());
+
+        // A change to one list, only requires that list's items
+        mOld.setModified(new Date(NOW + 60000));
+        mNetwork.getShoppinglists().putItem(new ShoppinglistItem(mOld, "bread"));
+        changed = syncLists(cursor, false);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertEquals(mOld.getId(), changed.get(0).getId());
+
+        // Until the items are synced, the list is requested again
+        Assert.assertEquals(1, syncLists(cursor, false).size());
+        Assert.assertEquals(2, syncItems(cursor, changed.get(0)));
+        Assert.assertTrue(syncLists(cursor, false).isEmpty());
+        Assert.assertEquals(NOW + 60000, cursor.getListsCursor());
+
+    }
+
+    @Test
+    public void testModifiedFrom() throws Exception {
+
+        SyncCursor cursor = new SyncCursor();
+        syncLists(cursor, true);
+        cursor.onItemsSynced(mNewest);
+
+        Request<?> r = new JsonArrayRequest(HOST + Endpoints.lists(USER), null);
+        cursor.apply(r);
+        Assert.assertNotNull(r.getParameters().get(Parameters.MODIFIED_FROM));
+
+        // The older lists are pending, so the cursor stays at the oldest of them
+        Assert.assertEquals(NOW - 120000, cursor.getListsCursor());
+        JSONArray lists = new JSONArray(new String(mNetwork.performRequest(r).data));
+        Assert.assertEquals(3, lists.length());
+
+    }
+
+    @Test
+    public void testChangeWhileSyncing() throws Exception {
+
+        SyncCursor cursor = new SyncCursor();
+        cursor.setUser(USER);
+        for (Shoppinglist sl : syncLists(cursor, true)) {
+            syncItems(cursor, sl);
+        }
+
+        mOld.setModified(new Date(NOW + 60000));
+        Shoppinglist first = syncLists(cursor, false).get(0);
+
+        // The list changes again, before the items of the first change are synced
+        mOld.setModified(new Date(NOW + 120000));
+        Assert.assertEquals(1, syncLists(cursor, false).size());
+        syncItems(cursor, first);
+
+        // The newer change is still pending
+        Assert.assertEquals(NOW + 120000, cursor.getListsCursor());
+        List<Shoppinglist> changed = syncLists(cursor, false);
+        Assert.assertEquals(1, changed.size());
+        syncItems(cursor, changed.get(0));
+        Assert.assertTrue(syncLists(cursor, false).isEmpty());
+
+    }
+
+    @Test
+    public void testUserChange() throws Exception {
+
+        SyncCursor cursor = new SyncCursor();
+        cursor.setUser(USER);
+        syncLists(cursor, true);
+        Assert.assertEquals(NOW - 120000, cursor.getListsCursor());
+
+        cursor.setUser(USER + 1);
+        Assert.assertEquals(0, cursor.getListsCursor());
+
+    }
+
+}
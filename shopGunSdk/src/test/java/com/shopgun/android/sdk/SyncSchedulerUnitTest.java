@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk;
+
+import com.shopgun.android.sdk.shoppinglists.SyncInterval;
+import com.shopgun.android.sdk.shoppinglists.SyncScheduler;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class SyncSchedulerUnitTest {
+
+    public static final String TAG = Constants.getTag(SyncSchedulerUnitTest.class);
+
+    private static final long INTERVAL = SyncInterval.SLOW;
+
+    @Test
+    public void testIdle() throws Exception {
+
+        SyncScheduler scheduler = new SyncScheduler();
+        long delay = 0;
+        for (int i = 0; i < 100; i++) {
+            delay = scheduler.schedule(0, INTERVAL);
+            if (i < SyncScheduler.IDLE_STEP - 1) {
+                Assert.assertEquals(INTERVAL, delay);
+            }
+        }
+        Assert.assertEquals(INTERVAL * SyncScheduler.MAX_IDLE_FACTOR, delay);
+
+        // Changes from the server bring the interval back to normal
+        scheduler.onServerChange();
+        Assert.assertEquals(INTERVAL, scheduler.schedule(0, INTERVAL));
+
+    }
+
+    @Test
+    public void testLocalChange() throws Exception {
+
+        SyncScheduler scheduler = new SyncScheduler();
+        scheduler.onLocalChange();
+        for (int i = 0; i < SyncScheduler.TIGHT_ITERATIONS; i++) {
+            Assert.assertEquals(SyncInterval.FAST, scheduler.schedule(0, INTERVAL));
+        }
+        Assert.assertTrue(scheduler.schedule(0, INTERVAL) >= INTERVAL);
+
+    }
+
+    @Test
+    public void testErrorBackoff() throws Exception {
+
+        SyncScheduler scheduler = new SyncScheduler();
+        scheduler.onResult(false);
+        Assert.assertEquals(INTERVAL * 2, scheduler.schedule(0, INTERVAL));
+        scheduler.onResult(false);
+        Assert.assertEquals(INTERVAL * 4, scheduler.schedule(0, INTERVAL));
+
+        for (int i = 0; i < 100; i++) {
+            scheduler.onResult(false);
+        }
+        Assert.assertEquals(SyncScheduler.MAX_ERROR_DELAY, scheduler.schedule(0, INTERVAL));
+
+        // Backoff wins over a tightened interval, until a request succeeds
+        scheduler.onLocalChange();
+        Assert.assertEquals(SyncScheduler.MAX_ERROR_DELAY, scheduler.schedule(0, INTERVAL));
+        scheduler.onResult(true);
+        Assert.assertEquals(SyncInterval.FAST, scheduler.schedule(0, INTERVAL));
+
+    }
+
+    @Test
+    public void testFlexWindow() throws Exception {
+
+        SyncScheduler scheduler = new SyncScheduler();
+        Assert.assertFalse(scheduler.isInFlexWindow(0));
+
+        long delay = scheduler.schedule(1000, INTERVAL);
+        Assert.assertEquals(1000 + delay, scheduler.getNextTime());
+        Assert.assertFalse(scheduler.isInFlexWindow(1000));
+        Assert.assertFalse(scheduler.isInFlexWindow(1000 + delay / 2 - 1));
+        Assert.assertTrue(scheduler.isInFlexWindow(1000 + delay / 2));
+        Assert.assertFalse(scheduler.isInFlexWindow(1000 + delay));
+
+        scheduler.reset();
+        Assert.assertFalse(scheduler.isInFlexWindow(1000 + delay / 2));
+
+    }
+
+}
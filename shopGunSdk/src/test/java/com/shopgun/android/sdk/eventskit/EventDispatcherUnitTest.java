@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.eventskit;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shopgun.android.sdk.utils.Constants;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class EventDispatcherUnitTest {
+
+    public static final String TAG = Constants.getTag(EventDispatcherUnitTest.class);
+
+    private LinkedBlockingQueue<AnonymousEvent> mQueue;
+    private MemoryEventStore mStore;
+    private EventDispatcher mDispatcher;
+    private MockWebServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mStore = new MemoryEventStore();
+        mStore.open();
+        mQueue = new LinkedBlockingQueue<AnonymousEvent>();
+        mServer = new MockWebServer();
+        mServer.start();
+        mDispatcher = new EventDispatcher(mQueue, new OkHttpClient(),
+                mServer.url("/track").toString(), mStore, 1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    /**
+     * Get the ids of the events posted in a request.
+     */
+    private static List<String> postedIds(RecordedRequest request) throws Exception {
+        Buffer body = request.getBody();
+        if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+            Buffer unzipped = new Buffer();
+            unzipped.writeAll(new GzipSource(body));
+            body = unzipped;
+        }
+        JsonArray events = new JsonParser().parse(body.readUtf8()).getAsJsonObject().getAsJsonArray("events");
+        List<String> ids = new ArrayList<String>(events.size());
+        for (JsonElement e : events) {
+            ids.add(e.getAsJsonObject().get("id").getAsString());
+        }
+        return ids;
+    }
+
+    /**
+     * A response that acknowledges all of the events in a request.
+     */
+    private static MockResponse ack(List<String> ids) {
+        JsonArray events = new JsonArray();
+        for (String id : ids) {
+            JsonObject e = new JsonObject();
+            e.addProperty("id", id);
+            e.addProperty("status", "ack");
+            events.add(e);
+        }
+        JsonObject body = new JsonObject();
+        body.add("events", events);
+        return new MockResponse().setBody(body.toString());
+    }
+
+    private static List<AnonymousEvent> events(int count) {
+        List<AnonymousEvent> events = new ArrayList<AnonymousEvent>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(new AnonymousEvent(AnonymousEvent.PAGED_PUBLICATION_OPENED).add("i", i));
+        }
+        return events;
+    }
+
+    private static AnonymousEventWrapper wrap(AnonymousEvent event) {
+        return new AnonymousEventWrapper(event.getId(), event.getVersion(), event.getTimestamp(), event.toString());
+    }
+
+    @Test
+    public void testBatchInsert() throws Exception {
+
+        Assert.assertFalse(mDispatcher.insert(events(50)));
+        Assert.assertEquals(1, mStore.mAddCalls);
+        Assert.assertEquals(50, mStore.count());
+        Assert.assertEquals(50, mDispatcher.getCount());
+
+        // Events not to be tracked aren't stored, but a flush is reported
+        List<AnonymousEvent> events = events(10);
+        events.add(new AnonymousEvent(AnonymousEvent.PAGED_PUBLICATION_OPENED).doNotTrack(true));
+        mDispatcher.flush();
+        events.add(mQueue.poll());
+        Assert.assertTrue(mDispatcher.insert(events));
+        Assert.assertEquals(2, mStore.mAddCalls);
+        Assert.assertEquals(60, mStore.count());
+        Assert.assertEquals(60, mDispatcher.getCount());
+
+        // Nothing to store, nothing to add
+        Assert.assertFalse(mDispatcher.insert(new ArrayList<AnonymousEvent>()));
+        Assert.assertEquals(2, mStore.mAddCalls);
+
+    }
+
+    @Test
+    public void testDuplicateFallsBackToSingleInserts() throws Exception {
+
+        List<AnonymousEvent> stored = events(5);
+        Assert.assertFalse(mDispatcher.insert(stored));
+        Assert.assertEquals(5, mDispatcher.getCount());
+
+        // A single duplicate fails the batch, the rest of the events are added one at a time
+        List<AnonymousEvent> events = events(49);
+        events.add(20, stored.get(2));
+        Assert.assertFalse(mDispatcher.insert(events));
+        Assert.assertEquals(54, mStore.count());
+        Assert.assertEquals(54, mDispatcher.getCount());
+        Assert.assertEquals(2, mStore.mFailedAdds);
+        Assert.assertEquals(1 + 1 + events.size(), mStore.mAddCalls);
+
+        // The dispatcher carries on with batches as usual
+        Assert.assertFalse(mDispatcher.insert(events(10)));
+        Assert.assertEquals(64, mStore.count());
+        Assert.assertEquals(64, mDispatcher.getCount());
+
+    }
+
+    @Test
+    public void testTooLargeBatchIsSplit() throws Exception {
+
+        final int limit = 5;
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    List<String> ids = postedIds(request);
+                    return ids.size() > limit ? new MockResponse().setResponseCode(413) : ack(ids);
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+
+        mDispatcher.insert(events(12));
+
+        // The batch is too large, but the events are kept, and sent again right away in smaller batches
+        Assert.assertTrue(mDispatcher.shipRound());
+        Assert.assertEquals(12, mStore.count());
+
+        // 6 events per batch is still too large, 3 per batch is fine
+        Assert.assertTrue(mDispatcher.shipRound());
+        Assert.assertTrue(mDispatcher.shipRound());
+        Assert.assertEquals(3, mStore.count());
+        Assert.assertTrue(mDispatcher.shipRound());
+        Assert.assertEquals(0, mStore.count());
+        Assert.assertEquals(0, mDispatcher.getCount());
+
+    }
+
+    @Test
+    public void testInvalidBatchIsDropped() throws Exception {
+
+        mServer.enqueue(new MockResponse().setResponseCode(422));
+        mDispatcher.insert(events(10));
+
+        Assert.assertTrue(mDispatcher.shipRound());
+        Assert.assertEquals(0, mStore.count());
+        Assert.assertEquals(0, mDispatcher.getCount());
+
+    }
+
+    @Test
+    public void testFailedBatchIsHeldOff() throws Exception {
+
+        mServer.enqueue(new MockResponse().setResponseCode(404));
+        mDispatcher.insert(events(10));
+
+        // Other client errors are retried, but not on this round, the events are kept for the next one
+        Assert.assertFalse(mDispatcher.shipRound());
+        Assert.assertEquals(10, mStore.count());
+        Assert.assertEquals(1, mServer.getRequestCount());
+
+    }
+
+    /**
+     * A store that, like {@link RealmEventStore}, fails a whole add on a duplicate id.
+     */
+    private static class MemoryEventStore implements EventStore {
+
+        final Map<String, AnonymousEventWrapper> mEvents = new LinkedHashMap<String, AnonymousEventWrapper>();
+        int mAddCalls = 0;
+        int mFailedAdds = 0;
+
+        @Override
+        public boolean open() {
+            return true;
+        }
+
+        @Override
+        public long count() {
+            return mEvents.size();
+        }
+
+        @Override
+        public void add(List<AnonymousEventWrapper> events) {
+            mAddCalls++;
+            for (AnonymousEventWrapper e : events) {
+                if (mEvents.containsKey(e.getId())) {
+                    mFailedAdds++;
+                    throw new IllegalStateException("Duplicate key " + e.getId());
+                }
+            }
+            for (AnonymousEventWrapper e : events) {
+                mEvents.put(e.getId(), e);
+            }
+        }
+
+        @Override
+        public List<AnonymousEventWrapper> peek(int limit, long maxBytes) {
+            List<AnonymousEventWrapper> events = new ArrayList<AnonymousEventWrapper>(mEvents.values());
+            return events.size() > limit ? events.subList(0, limit) : events;
+        }
+
+        @Override
+        public int remove(Set<String> ids) {
+            int removed = 0;
+            for (String id : ids) {
+                removed += mEvents.remove(id) == null ? 0 : 1;
+            }
+            return removed;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}